@@ -0,0 +1,99 @@
+package brv.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brv.tools.codec.BinaryCodec;
+import brv.tools.model.ScanResult;
+
+/**
+ * Compares the {@link BinaryCodec} with Java serialization, encoding and decoding batches of {@link ScanResult}s.
+ * <p>
+ * The encoded size of each batch is printed on setup, as both formats are very different in size.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	@Param({"1", "100"})
+	public int results;
+
+	private List<ScanResult> batch;
+	private ByteBuffer buffer;
+	private ByteBuffer encoded;
+	private byte[] serialized;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		batch = new ArrayList<>(results);
+		for(int i = 0; i < results; i++)
+			batch.add(ScanResults.create("192.168.1." + (i & 0xFF)));
+
+		buffer = ByteBuffer.allocate(64 * 1024);
+
+		encoded = ByteBuffer.allocate(64 * 1024);
+		BinaryCodec.encodeResults(batch, encoded);
+		encoded.flip();
+
+		serialized = serialize();
+
+		System.out.println("\nEncoded size: " + encoded.remaining() + " bytes, serialized size: " + serialized.length + " bytes.");
+	}
+
+	@Benchmark
+	public ByteBuffer encode() {
+		buffer.clear();
+		BinaryCodec.encodeResults(batch, buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public List<ScanResult> decode() {
+		return BinaryCodec.decodeResults(encoded.duplicate());
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+		try(ObjectOutputStream objects = new ObjectOutputStream(output)) {
+			objects.writeObject(batch);
+		}
+
+		return output.toByteArray();
+	}
+
+	@Benchmark
+	public Object deserialize() throws IOException, ClassNotFoundException {
+		try(ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+			return objects.readObject();
+		}
+	}
+}
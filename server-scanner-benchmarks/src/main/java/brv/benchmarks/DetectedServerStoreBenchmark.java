@@ -0,0 +1,86 @@
+package brv.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brv.tools.store.DetectedServerStore;
+
+/**
+ * Measures the updates done on the detected servers store for every scanned host.
+ * <p>
+ * A fraction of the hosts is online. Online hosts are put on the store, refreshing their last seen time, while
+ * offline hosts are removed from it, as the daemons do. Run with several threads to simulate parallel sweeps.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectedServerStoreBenchmark {
+
+	@Param({"254", "65534", "1048574"})
+	public int hosts;
+	
+	@Param({"10", "50"})
+	public int onlinePercentage;
+	
+	private DetectedServerStore store;
+	
+	@Setup
+	public void setUp() {
+		
+		store = new DetectedServerStore();
+		
+		long now = System.currentTimeMillis();
+		for(long host = 0; host < hosts; host++)
+			if(isOnline(host))
+				store.put(host, "host" + host, now);
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public String update() {
+		return update(ThreadLocalRandom.current().nextInt(hosts));
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public String updateContended() {
+		return update(ThreadLocalRandom.current().nextInt(hosts));
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public boolean lookup() {
+		return store.contains(ThreadLocalRandom.current().nextInt(hosts));
+	}
+	
+	private String update(long host) {
+		
+		if(isOnline(host))
+			return store.put(host, "host" + (host & 0xFF), System.currentTimeMillis());
+		else
+			return store.remove(host);
+	}
+	
+	private boolean isOnline(long host) {
+		return (host % 100) < onlinePercentage;
+	}
+}
@@ -0,0 +1,87 @@
+package brv.benchmarks;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brv.benchmarks.stubs.HttpStubServer;
+import brv.benchmarks.stubs.StubServer;
+import brv.tools.probes.HttpsProbeEngine;
+
+/**
+ * Measures a probe of the {@link HttpsProbeEngine} against an in-process loopback HTTPS stub server, with and without
+ * resuming the TLS session of the previous probe.
+ * <p>
+ * Without resumption, the cached sessions are invalidated before each probe, so every probe does a full handshake.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpsProbeBenchmark {
+
+	@Param({"true", "false"})
+	public boolean resumption;
+	
+	@Param({"true", "false"})
+	public boolean handshakeOnly;
+	
+	private HttpStubServer stub;
+	private HttpsProbeEngine engine;
+	private SSLSessionContext sessions;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		
+		stub = new HttpStubServer(0, true);
+		engine = new HttpsProbeEngine(stub.getSslContext(), HttpsProbeEngine.DEFAULT_SESSION_CACHE_SIZE, HttpsProbeEngine.DEFAULT_SESSION_TIMEOUT);
+		sessions = stub.getSslContext().getClientSessionContext();
+		
+		if(!probe())
+			throw new IllegalStateException("HTTPS stub server is not reachable.");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		stub.close();
+	}
+	
+	@Benchmark
+	public boolean probe() {
+		
+		if(!resumption) {
+			for(byte[] id : Collections.list(sessions.getIds())) {
+				SSLSession session = sessions.getSession(id);
+				if(session != null)
+					session.invalidate();
+			}
+		}
+		
+		if(handshakeOnly)
+			return engine.handshake(StubServer.LOOPBACK, stub.getPort(), 1000, 1000);
+		
+		return engine.isUp(StubServer.LOOPBACK, stub.getPort(), 1000, 1000);
+	}
+}
@@ -0,0 +1,78 @@
+package brv.benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import brv.tools.events.EventBus;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanResult;
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Measures the cost of notifying a detected server to the registered listeners.
+ * <p>
+ * Only the publishing side is measured, as it is the one running on the scanning threads. Listeners consume
+ * their notifications on a dedicated pool.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerDispatchBenchmark {
+
+	@Param({"1", "4", "16"})
+	public int listeners;
+	
+	@Param({"DROP_OLDEST", "COALESCE"})
+	public OverflowPolicy policy;
+	
+	private ExecutorService executor;
+	private EventBus<ScanResult> bus;
+	private ScanResult[] results;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void setUp(Blackhole blackhole) {
+		
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new NamedThreadFactory("Listener"));
+		bus = new EventBus<>(EventBus.DEFAULT_CAPACITY, policy, result -> result.getIp(), executor);
+		
+		for(int i = 0; i < listeners; i++)
+			bus.subscribe(blackhole::consume);
+		
+		results = new ScanResult[256];
+		for(int i = 0; i < results.length; i++)
+			results[i] = ScanResults.create("192.168.1." + i);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+	
+	@Benchmark
+	public void publish() {
+		bus.publish(results[next++ & 0xFF]);
+	}
+}
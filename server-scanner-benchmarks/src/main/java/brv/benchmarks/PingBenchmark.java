@@ -0,0 +1,84 @@
+package brv.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brv.benchmarks.stubs.HttpStubServer;
+import brv.benchmarks.stubs.StubServer;
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+
+/**
+ * Measures a single <code>ping()</code> of each daemon against an in-process loopback stub server.
+ * <p>
+ * The <code>TCP</code> server is probed by a connect only daemon. The latency is the time the stub waits before
+ * replying, so it doesn't apply to it.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PingBenchmark {
+
+	@Param({"HTTP", "HTTPS", "FTP", "TCP"})
+	public String server;
+	
+	@Param({"0", "5"})
+	public int latency;
+	
+	private StubServer stub;
+	private ScanDaemon daemon;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		
+		stub = StubServer.start(server, latency);
+		
+		ScanDaemonBuilder builder;
+		if("TCP".equals(server))
+			builder = new ScanDaemonBuilder(Protocol.HTTP).withConnectOnly();
+		else
+			builder = new ScanDaemonBuilder(Protocol.valueOf(server));
+		
+		if("HTTPS".equals(server))
+			builder.withSslContext(((HttpStubServer) stub).getSslContext());
+		
+		daemon = builder.withPort(stub.getPort())
+						.withTimeout(1000)
+						.withTargets(StubServer.LOOPBACK)
+						.build();
+		
+		if(!daemon.ping(StubServer.LOOPBACK))
+			throw new IllegalStateException(server + " stub server is not reachable.");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		stub.close();
+	}
+	
+	@Benchmark
+	public boolean ping() {
+		return daemon.ping(StubServer.LOOPBACK);
+	}
+}
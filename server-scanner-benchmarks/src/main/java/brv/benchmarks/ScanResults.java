@@ -0,0 +1,32 @@
+package brv.benchmarks;
+
+import java.util.Date;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+/**
+ * Creates {@link ScanResult}s the same way the daemons do.
+ * @author flash
+ *
+ */
+final class ScanResults {
+
+	private ScanResults() {
+	}
+	
+	static ScanResult create(String ip) {
+		
+		ScanResult result = new ScanResult();
+		
+		result.setIp(ip);
+		result.setHostname("host-" + ip);
+		result.setProtocol(Protocol.HTTP);
+		result.setPort(80);
+		result.setStatus(ServerStatus.ONLINE);
+		result.setDate(new Date());
+		
+		return result;
+	}
+}
@@ -0,0 +1,102 @@
+package brv.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brv.tools.store.DetectedServerStore;
+import brv.tools.store.StateJournal;
+
+/**
+ * Measures how fast the detected servers are journaled and restored on a restart.
+ * <p>
+ * The journal is filled with the given number of online servers, half of them on a snapshot and the other half
+ * on the segments appended after it. As on real restarts, every replay leaves an empty segment, so the journal
+ * is compacted from time to time while replaying.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateJournalBenchmark {
+
+	private static final long FINGERPRINT = 1;
+
+	@Param({"10000", "100000"})
+	public int servers;
+
+	private Path directory;
+	private StateJournal appendJournal;
+	private long nextKey;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		directory = Files.createTempDirectory("journal-benchmark");
+
+		DetectedServerStore store = new DetectedServerStore();
+		try(StateJournal journal = new StateJournal(directory.resolve("replay"), FINGERPRINT, store,
+													StateJournal.DEFAULT_SEGMENT_SIZE, StateJournal.DEFAULT_COMPACTION_THRESHOLD)) {
+			for(long key = 0; key < servers; key++) {
+				String hostname = "server-" + key + ".example.com";
+				store.put(key, hostname, key);
+				journal.online(key, hostname, key);
+
+				if(key == servers / 2)
+					journal.compact();
+			}
+		}
+
+		appendJournal = new StateJournal(directory.resolve("append"), FINGERPRINT, new DetectedServerStore(),
+											StateJournal.DEFAULT_SEGMENT_SIZE, StateJournal.DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		appendJournal.close();
+
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void append() throws IOException {
+		long key = nextKey++ & 0xFFFF;
+		appendJournal.online(key, "server.example.com", key);
+	}
+
+	@Benchmark
+	public int replay() throws IOException {
+
+		DetectedServerStore store = new DetectedServerStore();
+		new StateJournal(directory.resolve("replay"), FINGERPRINT, store,
+							StateJournal.DEFAULT_SEGMENT_SIZE, StateJournal.DEFAULT_COMPACTION_THRESHOLD).close();
+
+		return store.size();
+	}
+}
@@ -0,0 +1,70 @@
+package brv.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brv.tools.targets.ScanTargets;
+
+/**
+ * Measures how fast the daemons obtain the next host to be scanned.
+ * <p>
+ * Reproduces the <code>nextHost</code> loop of the daemons: the host index wraps around at the end of the targets
+ * and the address is built from it.
+ * </p>
+ * @author flash
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetIterationBenchmark {
+
+	@Param({"192.168.1.0/24", "10.0.0.0/16", "10.0.0.0/24,172.16.0.1-172.16.3.254,192.168.0.0/24", "fd00::/112"})
+	public String targets;
+	
+	private ScanTargets scanTargets;
+	private long currentHost;
+	
+	@Setup
+	public void setUp() {
+		scanTargets = ScanTargets.parse(targets.split(","));
+		currentHost = 0;
+	}
+	
+	@Benchmark
+	public long nextHost() {
+		
+		long nextHost = currentHost;
+		
+		if(currentHost < scanTargets.size() - 1)
+			currentHost++;
+		else
+			currentHost = 0;
+		
+		return nextHost;
+	}
+	
+	@Benchmark
+	public String nextAddress() {
+		return scanTargets.getAddress(nextHost());
+	}
+	
+	@Benchmark
+	public long indexOf() {
+		return scanTargets.indexOf(scanTargets.getAddress(nextHost()));
+	}
+}
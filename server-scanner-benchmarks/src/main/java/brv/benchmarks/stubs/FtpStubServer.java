@@ -0,0 +1,47 @@
+package brv.benchmarks.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FTP stub server, greeting every client with a <code>220</code> reply.
+ * <p>
+ * No FTP commands are processed: the connection is kept open until the client closes it.
+ * </p>
+ * @author flash
+ *
+ */
+public final class FtpStubServer extends SocketStubServer {
+
+	private static final byte[] GREETING = "220 Stub FTP server ready.\r\n".getBytes(StandardCharsets.US_ASCII);
+	
+	private final int latency;
+	
+	/**
+	 * Constructor for FtpStubServer.
+	 * @param latency - the time (in milliseconds) the stub will wait before sending the greeting.
+	 * @throws IOException if the stub couldn't be started.
+	 */
+	public FtpStubServer(int latency) throws IOException {
+		super("FtpStubServer");
+		this.latency = latency;
+	}
+	
+	@Override
+	protected void handle(Socket socket) throws IOException {
+		
+		StubServer.await(latency);
+		
+		OutputStream output = socket.getOutputStream();
+		output.write(GREETING);
+		output.flush();
+		
+		// Wait for the client to disconnect.
+		InputStream input = socket.getInputStream();
+		byte[] buffer = new byte[512];
+		while(input.read(buffer) != -1);
+	}
+}
@@ -0,0 +1,116 @@
+package brv.benchmarks.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * HTTP and HTTPS stub server, replying <code>200</code> to any request.
+ * <p>
+ * HTTPS stubs use the self-signed certificate of <code>stub-keystore.jks</code>, issued for <code>127.0.0.1</code>.
+ * The scanner can only complete the handshake when its daemon is built with the {@link #getSslContext() context}
+ * of the stub, which trusts that certificate.
+ * </p>
+ * @author flash
+ *
+ */
+public final class HttpStubServer implements StubServer {
+
+	private static final String KEYSTORE = "/stub-keystore.jks";
+	private static final char[] KEYSTORE_PASSWORD = "benchmarks".toCharArray();
+	
+	private final HttpServer server;
+	private final SSLContext sslContext;
+	private final ExecutorService executor;
+	
+	/**
+	 * Constructor for HttpStubServer.
+	 * @param latency - the time (in milliseconds) the stub will wait before replying.
+	 * @param secure - <code>true</code> to serve HTTPS, <code>false</code> to serve HTTP.
+	 * @throws IOException if the stub couldn't be started.
+	 */
+	public HttpStubServer(int latency, boolean secure) throws IOException {
+		
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(LOOPBACK), 0);
+		
+		if(secure) {
+			sslContext = createSslContext();
+			HttpsServer httpsServer = HttpsServer.create(address, 1024);
+			httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+			server = httpsServer;
+		} else {
+			sslContext = null;
+			server = HttpServer.create(address, 1024);
+		}
+		
+		server.createContext("/", exchange -> {
+			StubServer.await(latency);
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		
+		executor = Executors.newCachedThreadPool(new NamedThreadFactory("HttpStubServer"));
+		server.setExecutor(executor);
+		server.start();
+	}
+	
+	@Override
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	/**
+	 * Returns the context of an HTTPS stub, trusting its own certificate.
+	 * @return <code>SSLContext</code> - the context, or <code>null</code> if the stub serves HTTP.
+	 */
+	public SSLContext getSslContext() {
+		return sslContext;
+	}
+	
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Loads the stub certificate, trusting it on the client side as well.
+	 */
+	private static SSLContext createSslContext() throws IOException {
+		
+		try(InputStream input = HttpStubServer.class.getResourceAsStream(KEYSTORE)) {
+			
+			KeyStore keyStore = KeyStore.getInstance("JKS");
+			keyStore.load(input, KEYSTORE_PASSWORD);
+			
+			KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			keyManagers.init(keyStore, KEYSTORE_PASSWORD);
+			
+			TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			trustManagers.init(keyStore);
+			
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+			
+			return context;
+			
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Stub certificate couldn't be loaded.", e);
+		}
+	}
+}
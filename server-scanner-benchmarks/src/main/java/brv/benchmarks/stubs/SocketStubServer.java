@@ -0,0 +1,67 @@
+package brv.benchmarks.stubs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Stub server handling each accepted connection on its own thread.
+ * @author flash
+ *
+ */
+abstract class SocketStubServer implements StubServer {
+
+	private final ServerSocket listener;
+	private final ExecutorService executor;
+	
+	protected SocketStubServer(String name) throws IOException {
+		
+		listener = new ServerSocket(0, 1024, InetAddress.getByName(LOOPBACK));
+		executor = Executors.newCachedThreadPool(new NamedThreadFactory(name));
+		executor.execute(this::accept);
+	}
+	
+	@Override
+	public int getPort() {
+		return listener.getLocalPort();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		listener.close();
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Handles an accepted connection. The connection is closed once it returns.
+	 * @param socket - the accepted connection.
+	 * @throws IOException if the connection fails.
+	 */
+	protected abstract void handle(Socket socket) throws IOException;
+	
+	private void accept() {
+		
+		while(!listener.isClosed()) {
+			try {
+				Socket socket = listener.accept();
+				executor.execute(() -> serve(socket));
+			} catch (IOException | RejectedExecutionException e) {
+				// The stub has been closed.
+			}
+		}
+	}
+	
+	private void serve(Socket socket) {
+		try(Socket connection = socket) {
+			handle(connection);
+		} catch (IOException e) {
+			// The client went away.
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package brv.benchmarks.stubs;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * In-process server listening on the loopback interface, used as the target of the ping benchmarks.
+ * <p>
+ * Every stub replies after a configurable latency, so the benchmarks can simulate servers at different distances.
+ * </p>
+ * @author flash
+ *
+ */
+public interface StubServer extends Closeable {
+
+	/**
+	 * Loopback address every stub listens on.
+	 */
+	String LOOPBACK = "127.0.0.1";
+	
+	/**
+	 * Returns the port the stub is listening on.
+	 * @return <code>int</code> - an ephemeral port.
+	 */
+	int getPort();
+	
+	/**
+	 * Starts a stub server.
+	 * @param kind - the kind of stub: <code>HTTP</code>, <code>HTTPS</code>, <code>FTP</code> or <code>TCP</code>.
+	 * @param latency - the time (in milliseconds) the stub will wait before replying.
+	 * @return <code>StubServer</code> - the started stub.
+	 * @throws IOException if the stub couldn't be started.
+	 * @throws IllegalArgumentException When the kind of stub is unknown.
+	 */
+	static StubServer start(String kind, int latency) throws IOException {
+		
+		switch(kind) {
+			case "HTTP":
+				return new HttpStubServer(latency, false);
+			case "HTTPS":
+				return new HttpStubServer(latency, true);
+			case "FTP":
+				return new FtpStubServer(latency);
+			case "TCP":
+				return new TcpStubServer();
+			default:
+				throw new IllegalArgumentException("Unknown stub server: " + kind);
+		}
+	}
+	
+	/**
+	 * Waits for the given latency.
+	 * @param latency - the time (in milliseconds) to wait.
+	 */
+	static void await(int latency) {
+		
+		if(latency <= 0)
+			return;
+		
+		try {
+			Thread.sleep(latency);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
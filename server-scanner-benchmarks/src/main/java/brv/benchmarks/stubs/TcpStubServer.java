@@ -0,0 +1,28 @@
+package brv.benchmarks.stubs;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * TCP stub server, closing every accepted connection straight away.
+ * <p>
+ * Connections are established by the kernel before being accepted, so no latency can be simulated.
+ * </p>
+ * @author flash
+ *
+ */
+public final class TcpStubServer extends SocketStubServer {
+
+	/**
+	 * Constructor for TcpStubServer.
+	 * @throws IOException if the stub couldn't be started.
+	 */
+	public TcpStubServer() throws IOException {
+		super("TcpStubServer");
+	}
+	
+	@Override
+	protected void handle(Socket socket) {
+		// Nothing to do, the connection has already been established.
+	}
+}
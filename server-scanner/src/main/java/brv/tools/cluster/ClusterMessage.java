@@ -0,0 +1,171 @@
+package brv.tools.cluster;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import brv.tools.codec.BinaryCodec;
+import brv.tools.model.ScanResult;
+
+/**
+ * Message exchanged between the nodes of a cluster.
+ * <p>
+ * Nodes announce they are alive with heartbeats, announce they are leaving before closing, and forward the results
+ * of the shards they scan to every other node. A node handing a shard over to another one sends the servers it knows
+ * online on that shard again, so the new owner keeps tracking them. Messages are encoded as:
+ * </p>
+ * <pre>
+ * message = version:byte type:byte sender:string result?
+ * string  = length:short utf8
+ * </pre>
+ * <p>
+ * Results are encoded with the {@link BinaryCodec}.
+ * </p>
+ * @author flash
+ *
+ */
+public final class ClusterMessage {
+
+	/**
+	 * Version of the encoded messages.
+	 */
+	public static final int VERSION = 1;
+
+	public enum Type {
+		HEARTBEAT,
+		LEAVE,
+		RESULT,
+		HANDOVER
+	}
+
+	private static final Type[] TYPES = Type.values();
+
+	private final Type type;
+	private final String sender;
+	private final ScanResult result;
+
+	private ClusterMessage(Type type, String sender, ScanResult result) {
+		this.type = type;
+		this.sender = Objects.requireNonNull(sender);
+		this.result = result;
+	}
+
+	/**
+	 * Creates the message a node periodically sends to renew its membership.
+	 * @param sender - the id of the node.
+	 * @return <code>ClusterMessage</code> - the heartbeat.
+	 */
+	public static ClusterMessage heartbeat(String sender) {
+		return new ClusterMessage(Type.HEARTBEAT, sender, null);
+	}
+
+	/**
+	 * Creates the message a node sends when leaving the cluster, so its shards are taken over without waiting for its lease to expire.
+	 * @param sender - the id of the node.
+	 * @return <code>ClusterMessage</code> - the leave announcement.
+	 */
+	public static ClusterMessage leave(String sender) {
+		return new ClusterMessage(Type.LEAVE, sender, null);
+	}
+
+	/**
+	 * Creates the message forwarding a result of a node to the rest of the cluster.
+	 * @param sender - the id of the node.
+	 * @param result - the result notified by the daemon of the node.
+	 * @return <code>ClusterMessage</code> - the forwarded result.
+	 */
+	public static ClusterMessage result(String sender, ScanResult result) {
+		return new ClusterMessage(Type.RESULT, sender, Objects.requireNonNull(result));
+	}
+
+	/**
+	 * Creates the message handing a server over to the new owner of its shard, which is not notified again.
+	 * @param sender - the id of the node.
+	 * @param result - the last result notified for the server.
+	 * @return <code>ClusterMessage</code> - the handed over server.
+	 */
+	public static ClusterMessage handover(String sender, ScanResult result) {
+		return new ClusterMessage(Type.HANDOVER, sender, Objects.requireNonNull(result));
+	}
+
+	/**
+	 * Encodes this message.
+	 * @param buffer - the buffer the message is written to, from its current position.
+	 * @throws BufferOverflowException if the buffer has not enough room, leaving its position unchanged.
+	 */
+	public void encode(ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			byte[] id = sender.getBytes(StandardCharsets.UTF_8);
+
+			buffer.put((byte) VERSION);
+			buffer.put((byte) type.ordinal());
+			buffer.putShort((short) id.length);
+			buffer.put(id);
+
+			if(result != null)
+				BinaryCodec.encode(result, buffer);
+
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes a message.
+	 * @param buffer - the buffer the message is read from, from its current position.
+	 * @return <code>ClusterMessage</code> - the decoded message.
+	 * @throws BufferUnderflowException if the buffer doesn't hold the whole message, leaving its position unchanged.
+	 * @throws IllegalArgumentException if the buffer doesn't hold a message of a known version.
+	 */
+	public static ClusterMessage decode(ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			int version = buffer.get();
+			if(version != VERSION)
+				throw new IllegalArgumentException("Unknown cluster message version " + version + ".");
+
+			int type = buffer.get();
+			if((type < 0) || (type >= TYPES.length))
+				throw new IllegalArgumentException("Unknown cluster message type " + type + ".");
+
+			byte[] id = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(id);
+			String sender = new String(id, StandardCharsets.UTF_8);
+
+			boolean hasResult = (TYPES[type] == Type.RESULT) || (TYPES[type] == Type.HANDOVER);
+			ScanResult result = hasResult ? BinaryCodec.decodeResult(buffer) : null;
+			return new ClusterMessage(TYPES[type], sender, result);
+
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getSender() {
+		return sender;
+	}
+
+	/**
+	 * Returns the forwarded result.
+	 * @return <code>ScanResult</code> - the result, <code>null</code> unless this is a {@link Type#RESULT} or {@link Type#HANDOVER} message.
+	 */
+	public ScanResult getResult() {
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "ClusterMessage [type=" + type + ", sender=" + sender + ", result=" + result + "]";
+	}
+}
@@ -0,0 +1,372 @@
+package brv.tools.cluster;
+
+import java.io.Closeable;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import brv.tools.daemons.ObservableDaemon;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.events.EventBus;
+import brv.tools.events.EventPublisher;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Scans a share of the targets together with the rest of the nodes of a cluster, each one running on its own process.
+ * <p>
+ * The targets are split into shards of consecutive hosts, which are assigned to the current members of the cluster by
+ * {@link ShardAssignment rendezvous hashing}. Membership is leased: each node announces itself with a heartbeat every
+ * <code>heartbeatInterval</code> milliseconds, and a node whose last heartbeat is older than <code>leaseTimeout</code>
+ * milliseconds is no longer a member. Every node computes the same assignment from the same members, so shards are
+ * rebalanced as soon as the nodes learn that a node has joined or left, without any coordinator.
+ * </p>
+ * <p>
+ * The daemon of each node only probes the hosts of its shards. Its results are forwarded to the rest of the nodes, so
+ * the {@link #getPublisher() publisher} of any node delivers the results of the whole cluster as a single stream.
+ * Every node keeps the servers last reported online on the whole cluster, and a node handing a shard over sends its
+ * servers to the new owner, so the daemon of a node taking over a shard keeps tracking the servers of its previous owner
+ * (see {@link ScanDaemon#takeOver(java.util.Collection)}): they are not notified as online again, and they are notified
+ * as offline by their new owner once they stop replying.
+ * </p>
+ * <p>
+ * While the nodes disagree about the members, some shards might be scanned twice or not at all, until the next heartbeat.
+ * </p>
+ * @author flash
+ *
+ */
+public class ClusterNode implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(ClusterNode.class.getName());
+
+	/**
+	 * Default number of shards the targets are split into.
+	 */
+	public static final int DEFAULT_SHARDS = 256;
+
+	/**
+	 * Default time (in milliseconds) between two heartbeats of a node.
+	 */
+	public static final int DEFAULT_HEARTBEAT_INTERVAL = 1000;
+
+	/**
+	 * Default time (in milliseconds) a node is still a member since its last heartbeat.
+	 */
+	public static final int DEFAULT_LEASE_TIMEOUT = 5000;
+
+	private final String nodeId;
+	private final ClusterTransport transport;
+	private final ScanDaemon daemon;
+	private final int shards;
+	private final long targets;
+	private final int heartbeatInterval;
+	private final long leaseTimeout;
+
+	// Lease expiration time (System.nanoTime()) of every other member.
+	private final Map<String, Long> leases = new ConcurrentHashMap<>();
+
+	// Members and shards of the last rebalance, replaced on each one and never modified, so probe workers read them without locking.
+	private volatile SortedSet<String> members;
+	private volatile BitSet ownedShards = new BitSet();
+
+	// Results received from the rest of the nodes, and the stream merging them with the local ones.
+	private final EventBus<ScanResult> remoteResults;
+	private final EventPublisher<ScanResult> publisher;
+
+	// Servers last reported online by any node, by ip, handed over to this node when it takes over their shards.
+	private final Map<String, ScanResult> onlineServers = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService timer;
+	private boolean closed = false;
+
+	/**
+	 * Creates a node with the default number of shards, heartbeat interval and lease timeout.
+	 * @see #ClusterNode(String, ClusterTransport, ScanDaemonBuilder, int, int, int)
+	 */
+	public ClusterNode(String nodeId, ClusterTransport transport, ScanDaemonBuilder builder) throws UnknownHostException {
+		this(nodeId, transport, builder, DEFAULT_SHARDS, DEFAULT_HEARTBEAT_INTERVAL, DEFAULT_LEASE_TIMEOUT);
+	}
+
+	/**
+	 * Constructor for ClusterNode.
+	 * <p>
+	 * Every node of a cluster must build its daemon with the same targets and number of shards.
+	 * </p>
+	 * @param nodeId - the id of the node, unique on the cluster.
+	 * @param transport - the transport to the rest of the nodes, which is started with the node.
+	 * @param builder - the builder of the daemon of the node, which is copied replacing its host filter by the shards of the node.
+	 * @param shards - the number of shards the targets are split into.
+	 * @param heartbeatInterval - the time (in milliseconds) between two heartbeats.
+	 * @param leaseTimeout - the time (in milliseconds) a node is still a member since its last heartbeat.
+	 * @throws UnknownHostException When the daemon could not be built.
+	 * @throws IllegalArgumentException When <code>nodeId</code> is empty
+	 * @throws IllegalArgumentException When <code>shards < 1</code>
+	 * @throws IllegalArgumentException When <code>heartbeatInterval < 1</code> or <code>leaseTimeout <= heartbeatInterval</code>
+	 */
+	public ClusterNode(String nodeId, ClusterTransport transport, ScanDaemonBuilder builder, int shards, int heartbeatInterval, int leaseTimeout) throws UnknownHostException {
+
+		if(nodeId.isEmpty())
+			throw new IllegalArgumentException("Node id must not be empty.");
+
+		if(shards < 1)
+			throw new IllegalArgumentException("Shards must be greater than 0.");
+
+		if(heartbeatInterval < 1)
+			throw new IllegalArgumentException("Heartbeat interval must be greater than 0.");
+
+		if(leaseTimeout <= heartbeatInterval)
+			throw new IllegalArgumentException("Lease timeout must be greater than the heartbeat interval.");
+
+		this.nodeId = nodeId;
+		this.transport = Objects.requireNonNull(transport);
+		this.shards = shards;
+		this.heartbeatInterval = heartbeatInterval;
+		this.leaseTimeout = TimeUnit.MILLISECONDS.toNanos(leaseTimeout);
+		this.members = Collections.unmodifiableSortedSet(new TreeSet<>(Collections.singleton(nodeId)));
+
+		this.daemon = new ScanDaemonBuilder(builder).withHostFilter(this::isOwned).build();
+		this.targets = daemon.getTargets().size();
+
+		// Local results are forwarded to the rest of the nodes, in the order they happened.
+		daemon.addServerListener(this::forward, this::forward);
+
+		this.remoteResults = new EventBus<>(builder.getListenerQueueCapacity(), builder.getOverflowPolicy(), null, EventBus.getSharedExecutor());
+		this.publisher = ObservableDaemon.newResultPublisher(builder.getListenerQueueCapacity(), builder.getOverflowPolicy());
+		daemon.attach(publisher);
+		publisher.addSource(remoteResults);
+	}
+
+	/**
+	 * Joins the cluster and starts scanning the shards of this node.
+	 * @throws IllegalStateException if the node was already started or closed.
+	 */
+	public synchronized void start() {
+
+		if(closed || (timer != null))
+			throw new IllegalStateException("Node " + nodeId + " was already started.");
+
+		transport.start(this::receive);
+		rebalance();
+
+		timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ClusterNode-" + nodeId));
+		timer.scheduleAtFixedRate(this::heartbeat, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+
+		daemon.start();
+	}
+
+	/**
+	 * Leaves the cluster, so the rest of the nodes take over the shards of this node right away.
+	 */
+	@Override
+	public synchronized void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+
+		if(timer != null) {
+			timer.shutdownNow();
+			transport.broadcast(ClusterMessage.leave(nodeId));
+		}
+
+		daemon.interrupt();
+		transport.close();
+		publisher.close();
+	}
+
+	/**
+	 * Checks if a host of the targets belongs to a shard of this node.
+	 * @param host - the index of the host on the targets.
+	 * @return <code>true</code> - if this node must scan the host.
+	 */
+	public boolean isOwned(long host) {
+		return ownedShards.get(getShard(host));
+	}
+
+	/**
+	 * Returns the shard of a host.
+	 * @param host - the index of the host on the targets.
+	 * @return <code>int</code> - the shard number, each shard holding a block of consecutive hosts.
+	 */
+	public int getShard(long host) {
+		return (int) (host * shards / targets);
+	}
+
+	/**
+	 * Returns the shards currently scanned by this node.
+	 * @return <code>BitSet</code> - a copy of the numbers of the owned shards.
+	 */
+	public BitSet getOwnedShards() {
+		return (BitSet) ownedShards.clone();
+	}
+
+	/**
+	 * Returns the members of the cluster the shards are currently assigned to.
+	 * @return <code>SortedSet</code> - the ids of the nodes whose lease has not expired, including this one.
+	 */
+	public SortedSet<String> getMembers() {
+		return members;
+	}
+
+	/**
+	 * Returns the stream of the results of every node of the cluster.
+	 * @return <code>EventPublisher</code> - the publisher merging the local results and the ones received from the rest of the nodes.
+	 */
+	public EventPublisher<ScanResult> getPublisher() {
+		return publisher;
+	}
+
+	public ScanDaemon getDaemon() {
+		return daemon;
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	/**
+	 * Renews the membership of this node and expires the leases of the nodes which stopped sending heartbeats.
+	 */
+	private void heartbeat() {
+
+		try {
+			transport.broadcast(ClusterMessage.heartbeat(nodeId));
+
+			long now = System.nanoTime();
+			if(leases.values().removeIf(expiration -> expiration - now < 0))
+				rebalance();
+
+		} catch (RuntimeException e) {
+			// An exception would cancel any further heartbeat.
+			logger.log(Level.WARNING, "Node " + nodeId + " couldn't send its heartbeat.", e);
+		}
+	}
+
+	private void receive(ClusterMessage message) {
+
+		String sender = message.getSender();
+		if(sender.equals(nodeId))
+			return;
+
+		switch(message.getType()) {
+			case HEARTBEAT:
+				if(leases.put(sender, System.nanoTime() + leaseTimeout) == null) {
+					logger.info("Node " + sender + " joined the cluster of node " + nodeId + ".");
+					rebalance();
+
+					// Announced right away, so the new node doesn't take over the shards of this one meanwhile.
+					transport.broadcast(ClusterMessage.heartbeat(nodeId));
+				}
+				break;
+			case LEAVE:
+				if(leases.remove(sender) != null) {
+					logger.info("Node " + sender + " left the cluster of node " + nodeId + ".");
+					rebalance();
+				}
+				break;
+			case RESULT:
+				track(message.getResult());
+				remoteResults.publish(message.getResult());
+				break;
+			case HANDOVER:
+				takeOver(message.getResult());
+				break;
+		}
+	}
+
+	/**
+	 * Keeps a server handed over by another node, tracking it right away if its shard is already owned by this node.
+	 * <p>
+	 * Otherwise, it is tracked once its shard is taken over.
+	 * </p>
+	 */
+	private synchronized void takeOver(ScanResult server) {
+
+		track(server);
+
+		long host = daemon.getTargets().indexOf(server.getIp());
+		if((host >= 0) && isOwned(host))
+			daemon.takeOver(Collections.singletonList(server));
+	}
+
+	private void forward(ScanResult result) {
+		track(result);
+		transport.broadcast(ClusterMessage.result(nodeId, result));
+	}
+
+	/**
+	 * Keeps the servers reported online by any node of the cluster, including this one.
+	 */
+	private void track(ScanResult result) {
+
+		if(result.getStatus() == ServerStatus.OFFLINE)
+			onlineServers.remove(result.getIp());
+		else
+			onlineServers.put(result.getIp(), result);
+	}
+
+	/**
+	 * Assigns the shards again among the current members.
+	 * <p>
+	 * The daemon starts tracking the servers on the shards taken over before probing them, so the servers reported by
+	 * their previous owner are notified as offline once they stop replying. The servers on the shards released are
+	 * handed over to their new owner, which might have never received them, such as a node which has just joined.
+	 * </p>
+	 */
+	private synchronized void rebalance() {
+
+		SortedSet<String> members = new TreeSet<>(leases.keySet());
+		members.add(nodeId);
+
+		BitSet owned = ShardAssignment.getShards(nodeId, members, shards);
+		BitSet takenOver = (BitSet) owned.clone();
+		takenOver.andNot(ownedShards);
+		BitSet released = (BitSet) ownedShards.clone();
+		released.andNot(owned);
+
+		if(!takenOver.isEmpty())
+			daemon.takeOver(getOnlineServers(takenOver));
+
+		ownedShards = owned;
+		this.members = Collections.unmodifiableSortedSet(members);
+
+		for(ScanResult server : getOnlineServers(released))
+			transport.broadcast(ClusterMessage.handover(nodeId, server));
+
+		logger.info("Node " + nodeId + " scans " + ownedShards.cardinality() + " of " + shards + " shards, with " + members.size() + " members.");
+	}
+
+	/**
+	 * Returns the servers last reported online on some shards.
+	 */
+	private List<ScanResult> getOnlineServers(BitSet shards) {
+
+		List<ScanResult> servers = new ArrayList<>();
+		for(ScanResult server : onlineServers.values()) {
+			long host = daemon.getTargets().indexOf(server.getIp());
+			if((host >= 0) && shards.get(getShard(host)))
+				servers.add(server);
+		}
+
+		return servers;
+	}
+}
@@ -0,0 +1,38 @@
+package brv.tools.cluster;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the messages of a node to every other node of its cluster.
+ * <p>
+ * Delivery is best effort: messages might be lost, but the messages of a node must never be delivered to the others
+ * out of order. Lost heartbeats only delay the membership changes, and lost results are notified again by the daemons
+ * once the state of their servers changes.
+ * </p>
+ * @author flash
+ *
+ * @see InMemoryTransport
+ * @see UdpTransport
+ */
+public interface ClusterTransport extends Closeable {
+
+	/**
+	 * Starts delivering the messages sent by the rest of the nodes.
+	 * @param receiver - the consumer of the received messages, invoked from a single thread at a time.
+	 * @throws IllegalStateException if the transport was already started or closed.
+	 */
+	void start(Consumer<ClusterMessage> receiver);
+
+	/**
+	 * Sends a message to every other node.
+	 * @param message - the message to be sent.
+	 */
+	void broadcast(ClusterMessage message);
+
+	/**
+	 * Stops sending and receiving messages.
+	 */
+	@Override
+	void close();
+}
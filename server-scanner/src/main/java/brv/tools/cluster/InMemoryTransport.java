@@ -0,0 +1,112 @@
+package brv.tools.cluster;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import brv.tools.events.EventBus;
+import brv.tools.events.Mailbox;
+import brv.tools.events.OverflowPolicy;
+
+/**
+ * Transport between the nodes of a cluster running on the same process.
+ * <p>
+ * Every transport connected to the same {@link Network} receives the messages broadcast by the rest of them. Each one
+ * queues its messages on its own {@link Mailbox}, so they are delivered in order and asynchronously, as they would be
+ * through a real network. Closing a transport disconnects it from the network, as if its node had crashed.
+ * </p>
+ * @author flash
+ *
+ */
+public final class InMemoryTransport implements ClusterTransport {
+
+	/**
+	 * Default number of messages a node can have pending.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Group of transports exchanging their messages.
+	 */
+	public static final class Network {
+
+		private final Set<InMemoryTransport> transports = ConcurrentHashMap.newKeySet();
+		private final int capacity;
+		private final Executor executor;
+
+		/**
+		 * Creates a network delivering its messages on the shared executor of the events.
+		 */
+		public Network() {
+			this(DEFAULT_CAPACITY, EventBus.getSharedExecutor());
+		}
+
+		/**
+		 * Constructor for Network.
+		 * @param capacity - the number of messages each node can have pending, the oldest ones are dropped once exceeded.
+		 * @param executor - the executor delivering the messages.
+		 * @throws IllegalArgumentException When <code>capacity < 1</code>
+		 */
+		public Network(int capacity, Executor executor) {
+
+			if(capacity < 1)
+				throw new IllegalArgumentException("Capacity must be greater than 0.");
+
+			this.capacity = capacity;
+			this.executor = Objects.requireNonNull(executor);
+		}
+
+		/**
+		 * Creates a new transport on this network.
+		 * @return <code>InMemoryTransport</code> - a transport which is not started yet.
+		 */
+		public InMemoryTransport connect() {
+			return new InMemoryTransport(this);
+		}
+
+		public int getNodes() {
+			return transports.size();
+		}
+	}
+
+	private final Network network;
+	private Mailbox<ClusterMessage> mailbox;
+
+	private InMemoryTransport(Network network) {
+		this.network = network;
+	}
+
+	@Override
+	public synchronized void start(Consumer<ClusterMessage> receiver) {
+
+		if(mailbox != null)
+			throw new IllegalStateException("Transport was already started.");
+
+		mailbox = new Mailbox<>(network.capacity, OverflowPolicy.DROP_OLDEST, null, network.executor, Objects.requireNonNull(receiver));
+		network.transports.add(this);
+	}
+
+	@Override
+	public void broadcast(ClusterMessage message) {
+
+		Objects.requireNonNull(message);
+		if(!network.transports.contains(this))
+			return;
+
+		for(InMemoryTransport transport : network.transports)
+			if(transport != this)
+				transport.mailbox.offer(message);
+	}
+
+	@Override
+	public synchronized void close() {
+
+		if(mailbox == null)
+			return;
+
+		network.transports.remove(this);
+		mailbox.close();
+	}
+}
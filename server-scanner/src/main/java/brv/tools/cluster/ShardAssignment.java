@@ -0,0 +1,92 @@
+package brv.tools.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Assigns the shards of the targets to the members of a cluster by rendezvous hashing.
+ * <p>
+ * Each shard is owned by the member with the highest weight for it, the weight being a hash of the member id and the
+ * shard number. Every node computes the same assignment from the same members, so no coordinator is needed. Shards are
+ * spread evenly, and when a member joins or leaves only the shards it takes or releases change their owner.
+ * </p>
+ * @author flash
+ *
+ */
+public final class ShardAssignment {
+
+	private ShardAssignment() {
+	}
+
+	/**
+	 * Returns the owner of a shard.
+	 * @param shard - the shard number.
+	 * @param members - the ids of the members of the cluster.
+	 * @return <code>String</code> - the id of the owner, <code>null</code> if there are no members.
+	 */
+	public static String getOwner(int shard, Collection<String> members) {
+
+		String owner = null;
+		long ownerWeight = 0;
+
+		for(String member : members) {
+			long weight = weight(hash(member), shard);
+
+			// Ties are broken by id, so every node chooses the same owner.
+			if((owner == null) || (Long.compareUnsigned(weight, ownerWeight) > 0)
+					|| ((weight == ownerWeight) && (member.compareTo(owner) < 0))) {
+				owner = member;
+				ownerWeight = weight;
+			}
+		}
+
+		return owner;
+	}
+
+	/**
+	 * Returns the shards owned by a member.
+	 * @param member - the id of the member.
+	 * @param members - the ids of the members of the cluster, including the member itself.
+	 * @param shards - the number of shards.
+	 * @return <code>BitSet</code> - the numbers of the shards owned by the member.
+	 */
+	public static BitSet getShards(String member, Collection<String> members, int shards) {
+
+		BitSet result = new BitSet(shards);
+		for(int shard = 0; shard < shards; shard++)
+			if(member.equals(getOwner(shard, members)))
+				result.set(shard);
+
+		return result;
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of a member id, stable across processes and Java versions.
+	 */
+	private static long hash(String member) {
+
+		long hash = 0xcbf29ce484222325L;
+		for(byte b : member.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xFF);
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Mixes a member hash with a shard number, using the finalizer of MurmurHash3 so similar ids get unrelated weights.
+	 */
+	private static long weight(long memberHash, int shard) {
+
+		long h = memberHash ^ (shard * 0x9e3779b97f4a7c15L);
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+
+		return h;
+	}
+}
@@ -0,0 +1,166 @@
+package brv.tools.cluster;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transport between the nodes of a cluster exchanging UDP datagrams.
+ * <p>
+ * Each message is sent as a single datagram to every known peer, so nodes can run on several processes of the same
+ * host, bound to different loopback ports, or on several hosts of a network. Messages are received on a dedicated
+ * daemon thread, and malformed datagrams are discarded, as well as datagrams sent from any address which is not a peer.
+ * </p>
+ * <p>
+ * The transport is lossy and unauthenticated. Datagrams are neither acknowledged nor retransmitted, so a lost result
+ * is only made up for by the next transition of its server, and a server whose handover is lost is only tracked by its
+ * new owner once it replies to it.
+ * Peers are only told apart by their source address, which can be spoofed, so any host able to send datagrams to the
+ * bound port can inject messages. It must only be bound on a trusted network.
+ * </p>
+ * @author flash
+ *
+ */
+public final class UdpTransport implements ClusterTransport {
+
+	private static final Logger logger = Logger.getLogger(UdpTransport.class.getName());
+
+	/**
+	 * Maximum size of a message, which always fits on a datagram without being fragmented.
+	 */
+	public static final int MAX_MESSAGE_SIZE = 1200;
+
+	private final DatagramSocket socket;
+	private final Set<InetSocketAddress> peers = ConcurrentHashMap.newKeySet();
+	private Thread receiverThread;
+
+	/**
+	 * Constructor for UdpTransport.
+	 * @param address - the local address to be bound, with port <code>0</code> to bind any free port.
+	 * @param peers - the addresses of the rest of the nodes.
+	 * @throws SocketException When the address could not be bound.
+	 */
+	public UdpTransport(InetSocketAddress address, Collection<InetSocketAddress> peers) throws SocketException {
+		this.socket = new DatagramSocket(Objects.requireNonNull(address));
+		this.peers.addAll(peers);
+	}
+
+	/**
+	 * Adds the address of a node which will receive the messages from now on.
+	 * @param peer - the address of the node.
+	 * @return <code>true</code> - if the node was not a peer yet.
+	 */
+	public boolean addPeer(InetSocketAddress peer) {
+		return peers.add(Objects.requireNonNull(peer));
+	}
+
+	public boolean removePeer(InetSocketAddress peer) {
+		return peers.remove(peer);
+	}
+
+	public List<InetSocketAddress> getPeers() {
+		return new ArrayList<>(peers);
+	}
+
+	/**
+	 * Returns the bound address.
+	 * @return <code>InetSocketAddress</code> - the address the rest of the nodes must send their messages to.
+	 */
+	public InetSocketAddress getLocalAddress() {
+		return (InetSocketAddress) socket.getLocalSocketAddress();
+	}
+
+	@Override
+	public synchronized void start(Consumer<ClusterMessage> receiver) {
+
+		Objects.requireNonNull(receiver);
+
+		if(socket.isClosed())
+			throw new IllegalStateException("Transport was already closed.");
+
+		if(receiverThread != null)
+			throw new IllegalStateException("Transport was already started.");
+
+		receiverThread = new Thread(() -> receive(receiver), "UdpTransport-" + socket.getLocalPort());
+		receiverThread.setDaemon(true);
+		receiverThread.start();
+	}
+
+	@Override
+	public void broadcast(ClusterMessage message) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+		try {
+			message.encode(buffer);
+		} catch (BufferOverflowException e) {
+			logger.warning("Cluster message too large to be sent: " + message);
+			return;
+		}
+
+		for(InetSocketAddress peer : peers) {
+			try {
+				socket.send(new DatagramPacket(buffer.array(), buffer.position(), peer));
+			} catch (IOException e) {
+				if(socket.isClosed())
+					return;
+				logger.fine("Couldn't send cluster message to " + peer + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void receive(Consumer<ClusterMessage> receiver) {
+
+		byte[] data = new byte[MAX_MESSAGE_SIZE];
+		DatagramPacket packet = new DatagramPacket(data, data.length);
+
+		while(!socket.isClosed()) {
+
+			try {
+				packet.setLength(data.length);
+				socket.receive(packet);
+			} catch (IOException e) {
+				if(!socket.isClosed())
+					logger.log(Level.WARNING, "Couldn't receive cluster messages.", e);
+				continue;
+			}
+
+			if(!peers.contains(packet.getSocketAddress())) {
+				logger.fine("Discarded cluster message from " + packet.getSocketAddress() + ", which is not a peer.");
+				continue;
+			}
+
+			ClusterMessage message;
+			try {
+				message = ClusterMessage.decode(ByteBuffer.wrap(data, 0, packet.getLength()));
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				logger.fine("Discarded malformed cluster message from " + packet.getSocketAddress() + ".");
+				continue;
+			}
+
+			try {
+				receiver.accept(message);
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Cluster message from " + message.getSender() + " could not be handled.", e);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		socket.close();
+	}
+}
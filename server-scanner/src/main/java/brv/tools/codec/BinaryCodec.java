@@ -0,0 +1,622 @@
+package brv.tools.codec;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+/**
+ * Compact binary codec of {@link ScanResult}s and {@link ScanDaemonConfiguration}s, to be exchanged between processes.
+ * <p>
+ * Objects are written to and read from a <code>ByteBuffer</code> without any intermediate stream. Integers, statuses and
+ * timestamps are encoded as variable length integers, IP addresses as their 4 or 16 bytes, and hostnames equal to the
+ * IP address are not repeated. On a batch, each date is encoded as the difference with the previous one, so each result
+ * of a batch takes around 16 bytes plus its hostname.
+ * <br>Protocols are encoded by their name, as their enum belongs to another artifact: processes using different versions
+ * of it would decode the wrong protocol from its ordinal. Decoding a protocol unknown to this process fails.
+ * </p>
+ * <p>
+ * Each encoded object or batch starts with its type and the codec version, so any future version can still read it.
+ * Response times are encoded with nanosecond precision.
+ * </p>
+ * <p>
+ * When a buffer runs out of room or data, a <code>BufferOverflowException</code> or <code>BufferUnderflowException</code>
+ * is thrown and the buffer position is restored, so it can be retried with a larger buffer or once more data is received.
+ * </p>
+ * <pre>
+ * message       = type:byte version:byte (object | count:varint object*)
+ * result        = flags:byte protocol:string? ip? hostname:string? port:zigzag date:zigzag? status:varint? responseTime:zigzag?
+ * ip            = 4 address:4byte | 6 address:16byte | 0 string
+ * configuration = flags:byte id:zigzag protocol:string? networkId:string? port:zigzag timeout:zigzag sleep:zigzag
+ *                 parallelism:zigzag rateLimit:double? timeoutFloor:zigzag timeoutCeiling:zigzag maxBackoff:zigzag
+ *                 sweepInterval:zigzag journalDirectory:string? neighborTable:string?
+ * string        = length:varint utf8
+ * </pre>
+ * @author flash
+ *
+ */
+public final class BinaryCodec {
+
+	/**
+	 * Version of the encoded objects.
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte RESULT = 1;
+	private static final byte CONFIGURATION = 2;
+	private static final byte RESULT_BATCH = 3;
+	private static final byte CONFIGURATION_BATCH = 4;
+
+	// Result flags.
+	private static final int HAS_PROTOCOL = 1;
+	private static final int HAS_IP = 1 << 1;
+	private static final int HAS_HOSTNAME = 1 << 2;
+	private static final int HOSTNAME_IS_IP = 1 << 3;
+	private static final int HAS_DATE = 1 << 4;
+	private static final int HAS_STATUS = 1 << 5;
+	private static final int HAS_RESPONSE_TIME = 1 << 6;
+
+	// Configuration flags.
+	private static final int HAS_NETWORK_ID = 1 << 1;
+	private static final int HAS_RATE_LIMIT = 1 << 2;
+	private static final int HAS_JOURNAL = 1 << 3;
+	private static final int RUNNING = 1 << 4;
+	private static final int HAS_NEIGHBOR_TABLE = 1 << 5;
+
+	// Ip kinds.
+	private static final byte IP_STRING = 0;
+	private static final byte IPV4 = 4;
+	private static final byte IPV6 = 6;
+
+	private static final ServerStatus[] STATUSES = ServerStatus.values();
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private BinaryCodec() {
+	}
+
+	/**
+	 * Encodes a scan result.
+	 * @param result - the result to be encoded.
+	 * @param buffer - the buffer the result is written to, from its current position.
+	 * @throws BufferOverflowException if the buffer has not enough room, leaving its position unchanged.
+	 */
+	public static void encode(ScanResult result, ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			writeHeader(buffer, RESULT);
+			writeResult(buffer, result, 0);
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes a scan result.
+	 * @param buffer - the buffer the result is read from, from its current position.
+	 * @return <code>ScanResult</code> - the decoded result.
+	 * @throws BufferUnderflowException if the buffer doesn't hold the whole result, leaving its position unchanged.
+	 * @throws IllegalArgumentException if the buffer doesn't hold a result of a known version.
+	 */
+	public static ScanResult decodeResult(ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			readHeader(buffer, RESULT);
+			return readResult(buffer, 0);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Encodes several scan results as a single batch.
+	 * @param results - the results to be encoded.
+	 * @param buffer - the buffer the batch is written to, from its current position.
+	 * @throws BufferOverflowException if the buffer has not enough room, leaving its position unchanged.
+	 */
+	public static void encodeResults(Collection<ScanResult> results, ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			writeHeader(buffer, RESULT_BATCH);
+			writeVarint(buffer, results.size());
+
+			long previousTime = 0;
+			for(ScanResult result : results)
+				previousTime = writeResult(buffer, result, previousTime);
+
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes a batch of scan results.
+	 * @param buffer - the buffer the batch is read from, from its current position.
+	 * @return <code>List</code> - the decoded results, in the same order they were encoded.
+	 * @throws BufferUnderflowException if the buffer doesn't hold the whole batch, leaving its position unchanged.
+	 * @throws IllegalArgumentException if the buffer doesn't hold a batch of results of a known version.
+	 */
+	public static List<ScanResult> decodeResults(ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			readHeader(buffer, RESULT_BATCH);
+			int count = readCount(buffer);
+
+			List<ScanResult> results = new ArrayList<>(count);
+			long previousTime = 0;
+			for(int i = 0; i < count; i++) {
+				ScanResult result = readResult(buffer, previousTime);
+				if(result.getDate() != null)
+					previousTime = result.getDate().getTime();
+				results.add(result);
+			}
+
+			return results;
+
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Encodes a daemon configuration.
+	 * @param configuration - the configuration to be encoded.
+	 * @param buffer - the buffer the configuration is written to, from its current position.
+	 * @throws BufferOverflowException if the buffer has not enough room, leaving its position unchanged.
+	 */
+	public static void encode(ScanDaemonConfiguration configuration, ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			writeHeader(buffer, CONFIGURATION);
+			writeConfiguration(buffer, configuration);
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes a daemon configuration.
+	 * @param buffer - the buffer the configuration is read from, from its current position.
+	 * @return <code>ScanDaemonConfiguration</code> - the decoded configuration.
+	 * @throws BufferUnderflowException if the buffer doesn't hold the whole configuration, leaving its position unchanged.
+	 * @throws IllegalArgumentException if the buffer doesn't hold a configuration of a known version.
+	 */
+	public static ScanDaemonConfiguration decodeConfiguration(ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			readHeader(buffer, CONFIGURATION);
+			return readConfiguration(buffer);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Encodes several daemon configurations as a single batch.
+	 * @param configurations - the configurations to be encoded.
+	 * @param buffer - the buffer the batch is written to, from its current position.
+	 * @throws BufferOverflowException if the buffer has not enough room, leaving its position unchanged.
+	 */
+	public static void encodeConfigurations(Collection<ScanDaemonConfiguration> configurations, ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			writeHeader(buffer, CONFIGURATION_BATCH);
+			writeVarint(buffer, configurations.size());
+
+			for(ScanDaemonConfiguration configuration : configurations)
+				writeConfiguration(buffer, configuration);
+
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes a batch of daemon configurations.
+	 * @param buffer - the buffer the batch is read from, from its current position.
+	 * @return <code>List</code> - the decoded configurations, in the same order they were encoded.
+	 * @throws BufferUnderflowException if the buffer doesn't hold the whole batch, leaving its position unchanged.
+	 * @throws IllegalArgumentException if the buffer doesn't hold a batch of configurations of a known version.
+	 */
+	public static List<ScanDaemonConfiguration> decodeConfigurations(ByteBuffer buffer) {
+
+		int start = buffer.position();
+		try {
+			readHeader(buffer, CONFIGURATION_BATCH);
+			int count = readCount(buffer);
+
+			List<ScanDaemonConfiguration> configurations = new ArrayList<>(count);
+			for(int i = 0; i < count; i++)
+				configurations.add(readConfiguration(buffer));
+
+			return configurations;
+
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			buffer.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a result, its date relative to the previous one of the batch.
+	 * @return <code>long</code> - the time to encode the date of the next result relative to.
+	 */
+	private static long writeResult(ByteBuffer buffer, ScanResult result, long previousTime) {
+
+		String ip = result.getIp();
+		String hostname = result.getHostname();
+		Date date = result.getDate();
+		boolean hasResponseTime = result.getResponseTime() != ScanResult.NO_RESPONSE;
+
+		int flags = 0;
+		if(result.getProtocol() != null)
+			flags |= HAS_PROTOCOL;
+		if(ip != null)
+			flags |= HAS_IP;
+		if(hostname != null)
+			flags |= (hostname.equals(ip)) ? HOSTNAME_IS_IP : HAS_HOSTNAME;
+		if(date != null)
+			flags |= HAS_DATE;
+		if(result.getStatus() != null)
+			flags |= HAS_STATUS;
+		if(hasResponseTime)
+			flags |= HAS_RESPONSE_TIME;
+
+		buffer.put((byte) flags);
+
+		if(result.getProtocol() != null)
+			writeString(buffer, result.getProtocol().name());
+		if(ip != null)
+			writeIp(buffer, ip);
+		if((flags & HAS_HOSTNAME) != 0)
+			writeString(buffer, hostname);
+
+		writeZigzag(buffer, result.getPort());
+
+		if(date != null) {
+			writeZigzag(buffer, date.getTime() - previousTime);
+			previousTime = date.getTime();
+		}
+		if(result.getStatus() != null)
+			writeVarint(buffer, result.getStatus().ordinal());
+		if(hasResponseTime)
+			writeZigzag(buffer, Math.round(result.getResponseTime() * NANOS_PER_MILLI));
+
+		return previousTime;
+	}
+
+	private static ScanResult readResult(ByteBuffer buffer, long previousTime) {
+
+		int flags = buffer.get();
+		ScanResult result = new ScanResult();
+
+		if((flags & HAS_PROTOCOL) != 0)
+			result.setProtocol(readProtocol(buffer));
+		if((flags & HAS_IP) != 0)
+			result.setIp(readIp(buffer));
+		if((flags & HAS_HOSTNAME) != 0)
+			result.setHostname(readString(buffer));
+		else if((flags & HOSTNAME_IS_IP) != 0)
+			result.setHostname(result.getIp());
+
+		result.setPort((int) readZigzag(buffer));
+
+		if((flags & HAS_DATE) != 0)
+			result.setDate(new Date(previousTime + readZigzag(buffer)));
+		if((flags & HAS_STATUS) != 0)
+			result.setStatus(STATUSES[readOrdinal(buffer, STATUSES.length)]);
+		if((flags & HAS_RESPONSE_TIME) != 0)
+			result.setResponseTime(readZigzag(buffer) / NANOS_PER_MILLI);
+
+		return result;
+	}
+
+	private static void writeConfiguration(ByteBuffer buffer, ScanDaemonConfiguration configuration) {
+
+		int flags = 0;
+		if(configuration.getProtocol() != null)
+			flags |= HAS_PROTOCOL;
+		if(configuration.getNetworkId() != null)
+			flags |= HAS_NETWORK_ID;
+		if(configuration.getRateLimit() != 0)
+			flags |= HAS_RATE_LIMIT;
+		if(configuration.getJournalDirectory() != null)
+			flags |= HAS_JOURNAL;
+		if(configuration.isRunning())
+			flags |= RUNNING;
+		if(configuration.getNeighborTable() != null)
+			flags |= HAS_NEIGHBOR_TABLE;
+
+		buffer.put((byte) flags);
+		writeZigzag(buffer, configuration.getId());
+
+		if(configuration.getProtocol() != null)
+			writeString(buffer, configuration.getProtocol().name());
+		if(configuration.getNetworkId() != null)
+			writeString(buffer, configuration.getNetworkId());
+
+		writeZigzag(buffer, configuration.getPort());
+		writeZigzag(buffer, configuration.getTimeout());
+		writeZigzag(buffer, configuration.getSleep());
+		writeZigzag(buffer, configuration.getParallelism());
+
+		if(configuration.getRateLimit() != 0)
+			buffer.putDouble(configuration.getRateLimit());
+
+		writeZigzag(buffer, configuration.getTimeoutFloor());
+		writeZigzag(buffer, configuration.getTimeoutCeiling());
+		writeZigzag(buffer, configuration.getMaxBackoff());
+		writeZigzag(buffer, configuration.getSweepInterval());
+
+		if(configuration.getJournalDirectory() != null)
+			writeString(buffer, configuration.getJournalDirectory());
+		if(configuration.getNeighborTable() != null)
+			writeString(buffer, configuration.getNeighborTable());
+	}
+
+	private static ScanDaemonConfiguration readConfiguration(ByteBuffer buffer) {
+
+		int flags = buffer.get();
+		ScanDaemonConfiguration configuration = new ScanDaemonConfiguration();
+
+		configuration.setId(readZigzag(buffer));
+
+		if((flags & HAS_PROTOCOL) != 0)
+			configuration.setProtocol(readProtocol(buffer));
+		configuration.setNetworkId(((flags & HAS_NETWORK_ID) != 0) ? readString(buffer) : null);
+
+		configuration.setPort((int) readZigzag(buffer));
+		configuration.setTimeout((int) readZigzag(buffer));
+		configuration.setSleep((int) readZigzag(buffer));
+		configuration.setParallelism((int) readZigzag(buffer));
+
+		if((flags & HAS_RATE_LIMIT) != 0)
+			configuration.setRateLimit(buffer.getDouble());
+
+		configuration.setTimeoutFloor((int) readZigzag(buffer));
+		configuration.setTimeoutCeiling((int) readZigzag(buffer));
+		configuration.setMaxBackoff((int) readZigzag(buffer));
+		configuration.setSweepInterval((int) readZigzag(buffer));
+
+		if((flags & HAS_JOURNAL) != 0)
+			configuration.setJournalDirectory(readString(buffer));
+		if((flags & HAS_NEIGHBOR_TABLE) != 0)
+			configuration.setNeighborTable(readString(buffer));
+
+		configuration.setRunning((flags & RUNNING) != 0);
+
+		return configuration;
+	}
+
+	private static void writeHeader(ByteBuffer buffer, byte type) {
+		buffer.put(type);
+		buffer.put((byte) VERSION);
+	}
+
+	private static void readHeader(ByteBuffer buffer, byte type) {
+
+		byte actualType = buffer.get();
+		if(actualType != type)
+			throw new IllegalArgumentException("Expected encoded type " + type + " but found " + actualType + ".");
+
+		int version = buffer.get();
+		if((version < 1) || (version > VERSION))
+			throw new IllegalArgumentException("Unsupported codec version " + version + ".");
+	}
+
+	/**
+	 * Writes an IP address as its bytes, or as a string when it is not an address literal in its canonical form.
+	 */
+	private static void writeIp(ByteBuffer buffer, String ip) {
+
+		long ipv4 = packIpv4(ip);
+		if(ipv4 >= 0) {
+			buffer.put(IPV4);
+			buffer.putInt((int) ipv4);
+			return;
+		}
+
+		byte[] ipv6 = packIpv6(ip);
+		if(ipv6 != null) {
+			buffer.put(IPV6);
+			buffer.put(ipv6);
+			return;
+		}
+
+		buffer.put(IP_STRING);
+		writeString(buffer, ip);
+	}
+
+	private static String readIp(ByteBuffer buffer) {
+
+		byte kind = buffer.get();
+
+		if(kind == IPV4) {
+			int address = buffer.getInt();
+			return (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+		}
+
+		if(kind == IPV6) {
+			byte[] address = new byte[16];
+			buffer.get(address);
+			try {
+				return InetAddress.getByAddress(address).getHostAddress();
+			} catch (UnknownHostException e) {
+				// Never thrown for a 16 bytes address.
+				throw new IllegalStateException(e);
+			}
+		}
+
+		if(kind == IP_STRING)
+			return readString(buffer);
+
+		throw new IllegalArgumentException("Unknown encoded IP address kind " + kind + ".");
+	}
+
+	/**
+	 * Packs an IPv4 address in dotted decimal notation without leading zeros.
+	 * @return <code>long</code> - the packed address, or -1 if it is not such an address.
+	 */
+	private static long packIpv4(String ip) {
+
+		long address = 0;
+		int octets = 0;
+		int value = -1;
+
+		for(int i = 0; i <= ip.length(); i++) {
+
+			char c = (i < ip.length()) ? ip.charAt(i) : '.';
+
+			if(c == '.') {
+				if((value < 0) || (++octets > 4))
+					return -1;
+				address = (address << 8) | value;
+				value = -1;
+			} else if((c >= '0') && (c <= '9') && (value != 0)) {
+				value = (value < 0) ? (c - '0') : (value * 10 + (c - '0'));
+				if(value > 255)
+					return -1;
+			} else {
+				return -1;
+			}
+		}
+
+		return (octets == 4) ? address : -1;
+	}
+
+	/**
+	 * Packs an IPv6 address written as the daemons write them, so it is decoded back to the same string.
+	 * @return <code>byte[]</code> - the packed address, or null if it is not such an address.
+	 */
+	private static byte[] packIpv6(String ip) {
+
+		// Any other string could trigger a name service lookup.
+		if(ip.indexOf(':') < 0)
+			return null;
+
+		try {
+			InetAddress address = InetAddress.getByName(ip);
+			if((address instanceof Inet6Address) && address.getHostAddress().equals(ip))
+				return address.getAddress();
+		} catch (UnknownHostException e) {
+			// Not an address literal.
+		}
+
+		return null;
+	}
+
+	private static Protocol readProtocol(ByteBuffer buffer) {
+
+		String name = readString(buffer);
+		try {
+			return Protocol.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown encoded protocol " + name + ".", e);
+		}
+	}
+
+	private static void writeString(ByteBuffer buffer, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(buffer, bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+
+		int length = readCount(buffer);
+
+		if(buffer.hasArray()) {
+			String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			return value;
+		}
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a length or count, which can't exceed the remaining bytes of the buffer.
+	 */
+	private static int readCount(ByteBuffer buffer) {
+
+		long count = readVarint(buffer);
+		if(count > buffer.remaining())
+			throw new BufferUnderflowException();
+
+		return (int) count;
+	}
+
+	private static int readOrdinal(ByteBuffer buffer, int values) {
+
+		long ordinal = readVarint(buffer);
+		if(ordinal >= values)
+			throw new IllegalArgumentException("Unknown encoded enum constant " + ordinal + ".");
+
+		return (int) ordinal;
+	}
+
+	/**
+	 * Writes an unsigned variable length integer, 7 bits per byte with the highest bit set on all but the last byte.
+	 */
+	private static void writeVarint(ByteBuffer buffer, long value) {
+
+		while((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static long readVarint(ByteBuffer buffer) {
+
+		long value = 0;
+		for(int shift = 0; shift < Long.SIZE; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if(b >= 0)
+				return value;
+		}
+
+		throw new IllegalArgumentException("Malformed variable length integer.");
+	}
+
+	/**
+	 * Writes a signed integer, mapping small negative values to small unsigned ones.
+	 */
+	private static void writeZigzag(ByteBuffer buffer, long value) {
+		writeVarint(buffer, (value << 1) ^ (value >> 63));
+	}
+
+	private static long readZigzag(ByteBuffer buffer) {
+		long value = readVarint(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
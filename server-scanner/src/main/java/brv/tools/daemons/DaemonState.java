@@ -0,0 +1,47 @@
+package brv.tools.daemons;
+
+/**
+ * Enumeration of the lifecycle states of a {@link ScanDaemon}.
+ * <p>
+ * A daemon moves through the states as it follows:
+ * </p>
+ * <pre>
+ * NEW ---&gt; STARTING ---&gt; RUNNING ---&gt; DRAINING ---&gt; TERMINATED
+ *              ^             ^            |              |
+ *              |             +------------+              |
+ *              +-----------------------------------------+
+ * </pre>
+ * <p>
+ * A draining daemon which is started again goes back to running without waiting for its probes, and a terminated
+ * daemon can be started again.
+ * </p>
+ * @author flash
+ *
+ */
+public enum DaemonState {
+	
+	/**
+	 * Built, but never started.
+	 */
+	NEW,
+	
+	/**
+	 * Being started. No other thread can start it meanwhile.
+	 */
+	STARTING,
+	
+	/**
+	 * Scanning its targets.
+	 */
+	RUNNING,
+	
+	/**
+	 * Stopped, waiting for its probes in flight to complete. No new probes are sent.
+	 */
+	DRAINING,
+	
+	/**
+	 * Stopped, with no probes in flight nor thread running it.
+	 */
+	TERMINATED
+}
@@ -2,13 +2,10 @@ package brv.tools.daemons;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import org.apache.http.HttpStatus;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpHead;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import brv.tools.probes.HttpProbeEngine;
 
 /**
  * Scans for HTTP servers.
@@ -16,67 +13,49 @@ import org.apache.http.impl.client.HttpClientBuilder;
  * It will scan on port <code>80</code> by default. <br>
  * The scanned port can be modified using {@link ScanDaemonBuilder#withPort(int)} method.
  * </p>
+ * <p>
+ * The requests are sent by the {@link HttpProbeEngine} shared by all the daemons of the JVM, so the daemons
+ * don't duplicate clients, connection pools nor threads. A daemon needing other limits of requests in flight is built
+ * with its own engine (see {@link ScanDaemonBuilder#withHttpProbeEngine(HttpProbeEngine)}).
+ * </p>
  * @author flash
  *
  */
 public class HttpClientScanDaemon extends ScanDaemon {
 
 	
-	CloseableHttpClient httpclient;
+	private HttpProbeEngine engine;
 	
 	protected HttpClientScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
 		
 		// Calls the super constructor to validate and initialize all the attributes
 		super(builder);
-		RequestConfig requestConfig = RequestConfig.custom()
-										.setSocketTimeout(10000)
-										.setConnectTimeout(timeout)
-										.build();
 		
-		httpclient = HttpClientBuilder.create()
-										.setDefaultRequestConfig(requestConfig)
-										.build();
+		if(builder.getHttpProbeEngine() != null) {
+			engine = builder.getHttpProbeEngine();
+			return;
+		}
 		
+		try {
+			engine = HttpProbeEngine.getShared();
+		} catch (IOException e) {
+			throw new IllegalStateException("HTTP probe engine could not be started.", e);
+		}
 	}
 	
 	
 	@Override
 	public boolean ping(String ip) {
-		
-		boolean result;
-		HttpHead headMethod = null;
-		CloseableHttpResponse response = null;
-		try {
-			String url = protocol.getScheme() + ip + ":" + port;
-			
-			headMethod = new HttpHead(url);
-			response = httpclient.execute(headMethod);
-			int responseCode = response.getStatusLine().getStatusCode();
-			
-			// Any codes between 200 and 399 should be ok.
-			result = (HttpStatus.SC_OK <= responseCode && responseCode < HttpStatus.SC_BAD_REQUEST);
-			 
-		} catch (IOException e) {
-			result = false;
-		} finally {
-			disconnect(headMethod, response);
-		}
-		
-		return result;
+		return ping(ip, getConnectTimeout(ip), getReadTimeout(ip));
+	}
+
+	@Override
+	protected boolean ping(String ip, int connectTimeout, int readTimeout) {
+		return engine.isUp(getUrl(ip), connectTimeout, connectTimeout + readTimeout);
 	}
 	
-	private void disconnect(HttpHead method, CloseableHttpResponse response) {
-		
-		if(method != null) {
-			method.releaseConnection();
-		}
-		
-		if(response != null) {
-			try {
-				response.close();
-			} catch (IOException e) {
-			}
-		}
-		
+	@Override
+	protected CompletableFuture<Boolean> pingAsync(String ip, int connectTimeout, int readTimeout, Executor executor) {
+		return engine.probe(getUrl(ip), connectTimeout, connectTimeout + readTimeout);
 	}
 }
@@ -1,9 +1,11 @@
 package brv.tools.daemons;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import brv.tools.probes.HttpProbeEngine;
 
 /**
  * Scans for HTTP servers.
@@ -11,43 +13,48 @@ import java.net.UnknownHostException;
  * It will scan on port <code>80</code> by default. <br>
  * The scanned port can be modified using {@link ScanDaemonBuilder#withPort(int)} method.
  * </p>
+ * <p>
+ * The requests are sent by the {@link HttpProbeEngine} shared by all the daemons of the JVM instead of opening
+ * a new connection for each probe, unless the daemon is built with its own engine (see {@link ScanDaemonBuilder#withHttpProbeEngine(HttpProbeEngine)}).
+ * </p>
  * @author flash
  *
  */
 public class HttpScanDaemon extends ScanDaemon {
 
+	private HttpProbeEngine engine;
+	
 	protected HttpScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
 		
 		// Calls the super constructor to validate and initialize all the attributes
 		super(builder);
 		
+		if(builder.getHttpProbeEngine() != null) {
+			engine = builder.getHttpProbeEngine();
+			return;
+		}
+		
+		try {
+			engine = HttpProbeEngine.getShared();
+		} catch (IOException e) {
+			throw new IllegalStateException("HTTP probe engine could not be started.", e);
+		}
 	}
 	
 	
 	
 	@Override
 	public boolean ping(String ip) {
-		String url = protocol.getScheme() + ip + ":" + port;
-
-		HttpURLConnection connection = null;
-	    try {
+		return ping(ip, getConnectTimeout(ip), getReadTimeout(ip));
+	}
 
-	        connection = (HttpURLConnection) new URL(url).openConnection();
-	        connection.setConnectTimeout(timeout);
-	        connection.setReadTimeout(10000);
-	        connection.setRequestMethod("HEAD");
-	        connection.setRequestProperty("Connection", "Keep-Alive");
-	       
-	        // Any codes between 200 and 399 should be ok.
-	        int responseCode = connection.getResponseCode();
-	        return (HttpURLConnection.HTTP_OK <= responseCode && responseCode < HttpURLConnection.HTTP_BAD_REQUEST);
-	        
-	    } catch (IOException exception) {
-	        return false;
-	    }
-	    finally {
-	    	if(connection != null)
-	    		connection.disconnect();
-	    }
+	@Override
+	protected boolean ping(String ip, int connectTimeout, int readTimeout) {
+		return engine.isUp(getUrl(ip), connectTimeout, connectTimeout + readTimeout);
+	}
+	
+	@Override
+	protected CompletableFuture<Boolean> pingAsync(String ip, int connectTimeout, int readTimeout, Executor executor) {
+		return engine.probe(getUrl(ip), connectTimeout, connectTimeout + readTimeout);
 	}
 }
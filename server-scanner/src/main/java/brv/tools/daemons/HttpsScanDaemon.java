@@ -1,11 +1,9 @@
 package brv.tools.daemons;
 
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
 
-import javax.net.ssl.HttpsURLConnection;
+import brv.tools.probes.HttpsProbeEngine;
 
 /**
  * Scans for HTTPS servers.
@@ -13,39 +11,69 @@ import javax.net.ssl.HttpsURLConnection;
  * It will scan on port <code>443</code> by default. <br>
  * The scanned port can be modified using {@link ScanDaemonBuilder#withPort(int)} method.
  * </p>
+ * <p>
+ * The probes are done by the {@link HttpsProbeEngine} shared by all the daemons of the JVM, so the TLS sessions of
+ * the detected servers are resumed on the next cycles. A daemon built with its own {@link ScanDaemonBuilder#withSslContext(javax.net.ssl.SSLContext) SSLContext}
+ * uses its own engine instead. 
+ * <br>When built with {@link ScanDaemonBuilder#withHandshakeOnly()}, servers are only required to complete the TLS handshake.
+ * </p>
+ * <p>
+ * Hostnames are not verified, as servers are probed by their ip. Unlike with the <code>HttpsURLConnection</code> used by
+ * previous versions, a server whose trusted certificate was issued for a name is reported online.
+ * </p>
  * @author flash
  *
  */
 public class HttpsScanDaemon extends ScanDaemon {
 
+	private HttpsProbeEngine engine;
+	private boolean handshakeOnly;
+	
 	protected HttpsScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
 		
 		// Calls the super constructor to validate and initialize all the attributes
 		super(builder);
+		
+		handshakeOnly = builder.isHandshakeOnly();
+		
+		if(builder.getSslContext() != null) {
+			engine = new HttpsProbeEngine(builder.getSslContext(), HttpsProbeEngine.DEFAULT_SESSION_CACHE_SIZE, 
+											HttpsProbeEngine.DEFAULT_SESSION_TIMEOUT);
+			return;
+		}
+		
+		try {
+			engine = HttpsProbeEngine.getShared();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HTTPS probe engine could not be started.", e);
+		}
 	}
 	
 	
+	/**
+	 * Also requires the same kind of probe and the same TLS context, as other contexts might trust other certificates.
+	 */
+	@Override
+	public boolean covers(ScanDaemon other) {
+		
+		if(!super.covers(other))
+			return false;
+		
+		HttpsScanDaemon https = (HttpsScanDaemon) other;
+		return (handshakeOnly == https.handshakeOnly) && (engine.getContext() == https.engine.getContext());
+	}
+	
 	@Override
 	public boolean ping(String ip) {
-		String url = protocol.getScheme() + ip + ":" + port;
-		HttpsURLConnection connection = null;
-	    try {
-	    	connection = (HttpsURLConnection) new URL(url).openConnection();
-	        connection.setConnectTimeout(timeout);
-	        connection.setReadTimeout(10000);
-	        connection.setRequestMethod("HEAD");
-	        connection.setRequestProperty("Connection", "Keep-Alive");
+		return ping(ip, getConnectTimeout(ip), getReadTimeout(ip));
+	}
 
-	        // Any codes between 200 and 399 should be ok.
-	        int responseCode = connection.getResponseCode();
-	        return (HttpURLConnection.HTTP_OK <= responseCode && responseCode < HttpURLConnection.HTTP_BAD_REQUEST);
-	        
-	    } catch (IOException exception) {
-	        return false;
-	    }
-	    finally {
-	    	if(connection != null)
-	    		connection.disconnect();
-	    }
+	@Override
+	protected boolean ping(String ip, int connectTimeout, int readTimeout) {
+		
+		if(handshakeOnly)
+			return engine.handshake(ip, port, connectTimeout, readTimeout);
+		
+		return engine.isUp(ip, port, connectTimeout, readTimeout);
 	}
 }
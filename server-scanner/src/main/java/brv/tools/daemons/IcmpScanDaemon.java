@@ -28,10 +28,15 @@ public class IcmpScanDaemon extends ScanDaemon {
 
 	@Override
 	public boolean ping(String ip) {
+		return ping(ip, getConnectTimeout(ip), getReadTimeout(ip));
+	}
+
+	@Override
+	protected boolean ping(String ip, int connectTimeout, int readTimeout) {
 		
 		try {
 			InetAddress address = InetAddress.getByName(ip);
-			return address.isReachable(timeout);
+			return address.isReachable(connectTimeout);
 		} catch (IOException e) {
 			return false;
 		}
@@ -0,0 +1,363 @@
+package brv.tools.daemons;
+
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.events.EventPublisher;
+import brv.tools.listeners.ServerRemovedListener;
+import brv.tools.listeners.ServerUpdatedListener;
+import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanResult;
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Scans for servers of several protocols and ports in a single pass over the targets.
+ * <p>
+ * Each protocol and port pair is a channel, scanned by its own daemon of the right type. Those daemons are never
+ * started: this daemon visits each host once and probes all the channels of that host concurrently, so the targets
+ * are iterated and each host is resolved on the network just once per cycle.
+ * <br>Every channel keeps track of its own detected servers, notifying the same results as a standalone daemon
+ * for that protocol and port would. Server listeners are registered on all the channels at once.
+ * </p>
+ * <p>
+ * When {@link Protocol#ICMP} is one of the scanned protocols, its result is the liveness of the host: the rest of
+ * channels are only probed on hosts answering the echo requests, and are reported offline on any other host
+ * without sending a single packet. It should only be included on networks whose hosts answer ICMP.
+ * </p>
+ * <p>
+ * When dead hosts are backed off, a host is considered alive if any of its channels replies, or if it answers
+ * the echo requests when ICMP is scanned.
+ * </p>
+ * <p>
+ * It can be built using {@link ScanDaemonBuilder#forProtocols(Protocol...)} method.
+ * </p>
+ * @author flash
+ *
+ */
+public class MultiProtocolScanDaemon extends ScanDaemon {
+
+	// Liveness channel, null when ICMP is not scanned.
+	private ScanDaemon liveness;
+
+	// Any other channels.
+	private List<ScanDaemon> channels = new ArrayList<>();
+
+	// Runs the blocking pings of the channels when probing from the daemon thread, so every channel of a host can be probed at the same time.
+	private ExecutorService pingWorkers;
+	private final int channelCount;
+
+	protected MultiProtocolScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
+
+		// Calls the super constructor to validate and initialize all the attributes
+		super(builder);
+
+		Map<Protocol, int[]> ports = builder.getChannels();
+
+		int count = 0;
+		for(int[] protocolPorts : ports.values())
+			count += protocolPorts.length;
+		channelCount = count;
+
+		// The detected servers budget is shared by all the channels.
+		long channelBudget = builder.getDetectedServersBudget() / channelCount;
+
+		for(Map.Entry<Protocol, int[]> entry : ports.entrySet()) {
+			for(int port : entry.getValue()) {
+
+				ScanDaemon channel = buildChannel(builder, entry.getKey(), port, channelBudget);
+
+				// Probes of every channel are counted as probes of this daemon, and their changes are sequenced on a single feed.
+				channel.metrics = metrics;
+				channel.shareChangeFeed(this);
+
+				if(entry.getKey() == Protocol.ICMP)
+					liveness = channel;
+				else
+					channels.add(channel);
+			}
+		}
+	}
+
+	private static ScanDaemon buildChannel(ScanDaemonBuilder builder, Protocol protocol, int port, long budget) throws UnknownHostException {
+
+		ScanDaemonBuilder channelBuilder = new ScanDaemonBuilder(protocol)
+												.withPort(port)
+												.withTimeout(builder.getTimeout())
+												.withSleep(builder.getSleep())
+												.withTargets(builder.getTargets())
+												.withDetectedServersBudget(budget)
+												.withHostnameResolver(builder.getHostnameResolver())
+												.withListenerQueue(builder.getListenerQueueCapacity(), builder.getOverflowPolicy());
+
+		if(builder.isConnectOnly() && (protocol != Protocol.ICMP))
+			channelBuilder.withConnectOnly();
+		
+		if((protocol == Protocol.HTTP) && (builder.getHttpProbeEngine() != null))
+			channelBuilder.withHttpProbeEngine(builder.getHttpProbeEngine());
+		
+		if(protocol == Protocol.HTTPS) {
+			if(builder.isHandshakeOnly())
+				channelBuilder.withHandshakeOnly();
+			if(builder.getSslContext() != null)
+				channelBuilder.withSslContext(builder.getSslContext());
+		}
+
+		if(builder.isAdaptiveTimeout())
+			channelBuilder.withAdaptiveTimeout(builder.getTimeoutFloor(), builder.getTimeoutCeiling());
+
+		// Each channel journals its own servers in a subdirectory.
+		Path journalDirectory = builder.getJournalDirectory();
+		if(journalDirectory != null)
+			channelBuilder.withJournal(journalDirectory.resolve(protocol.getName() + "-" + port));
+
+		return channelBuilder.build();
+	}
+
+	/**
+	 * Multi protocol daemons already share each visit between their protocols, so their sweeps are never shared.
+	 */
+	@Override
+	public boolean covers(ScanDaemon other) {
+		return false;
+	}
+	
+	/**
+	 * Checks if any channel of the host gives a successful reply.
+	 */
+	@Override
+	public boolean ping(String ip) {
+		return pingAsync(ip, getPingWorkers()).join();
+	}
+
+	@Override
+	protected CompletableFuture<Boolean> pingAsync(String ip, Executor executor) {
+
+		CompletableFuture<Boolean> result = CompletableFuture.completedFuture(false);
+
+		for(ScanDaemon channel : getChannels())
+			result = result.thenCombine(channel.pingAsync(ip, executor), (any, online) -> any || online);
+
+		return result;
+	}
+
+	/**
+	 * Scans every channel of a host from the daemon thread, running their blocking pings on a pool of one thread per channel.
+	 */
+	@Override
+	protected void probe(long host, String ip) {
+		probeAsync(host, ip, getPingWorkers()).join();
+	}
+
+	@Override
+	protected CompletableFuture<Void> probeAsync(long host, String ip, Executor executor) {
+
+		if(liveness == null) {
+			AtomicBoolean online = new AtomicBoolean(false);
+			return probeChannels(host, ip, online, executor).thenRun(() -> recordLiveness(host, online.get()));
+		}
+
+		return liveness.measureAsync(ip, executor).thenComposeAsync(responseTime -> {
+
+			liveness.checkServer(host, ip, responseTime);
+			recordLiveness(host, responseTime != NO_RESPONSE);
+
+			if(responseTime != NO_RESPONSE)
+				return probeChannels(host, ip, new AtomicBoolean(), executor);
+
+			// Dead host, skipped for every channel.
+			for(ScanDaemon channel : channels)
+				channel.checkServer(host, ip, NO_RESPONSE);
+
+			return CompletableFuture.completedFuture(null);
+
+		}, executor);
+	}
+
+	/**
+	 * Probes every channel but the liveness one, flagging the host as online if any of them replies.
+	 */
+	private CompletableFuture<Void> probeChannels(long host, String ip, AtomicBoolean online, Executor executor) {
+
+		CompletableFuture<?>[] probes = new CompletableFuture<?>[channels.size()];
+
+		for(int i = 0; i < probes.length; i++) {
+			ScanDaemon channel = channels.get(i);
+			probes[i] = channel.measureAsync(ip, executor).thenAcceptAsync(responseTime -> {
+				if(responseTime != NO_RESPONSE)
+					online.set(true);
+				channel.checkServer(host, ip, responseTime);
+			}, executor);
+		}
+
+		return CompletableFuture.allOf(probes);
+	}
+
+	/**
+	 * Shuts down the pool running the pings from the daemon thread, which is created again if needed.
+	 */
+	@Override
+	protected synchronized void terminated() {
+		
+		if(pingWorkers != null) {
+			pingWorkers.shutdown();
+			pingWorkers = null;
+		}
+	}
+	
+	private synchronized ExecutorService getPingWorkers() {
+		
+		if(pingWorkers == null)
+			pingWorkers = Executors.newFixedThreadPool(channelCount, new NamedThreadFactory("ScanDaemon-" + id + "-channel"));
+		
+		return pingWorkers;
+	}
+	
+	@Override
+	public void attach(EventPublisher<ScanResult> publisher) {
+		for(ScanDaemon channel : getChannels())
+			channel.attach(publisher);
+	}
+
+	@Override
+	public void detach(EventPublisher<ScanResult> publisher) {
+		for(ScanDaemon channel : getChannels())
+			channel.detach(publisher);
+	}
+
+	@Override
+	void flushJournal() {
+		for(ScanDaemon channel : getChannels())
+			channel.flushJournal();
+	}
+
+	@Override
+	void releaseJournal() {
+		for(ScanDaemon channel : getChannels())
+			channel.releaseJournal();
+	}
+
+	@Override
+	void reopenJournal() {
+		for(ScanDaemon channel : getChannels())
+			channel.reopenJournal();
+	}
+
+	@Override
+	public void addServerListener(ServerUpdatedListener updatedListener, ServerRemovedListener removedListener) {
+		for(ScanDaemon channel : getChannels())
+			channel.addServerListener(updatedListener, removedListener);
+	}
+
+	@Override
+	public long getListenerQueueDepth() {
+
+		long result = super.getListenerQueueDepth();
+		for(ScanDaemon channel : getChannels())
+			result += channel.getListenerQueueDepth();
+
+		return result;
+	}
+
+	@Override
+	public long getDroppedNotifications() {
+
+		long result = super.getDroppedNotifications();
+		for(ScanDaemon channel : getChannels())
+			result += channel.getDroppedNotifications();
+
+		return result;
+	}
+
+	@Override
+	public long getEmittedEvents() {
+
+		long result = super.getEmittedEvents();
+		for(ScanDaemon channel : getChannels())
+			result += channel.getEmittedEvents();
+
+		return result;
+	}
+
+	@Override
+	public long getListenerDispatchTime() {
+
+		long result = super.getListenerDispatchTime();
+		for(ScanDaemon channel : getChannels())
+			result += channel.getListenerDispatchTime();
+
+		return result;
+	}
+
+	/**
+	 * Retrieve the number of servers currently detected on all the channels.
+	 * @return <code>int</code> - The number of online servers.
+	 */
+	@Override
+	public int getOnlineServers() {
+
+		int result = 0;
+		for(ScanDaemon channel : getChannels())
+			result += channel.getOnlineServers();
+
+		return result;
+	}
+
+	/**
+	 * Returns the servers currently detected on all the channels.
+	 */
+	@Override
+	public List<ScanResult> getDetectedServers() {
+
+		List<ScanResult> result = new ArrayList<>();
+		for(ScanDaemon channel : getChannels())
+			result.addAll(channel.getDetectedServers());
+
+		return result;
+	}
+
+	/**
+	 * Forgets a host on every channel.
+	 */
+	@Override
+	void forget(long host) {
+		for(ScanDaemon channel : getChannels())
+			channel.forget(host);
+	}
+
+	/**
+	 * Returns the configuration of each channel, starting with the ICMP one if any.
+	 * @return <code>List</code> - the configuration of each protocol and port pair scanned by this daemon.
+	 */
+	public List<ScanDaemonConfiguration> getChannelConfigurations() {
+
+		List<ScanDaemonConfiguration> result = new ArrayList<>();
+		for(ScanDaemon channel : getChannels())
+			result.add(channel.getConfiguration());
+
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Every channel, starting with the liveness one if any.
+	 */
+	private List<ScanDaemon> getChannels() {
+
+		if(liveness == null)
+			return channels;
+
+		List<ScanDaemon> result = new ArrayList<>(channels.size() + 1);
+		result.add(liveness);
+		result.addAll(channels);
+		return result;
+	}
+}
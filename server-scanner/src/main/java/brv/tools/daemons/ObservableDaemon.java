@@ -1,28 +1,107 @@
 package brv.tools.daemons;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
+import brv.tools.events.ChangeFeed;
+import brv.tools.events.EventBus;
+import brv.tools.events.EventPublisher;
+import brv.tools.events.Mailbox;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.listeners.CycleCompletedListener;
 import brv.tools.listeners.ServerRemovedListener;
 import brv.tools.listeners.ServerUpdatedListener;
+import brv.tools.model.ScanCycle;
 import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+import brv.tools.model.ServerSnapshot;
 
 /**
  * Demonio que implementa el patrn listener para poder enviar notificaciones cuando ocurran los eventos a determinar por las subclases.
+ * <p>
+ * Notifications are delivered through an {@link EventBus}, so listeners never run on the scanning threads: each listener
+ * has its own bounded queue of pending notifications and a slow listener doesn't delay the scan nor any other listener.
+ * Online and offline servers are published on the same bus, so the notifications about a server are delivered to each
+ * listener in the order they happened. A listener of both must be added through {@link #addServerListener(ServerUpdatedListener, ServerRemovedListener)},
+ * so they share its queue.
+ * </p>
+ * <p>
+ * The same notifications can be consumed as a reactive stream through {@link #getPublisher()}, delivering them only
+ * as subscribers request them.
+ * </p>
+ * <p>
+ * Every server notified as online or offline is also appended to a sequenced {@link #getChangeFeed() change feed}. A consumer
+ * joining late takes a {@link #getSnapshot() snapshot} of the detected servers and then tails the feed after the sequence 
+ * number of the snapshot, and after a disconnection it resumes after the last change it handled.
+ * </p>
  * @author flash
  *
  */
 public abstract class ObservableDaemon /*extends Thread*/ {
 	
-	private List<ServerUpdatedListener> serverUpdatedListeners = new Vector<>();
-	private List<ServerRemovedListener> serverRemovedListeners = new Vector<>();
+	private EventBus<ScanResult> serverListeners;
+	private EventBus<ScanCycle> cycleCompletedListeners;
+	
+	private final int listenerQueueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	
+	private ChangeFeed changeFeed;
+	
+	// Created on the first request, as most daemons are only observed through listeners.
+	private EventPublisher<ScanResult> publisher;
+	
+	// Daemon whose notifications are forwarded to the listeners of this one, while sharing its sweep.
+	private ObservableDaemon source;
+	private Predicate<? super ScanResult> sourceFilter;
+	private Mailbox<ScanResult> serverRelay;
+	private Mailbox<ScanCycle> cycleRelay;
+	
+	/**
+	 * Constructor for ObservableDaemon using the {@link EventBus#DEFAULT_CAPACITY default capacity} and {@link EventBus#DEFAULT_POLICY overflow policy}.
+	 */
+	protected ObservableDaemon() {
+		this(EventBus.DEFAULT_CAPACITY, EventBus.DEFAULT_POLICY);
+	}
+	
+	/**
+	 * Constructor for ObservableDaemon.
+	 * @param listenerQueueCapacity - the number of notifications each listener can have pending.
+	 * @param overflowPolicy - the action to be taken when the queue of a listener is full.
+	 */
+	protected ObservableDaemon(int listenerQueueCapacity, OverflowPolicy overflowPolicy) {
+		this(listenerQueueCapacity, overflowPolicy, ChangeFeed.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor for ObservableDaemon.
+	 * @param listenerQueueCapacity - the number of notifications each listener can have pending.
+	 * @param overflowPolicy - the action to be taken when the queue of a listener is full.
+	 * @param changeFeedCapacity - the number of recent changes kept on the change feed.
+	 */
+	protected ObservableDaemon(int listenerQueueCapacity, OverflowPolicy overflowPolicy, int changeFeedCapacity) {
+		
+		Executor executor = EventBus.getSharedExecutor();
+		
+		this.listenerQueueCapacity = listenerQueueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		
+		serverListeners = new EventBus<>(listenerQueueCapacity, overflowPolicy, ObservableDaemon::getServerKey, executor);
+		
+		// Only the latest completed cycle is relevant when coalescing.
+		cycleCompletedListeners = new EventBus<>(listenerQueueCapacity, overflowPolicy, ScanCycle::getDaemonId, executor);
+		
+		changeFeed = new ChangeFeed(changeFeedCapacity, listenerQueueCapacity, overflowPolicy, executor);
+	}
 	
 	/**
 	 * Aade un listener que escuchará las notificaciones enviadas cuando el escáner encuentre un nuevo servidor.
 	 * @param listener
 	 */
 	public void addServerUpdatedListener(ServerUpdatedListener listener) {
-		this.serverUpdatedListeners.add(listener);
+		addServerListener(listener, null);
 	}
 	
 	
@@ -31,7 +110,222 @@ public abstract class ObservableDaemon /*extends Thread*/ {
 	 * @param listener
 	 */
 	public void addServerRemovedListener(ServerRemovedListener listener) {
-		this.serverRemovedListeners.add(listener);
+		addServerListener(null, listener);
+	}
+	
+	/**
+	 * Adds the listeners of both the servers found and the servers no longer accessible, sharing a single queue.
+	 * <p>
+	 * The notifications about a server are delivered in the order they happened, so a server going online and offline
+	 * is never notified as removed before being notified as updated. When notifications are coalesced, only the last one
+	 * about each server is delivered.
+	 * </p>
+	 * @param updatedListener - the listener of the servers found, <code>null</code> if they are not listened.
+	 * @param removedListener - the listener of the servers no longer accessible, <code>null</code> if they are not listened.
+	 */
+	public void addServerListener(ServerUpdatedListener updatedListener, ServerRemovedListener removedListener) {
+		this.serverListeners.subscribe(server -> {
+			if(server.getStatus() == ServerStatus.ONLINE) {
+				if(updatedListener != null)
+					updatedListener.serverUpdated(server);
+			} else if(removedListener != null) {
+				removedListener.serverRemoved(server);
+			}
+		});
+	}
+	
+	/**
+	 * Adds a listener which will be notified each time the scanner completes a cycle of scans.
+	 * @param listener
+	 */
+	public void addCycleCompletedListener(CycleCompletedListener listener) {
+		this.cycleCompletedListeners.subscribe(listener::cycleCompleted);
+	}
+
+	/**
+	 * Returns the publisher of the results notified by this daemon, both online and offline servers.
+	 * <p>
+	 * Results are only delivered as each subscriber requests them. By default, each subscriber can have as many pending
+	 * results as a listener, and the same overflow policy is applied (see {@link ScanDaemonBuilder#withListenerQueue(int, OverflowPolicy)}).
+	 * Both can be chosen for each subscriber through {@link EventPublisher#subscribe(java.util.concurrent.Flow.Subscriber, int, OverflowPolicy)}.
+	 * </p>
+	 * @return <code>EventPublisher</code> - the publisher of the notified results.
+	 */
+	public synchronized EventPublisher<ScanResult> getPublisher() {
+		
+		if(publisher == null) {
+			publisher = newResultPublisher(listenerQueueCapacity, overflowPolicy);
+			attach(publisher);
+		}
+		
+		return publisher;
+	}
+	
+	/**
+	 * Creates a publisher of results, coalescing the results about the same server when the {@link OverflowPolicy#COALESCE} policy is applied.
+	 * @param capacity - the default number of results each subscriber can have pending.
+	 * @param overflowPolicy - the default action to be taken when the queue of a subscriber is full.
+	 * @return <code>EventPublisher</code> - a publisher without any sources.
+	 * @see #attach(EventPublisher)
+	 */
+	public static EventPublisher<ScanResult> newResultPublisher(int capacity, OverflowPolicy overflowPolicy) {
+		return new EventPublisher<>(capacity, overflowPolicy, ObservableDaemon::getServerKey, EventBus.getSharedExecutor());
+	}
+	
+	/**
+	 * Publishes the results notified by this daemon through a publisher, which might be merging the results of several daemons.
+	 * @param publisher - the publisher.
+	 */
+	public void attach(EventPublisher<ScanResult> publisher) {
+		publisher.addSource(serverListeners);
+	}
+	
+	/**
+	 * Stops publishing the results notified by this daemon through a publisher.
+	 * @param publisher - the publisher.
+	 */
+	public void detach(EventPublisher<ScanResult> publisher) {
+		publisher.removeSource(serverListeners);
+	}
+	
+	/**
+	 * Forwards the notifications of another daemon to the listeners of this one, so this daemon can share the sweep of 
+	 * the other one instead of scanning the same hosts.
+	 * <p>
+	 * Any daemon previously followed is unfollowed. The servers already detected by the other daemon are notified straight away,
+	 * so the listeners of this daemon know them too. Completed cycles are forwarded as completed by this daemon.
+	 * </p>
+	 * @param source - the daemon whose notifications will be forwarded.
+	 * @param filter - the results to be forwarded, <code>null</code> to forward all of them.
+	 */
+	public synchronized void follow(ObservableDaemon source, Predicate<? super ScanResult> filter) {
+		
+		unfollow();
+		
+		this.source = source;
+		this.sourceFilter = filter;
+		
+		serverRelay = source.serverListeners.subscribe(server -> {
+			if((filter == null) || filter.test(server))
+				relayServer(server);
+		});
+		
+		cycleRelay = source.cycleCompletedListeners.subscribe(cycle -> notifyCycleCompletedListeners(relayCycle(cycle)));
+		
+		for(ScanResult server : source.getDetectedServers())
+			if((filter == null) || filter.test(server))
+				notifyServerUpdatedListeners(server);
+	}
+	
+	/**
+	 * Stops forwarding the notifications of the followed daemon, discarding the ones pending to be forwarded.
+	 * @return <code>true</code> - if the daemon was following another one.
+	 */
+	public synchronized boolean unfollow() {
+		
+		if(source == null)
+			return false;
+		
+		source.serverListeners.unsubscribe(serverRelay);
+		source.cycleCompletedListeners.unsubscribe(cycleRelay);
+		
+		source = null;
+		sourceFilter = null;
+		serverRelay = null;
+		cycleRelay = null;
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the daemon whose notifications are forwarded to the listeners of this one.
+	 * @return <code>ObservableDaemon</code> - the followed daemon, <code>null</code> if it is not following any.
+	 */
+	public synchronized ObservableDaemon getSource() {
+		return source;
+	}
+	
+	/**
+	 * Returns the servers currently detected by the daemon, as they would be notified to a new listener.
+	 * @return <code>List</code> - the online servers, empty by default.
+	 */
+	public List<ScanResult> getDetectedServers() {
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Returns the feed of the changes notified by this daemon.
+	 * <p>
+	 * Consumers subscribe to it after the sequence number of a {@link #getSnapshot() snapshot}, or after the last change
+	 * they handled when resuming.
+	 * </p>
+	 * @return <code>ChangeFeed</code> - the change feed.
+	 */
+	public ChangeFeed getChangeFeed() {
+		return changeFeed;
+	}
+	
+	/**
+	 * Appends the changes of this daemon to the feed of another one, which notifies them as its own.
+	 * <p>
+	 * It must be set before the daemon is started.
+	 * </p>
+	 * @param owner - the daemon whose change feed will be used.
+	 */
+	void shareChangeFeed(ObservableDaemon owner) {
+		this.changeFeed = owner.changeFeed;
+	}
+	
+	/**
+	 * Takes a snapshot of the servers currently detected by the daemon, or by the daemon it is following.
+	 * <p>
+	 * The sequence number is read before the servers, so the snapshot includes every change up to it. Changes after it might
+	 * also be included, so they must be applied as idempotent updates: an online server replaces its previous result, and an
+	 * offline server is removed.
+	 * </p>
+	 * @return <code>ServerSnapshot</code> - the online servers as of the last change.
+	 */
+	public ServerSnapshot getSnapshot() {
+		
+		ServerSnapshot snapshot = new ServerSnapshot();
+		snapshot.setSequence(changeFeed.getLastSequence());
+		
+		ObservableDaemon followed;
+		Predicate<? super ScanResult> filter;
+		synchronized(this) {
+			followed = source;
+			filter = sourceFilter;
+		}
+		
+		if(followed == null) {
+			snapshot.setServers(new ArrayList<>(getDetectedServers()));
+			return snapshot;
+		}
+		
+		for(ScanResult server : followed.getDetectedServers())
+			if((filter == null) || filter.test(server))
+				snapshot.getServers().add(server);
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Notifies a server notified by the followed daemon as notified by this daemon.
+	 */
+	private void relayServer(ScanResult server) {
+		if(server.getStatus() == ServerStatus.ONLINE)
+			notifyServerUpdatedListeners(server);
+		else
+			notifyServerRemovedListeners(server);
+	}
+	
+	/**
+	 * Adapts a cycle completed by the followed daemon before notifying it as completed by this daemon.
+	 * @param cycle - the cycle completed by the followed daemon.
+	 * @return <code>ScanCycle</code> - the cycle to be notified.
+	 */
+	protected ScanCycle relayCycle(ScanCycle cycle) {
+		return cycle;
 	}
 	
 	/**
@@ -39,9 +333,8 @@ public abstract class ObservableDaemon /*extends Thread*/ {
 	 * @param ip
 	 */
 	protected void notifyServerUpdatedListeners(ScanResult server) {
-		for(ServerUpdatedListener listener : serverUpdatedListeners) {
-			listener.serverUpdated(server);
-		}
+		changeFeed.append(server);
+		serverListeners.publish(server);
 	}
 	
 	/**
@@ -49,8 +342,54 @@ public abstract class ObservableDaemon /*extends Thread*/ {
 	 * @param ip
 	 */
 	protected void notifyServerRemovedListeners(ScanResult server) {
-		for(ServerRemovedListener listener : serverRemovedListeners) {
-			listener.serverRemoved(server);
-		}
+		changeFeed.append(server);
+		serverListeners.publish(server);
+	}
+
+	/**
+	 * Notifies all the listeners that a cycle of scans has been completed.
+	 * @param cycle
+	 */
+	protected void notifyCycleCompletedListeners(ScanCycle cycle) {
+		cycleCompletedListeners.publish(cycle);
+	}
+	
+	/**
+	 * Returns the number of notifications pending to be delivered to any listener.
+	 * @return <code>long</code> - the number of queued notifications.
+	 */
+	public long getListenerQueueDepth() {
+		return serverListeners.getQueueDepth() + cycleCompletedListeners.getQueueDepth();
+	}
+	
+	/**
+	 * Returns the number of notifications discarded because the queue of a listener was full.
+	 * @return <code>long</code> - the number of dropped notifications.
+	 */
+	public long getDroppedNotifications() {
+		return serverListeners.getDropped() + cycleCompletedListeners.getDropped();
+	}
+	
+	/**
+	 * Returns the number of notifications emitted, regardless of the number of listeners receiving them.
+	 * @return <code>long</code> - the number of emitted notifications.
+	 */
+	public long getEmittedEvents() {
+		return serverListeners.getPublished() + cycleCompletedListeners.getPublished();
+	}
+	
+	/**
+	 * Returns the time spent by the listeners handling the notifications.
+	 * @return <code>long</code> - the total dispatch time (in nanoseconds).
+	 */
+	public long getListenerDispatchTime() {
+		return serverListeners.getDispatchTime() + cycleCompletedListeners.getDispatchTime();
+	}
+	
+	/**
+	 * Identifies the server a notification is about, so pending notifications about the same server can be coalesced.
+	 */
+	private static String getServerKey(ScanResult server) {
+		return server.getProtocol() + "://" + server.getIp() + ":" + server.getPort();
 	}
 }
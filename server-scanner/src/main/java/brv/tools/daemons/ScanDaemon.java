@@ -1,24 +1,52 @@
 package brv.tools.daemons;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
 import java.util.logging.Logger;
 
 import brv.commons.model.enums.Protocol;
+import brv.tools.dns.HostnameResolver;
 import brv.tools.listeners.ServerRemovedListener;
 import brv.tools.listeners.ServerUpdatedListener;
+import brv.tools.model.ScanCycle;
 import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanDaemonStats;
 import brv.tools.model.ScanResult;
 import brv.tools.model.ServerStatus;
+import brv.tools.probes.RttEstimator;
+import brv.tools.stats.ScanDaemonMetrics;
+import brv.tools.store.DetectedServerStore;
+import brv.tools.store.StateJournal;
+import brv.tools.targets.LivenessSchedule;
+import brv.tools.targets.NeighborPrefilter;
+import brv.tools.targets.ScanTargets;
 import brv.tools.util.InetAddressLocalhost;
 import brv.tools.util.InetAddressLocalhostSimple;
+import brv.tools.util.NamedThreadFactory;
+import brv.tools.util.TokenBucket;
 
 /**
  * Abstract class for scanning servers as a daemon.
@@ -33,9 +61,44 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 
 	private Logger logger = Logger.getLogger(ScanDaemon.class.getName());
 	
+	/**
+	 * Default maximum time (in milliseconds) to wait for the reply of a server once connected.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 10000;
+	
+	/**
+	 * Default maximum time (in milliseconds) a stopped daemon waits for its probes in flight before terminating.
+	 */
+	public static final int DEFAULT_DRAIN_TIMEOUT = 30000;
+	
+	// Response time of a ping without any reply.
+	static final long NO_RESPONSE = -1;
+	
+	// Hostname of the servers whose hostname has not been resolved yet.
+	static final String UNKNOWN_HOSTNAME = "";
+	
 	// Running thread related attributes
-	private Thread worker;
-	private AtomicBoolean running = new AtomicBoolean(false);
+	private volatile Thread worker;
+	private final AtomicReference<DaemonState> state = new AtomicReference<>(DaemonState.NEW);
+	
+	// Shared scheduler the daemon is running on, null when running on its own thread.
+	private ScanScheduler scheduler;
+	private volatile ScheduledRun scheduledRun;
+	
+	// Maximum time (in milliseconds) a stopped daemon waits for its probes in flight.
+	private int drainTimeout;
+	
+	// Time (in milliseconds) between checks of a stop while waiting for the probes in flight.
+	private static final long STOP_POLL_INTERVAL = 50;
+	
+	// Number of times the daemon has been stopped, so a drain deadline doesn't apply to a later stop.
+	private final AtomicLong stops = new AtomicLong(0);
+	
+	// Wakes up a daemon sleeping between cycles when it is stopped.
+	private final Object pause = new Object();
+	
+	// Wakes up the threads awaiting the termination of the daemon.
+	private final Object termination = new Object();
 	
 	// Scanning related data - Visibile by any subclasses.
 	protected long id;
@@ -44,13 +107,55 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	protected int port = 0;
 	protected int timeout = 10;
 	protected int sleep = 15000;
+	protected int parallelism = 1;
+	protected double rateLimit = 0;
+	
+	// Target addresses of the daemon.
+	protected ScanTargets targets;
 	
 	// Autoincremental id counters to keep track of the current host scan and the current thread number.
-	private int currentHost = 1;
+	private long currentHost = 0;
 	private static AtomicLong currentId = new AtomicLong(1);
 	
-	// Cached detected servers to compare and detect any changes on each cycle.
-	private Map<String, String> detectedServers = new HashMap<>();
+	// Completed cycles counter.
+	private AtomicLong completedCycles = new AtomicLong(0);
+	
+	// Hosts probed on the current cycle.
+	private AtomicLong cycleProbes = new AtomicLong(0);
+	
+	// Probe and cycle counters, shared by the channels of a multi protocol daemon.
+	ScanDaemonMetrics metrics = new ScanDaemonMetrics();
+	
+	// Cached detected servers to compare and detect any changes on each cycle, keyed by their targets index.
+	// Concurrent, as it is updated from every probe worker when scanning in parallel.
+	private DetectedServerStore detectedServers;
+	
+	// Resolves the hostnames of the detected servers without blocking the scan.
+	private HostnameResolver hostnameResolver;
+	
+	// Spreads the probes evenly, null when the probe rate is not limited.
+	private TokenBucket rateLimiter;
+	
+	// Adapts the timeouts to the response time of each host, null when timeouts are fixed.
+	private RttEstimator rttEstimator;
+	
+	// Backs off the probes to dead hosts, null when every host is probed on every cycle.
+	private LivenessSchedule livenessSchedule;
+	
+	// Persists the detected servers across restarts, null when they are only kept in memory. Closed while the daemon is terminated.
+	private volatile StateJournal journal;
+	
+	// Probes the hosts seen by the kernel first, null when the targets are probed in order.
+	private NeighborPrefilter neighborPrefilter;
+	
+	// Hosts this daemon is restricted to, null when every target is scanned.
+	private LongPredicate hostFilter;
+	
+	// Whether the current cycle has started, has iterated all the targets, and the last host returned was a resolved or unresolved neighbor.
+	private boolean cycleStarted = false;
+	private boolean targetsIterated = false;
+	private boolean resolvedNeighbor = false;
+	private boolean unresolvedNeighbor = false;
 	
 	/**
 	 * ScanDaemon constructor.
@@ -59,9 +164,20 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 * @throws IllegalArgumentException When <code>builder.port != </code>{@link Protocol#getDefaultPort() }
 	 * @throws IllegalArgumentException When <code>builder.timeout < 1  </code> millisecond
 	 * @throws IllegalArgumentException When <code>builder.sleep < 1  </code>millisecond
+	 * @throws IllegalArgumentException When <code>builder.parallelism < 1</code>
+	 * @throws IllegalArgumentException When <code>builder.rateLimit < 0</code>
+	 * @throws IllegalArgumentException When <code>builder.drainTimeout < 0</code>
+	 * @throws IllegalArgumentException When adaptive timeouts are enabled and <code>builder.timeoutFloor < 1</code> or <code>builder.timeoutCeiling < builder.timeoutFloor</code>
+	 * @throws IllegalArgumentException When liveness scheduling is enabled and <code>builder.maxBackoff < 1</code> or <code>builder.sweepInterval < 1</code>
+	 * @throws IllegalStateException When the journal is enabled and it could not be opened.
+	 * @throws IllegalArgumentException When <code>builder.targets</code> are not valid
+	 * @throws IllegalArgumentException When <code>builder.detectedServersBudget</code> is too small
+	 * @throws IllegalArgumentException When <code>builder.listenerQueueCapacity < 1</code>
 	 */
 	protected ScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
 		
+		super(builder.getListenerQueueCapacity(), builder.getOverflowPolicy(), builder.getChangeFeedCapacity());
+		
 		// Network id: http://www.firewall.cx/networking-topics/protocols/protocols-ip/165-protocols-ip-network-id.html
 		// Actualmente solo est preparado para redes de clase C (192.*)
 
@@ -74,6 +190,27 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 		
 		if(builder.getSleep() < 1)
 			throw new IllegalArgumentException("Sleep must be greater than 0.");
+		
+		if(builder.getParallelism() < 1)
+			throw new IllegalArgumentException("Parallelism must be greater than 0.");
+		
+		if(!(builder.getRateLimit() >= 0))
+			throw new IllegalArgumentException("Rate limit must be 0 (unlimited) or greater.");
+		
+		if(builder.getDrainTimeout() < 0)
+			throw new IllegalArgumentException("Drain timeout must be 0 or greater.");
+		
+		if(builder.isAdaptiveTimeout() && (builder.getTimeoutFloor() < 1))
+			throw new IllegalArgumentException("Timeout floor must be greater than 0.");
+		
+		if(builder.isAdaptiveTimeout() && (builder.getTimeoutCeiling() < builder.getTimeoutFloor()))
+			throw new IllegalArgumentException("Timeout ceiling must be greater or equal than the timeout floor.");
+		
+		if(builder.isLivenessScheduling() && (builder.getMaxBackoff() < 1))
+			throw new IllegalArgumentException("Max backoff must be greater than 0.");
+		
+		if(builder.isLivenessScheduling() && (builder.getSweepInterval() < 1))
+			throw new IllegalArgumentException("Sweep interval must be greater than 0.");
 
 		
 		// Obtains the network id.
@@ -81,64 +218,259 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 		//String hostAddress = InetAddress.getLocalHost().getHostAddress();
 		//this.networkId = hostAddress.substring(0, hostAddress.lastIndexOf('.'));
 		
-		this.networkId 	= "192.168.1";
+		this.targets 	= ScanTargets.parse(builder.getTargets());
+		this.networkId 	= targets.toString();
+		this.detectedServers = new DetectedServerStore(builder.getDetectedServersBudget());
+		this.hostnameResolver = Objects.requireNonNull(builder.getHostnameResolver());
 		this.protocol 	= Objects.requireNonNull(builder.getProtocol());
 		this.port 		= builder.getPort();
 		this.timeout 	= builder.getTimeout();
 		this.sleep 		= builder.getSleep();
+		this.parallelism = builder.getParallelism();
+		this.rateLimit 	= builder.getRateLimit();
+		this.rateLimiter = (rateLimit > 0) ? new TokenBucket(rateLimit, 1) : null;
+		this.drainTimeout = builder.getDrainTimeout();
+		
+		if(builder.isAdaptiveTimeout())
+			this.rttEstimator = new RttEstimator(timeout, builder.getTimeoutFloor(), builder.getTimeoutCeiling(), RttEstimator.DEFAULT_MAX_HOSTS);
+		
+		if(builder.isLivenessScheduling())
+			this.livenessSchedule = new LivenessSchedule(builder.getMaxBackoff(), builder.getSweepInterval(), LivenessSchedule.DEFAULT_MAX_HOSTS);
+		
+		if(builder.getNeighborTable() != null)
+			this.neighborPrefilter = new NeighborPrefilter(builder.getNeighborTable(), targets);
+		
+		this.hostFilter = builder.getHostFilter();
+		
+		// Multi protocol daemons journal each channel on its own.
+		if((builder.getJournalDirectory() != null) && (builder.getChannels() == null))
+			this.journal = openJournal(builder.getJournalDirectory());
 		
 		// No need to synchronize as it is using AtomicInteger
 		this.id = currentId.getAndIncrement();
 	}
 	
+	/**
+	 * Opens the journal of the daemon, restoring the servers detected before a restart.
+	 * <p>
+	 * The journal is tagged with the protocol, port and targets of the daemon, so a journal written with another
+	 * configuration is discarded instead of restoring servers on the wrong addresses.
+	 * </p>
+	 */
+	private StateJournal openJournal(Path directory) {
+		
+		String configuration = protocol.getName() + ":" + port + ":" + networkId;
+		
+		// FNV-1a 64 bits hash of the configuration.
+		long fingerprint = 0xcbf29ce484222325L;
+		for(int i = 0; i < configuration.length(); i++)
+			fingerprint = (fingerprint ^ configuration.charAt(i)) * 0x100000001b3L;
+		
+		try {
+			long start = System.nanoTime();
+			StateJournal result = new StateJournal(directory, fingerprint, detectedServers, 
+													StateJournal.DEFAULT_SEGMENT_SIZE, StateJournal.DEFAULT_COMPACTION_THRESHOLD);
+			
+			logger.fine("Restored " + detectedServers.size() + " " + protocol + " servers from journal " + directory
+						+ " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms.");
+			return result;
+			
+		} catch (IOException e) {
+			throw new IllegalStateException("Journal " + directory + " could not be opened.", e);
+		}
+	}
+	
+	/**
+	 * Closes the journal of a terminated daemon, so its directory can be used by another daemon.
+	 * <p>
+	 * The journal is closed by the daemon itself once it terminates, and opened again when it is started again. 
+	 * This method is meant for daemons which are terminated, or have never been started, and won't be used anymore.
+	 * <br>If the daemon is running or draining, it performs no operation, as the journal will be closed once terminated.
+	 * </p>
+	 */
+	public void closeJournal() {
+		synchronized(termination) {
+			if(isTerminated())
+				releaseJournal();
+		}
+	}
+	
+	/**
+	 * Closes the journal, if any.
+	 */
+	void releaseJournal() {
+		if(journal != null)
+			journal.close();
+	}
+	
+	/**
+	 * Opens again the journal closed when the daemon terminated, if any.
+	 * @throws IllegalStateException if the journal could not be opened.
+	 */
+	void reopenJournal() {
+		StateJournal current = journal;
+		if((current != null) && current.isClosed())
+			journal = openJournal(current.getDirectory());
+	}
+	
 	/**
 	 * Starts the daemon.
 	 * <p>
-	 * If the daemon is already running it performs no operation and will return false.
+	 * If the daemon is already running it performs no operation and will return false. A daemon which is still 
+	 * {@link DaemonState#DRAINING draining} goes back to running, without waiting for its probes in flight.
+	 * <br>It is safe to invoke it from several threads at the same time, as only one of them will start the daemon.
 	 * </p>
 	 * @return 
 	 * <code>true</code> - if the daemon has started running.<br>
 	 * <code>false</code> - if the daemon was already running and no action was taken.
 	 */
 	public boolean start() {
+		return start(null, false);
+	}
+	
+	/**
+	 * Starts the daemon on a shared scheduler, instead of its own thread.
+	 * <p>
+	 * If the daemon is already running it performs no operation and will return false. A daemon which is still 
+	 * {@link DaemonState#DRAINING draining} goes back to running where it was running before, without waiting for its probes in flight.
+	 * <br>On a {@link ScanScheduler#pooled(int) pooled} scheduler, an {@link #interrupt() interrupted} daemon 
+	 * stops dispatching probes immediately, but the pings already in flight are never interrupted, as they 
+	 * are run on the shared threads.
+	 * </p>
+	 * @param scheduler - the scheduler the daemon will be run on.
+	 * @return 
+	 * <code>true</code> - if the daemon has started running.<br>
+	 * <code>false</code> - if the daemon was already running and no action was taken.
+	 * @throws RejectedExecutionException if the scheduler has been closed.
+	 */
+	public boolean start(ScanScheduler scheduler) {
+		return start(Objects.requireNonNull(scheduler), true);
+	}
+	
+	private boolean start(ScanScheduler scheduler, boolean scheduled) {
 		
-		boolean result = false;
+		while(true) {
+			
+			DaemonState current = state.get();
+			
+			switch(current) {
+				case DRAINING:
+					if(state.compareAndSet(DaemonState.DRAINING, DaemonState.RUNNING)) {
+						resumeDraining();
+						return true;
+					}
+					break;
+				case NEW:
+				case TERMINATED:
+					if(state.compareAndSet(current, DaemonState.STARTING)) {
+						launch(scheduler, scheduled);
+						return true;
+					}
+					break;
+				default:
+					// Running, or being started by another thread.
+					return false;
+			}
+		}
+	}
+	
+	/**
+	 * Launches a new run of a daemon being started.
+	 */
+	private void launch(ScanScheduler scheduler, boolean scheduled) {
 		
-		if(!running.get()) {
-			worker = new Thread(this);
-			worker.start();
-			result = true;
+		try {
+			synchronized(termination) {
+				reopenJournal();
+			}
+			
+			this.scheduler = scheduled ? scheduler : null;
+			
+			if(scheduled && scheduler.isPooled()) {
+				worker = null;
+				ScheduledRun run = new ScheduledRun(scheduler.getPool());
+				scheduledRun = run;
+				state.set(DaemonState.RUNNING);
+				run.pool.execute(run::dispatch);
+			} else {
+				scheduledRun = null;
+				worker = scheduled ? scheduler.getThreadFactory().newThread(this) : new Thread(this);
+				state.set(DaemonState.RUNNING);
+				worker.start();
+			}
+			
+		} catch (RuntimeException | Error e) {
+			state.set(DaemonState.TERMINATED);
+			signalTermination();
+			throw e;
 		}
+	}
+	
+	/**
+	 * Goes on with a run which had been stopped, but was still draining its probes.
+	 */
+	private void resumeDraining() {
 		
-		return result;
+		ScheduledRun run = scheduledRun;
+		if(run == null)
+			return;
+		
+		run.wakeUp();
+		try {
+			run.pool.execute(run::dispatch);
+		} catch (RejectedExecutionException e) {
+			abort();
+			throw e;
+		}
 	}
 	
 	/**
 	 * Stops the daemon performing a soft stop.
 	 * <p>
-	 * The daemon <strong>will not</strong> shutdown immediately, but when it finishes its current execution cycle.
-	 *<br> 
+	 * The daemon <strong>will not</strong> shutdown immediately. No new probes are sent, and it becomes 
+	 * {@link DaemonState#DRAINING draining} until its probes in flight have completed, which can be awaited with 
+	 * {@link #awaitTermination(long, TimeUnit)}. Probes still in flight once the drain timeout expires are abandoned,
+	 * whether hosts are scanned one at a time or in parallel.
+	 * <br> 
 	 * If the daemon is already stopped, it performs no operation.
 	 * </p>
 	 * @return 
-	 * <code>true</code> - if the daemon has been flagged to be stopped on the next cycle.<br>
+	 * <code>true</code> - if the daemon has been flagged to be stopped.<br>
 	 * <code>false</code> - if the daemon was already stopped and no action was taken.
 	 */
 	public boolean stop() {
-		boolean result = false;
 		
-		if(running.get()) {
-			running.set(false);
-			result = true;
+		if(!beginDraining())
+			return false;
+		
+		long stop = stops.incrementAndGet();
+		
+		synchronized(pause) {
+			pause.notifyAll();
 		}
 		
-		return result;
+		ScheduledRun run = scheduledRun;
+		if(run != null)
+			run.drain(stop);
+		
+		flushJournal();
+		
+		return true;
+	}
+	
+	/**
+	 * Writes the journaled server states to disk, so they survive a crash of the host.
+	 */
+	void flushJournal() {
+		if(journal != null)
+			journal.flush();
 	}
 	
 	/**
 	 * Stops the daemon performing a hard stop.
 	 * <p>
-	 * The daemon <strong>will</strong> shutdown immediately, aborting any pending tasks.
+	 * The daemon <strong>will</strong> shutdown immediately, aborting any pending tasks. A daemon which was already
+	 * {@link DaemonState#DRAINING draining} stops waiting for its probes too.
 	 * <br> 
 	 * If the daemon is already stopped, it performs no operation.
 	 * </p>
@@ -148,23 +480,130 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 */
 	public boolean interrupt() {
 		
-		boolean result = false;
+		boolean result = beginDraining();
 		
-		if((worker != null) && (running.get())) {
-			running.set(false);
-			worker.interrupt();
-			result = true;
-		}
+		if(state.get() != DaemonState.DRAINING)
+			return result;
+		
+		stops.incrementAndGet();
+		
+		Thread thread = worker;
+		if(thread != null)
+			thread.interrupt();
+		
+		ScheduledRun run = scheduledRun;
+		if(run != null)
+			run.finish();
 		
 		return result;
 	}
 	
+	/**
+	 * Moves a running daemon to draining, waiting for it to be started first if it is being started.
+	 * @return <code>true</code> - if the daemon was running.
+	 */
+	private boolean beginDraining() {
+		
+		while(true) {
+			
+			DaemonState current = state.get();
+			
+			if(current == DaemonState.STARTING)
+				Thread.onSpinWait();
+			else if(current != DaemonState.RUNNING)
+				return false;
+			else if(state.compareAndSet(DaemonState.RUNNING, DaemonState.DRAINING))
+				return true;
+		}
+	}
+	
+	/**
+	 * Terminates a draining daemon.
+	 * @return <code>true</code> - if the daemon was draining. Otherwise it has been started again meanwhile.
+	 */
+	private boolean finishDraining() {
+		
+		if(!state.compareAndSet(DaemonState.DRAINING, DaemonState.TERMINATED))
+			return false;
+		
+		signalTermination();
+		return true;
+	}
+	
+	/**
+	 * Terminates the daemon, whether it is running or draining, as it can't go on running.
+	 */
+	private void abort() {
+		
+		DaemonState current;
+		while(((current = state.get()) == DaemonState.RUNNING) || (current == DaemonState.DRAINING)) {
+			if(state.compareAndSet(current, DaemonState.TERMINATED)) {
+				signalTermination();
+				return;
+			}
+		}
+	}
+	
+	private void signalTermination() {
+		
+		closeJournal();
+		terminated();
+		
+		synchronized(termination) {
+			termination.notifyAll();
+		}
+	}
+	
+	/**
+	 * Invoked once the daemon has terminated, so subclasses can release the resources used while running.
+	 * <p>
+	 * Does nothing by default.
+	 * </p>
+	 */
+	protected void terminated() {
+		// Nothing to release.
+	}
+	
+	/**
+	 * Waits until the daemon has terminated, after being stopped or interrupted.
+	 * <p>
+	 * A daemon which has never been started is considered terminated.
+	 * </p>
+	 * @param timeout - the maximum time to wait.
+	 * @param unit - the unit of the timeout.
+	 * @return <code>true</code> - if the daemon has terminated, <code>false</code> if the timeout expired before.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		synchronized(termination) {
+			while(!isTerminated()) {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0)
+					return false;
+				TimeUnit.NANOSECONDS.timedWait(termination, remaining);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the current lifecycle state of the daemon.
+	 * @return <code>DaemonState</code> - the state.
+	 */
+	public DaemonState getState() {
+		return state.get();
+	}
+	
 	/**
 	 * Checks if the daemon is currently running.
 	 * @return <code>true</code> - if the daemon is currently running.<br>
 	 */
 	public boolean isRunning() {
-		return running.get();
+		return state.get() == DaemonState.RUNNING;
 	}
 	
 	/**
@@ -172,7 +611,16 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 * @return <code>true</code> - if the daemon is currently stopped.<br>
 	 */
 	public boolean isStopped() {
-		return !running.get();
+		return !isRunning();
+	}
+	
+	/**
+	 * Checks if the daemon has no probes in flight nor thread running it.
+	 * @return <code>true</code> - if the daemon has never been started or it has terminated.<br>
+	 */
+	public boolean isTerminated() {
+		DaemonState current = state.get();
+		return (current == DaemonState.NEW) || (current == DaemonState.TERMINATED);
 	}
 	
 	/**
@@ -184,38 +632,617 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 * <p>
 	 * The daemon will go to sleep after each completed cycle of scans.
 	 * </p>
+	 * <p>
+	 * When the daemon has been built with a parallelism greater than <code>1</code>, the hosts of each cycle
+	 * are scanned concurrently by a bounded pool of probe workers. Otherwise, hosts are scanned one at a time by a single
+	 * probe worker.
+	 * </p>
 	 */
-    public void run() 
-    { 
-    	running.set(true);
-    	while(running.get()) {
-    		
-			// Obtain the next ip to scan
-			String ip = nextHost();	
-			
-			// Send a request to the listening protocol (template method pattern, to implement by subclasses).
-			if(ping(ip))
-				checkRegisteredServer(ip);
-			else 
-				checkUnregisteredServer(ip);
+    public void run()
+    {
+    	// Run straight away, without being started.
+    	if(!state.compareAndSet(DaemonState.NEW, DaemonState.RUNNING))
+    		state.compareAndSet(DaemonState.TERMINATED, DaemonState.RUNNING);
+
+    	try {
+	    	while(true) {
+
+		    	if(parallelism > 1)
+		    		runParallel();
+		    	else
+		    		runSequential();
+
+		    	if(finishDraining() || isTerminated())
+		    		return;
+
+		    	// Started again while draining, so it goes on scanning.
+		    	Thread.interrupted();
+	    	}
+    	} catch (RuntimeException | Error e) {
+    		abort();
+    		throw e;
+    	}
+    }
+
+    /**
+     * Scans the hosts one at a time, each one on a probe worker while the daemon thread waits for it.
+     * <p>
+     * Once stopped, the daemon thread waits for the probe in flight up to the drain timeout, so a probe blocked
+     * on an unresponsive host doesn't hold the daemon draining.
+     * </p>
+     */
+    private void runSequential() {
+
+    	ExecutorService worker = Executors.newSingleThreadExecutor(newProbeThreadFactory());
+    	long cycleStart = System.currentTimeMillis();
+
+    	try {
+	    	while(isRunning()) {
+
+				// Obtain the next ip to scan
+				long host = nextHost();
+
+				if(isDue(host)) {
+					acquireProbe();
+					String ip = targets.getAddress(host);
+					if(!awaitProbe(worker.submit(() -> probe(host, ip))))
+						break;
+				}
+
+				if(isCycleCompleted()) {
+					completeCycle(cycleStart);
+					pauseBetweenCycles();
+					cycleStart = System.currentTimeMillis();
+				}
+	    	}
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	} finally {
+    		worker.shutdownNow();
+    	}
+    }
+
+    /**
+     * Waits for a probe run by a worker, only up to the drain timeout once the daemon is stopped.
+     * @param probe - the probe in flight.
+     * @return <code>true</code> - if the probe completed, <code>false</code> if it has been abandoned.
+     * @throws InterruptedException if the daemon is interrupted while waiting.
+     */
+    private boolean awaitProbe(Future<?> probe) throws InterruptedException {
+
+    	try {
+	    	while(isRunning()) {
+	    		try {
+	    			probe.get(STOP_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+	    			return true;
+	    		} catch (TimeoutException e) {
+	    			// Still probing.
+	    		}
+	    	}
+
+	    	probe.get(drainTimeout, TimeUnit.MILLISECONDS);
+	    	return true;
+
+    	} catch (TimeoutException e) {
+    		return false;
+    	} catch (ExecutionException e) {
+
+    		// Thrown as if the probe had been run by the daemon thread.
+    		Throwable cause = e.getCause();
+    		if(cause instanceof RuntimeException)
+    			throw (RuntimeException) cause;
+    		if(cause instanceof Error)
+    			throw (Error) cause;
+    		throw new IllegalStateException(cause);
+    	}
+    }
+
+    /**
+     * Scans the hosts fanning out the probes to a pool of <code>parallelism</code> workers.
+     * <p>
+     * The daemon thread only dispatches the hosts to the workers, never having more than <code>parallelism</code>
+     * probes in flight. At the end of each cycle it waits for all the ongoing probes to finish, so a cycle
+     * is only reported as completed once every host of that cycle has been scanned.
+     * <br>Once stopped, it waits for the probes in flight up to the drain timeout.
+     * </p>
+     * <p>
+     * Daemons supporting non-blocking pings (see {@link #pingAsync(String, int, int, Executor)}) don't use the workers 
+     * while waiting for a reply, so only the handling of the results is done by them.
+     * </p>
+     */
+    private void runParallel() {
+
+    	ExecutorService workers = Executors.newFixedThreadPool(parallelism, newProbeThreadFactory());
+    	Semaphore inFlight = new Semaphore(parallelism);
+    	long cycleStart = System.currentTimeMillis();
+
+    	try {
+	    	while(isRunning()) {
+
+	    		long host = nextHost();
+	    		boolean cycleCompleted = isCycleCompleted();
+
+	    		if(isDue(host)) {
+	    			if(!acquireWhileRunning(inFlight, 1))
+	    				break;
+
+	    			// The permit is given back straight away if the probe couldn't be dispatched.
+	    			boolean dispatched = false;
+	    			try {
+	    				acquireProbe();
+	    				probeAsync(host, targets.getAddress(host), workers).whenComplete((result, error) -> inFlight.release());
+	    				dispatched = true;
+	    			} finally {
+	    				if(!dispatched)
+	    					inFlight.release();
+	    			}
+	    		}
+
+	    		if(cycleCompleted) {
+
+	    			// Wait until every probe of the cycle has finished.
+	    			if(!acquireWhileRunning(inFlight, parallelism))
+	    				break;
+	    			inFlight.release(parallelism);
+
+	    			completeCycle(cycleStart);
+	    			pauseBetweenCycles();
+	    			cycleStart = System.currentTimeMillis();
+	    		}
+	    	}
+
+	    	// Probes still in flight once the drain timeout expires are abandoned.
+	    	inFlight.tryAcquire(parallelism, drainTimeout, TimeUnit.MILLISECONDS);
+
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	} finally {
+    		workers.shutdownNow();
+    	}
+    }
+
+    /**
+     * Returns the factory of the probe workers, creating them on the scheduler running the daemon if there is one.
+     */
+    private ThreadFactory newProbeThreadFactory() {
+    	return (scheduler != null) ? scheduler.getThreadFactory() : new NamedThreadFactory("ScanDaemon-" + id + "-probe");
+    }
+
+    /**
+     * Cooperative execution of the daemon on a {@link ScanScheduler#pooled(int) pooled} scheduler.
+     * <p>
+     * Each probe is a task on the shared pool. A new probe is dispatched as soon as a previous one completes,
+     * keeping up to <code>parallelism</code> probes in flight without blocking any thread of the pool while waiting
+     * for them. A cycle is only reported as completed once every host of that cycle has been scanned.
+     * </p>
+     * <p>
+     * Once stopped, the run terminates the daemon when its last probe in flight completes, or when the drain timeout
+     * expires. A run replaced by a later one is ignored, so its probes completing late have no effect.
+     * </p>
+     */
+    private final class ScheduledRun {
+
+    	private final ScheduledExecutorService pool;
+    	private int inFlight = 0;
+    	private boolean cycleDispatched = false;
+    	private long cycleStart = System.currentTimeMillis();
+
+    	// Time (in milliseconds) at which the daemon will wake up from the sleep between cycles.
+    	private long resumeAt = 0;
+
+    	private ScheduledRun(ScheduledExecutorService pool) {
+    		this.pool = pool;
+    	}
+
+    	/**
+    	 * Dispatches probes until <code>parallelism</code> are in flight or the whole cycle has been dispatched.
+    	 * <p>
+    	 * When the probe rate is limited, probes are scheduled to be launched once their permit is available,
+    	 * instead of waiting for it.
+    	 * </p>
+    	 */
+    	private synchronized void dispatch() {
+
+    		if((scheduledRun != this) || (System.currentTimeMillis() < resumeAt))
+    			return;
+
+    		try {
+	    		while(isRunning() && !cycleDispatched && (inFlight < parallelism)) {
+
+	    			long host = nextHost();
+	    			cycleDispatched = isCycleCompleted();
+
+	    			if(!isDue(host))
+	    				continue;
+
+	    			String ip = targets.getAddress(host);
+	    			inFlight++;
+
+	    			long wait = (rateLimiter != null) ? rateLimiter.reserve() : 0;
+	    			if(wait > 0)
+	    				pool.schedule(() -> launch(host, ip), wait, TimeUnit.NANOSECONDS);
+	    			else
+	    				launch(host, ip);
+	    		}
+
+	    		// The last hosts of a cycle might have been skipped, so there would be no probe left to complete it.
+	    		if(cycleDispatched && (inFlight == 0))
+	    			sleepAfterCycle();
+
+    		} catch (RejectedExecutionException e) {
+    			logger.warning("Scheduler of " + protocol + " daemon " + id + " has been closed, stopping the daemon.");
+    			abort();
+    		}
+    	}
+
+    	/**
+    	 * Terminates the daemon once the probes in flight complete, or once the drain timeout expires.
+    	 * @param stop - the number of the stop being drained.
+    	 */
+    	private synchronized void drain(long stop) {
+
+    		if(inFlight == 0) {
+    			finish();
+    			return;
+    		}
+
+    		try {
+    			pool.schedule(() -> {
+    				if(stops.get() == stop)
+    					finish();
+    			}, drainTimeout, TimeUnit.MILLISECONDS);
+    		} catch (RejectedExecutionException e) {
+    			finish();
+    		}
+    	}
+
+    	/**
+    	 * Terminates the daemon if it is still draining this run.
+    	 */
+    	private synchronized void finish() {
+    		if(scheduledRun == this)
+    			finishDraining();
+    	}
+
+    	/**
+    	 * Cancels the sleep between cycles, if the daemon is sleeping.
+    	 */
+    	private synchronized void wakeUp() {
+
+    		long now = System.currentTimeMillis();
+    		if(resumeAt > now) {
+    			resumeAt = 0;
+    			cycleStart = now;
+    		}
+    	}
+
+    	private void launch(long host, String ip) {
+
+    		// The daemon might have been stopped while waiting for the permit.
+    		boolean launched = false;
+    		try {
+    			if(isRunning() && (scheduledRun == this)) {
+    				probeAsync(host, ip, pool).whenCompleteAsync((result, error) -> probeCompleted(), pool);
+    				launched = true;
+    			}
+    		} finally {
+    			// Not launched, or failed before its completion could be tracked.
+    			if(!launched)
+    				probeCompleted();
+    		}
+    	}
+
+    	private synchronized void probeCompleted() {
+
+    		inFlight--;
+
+    		// Replaced by a later run, its probes complete on their own.
+    		if(scheduledRun != this)
+    			return;
+
+    		if(!isRunning()) {
+    			if(inFlight == 0)
+    				finish();
+    			return;
+    		}
+
+    		if(cycleDispatched && (inFlight == 0))
+    			sleepAfterCycle();
+
+    		dispatch();
+    	}
+
+    	/**
+    	 * Completes the current cycle and sleeps between cycles without holding any thread of the pool.
+    	 */
+    	private void sleepAfterCycle() {
+
+    		completeCycle(cycleStart);
+    		cycleDispatched = false;
+
+    		resumeAt = System.currentTimeMillis() + sleep;
+    		cycleStart = resumeAt;
+    		try {
+    			pool.schedule(this::dispatch, sleep, TimeUnit.MILLISECONDS);
+    		} catch (RejectedExecutionException e) {
+    			abort();
+    		}
+    	}
+    }
+
+    /**
+     * Waits for the permits of the probes in flight, giving up once the daemon is stopped so it starts draining.
+     * @return <code>true</code> - if the permits were acquired.
+     * @throws InterruptedException if the daemon is interrupted while waiting.
+     */
+    private boolean acquireWhileRunning(Semaphore inFlight, int permits) throws InterruptedException {
+
+    	while(!inFlight.tryAcquire(permits, STOP_POLL_INTERVAL, TimeUnit.MILLISECONDS))
+    		if(!isRunning())
+    			return false;
+
+    	return true;
+    }
+
+    /**
+     * Waits for a probe permit when the probe rate is limited.
+     * @throws InterruptedException if the daemon is interrupted while waiting.
+     */
+    private void acquireProbe() throws InterruptedException {
+    	if(rateLimiter != null)
+    		rateLimiter.acquire();
+    }
+
+    /**
+     * Sleeps between two cycles of scans, waking up straight away if the daemon is stopped.
+     * @throws InterruptedException if the daemon is interrupted while sleeping.
+     */
+    private void pauseBetweenCycles() throws InterruptedException {
+
+    	long wakeUp = System.currentTimeMillis() + sleep;
+
+    	synchronized(pause) {
+    		long remaining;
+    		while(isRunning() && ((remaining = wakeUp - System.currentTimeMillis()) > 0))
+    			pause.wait(remaining);
     	}
-    } 
-    
+    }
+
+    /**
+     * Scans a single host, updating the detected servers cache.
+     * @param host - the index of the host on the targets.
+     * @param ip - the ip address to be scanned.
+     */
+    protected void probe(long host, String ip) {
+
+    	int connectTimeout = getConnectTimeout(ip);
+    	int readTimeout = getReadTimeout(ip);
+    	metrics.probeSent();
+    	long start = System.nanoTime();
+
+		// Send a request to the listening protocol (template method pattern, to implement by subclasses).
+    	boolean online = ping(ip, connectTimeout, readTimeout);
+
+		checkServer(host, ip, measure(ip, online, start, connectTimeout));
+    }
+
+    /**
+     * Scans a single host without blocking the calling thread, updating the detected servers cache.
+     * @param host - the index of the host on the targets.
+     * @param ip - the ip address to be scanned.
+     * @param executor - the executor on which any blocking ping and the handling of its result should be run.
+     * @return <code>CompletableFuture</code> - completed once the detected servers cache has been updated.
+     */
+    protected CompletableFuture<Void> probeAsync(long host, String ip, Executor executor) {
+    	return measureAsync(ip, executor).thenAcceptAsync(responseTime -> checkServer(host, ip, responseTime), executor);
+    }
+
+    /**
+     * Pings a host without blocking the calling thread, using the timeouts for that host and measuring its response time.
+     * <p>
+     * Any time spent by a blocking ping waiting for a free thread of the executor is also measured.
+     * </p>
+     * @param ip - the ip address to be pinged.
+     * @param executor - the executor on which any blocking ping should be run.
+     * @return <code>CompletableFuture</code> - completed with the response time (in nanoseconds), or {@link #NO_RESPONSE}
+     * if there was no successful reply. The future is never completed exceptionally.
+     */
+    CompletableFuture<Long> measureAsync(String ip, Executor executor) {
+
+    	int connectTimeout = getConnectTimeout(ip);
+    	int readTimeout = getReadTimeout(ip);
+    	metrics.probeSent();
+    	long start = System.nanoTime();
+
+    	return pingAsync(ip, connectTimeout, readTimeout, executor)
+    				.handle((online, error) -> measure(ip, (error == null) && online, start, connectTimeout));
+    }
+
+    /**
+     * Measures the response time of a ping, feeding the adaptive timeouts and the daemon metrics with it.
+     * <p>
+     * Failed pings lasting at least the connect timeout are counted as timed out, any other failed ping as an error.
+     * </p>
+     * @param ip - the pinged ip address.
+     * @param online - the ping result.
+     * @param start - the time (in nanoseconds) when the ping was started.
+     * @param connectTimeout - the connect timeout (in milliseconds) of the ping.
+     * @return <code>long</code> - the response time (in nanoseconds), or {@link #NO_RESPONSE} if the host was not online.
+     */
+    private long measure(String ip, boolean online, long start, int connectTimeout) {
+
+    	long latency = System.nanoTime() - start;
+    	long responseTime = online ? latency : NO_RESPONSE;
+
+    	if(online)
+    		metrics.probeSucceeded(latency);
+    	else
+    		metrics.probeFailed(latency, latency >= TimeUnit.MILLISECONDS.toNanos(connectTimeout));
+
+    	if(rttEstimator != null) {
+    		if(online)
+    			rttEstimator.sample(ip, responseTime);
+    		else
+    			rttEstimator.timeout(ip);
+    	}
+
+    	return responseTime;
+    }
+
+    /**
+     * Updates the detected servers cache with the result of a ping.
+     * @param host - the index of the host on the targets.
+     * @param ip - the scanned ip address.
+     * @param responseTime - the ping response time (in nanoseconds), or {@link #NO_RESPONSE} if the host was not online.
+     */
+    void checkServer(long host, String ip, long responseTime) {
+
+    	recordLiveness(host, responseTime != NO_RESPONSE);
+
+		if(responseTime != NO_RESPONSE)
+			checkRegisteredServer(host, ip, responseTime);
+		else
+			checkUnregisteredServer(host, ip);
+    }
+
+    /**
+     * Records if a host replied, so dead hosts are probed less often.
+     * @param host - the index of the host on the targets.
+     * @param online - <code>true</code> if the host replied.
+     */
+    void recordLiveness(long host, boolean online) {
+    	if(livenessSchedule != null)
+    		livenessSchedule.record(host, online);
+    }
+
+    /**
+     * Checks if a host must be probed on the current cycle, counting the probed hosts of the cycle.
+     * @param host - the index of the host on the targets.
+     * @return <code>true</code> - if the host must be probed, <code>false</code> if it must be skipped.
+     */
+    private boolean isDue(long host) {
+
+    	// Hosts handed over to another daemon are no longer tracked here.
+    	if((hostFilter != null) && !hostFilter.test(host)) {
+    		forget(host);
+    		return false;
+    	}
+
+    	// Hosts seen by the kernel are always probed, and neighbors are only probed once per cycle, first or last.
+    	if(neighborPrefilter != null) {
+    		if(resolvedNeighbor) {
+    			cycleProbes.incrementAndGet();
+    			return true;
+    		}
+
+    		if(!unresolvedNeighbor && neighborPrefilter.isSkipped(host))
+    			return false;
+    	}
+
+    	if((livenessSchedule != null) && !livenessSchedule.isDue(host, completedCycles.get()))
+    		return false;
+
+    	cycleProbes.incrementAndGet();
+    	return true;
+    }
+
+    /**
+     * Returns the maximum time to wait for a connection to a host to be established.
+     * @param ip - the host ip address.
+     * @return <code>int</code> - the adaptive timeout for the host, or the daemon timeout when timeouts are fixed.
+     */
+    protected int getConnectTimeout(String ip) {
+    	return (rttEstimator != null) ? rttEstimator.getConnectTimeout(ip) : timeout;
+    }
+
+    /**
+     * Returns the maximum time to wait for the reply of a host once connected.
+     * @param ip - the host ip address.
+     * @return <code>int</code> - the adaptive timeout for the host, or {@link #DEFAULT_READ_TIMEOUT} when timeouts are fixed.
+     */
+    protected int getReadTimeout(String ip) {
+    	return (rttEstimator != null) ? rttEstimator.getReadTimeout(ip) : DEFAULT_READ_TIMEOUT;
+    }
+
+    /**
+     * Checks if the last host returned by {@link #nextHost()} was the last one of the current cycle.
+     * @return <code>true</code> - if the next host to be scanned belongs to a new cycle.
+     */
+    private boolean isCycleCompleted() {
+    	return (currentHost == 0) && !cycleStarted;
+    }
+
+    /**
+     * Reports a completed cycle to the registered listeners.
+     * @param cycleStart - the time (in milliseconds) when the cycle started.
+     */
+    private void completeCycle(long cycleStart) {
+
+    	ScanCycle cycle = new ScanCycle();
+
+    	cycle.setDaemonId(id);
+    	cycle.setNumber(completedCycles.incrementAndGet());
+    	cycle.setScannedHosts(cycleProbes.getAndSet(0));
+    	cycle.setOnlineServers(getOnlineServers());
+    	cycle.setStartDate(new Date(cycleStart));
+    	cycle.setDuration(System.currentTimeMillis() - cycleStart);
+
+    	metrics.cycleCompleted(cycle.getDuration());
+
+    	logger.fine("Cycle " + cycle.getNumber() + " of " + protocol + " daemon " + id + " completed in " + cycle.getDuration() + "ms.");
+    	notifyCycleCompletedListeners(cycle);
+    }
+
 	/**
 	 * Obtains the next host ip address to be scanned.
-	 * @return <code>String</code> - a valid ip address between <code>[a.b.c.1]</code> and <code>[a.b.c.254]</code>.
+	 * <p>
+	 * Hosts are identified by their index on the daemon {@link ScanTargets targets}, so no address is built until it is needed.
+	 * <br>With a neighbor prefilter, each cycle starts with the hosts resolved on the neighbor table before iterating the targets,
+	 * and ends with the hosts unresolved on it.
+	 * </p>
+	 * @return <code>long</code> - a valid index between <code>0</code> and <code>targets.size() - 1</code>.
 	 */
-	private String nextHost() {
-		String nextHost = networkId + "." + currentHost;
+	private long nextHost() {
 		
-		if(currentHost < 254) // 254
+		if(neighborPrefilter != null) {
+			
+			if(!cycleStarted) {
+				neighborPrefilter.refresh();
+				cycleStarted = true;
+				targetsIterated = false;
+			}
+			
+			unresolvedNeighbor = targetsIterated;
+			if(unresolvedNeighbor) {
+				resolvedNeighbor = false;
+				long unresolved = neighborPrefilter.nextUnresolved();
+				
+				// The last unresolved neighbor completes the cycle.
+				cycleStarted = neighborPrefilter.hasNextUnresolved();
+				return unresolved;
+			}
+			
+			long resolved = neighborPrefilter.nextResolved();
+			resolvedNeighbor = (resolved >= 0);
+			if(resolvedNeighbor)
+				return resolved;
+		}
+		
+		long nextHost = currentHost;
+		
+		if(currentHost < targets.size() - 1) {
 			currentHost++;
-		else
-			currentHost = 1;
+		} else {
+			currentHost = 0;
+			
+			// Unresolved neighbors are probed once every other target has been.
+			targetsIterated = (neighborPrefilter != null) && neighborPrefilter.hasNextUnresolved();
+			cycleStarted = targetsIterated;
+		}
 			
 		return nextHost;
 	}
-	
+	
     /**
      * Returns an object representing the daemon configuration.
      * @return {@link brv.tools.model.ScanDaemonConfiguration ScanDaemonConfiguration}
@@ -229,10 +1256,50 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
     	configuration.setPort(this.port);
     	configuration.setTimeout(this.timeout);
     	configuration.setSleep(this.sleep);
+    	configuration.setParallelism(this.parallelism);
+    	configuration.setRateLimit(this.rateLimit);
+    	if(rttEstimator != null) {
+    		configuration.setTimeoutFloor(rttEstimator.getFloor());
+    		configuration.setTimeoutCeiling(rttEstimator.getCeiling());
+    	}
+    	if(livenessSchedule != null) {
+    		configuration.setMaxBackoff(livenessSchedule.getMaxBackoff());
+    		configuration.setSweepInterval(livenessSchedule.getSweepInterval());
+    	}
+    	if(journal != null)
+    		configuration.setJournalDirectory(journal.getDirectory().toString());
+    	if(neighborPrefilter != null)
+    		configuration.setNeighborTable(neighborPrefilter.getTable().toString());
     	configuration.setRunning(this.isRunning());
     	
     	return configuration;
     }
+    
+    /**
+     * Returns the runtime statistics of the daemon.
+     * <p>
+     * Statistics are accumulated since the daemon was built, so they can be compared between two calls
+     * to know how the daemon is performing.
+     * </p>
+     * @return {@link brv.tools.model.ScanDaemonStats ScanDaemonStats}
+     */
+    public ScanDaemonStats getStats() {
+    	ScanDaemonStats stats = new ScanDaemonStats();
+    	
+    	stats.setId(this.id);
+    	stats.setProtocol(this.protocol);
+    	stats.setPort(this.port);
+    	stats.setRunning(this.isRunning());
+    	metrics.snapshot(stats);
+    	stats.setCompletedCycles(this.getCompletedCycles());
+    	stats.setOnlineServers(this.getOnlineServers());
+    	stats.setEventsEmitted(this.getEmittedEvents());
+    	stats.setDroppedNotifications(this.getDroppedNotifications());
+    	stats.setListenerQueueDepth(this.getListenerQueueDepth());
+    	stats.setListenerDispatchTime(TimeUnit.NANOSECONDS.toMillis(this.getListenerDispatchTime()));
+    	
+    	return stats;
+    }
 	
     /**
      * Retrieve this daemon unique id.
@@ -242,27 +1309,168 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
      * @return <code>long</code> - The unique identifier of the daemon. 
      */
 	public long getId() {
-		return id;
+		return id;
+	}
+	
+	public ScanTargets getTargets() {
+		return targets;
+	}
+	
+	/**
+	 * Identifies the probes sent by the daemon, regardless of its targets.
+	 * <p>
+	 * Daemons with the same key send the same probes to each host, so one of them can scan the targets of the others
+	 * (see {@link #covers(ScanDaemon)}).
+	 * </p>
+	 * @return <code>String</code> - the kind of probe, its protocol and its port.
+	 */
+	public String getSweepKey() {
+		return getClass().getName() + ":" + protocol + ":" + port;
+	}
+	
+	/**
+	 * Checks if the sweep of this daemon also scans every host of another daemon with the same probes, so the other
+	 * daemon can follow it instead of scanning on its own.
+	 * <p>
+	 * Only the probes and the targets are compared: a shared sweep is run with the timeouts, pacing and parallelism of
+	 * the daemon scanning it.
+	 * </p>
+	 * @param other - the other daemon.
+	 * @return <code>true</code> - if the other daemon can share the sweep of this daemon.
+	 */
+	public boolean covers(ScanDaemon other) {
+		
+		// Filtered daemons don't scan all of their targets.
+		if((hostFilter != null) || (other.hostFilter != null))
+			return false;
+		
+		return getSweepKey().equals(other.getSweepKey()) && targets.covers(other.targets);
+	}
+	
+	/**
+	 * Replaces the servers detected by this daemon with the ones detected by another daemon on the targets of this one.
+	 * <p>
+	 * Used before taking over the sweep of the followed daemon: the listeners of this daemon were notified of the servers
+	 * detected by the other one, so this daemon keeps tracking them and notifies them as offline once they stop replying.
+	 * Both daemons must have the same {@link #getSweepKey() sweep key}, and this daemon must not be scanning.
+	 * </p>
+	 * @param source - the daemon whose sweep is taken over.
+	 */
+	public void takeOver(ScanDaemon source) {
+		
+		detectedServers.clear();
+		source.detectedServers.forEach((host, hostname, firstSeen, lastSeen) -> {
+			long index = targets.indexOf(source.targets.getAddress(host));
+			if(index >= 0)
+				detectedServers.put(index, hostname, lastSeen);
+		});
+	}
+	
+	/**
+	 * Starts tracking the servers reported online by a daemon of another process on the targets of this one.
+	 * <p>
+	 * Used when taking over hosts scanned by a daemon which can't be accessed, such as the daemon of another node of a
+	 * cluster: the listeners of this daemon were notified of its results, so this daemon keeps tracking those servers and
+	 * notifies them as offline once they stop replying, instead of notifying them as online again. Servers already tracked
+	 * by this daemon, out of its targets or not online are ignored. Unlike {@link #takeOver(ScanDaemon)}, it can be
+	 * invoked while this daemon is scanning.
+	 * </p>
+	 * @param servers - the last results notified for the servers.
+	 * @return <code>int</code> - the number of servers tracked from now on.
+	 */
+	public int takeOver(Collection<ScanResult> servers) {
+		
+		int tracked = 0;
+		for(ScanResult server : servers) {
+			
+			long host = targets.indexOf(server.getIp());
+			if((server.getStatus() != ServerStatus.ONLINE) || (host < 0) || detectedServers.contains(host))
+				continue;
+			
+			String hostname = (server.getHostname() != null) ? server.getHostname() : server.getIp();
+			long lastSeen = (server.getDate() != null) ? server.getDate().getTime() : System.currentTimeMillis();
+			if((detectedServers.put(host, hostname, lastSeen) == null) && detectedServers.contains(host))
+				tracked++;
+		}
+		
+		return tracked;
+	}
+	
+	@Override
+	protected ScanCycle relayCycle(ScanCycle cycle) {
+		
+		ScanCycle relayed = new ScanCycle();
+		
+		relayed.setDaemonId(id);
+		relayed.setNumber(cycle.getNumber());
+		relayed.setScannedHosts(cycle.getScannedHosts());
+		relayed.setOnlineServers(cycle.getOnlineServers());
+		relayed.setStartDate(cycle.getStartDate());
+		relayed.setDuration(cycle.getDuration());
+		
+		return relayed;
+	}
+	
+	/**
+	 * Retrieve the number of servers currently detected by this daemon.
+	 * @return <code>int</code> - The number of online servers.
+	 */
+	public int getOnlineServers() {
+		return detectedServers.size();
+	}
+	
+	@Override
+	public List<ScanResult> getDetectedServers() {
+		
+		List<ScanResult> servers = new ArrayList<>();
+		detectedServers.forEach((host, hostname, firstSeen, lastSeen) -> 
+			servers.add(generateResult(targets.getAddress(host), hostname, ServerStatus.ONLINE, NO_RESPONSE)));
+		
+		return servers;
+	}
+	
+	/**
+	 * Retrieve the number of cycles of scans this daemon has completed.
+	 * @return <code>long</code> - The number of completed cycles.
+	 */
+	public long getCompletedCycles() {
+		return completedCycles.get();
 	}
 	
 	/**
 	 * Attempts to add an ip address from the detected servers cache.
 	 * <p>
 	 * If an ip address is added to the cache, a notification will be send to all the registered listeners.
+	 * <br>This method is thread-safe, so it can be invoked from several probe workers at the same time.
 	 * </p>
+	 * @param host - the index of the host on the targets.
 	 * @param ip - the ip address to be checked.
+	 * @param responseTime - the response time (in nanoseconds) of the server.
 	 * @see ServerUpdatedListener
 	 */
-	private void checkRegisteredServer(String ip) {
+	private void checkRegisteredServer(long host, String ip, long responseTime) {
 		
 		// Se obtiene el hostname y se verifica si es igual al que haba guardado
-		String hostname = getHostname(ip);
-		if(!hostname.equals(detectedServers.get(ip))) 
+		String hostname = getHostname(host, ip);
+		String previousHostname = detectedServers.put(host, hostname, System.currentTimeMillis());
+		
+		if((previousHostname == null) && !detectedServers.contains(host)) {
+			logger.warning("Detected servers memory budget exhausted, " + ip + " on port " + port + " can't be tracked.");
+		}
+		else if(!hostname.equals(previousHostname)) 
 		{
-			logger.info(protocol +" response from " + ip + " ("+hostname+") on port "+ port + " (max timeout: " + timeout + ")");
-			detectedServers.put(ip, hostname);
+			logger.info(protocol +" response from " + ip + " ("+hostname+") on port "+ port + " (response time: " + TimeUnit.NANOSECONDS.toMillis(responseTime) + " ms)");
+			
+			if(journal != null) {
+				try {
+					journal.online(host, hostname, System.currentTimeMillis());
+				} catch (IOException | IllegalStateException e) {
+					// Probes completing once the daemon has terminated find the journal closed.
+					logger.warning("Couldn't journal " + protocol + " server " + ip + " on port " + port + ": " + e.getMessage());
+				}
+			}
 			
-			notifyServerUpdatedListeners(generateResult(ip, hostname, ServerStatus.ONLINE));
+			notifyServerUpdatedListeners(generateResult(ip, hostname, ServerStatus.ONLINE, responseTime));
 		}
 	}
 	
@@ -270,23 +1478,41 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 * Attempts to delete an ip address from the detected servers cache.
 	 * <p>
 	 * If an ip address is deleted from the cache, a notification will be send to all the registered listeners.
+	 * <br>This method is thread-safe, so it can be invoked from several probe workers at the same time.
 	 * </p>
+	 * @param host - the index of the host on the targets.
 	 * @param ip - the ip address to be checked.
 	 * @see ServerRemovedListener
 	 */
-	private void checkUnregisteredServer(String ip) {
+	private void checkUnregisteredServer(long host, String ip) {
 		
 		// Si el server estaba registrado previamente
-		if(detectedServers.containsKey(ip))
+		String hostname = detectedServers.remove(host);
+		if(hostname != null)
 		{
-			String hostname = detectedServers.get(ip);
 			logger.info("No response from " + ip + " ("+hostname+") on port "+ port + ". Removed from cache.");
-			detectedServers.remove(ip);
 			
-			notifyServerRemovedListeners(generateResult(ip, hostname, ServerStatus.OFFLINE));
+			if(journal != null) {
+				try {
+					journal.offline(host, System.currentTimeMillis());
+				} catch (IOException | IllegalStateException e) {
+					// Probes completing once the daemon has terminated find the journal closed.
+					logger.warning("Couldn't journal " + protocol + " server " + ip + " on port " + port + ": " + e.getMessage());
+				}
+			}
+			
+			notifyServerRemovedListeners(generateResult(ip, hostname, ServerStatus.OFFLINE, NO_RESPONSE));
 		}
 	}
 	
+	/**
+	 * Removes a host from the detected servers cache without notifying any listener.
+	 * @param host - the index of the host on the targets.
+	 */
+	void forget(long host) {
+		detectedServers.remove(host);
+	}
+	
 	/**
 	 * Generates a scan result with useful information about the scanned server.
 	 * <p>
@@ -298,14 +1524,16 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 *	<li>Server protocol</li>
 	 *	<li>Server port</li>
 	 *	<li>Ping result</li>
+	 *	<li>Ping response time</li>
 	 *	<li>Generation date of the result</li>
 	 * </ul>
 	 * @param ip - the scanned ip address
 	 * @param hostname - the scanned hostname
 	 * @param status - the current server {@link brv.tools.model.ServerStatus status}.
+	 * @param responseTime - the response time (in nanoseconds) of the server, or {@link #NO_RESPONSE}.
 	 * @return <code>{@link brv.tools.model.ScanResult ScanResult}</code> - an object containing useful information about the scanned server.
 	 */
-	private ScanResult generateResult(String ip, String hostname, ServerStatus status) {
+	private ScanResult generateResult(String ip, String hostname, ServerStatus status, long responseTime) {
 		
 		ScanResult result = new ScanResult();
 		
@@ -314,6 +1542,7 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 		result.setProtocol(protocol);
 		result.setPort(port);
 		result.setStatus(status);
+		result.setResponseTime((responseTime != NO_RESPONSE) ? responseTime / (double) TimeUnit.MILLISECONDS.toNanos(1) : ScanResult.NO_RESPONSE);
 		result.setDate(new Date());
 		
 		return result;
@@ -321,22 +1550,41 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 
 	/**
 	 * Retrieves the hostname from an ip address.
+	 * <p>
+	 * The hostname is never looked up on the scanning thread, but obtained from the {@link HostnameResolver} cache.
+	 * While the resolver doesn't know it, the hostname already stored for the server is kept, so a server is never
+	 * notified again just because its lookup is pending, failed or was evicted from the cache. New servers get an 
+	 * empty hostname meanwhile, and will be notified again as updated once it has been resolved.
+	 * </p>
+	 * @param host - the index of the host on the targets.
 	 * @param ip - The ip address to retrieve the hostname from.
 	 * @return <code>hostname</code> - if it was possible to retrieve it. An empty <code>String</code> will be returned otherwise.
 	 */
-	private String getHostname(String ip) {
+	private String getHostname(long host, String ip) {
 		
-		//InetAddress address2 = NbtAddress.getByName( "jmorris2" ).getInetAddress();
-		 
-		InetAddress address;
-		String hostname;
-		try {
-			address = InetAddress.getByName(ip);
-			hostname = address.getHostName();
-		} catch (UnknownHostException e) {
-			hostname = "";
-		}
-		return hostname;
+		// A pending or empty lookup never replaces a known hostname, such as the ones restored from the journal.
+		String hostname = hostnameResolver.getHostname(ip);
+		if((hostname != null) && !hostname.isEmpty())
+			return hostname;
+		
+		String known = detectedServers.get(host);
+		return (known != null) ? known : UNKNOWN_HOSTNAME;
+	}
+	
+	/**
+	 * Builds the url of the scanned service on a host.
+	 * <p>
+	 * IPv6 addresses are enclosed in brackets, as required by <a href="https://tools.ietf.org/html/rfc3986#section-3.2.2">RFC3986</a>.
+	 * </p>
+	 * @param ip - the host ip address.
+	 * @return <code>String</code> - the url, built from the protocol scheme, the ip address and the port.
+	 */
+	protected String getUrl(String ip) {
+		
+		if(ip.indexOf(':') >= 0)
+			return protocol.getScheme() + "[" + ip + "]:" + port;
+		else
+			return protocol.getScheme() + ip + ":" + port;
 	}
 	
 	/**
@@ -344,10 +1592,54 @@ public abstract class ScanDaemon extends ObservableDaemon implements Runnable {
 	 * <p>
 	 * Subclasses must implement this method specifying how the ping or handshaking should be done
 	 * depending of the protocol and server type.
+	 * <br>Subclasses supporting {@link ScanDaemonBuilder#withAdaptiveTimeout(int, int) adaptive timeouts} should also 
+	 * override {@link #ping(String, int, int)}, pinging here with the timeouts of {@link #getConnectTimeout(String)} 
+	 * and {@link #getReadTimeout(String)}.
 	 * </p>
 	 * @param ip the ip to be pinged.
 	 * @return <code>true</code> - if a server gives a successful reply.
 	 */
 	public abstract boolean ping(String ip);
+	
+	/**
+	 * Pings a determined url, using the given timeouts.
+	 * <p>
+	 * This is the ping sent by the daemon on every probe. By default the timeouts are ignored and 
+	 * {@link #ping(String)} is invoked, so subclasses honouring them should override this method.
+	 * </p>
+	 * @param ip the ip to be pinged.
+	 * @param connectTimeout the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @param readTimeout the maximum time (in milliseconds) to wait for the reply once connected.
+	 * @return <code>true</code> - if a server gives a successful reply.
+	 */
+	protected boolean ping(String ip, int connectTimeout, int readTimeout) {
+		return ping(ip);
+	}
+	
+	/**
+	 * Pings a determined url without blocking the calling thread, using the timeouts for that host.
+	 * @param ip the ip to be pinged.
+	 * @param executor the executor on which any blocking ping should be run.
+	 * @return <code>CompletableFuture</code> - completed with <code>true</code> if a server gives a successful reply.
+	 */
+	protected CompletableFuture<Boolean> pingAsync(String ip, Executor executor) {
+		return pingAsync(ip, getConnectTimeout(ip), getReadTimeout(ip), executor);
+	}
+	
+	/**
+	 * Pings a determined url without blocking the calling thread.
+	 * <p>
+	 * By default, the blocking {@link #ping(String, int, int)} is run on the given executor. Subclasses able to 
+	 * ping without blocking any thread should override this method.
+	 * </p>
+	 * @param ip the ip to be pinged.
+	 * @param connectTimeout the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @param readTimeout the maximum time (in milliseconds) to wait for the reply once connected.
+	 * @param executor the executor on which any blocking ping should be run.
+	 * @return <code>CompletableFuture</code> - completed with <code>true</code> if a server gives a successful reply.
+	 */
+	protected CompletableFuture<Boolean> pingAsync(String ip, int connectTimeout, int readTimeout, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> ping(ip, connectTimeout, readTimeout), executor);
+	}
 
 }
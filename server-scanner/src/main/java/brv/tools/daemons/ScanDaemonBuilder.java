@@ -1,9 +1,25 @@
 package brv.tools.daemons;
 
 import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.LongPredicate;
+
+import javax.net.ssl.SSLContext;
 
 import brv.commons.model.enums.Protocol;
+import brv.tools.dns.HostnameResolver;
+import brv.tools.events.ChangeFeed;
+import brv.tools.events.EventBus;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.probes.HttpProbeEngine;
+import brv.tools.probes.HttpsProbeEngine;
+import brv.tools.store.DetectedServerStore;
+import brv.tools.targets.NeighborPrefilter;
+import brv.tools.targets.ScanTargets;
 
 
 /**
@@ -18,6 +34,31 @@ public class ScanDaemonBuilder{
 	private int port = 0;
 	private int timeout = 10;
 	private int sleep = 15000;
+	private int parallelism = 1;
+	private double rateLimit = 0;
+	private int drainTimeout = ScanDaemon.DEFAULT_DRAIN_TIMEOUT;
+	private boolean adaptiveTimeout = false;
+	private int timeoutFloor = 0;
+	private int timeoutCeiling = 0;
+	private boolean livenessScheduling = false;
+	private int maxBackoff = 0;
+	private int sweepInterval = 0;
+	private boolean connectOnly = false;
+	private boolean handshakeOnly = false;
+	private SSLContext sslContext = null;
+	private HttpProbeEngine httpProbeEngine = null;
+	private String[] targets = { ScanTargets.DEFAULT_TARGETS };
+	private long detectedServersBudget = DetectedServerStore.DEFAULT_MEMORY_BUDGET;
+	private HostnameResolver hostnameResolver = null;
+	private int listenerQueueCapacity = EventBus.DEFAULT_CAPACITY;
+	private OverflowPolicy overflowPolicy = EventBus.DEFAULT_POLICY;
+	private int changeFeedCapacity = ChangeFeed.DEFAULT_CAPACITY;
+	private Path journalDirectory = null;
+	private Path neighborTable = null;
+	private LongPredicate hostFilter = null;
+	
+	// Scanned ports of each protocol of a multi protocol daemon. Null for single protocol daemons.
+	private Map<Protocol, int[]> channels = null;
 	
 	/**
 	 * Constructor for ScanDaemonBuilder.
@@ -32,6 +73,78 @@ public class ScanDaemonBuilder{
 		this.protocol = protocol;
 	}
 	
+	/**
+	 * Copy constructor for ScanDaemonBuilder.
+	 * <p>
+	 * Creates a builder with the same settings as another one, so either of them can be changed without affecting the other.
+	 * </p>
+	 * @param builder - The builder whose settings are copied.
+	 */
+	public ScanDaemonBuilder(ScanDaemonBuilder builder) {
+		
+		this(builder.protocol);
+		
+		this.defaultPort = builder.defaultPort;
+		this.port = builder.port;
+		this.timeout = builder.timeout;
+		this.sleep = builder.sleep;
+		this.parallelism = builder.parallelism;
+		this.rateLimit = builder.rateLimit;
+		this.drainTimeout = builder.drainTimeout;
+		this.adaptiveTimeout = builder.adaptiveTimeout;
+		this.timeoutFloor = builder.timeoutFloor;
+		this.timeoutCeiling = builder.timeoutCeiling;
+		this.livenessScheduling = builder.livenessScheduling;
+		this.maxBackoff = builder.maxBackoff;
+		this.sweepInterval = builder.sweepInterval;
+		this.connectOnly = builder.connectOnly;
+		this.handshakeOnly = builder.handshakeOnly;
+		this.sslContext = builder.sslContext;
+		this.httpProbeEngine = builder.httpProbeEngine;
+		this.targets = builder.targets.clone();
+		this.detectedServersBudget = builder.detectedServersBudget;
+		this.hostnameResolver = builder.hostnameResolver;
+		this.listenerQueueCapacity = builder.listenerQueueCapacity;
+		this.overflowPolicy = builder.overflowPolicy;
+		this.changeFeedCapacity = builder.changeFeedCapacity;
+		this.journalDirectory = builder.journalDirectory;
+		this.neighborTable = builder.neighborTable;
+		this.hostFilter = builder.hostFilter;
+		
+		if(builder.channels != null) {
+			this.channels = new LinkedHashMap<>();
+			builder.channels.forEach((protocol, ports) -> channels.put(protocol, ports.clone()));
+		}
+	}
+	
+	/**
+	 * Creates a builder for a daemon scanning several protocols at the same time.
+	 * <p>
+	 * The built daemon visits each host once, probing all the protocols concurrently, and notifies the same 
+	 * results as a single protocol daemon per protocol would. Each protocol is scanned on its default port,
+	 * unless other ports are set with {@link #withPorts(Protocol, int...)}.
+	 * </p>
+	 * @param protocols - The protocols on which the daemon will be built.
+	 * @return <code>ScanDaemonBuilder</code> - A builder for a {@link MultiProtocolScanDaemon}.
+	 * @throws IllegalArgumentException When no protocols are given.
+	 * @see MultiProtocolScanDaemon
+	 */
+	public static ScanDaemonBuilder forProtocols(Protocol... protocols) {
+		
+		if((protocols == null) || (protocols.length == 0))
+			throw new IllegalArgumentException("At least one protocol must be selected.");
+		
+		ScanDaemonBuilder builder = new ScanDaemonBuilder(protocols[0]);
+		builder.channels = new LinkedHashMap<>();
+		
+		for(Protocol protocol : protocols) {
+			Objects.requireNonNull(protocol, "A protocol must be selected.");
+			builder.channels.put(protocol, new int[] { protocol.getDefaultPort() });
+		}
+		
+		return builder;
+	}
+	
 	/**
 	 * Sets the port the ScanDaemon will be using for scanning.
 	 * @param port
@@ -63,6 +176,300 @@ public class ScanDaemonBuilder{
 		return this;
 	}
 	
+	/**
+	 * Sets the ip addresses the daemon will be scanning.
+	 * <p>
+	 * Targets can be IPv4 CIDR blocks (<code>/8</code> to <code>/32</code>), IPv4 ranges (<code>10.0.0.1-10.0.0.50</code>),
+	 * IPv6 prefixes (<code>/104</code> to <code>/128</code>) or single addresses. 
+	 * By default, the daemon scans the <code>192.168.1.0/24</code> network.
+	 * </p>
+	 * @param targets
+	 * @return
+	 * @see brv.tools.targets.TargetRange#parse(String)
+	 */
+	public ScanDaemonBuilder withTargets(String... targets) {
+		this.targets = targets;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of hosts the daemon will be scanning at the same time during a cycle.
+	 * <p>
+	 * By default, the parallelism is <code>1</code>, so hosts are scanned one at a time.
+	 * </p>
+	 * @param parallelism
+	 * @return
+	 */
+	public ScanDaemonBuilder withParallelism(int parallelism) {
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of probes per second the daemon will be sending.
+	 * <p>
+	 * Probes are spread evenly over time instead of being sent in bursts. By default, the rate is <code>0</code>, 
+	 * so it is not limited. Multi protocol daemons count each visited host as a single probe.
+	 * </p>
+	 * @param probesPerSecond
+	 * @return
+	 */
+	public ScanDaemonBuilder withRateLimit(double probesPerSecond) {
+		this.rateLimit = probesPerSecond;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum time (in milliseconds) a stopped daemon waits for its probes in flight before terminating.
+	 * <p>
+	 * Probes still in flight once it expires are abandoned, and their results are never notified. By default, 
+	 * it is {@link ScanDaemon#DEFAULT_DRAIN_TIMEOUT}.
+	 * </p>
+	 * @param drainTimeout
+	 * @return
+	 */
+	public ScanDaemonBuilder withDrainTimeout(int drainTimeout) {
+		this.drainTimeout = drainTimeout;
+		return this;
+	}
+	
+	/**
+	 * Restricts the daemon to the hosts accepted by a filter, so several daemons can split the same targets.
+	 * <p>
+	 * The filter receives the index of each host on the targets, and is checked before every probe, so the accepted
+	 * hosts can change while the daemon is running. A detected server whose host is no longer accepted is forgotten
+	 * without notifying it as offline, as it is scanned elsewhere from then on.
+	 * <br>By default, every host is scanned.
+	 * </p>
+	 * @param hostFilter - the filter of the hosts to be scanned.
+	 * @return
+	 * @see brv.tools.cluster.ClusterNode
+	 */
+	public ScanDaemonBuilder withHostFilter(LongPredicate hostFilter) {
+		this.hostFilter = Objects.requireNonNull(hostFilter);
+		return this;
+	}
+	
+	/**
+	 * Adapts the timeouts of each host to its measured response times, instead of always waiting for the fixed timeout.
+	 * <p>
+	 * Timeouts are computed from the smoothed round trip time of each host and its variance, the same way TCP does.
+	 * Hosts which have never replied use the timeout of the rest of hosts of their subnet, or the {@link #withTimeout(int) timeout}
+	 * if none of them has replied either. Timeouts are doubled each time a known host doesn't reply.
+	 * <br>Fast networks are scanned much faster, while slow or congested hosts are not reported as offline.
+	 * </p>
+	 * @param floor - the minimum timeout (in milliseconds).
+	 * @param ceiling - the maximum timeout (in milliseconds).
+	 * @return
+	 */
+	public ScanDaemonBuilder withAdaptiveTimeout(int floor, int ceiling) {
+		this.adaptiveTimeout = true;
+		this.timeoutFloor = floor;
+		this.timeoutCeiling = ceiling;
+		return this;
+	}
+	
+	/**
+	 * Probes dead hosts less often, instead of probing every host on every cycle.
+	 * <p>
+	 * Hosts which replied to their last probe are probed on every cycle, so outages are detected as soon as possible.
+	 * Each time a host doesn't reply, the number of cycles until it is probed again is doubled, up to <code>maxBackoff</code>
+	 * cycles. Hosts which have never replied are probed once every <code>maxBackoff</code> cycles, and every host is probed
+	 * on a full sweep once every <code>sweepInterval</code> cycles, starting with the first one.
+	 * <br>On mostly empty networks, cycles become much shorter as most of the probes that would time out are skipped.
+	 * </p>
+	 * @param maxBackoff - the maximum number of cycles between two probes of a dead host.
+	 * @param sweepInterval - the number of cycles between two full sweeps.
+	 * @return
+	 */
+	public ScanDaemonBuilder withLivenessScheduling(int maxBackoff, int sweepInterval) {
+		this.livenessScheduling = true;
+		this.maxBackoff = maxBackoff;
+		this.sweepInterval = sweepInterval;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum memory (in bytes) the daemon can use to keep track of the detected servers.
+	 * <p>
+	 * Both the table of servers and their hostnames are accounted. Once the budget is exhausted, any newly detected servers
+	 * will not be tracked nor notified. By default, the budget is 16 MB, enough to track about 400000 servers without hostname,
+	 * or about 140000 servers with hostnames of 20 characters.
+	 * </p>
+	 * @param detectedServersBudget
+	 * @return
+	 */
+	public ScanDaemonBuilder withDetectedServersBudget(long detectedServersBudget) {
+		this.detectedServersBudget = detectedServersBudget;
+		return this;
+	}
+	
+	/**
+	 * Sets the resolver the daemon will use to obtain the hostnames of the detected servers.
+	 * <p>
+	 * By default, the daemon uses the {@link HostnameResolver#getShared() resolver shared} by all the daemons of the JVM.
+	 * </p>
+	 * @param hostnameResolver
+	 * @return
+	 */
+	public ScanDaemonBuilder withHostnameResolver(HostnameResolver hostnameResolver) {
+		this.hostnameResolver = hostnameResolver;
+		return this;
+	}
+	
+	/**
+	 * Sets how notifications are queued for each listener of the daemon.
+	 * <p>
+	 * Listeners are notified asynchronously, each one having its own queue of pending notifications. 
+	 * By default, each queue holds up to 1024 notifications and coalesces those about the same server when full.
+	 * </p>
+	 * @param capacity - the number of notifications each listener can have pending.
+	 * @param overflowPolicy - the action to be taken when the queue of a listener is full.
+	 * @return
+	 */
+	public ScanDaemonBuilder withListenerQueue(int capacity, OverflowPolicy overflowPolicy) {
+		this.listenerQueueCapacity = capacity;
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+		return this;
+	}
+	
+	/**
+	 * Sets the number of recent changes kept on the {@link ObservableDaemon#getChangeFeed() change feed} of the daemon.
+	 * <p>
+	 * Consumers can resume after any of them without taking a new snapshot. By default, the last 
+	 * {@link ChangeFeed#DEFAULT_CAPACITY} changes are kept.
+	 * </p>
+	 * @param capacity
+	 * @return
+	 */
+	public ScanDaemonBuilder withChangeFeed(int capacity) {
+		this.changeFeedCapacity = capacity;
+		return this;
+	}
+	
+	/**
+	 * Sets the directory where the daemon journals the detected servers, so they are restored when the daemon is created again.
+	 * <p>
+	 * A restarted daemon will not notify again the servers which were already online before the restart, only
+	 * the ones whose status changed since then. Each directory must be used by a single daemon at a time: the journal
+	 * is closed once the daemon terminates, and opened again if it is restarted (see {@link ScanDaemon#closeJournal()}).
+	 * <br>By default, the detected servers are only kept in memory.
+	 * </p>
+	 * @param journalDirectory - the journal directory, which will be created if it doesn't exist.
+	 * @return
+	 * @see brv.tools.store.StateJournal
+	 */
+	public ScanDaemonBuilder withJournal(Path journalDirectory) {
+		this.journalDirectory = Objects.requireNonNull(journalDirectory);
+		return this;
+	}
+	
+	/**
+	 * Orders the probes of each cycle using the neighbor table of the Linux kernel, <code>/proc/net/arp</code>.
+	 * <p>
+	 * Targets whose hardware address has been resolved by the kernel are probed first on each cycle, and targets whose
+	 * address could not be resolved are probed last. On sparse directly connected networks, the servers which are up
+	 * are found at the start of each cycle, instead of waiting for the probes to empty addresses.
+	 * </p>
+	 * @return
+	 * @see NeighborPrefilter
+	 */
+	public ScanDaemonBuilder withNeighborPrefilter() {
+		return withNeighborPrefilter(NeighborPrefilter.DEFAULT_TABLE);
+	}
+	
+	/**
+	 * Orders the probes of each cycle using a neighbor table in the format of <code>/proc/net/arp</code>.
+	 * @param neighborTable - the neighbor table file.
+	 * @return
+	 * @see #withNeighborPrefilter()
+	 */
+	public ScanDaemonBuilder withNeighborPrefilter(Path neighborTable) {
+		this.neighborTable = Objects.requireNonNull(neighborTable);
+		return this;
+	}
+	
+	/**
+	 * Sets the daemon to only check if the TCP port is accepting connections, without performing any protocol handshake.
+	 * <p>
+	 * Connects are non-blocking, so it is recommended to combine it with a high {@link #withParallelism(int) parallelism}.
+	 * </p>
+	 * @return
+	 * @see TcpScanDaemon
+	 */
+	public ScanDaemonBuilder withConnectOnly() {
+		this.connectOnly = true;
+		return this;
+	}
+	
+	/**
+	 * Sets an HTTPS daemon to only check if the server completes the TLS handshake, without sending any HTTP request.
+	 * <p>
+	 * On a multi protocol daemon, it only applies to {@link Protocol.HTTPS}.
+	 * </p>
+	 * @return
+	 * @see HttpsScanDaemon
+	 */
+	public ScanDaemonBuilder withHandshakeOnly() {
+		this.handshakeOnly = true;
+		return this;
+	}
+	
+	/**
+	 * Sets the context used to establish the connections of an HTTPS daemon, instead of the one shared by all the daemons
+	 * of the JVM.
+	 * <p>
+	 * Its trust managers decide which server certificates are accepted, and its client session cache keeps the sessions to
+	 * be resumed on the next cycles.
+	 * </p>
+	 * @param sslContext - an initialized context.
+	 * @return
+	 * @see HttpsProbeEngine
+	 */
+	public ScanDaemonBuilder withSslContext(SSLContext sslContext) {
+		this.sslContext = Objects.requireNonNull(sslContext);
+		return this;
+	}
+	
+	/**
+	 * Sets the engine sending the requests of an HTTP daemon, instead of the one shared by all the daemons of the JVM.
+	 * <p>
+	 * The engine bounds the requests in flight, both in total and per route, so it decides how many hosts the daemon
+	 * probes at the same time. By default, the {@link HttpProbeEngine#getShared() shared engine} allows
+	 * {@link HttpProbeEngine#DEFAULT_MAX_IN_FLIGHT} requests in flight and {@link HttpProbeEngine#DEFAULT_MAX_PER_ROUTE} per route.
+	 * The engine is not closed by the daemon, so it can be given to several daemons.
+	 * </p>
+	 * @param httpProbeEngine - the engine, usually created with {@link HttpProbeEngine#HttpProbeEngine(int, int)}.
+	 * @return
+	 */
+	public ScanDaemonBuilder withHttpProbeEngine(HttpProbeEngine httpProbeEngine) {
+		this.httpProbeEngine = Objects.requireNonNull(httpProbeEngine);
+		return this;
+	}
+	
+	/**
+	 * Sets the ports a protocol of a multi protocol daemon will be scanned on, replacing its default port.
+	 * @param protocol - one of the protocols given to {@link #forProtocols(Protocol...)}.
+	 * @param ports
+	 * @return
+	 * @throws IllegalStateException When the builder is not a {@link #forProtocols(Protocol...) multi protocol} builder.
+	 * @throws IllegalArgumentException When the protocol was not given to {@link #forProtocols(Protocol...)} or no ports are given.
+	 */
+	public ScanDaemonBuilder withPorts(Protocol protocol, int... ports) {
+		
+		if(channels == null)
+			throw new IllegalStateException("Ports can only be set by protocol on multi protocol daemons.");
+		
+		if(!channels.containsKey(protocol))
+			throw new IllegalArgumentException("Protocol " + protocol + " is not scanned by this daemon.");
+		
+		if((ports == null) || (ports.length == 0))
+			throw new IllegalArgumentException("At least one port must be selected.");
+		
+		channels.put(protocol, Arrays.copyOf(ports, ports.length));
+		return this;
+	}
+	
 	
 	
 	public Protocol getProtocol() {
@@ -81,6 +488,98 @@ public class ScanDaemonBuilder{
 		return sleep;
 	}
 
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public double getRateLimit() {
+		return rateLimit;
+	}
+
+	public int getDrainTimeout() {
+		return drainTimeout;
+	}
+
+	public boolean isAdaptiveTimeout() {
+		return adaptiveTimeout;
+	}
+
+	public int getTimeoutFloor() {
+		return timeoutFloor;
+	}
+
+	public int getTimeoutCeiling() {
+		return timeoutCeiling;
+	}
+
+	public boolean isLivenessScheduling() {
+		return livenessScheduling;
+	}
+
+	public int getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public int getSweepInterval() {
+		return sweepInterval;
+	}
+
+	public String[] getTargets() {
+		return targets;
+	}
+
+	public long getDetectedServersBudget() {
+		return detectedServersBudget;
+	}
+
+	public HostnameResolver getHostnameResolver() {
+		return (hostnameResolver != null) ? hostnameResolver : HostnameResolver.getShared();
+	}
+
+	public int getChangeFeedCapacity() {
+		return changeFeedCapacity;
+	}
+	
+	public int getListenerQueueCapacity() {
+		return listenerQueueCapacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public boolean isConnectOnly() {
+		return connectOnly;
+	}
+
+	public Path getJournalDirectory() {
+		return journalDirectory;
+	}
+	
+	public Path getNeighborTable() {
+		return neighborTable;
+	}
+	
+	public LongPredicate getHostFilter() {
+		return hostFilter;
+	}
+	
+	public boolean isHandshakeOnly() {
+		return handshakeOnly;
+	}
+	
+	public SSLContext getSslContext() {
+		return sslContext;
+	}
+	
+	public HttpProbeEngine getHttpProbeEngine() {
+		return httpProbeEngine;
+	}
+	
+	public Map<Protocol, int[]> getChannels() {
+		return channels;
+	}
+
 	/**
 	 * Builds an ScanDaemon instance.
 	 * <p>
@@ -91,18 +590,42 @@ public class ScanDaemonBuilder{
 	 *  <li>{@link Protocol.HTTPS}</li>
 	 * </ul>
 	 * <p>
+	 * Any protocol excepting {@link Protocol.ICMP} can also be scanned with a {@link TcpScanDaemon} by using {@link #withConnectOnly()}.
+	 * </p>
+	 * <p>
 	 * @return <code>ScanDaemon</code> - A daemon which is ready to be launched.
 	 * @throws UnknownHostException
 	 * @throws UnsupportedOperationException if protocol is not one of the supported ones.
+	 * @throws IllegalArgumentException if a connect only daemon is requested for {@link Protocol.ICMP}.
+	 * @throws IllegalArgumentException if a handshake only daemon is requested for any protocol but {@link Protocol.HTTPS}.
+	 * @throws IllegalArgumentException if {@link #withPort(int)} is used on a multi protocol daemon.
 	 */
 	public ScanDaemon build() throws UnknownHostException {
 		
 		ScanDaemon result;
 		
+		if(channels != null) {
+			if(!defaultPort)
+				throw new IllegalArgumentException("Ports of a multi protocol daemon must be set with withPorts(Protocol, int...).");
+			
+			this.port = protocol.getDefaultPort();
+			return new MultiProtocolScanDaemon(this);
+		}
+		
 		// If no port has been initialized, the default port will be the one defined by the Protocol enum.
 		if(defaultPort)
 			this.port = protocol.getDefaultPort();
 		
+		if(handshakeOnly && (protocol != Protocol.HTTPS))
+			throw new IllegalArgumentException("Only HTTPS daemons can check the TLS handshake only.");
+		
+		if(connectOnly) {
+			if(protocol == Protocol.ICMP)
+				throw new IllegalArgumentException("ICMP has no transport port to connect to.");
+			
+			return new TcpScanDaemon(this);
+		}
+		
 		switch(protocol) {
 			case ICMP:
 				result = new IcmpScanDaemon(this);
@@ -0,0 +1,138 @@
+package brv.tools.daemons;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Runs many daemons on a shared set of threads, instead of a dedicated thread per daemon.
+ * <p>
+ * Two execution modes are available:
+ * </p>
+ * <ul>
+ * 	<li>{@link #pooled(int) Pooled}: daemons are run cooperatively on a fixed pool of threads. Each probe is a
+ * 	short task on the pool, so any number of daemons can share a few threads and no daemon starves the others.
+ * 	Probes are dispatched without blocking the pool while waiting for a free slot, and non-blocking pings
+ * 	(such as connect only and HTTP ones) don't hold any thread while waiting for a reply.</li>
+ * 	<li>{@link #virtualThreads() Virtual threads}: each daemon runs on its own virtual thread, as well as its
+ * 	probe workers. Only available when running on a JDK supporting them (21 or later).</li>
+ * </ul>
+ * <p>
+ * A scheduler is used by starting the daemons with {@link ScanDaemon#start(ScanScheduler)}, or by giving it to a
+ * {@link brv.tools.daemons.manager.ScanDaemonManagerMap ScanDaemonManagerMap}.
+ * </p>
+ * @author flash
+ *
+ */
+public final class ScanScheduler implements Closeable {
+
+	// Pooled mode executor, null on virtual threads mode.
+	private final ScheduledExecutorService pool;
+
+	// Creates the threads of any daemon and probe worker.
+	private final ThreadFactory threadFactory;
+
+	private ScanScheduler(ScheduledExecutorService pool, ThreadFactory threadFactory) {
+		this.pool = pool;
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Creates a scheduler running the daemons cooperatively on a fixed pool of threads.
+	 * @param threads - the number of threads of the pool.
+	 * @return <code>ScanScheduler</code> - the scheduler.
+	 * @throws IllegalArgumentException When <code>threads < 1</code>
+	 */
+	public static ScanScheduler pooled(int threads) {
+
+		if(threads < 1)
+			throw new IllegalArgumentException("Threads must be greater than 0.");
+
+		ThreadFactory threadFactory = new NamedThreadFactory("ScanScheduler");
+		return new ScanScheduler(new ScheduledThreadPoolExecutor(threads, threadFactory), threadFactory);
+	}
+
+	/**
+	 * Creates a scheduler running each daemon on its own virtual thread.
+	 * @return <code>ScanScheduler</code> - the scheduler.
+	 * @throws UnsupportedOperationException When virtual threads are not supported by the running JDK.
+	 * @see #isVirtualThreadsSupported()
+	 */
+	public static ScanScheduler virtualThreads() {
+
+		ThreadFactory threadFactory = createVirtualThreadFactory();
+		if(threadFactory == null)
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JDK.");
+
+		return new ScanScheduler(null, threadFactory);
+	}
+
+	/**
+	 * Checks if the running JDK supports virtual threads.
+	 * @return <code>true</code> - if {@link #virtualThreads()} can be used.
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return createVirtualThreadFactory() != null;
+	}
+
+	/**
+	 * Checks if the daemons run cooperatively on a fixed pool of threads.
+	 * @return <code>true</code> - if this is a {@link #pooled(int) pooled} scheduler.
+	 */
+	public boolean isPooled() {
+		return pool != null;
+	}
+
+	/**
+	 * Stops the scheduler threads.
+	 * <p>
+	 * Daemons should be stopped before closing their scheduler. On pooled mode, any daemons still running
+	 * won't scan any other host.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		if(pool != null)
+			pool.shutdownNow();
+	}
+
+	/**
+	 * Returns the pool running the daemons on pooled mode.
+	 * @return <code>ScheduledExecutorService</code> - the pool, or <code>null</code> on virtual threads mode.
+	 */
+	ScheduledExecutorService getPool() {
+		return pool;
+	}
+
+	/**
+	 * Returns the factory of the daemon and probe worker threads.
+	 * @return <code>ThreadFactory</code> - the factory.
+	 */
+	ThreadFactory getThreadFactory() {
+		return threadFactory;
+	}
+
+	/**
+	 * Builds a virtual thread factory by reflection, so the scanner can still be run on older JDKs.
+	 * @return <code>ThreadFactory</code> - the factory, or <code>null</code> if virtual threads are not supported.
+	 */
+	private static ThreadFactory createVirtualThreadFactory() {
+
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+			Method name = builderClass.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, "ScanScheduler-virtual-", 1L);
+
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package brv.tools.daemons;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import brv.tools.probes.TcpConnectEngine;
+
+/**
+ * Scans for servers just checking if their TCP port is accepting connections.
+ * <p>
+ * No protocol handshake is performed at all. The connects are done by the {@link TcpConnectEngine} shared by all the
+ * daemons of the JVM, so no thread is blocked while waiting for the servers to reply. 
+ * <br>It can be built for any protocol running over TCP using {@link ScanDaemonBuilder#withConnectOnly()} method.
+ * </p>
+ * @author flash
+ *
+ */
+public class TcpScanDaemon extends ScanDaemon {
+
+	private TcpConnectEngine engine;
+	
+	protected TcpScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
+		
+		// Calls the super constructor to validate and initialize all the attributes
+		super(builder);
+		
+		try {
+			engine = TcpConnectEngine.getShared();
+		} catch (IOException e) {
+			throw new IllegalStateException("TCP connect engine could not be started.", e);
+		}
+	}
+
+	@Override
+	public boolean ping(String ip) {
+		return ping(ip, getConnectTimeout(ip), getReadTimeout(ip));
+	}
+
+	@Override
+	protected boolean ping(String ip, int connectTimeout, int readTimeout) {
+		return engine.isOpen(ip, port, connectTimeout);
+	}
+	
+	@Override
+	protected CompletableFuture<Boolean> pingAsync(String ip, int connectTimeout, int readTimeout, Executor executor) {
+		return engine.connect(ip, port, connectTimeout);
+	}
+
+}
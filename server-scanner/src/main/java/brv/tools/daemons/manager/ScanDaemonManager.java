@@ -1,10 +1,15 @@
 package brv.tools.daemons.manager;
 
 import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 import brv.tools.daemons.ScanDaemon;
 import brv.tools.daemons.exceptions.ScanDaemonNotFoundException;
+import brv.tools.model.BulkOperationReport;
 import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanDaemonStats;
+import brv.tools.model.ScanResult;
 
 /**
  * Defines the contract for a container-manager of {@link brv.tools.daemons.ScanDaemon ScanDaemon} objects.
@@ -28,10 +33,18 @@ import brv.tools.model.ScanDaemonConfiguration;
  * 	<li><strong>Individually:</strong> to the daemon which has the specified <code>daemonId</code> obtainable from {@link brv.tools.daemons.ScanDaemon#getId() ScanDaemon.getId()}.</li>
  * 	<li><strong>Massively:</strong> applying the same action to any managed daemons.
  * </ul>
+ * <p>
+ * Massive actions can also be performed by {@link ScanDaemonManager#resumeAll() resumeAll()}, {@link ScanDaemonManager#stopAll() stopAll()},
+ * {@link ScanDaemonManager#interruptAll() interruptAll()} and {@link ScanDaemonManager#removeAll() removeAll()}, which report the outcome
+ * of the action on each daemon as a {@link brv.tools.model.BulkOperationReport BulkOperationReport}.
+ * </p>
  * 
  * <strong>Information about managed daemons</strong>
  * <p>
  * Finally, the {@link ScanDaemonManager#findAllDaemons() findAllDaemons} should allow to generate a list of {@link brv.tools.model#ScanDaemonConfiguration ScanDaemonConfiguration} for informative uses. 
+ * In the same way, {@link ScanDaemonManager#findStats() findStats} generates a list of {@link brv.tools.model.ScanDaemonStats ScanDaemonStats}
+ * to monitor how the daemons are performing, and {@link ScanDaemonManager#getPublisher() getPublisher} streams the results
+ * of all of them.
  * </p>
  * @author flash
  *
@@ -109,6 +122,46 @@ public interface ScanDaemonManager {
 	 */
 	boolean remove();
 	
+	/**
+	 * Resumes the execution of any stopped daemons.
+	 * @return <code>BulkOperationReport</code> - the outcome on each daemon, applied if it has started running.
+	 */
+	BulkOperationReport resumeAll();
+	
+	/**
+	 * Stops the execution of any running daemons.
+	 * @return <code>BulkOperationReport</code> - the outcome on each daemon, applied if it has been stopped.
+	 */
+	BulkOperationReport stopAll();
+	
+	/**
+	 * Hard-stops the execution of any running daemons.
+	 * @return <code>BulkOperationReport</code> - the outcome on each daemon, applied if it has been stopped.
+	 */
+	BulkOperationReport interruptAll();
+	
+	/**
+	 * Deletes any existing daemons.
+	 * <p>
+	 * Any removed daemons will be also stopped.
+	 * </p>
+	 * @return <code>BulkOperationReport</code> - the outcome on each removed daemon, applied if it has also been stopped.
+	 */
+	BulkOperationReport removeAll();
+	
+	/**
+	 * Waits until every managed daemon, and every daemon removed from the manager, has terminated.
+	 * <p>
+	 * It is meant to be invoked after {@link #stopAll()}, {@link #interruptAll()} or {@link #removeAll()}, so the 
+	 * probes in flight have completed once it returns. Daemons which are still running are waited for too.
+	 * </p>
+	 * @param timeout - the maximum time to wait.
+	 * @param unit - the unit of the timeout.
+	 * @return <code>true</code> - if every daemon has terminated, <code>false</code> if the timeout expired before.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+	
 	/**
 	 * Verifies if there is any daemon with the specified id on the manager.
 	 * @param daemonId - the daemon id to be found
@@ -128,5 +181,27 @@ public interface ScanDaemonManager {
 	 * @return
 	 */
 	List<ScanDaemonConfiguration> find();
+	
+	/**
+	 * Finds the runtime statistics of an specific daemon added to the manager.
+	 * @param daemonId - the daemon to be found.
+	 * @return <code>ScanDaemonStats</code> - the daemon statistics, <code>null</code> if there is no daemon on that id.
+	 */
+	ScanDaemonStats findStats(long daemonId);
+	
+	/**
+	 * Returns a list with the runtime statistics of all the daemons added to the manager.
+	 * @return
+	 */
+	List<ScanDaemonStats> findStats();
+	
+	/**
+	 * Returns a publisher merging the results notified by all the daemons added to the manager.
+	 * <p>
+	 * Results are only delivered as each subscriber requests them, so subscribers can consume them at their own rate.
+	 * </p>
+	 * @return <code>Flow.Publisher</code> - the publisher of the results of every managed daemon.
+	 */
+	Flow.Publisher<ScanResult> getPublisher();
 
 }
@@ -1,16 +1,31 @@
 package brv.tools.daemons.manager;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanScheduler;
 import brv.tools.daemons.exceptions.ScanDaemonNotFoundException;
+import brv.tools.events.EventBus;
+import brv.tools.events.EventPublisher;
+import brv.tools.model.BulkOperationReport;
+import brv.tools.model.OperationOutcome;
 import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ScanDaemonStats;
+import brv.tools.stats.JmxExporter;
+import brv.tools.util.NamedThreadFactory;
 
 /**
  * Implements the {@link ScanDaemonManager} interface as a map of daemons.
@@ -21,127 +36,203 @@ import brv.tools.model.ScanDaemonConfiguration;
  * <p>
  * On this implementation, any daemons will be stored as a map of using {@link ScanDaemon#getId()} as an unique key and {@link ScanDaemon} as a value.
  * </p>
+ * <p>
+ * The manager is thread-safe. Daemons are looked up without locking, and every action on a daemon is performed atomically
+ * with respect to any other action on the same id, so a daemon can't be resumed after being removed by another thread.
+ * Actions only hold a lock of their own id, so starting or stopping a daemon never delays the actions on other daemons.
+ * Listing the managed daemons never fails while daemons are being added or removed, although the changes made meanwhile
+ * might not be seen.
+ * </p>
+ * <p>
+ * Massive actions are split between a few worker threads, so they take a fraction of the time of applying the action
+ * to each daemon in turn.
+ * </p>
+ * <p>
+ * By default, each daemon runs on its own thread. When the manager is created with a {@link ScanScheduler}, all the
+ * managed daemons are run on that scheduler instead, so thousands of daemons can be hosted without a thread per daemon.
+ * </p>
+ * <p>
+ * A manager {@link #ScanDaemonManagerMap(ScanScheduler, boolean) sharing sweeps} doesn't run overlapping daemons on their own:
+ * a daemon whose targets are covered by another daemon sending the same probes follows its sweep instead, receiving its
+ * results through its own listeners. Every daemon keeps its own lifecycle, so stopping it only stops its sweep once no other
+ * running daemon follows it. The configurations of the daemons report them as running while they are following a sweep.
+ * </p>
+ * <p>
+ * The statistics of the managed daemons are published through JMX (see {@link JmxExporter}) until they are removed.
+ * </p>
+ * <p>
+ * The results of every managed daemon are merged on a single {@link #getPublisher() publisher}.
+ * </p>
  * @author flash
  *
  */
 public class ScanDaemonManagerMap implements ScanDaemonManager {
 
+	/**
+	 * Number of threads massive actions are split between.
+	 */
+	public static final int BULK_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors());
+	
 	/**
 	 * ScanDaemon container.
 	 * <p>
 	 * The long corresponds to the {@link ScanDaemon#getId()} unique id.
 	 * </p>
 	 */
-	private Map<Long, ScanDaemon> daemons = new HashMap<>();
+	private final Map<Long, ScanDaemon> daemons = new ConcurrentHashMap<>();
+	
+	/**
+	 * Locks of the ids being acted on, released once their id is no longer managed.
+	 */
+	private final Map<Long, Object> locks = new ConcurrentHashMap<>();
+	
+	/**
+	 * Removed daemons which might still be draining their probes.
+	 */
+	private final Set<ScanDaemon> released = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * Scheduler the daemons are run on, null to run each daemon on its own thread.
+	 */
+	private final ScanScheduler scheduler;
+	
+	/**
+	 * Merges the results of all the managed daemons.
+	 */
+	private final EventPublisher<ScanResult> publisher = ScanDaemon.newResultPublisher(EventBus.DEFAULT_CAPACITY, EventBus.DEFAULT_POLICY);
+	
+	/**
+	 * Workers of the massive actions. Idle workers are released, so an unused manager holds no threads.
+	 */
+	private final ThreadPoolExecutor bulkWorkers;
+	
+	/**
+	 * Shares the sweeps of overlapping daemons, null when each daemon runs its own sweep.
+	 */
+	private final SweepSharing sharing;
+	
+	/**
+	 * Constructor for ScanDaemonManagerMap, running each daemon on its own thread.
+	 */
+	public ScanDaemonManagerMap() {
+		this(null, false);
+	}
+	
+	/**
+	 * Constructor for ScanDaemonManagerMap, running all the daemons on a shared scheduler.
+	 * @param scheduler - the scheduler the daemons will be run on.
+	 */
+	public ScanDaemonManagerMap(ScanScheduler scheduler) {
+		this(Objects.requireNonNull(scheduler), false);
+	}
+	
+	/**
+	 * Constructor for ScanDaemonManagerMap, choosing whether overlapping daemons share their sweeps.
+	 * @param scheduler - the scheduler the daemons will be run on, <code>null</code> to run each daemon on its own thread.
+	 * @param shareSweeps - whether daemons covered by another daemon follow its sweep instead of running their own.
+	 */
+	public ScanDaemonManagerMap(ScanScheduler scheduler, boolean shareSweeps) {
+		this.scheduler = scheduler;
+		this.bulkWorkers = newBulkWorkers();
+		this.sharing = shareSweeps ? new SweepSharing(scheduler) : null;
+	}
 	
 
 	@Override
 	public boolean add(ScanDaemon daemon) {
 		Objects.requireNonNull(daemon);
 		
-		daemons.put(daemon.getId(), daemon);
-		return daemon.start();
+		return withLock(daemon.getId(), () -> {
+			
+			ScanDaemon previous = daemons.get(daemon.getId());
+			
+			// The replaced daemon is no longer managed, so its sweep must not be left running.
+			if((previous != null) && (previous != daemon))
+				release(previous);
+			
+			daemon.attach(publisher);
+			JmxExporter.register(daemon);
+			boolean result = start(daemon);
+			daemons.put(daemon.getId(), daemon);
+			return result;
+		});
 	}
 	
 	public boolean resume(long daemonId) throws ScanDaemonNotFoundException {
-
-		ScanDaemon daemon = daemons.get(daemonId);
-		
-		if(daemon == null)
-			throw new ScanDaemonNotFoundException(daemonId);
-		
-		return daemon.start();
-		
+		return apply(daemonId, this::start, false);
 	}
 
 	public boolean stop(long daemonId) throws ScanDaemonNotFoundException {
-		
-		ScanDaemon daemon = daemons.get(daemonId);
-		
-		if(daemon == null)
-			throw new ScanDaemonNotFoundException(daemonId);
-		
-		return daemon.stop();
+		return apply(daemonId, this::stop, false);
 	}
 	
 	public boolean interrupt(long daemonId) throws ScanDaemonNotFoundException {
-		
-
-		ScanDaemon daemon = daemons.get(daemonId);
-		
-		if(daemon == null)
-			throw new ScanDaemonNotFoundException(daemonId);
-		
-		return daemon.interrupt();
-
+		return apply(daemonId, this::interrupt, false);
 	}
 	
-
 	public boolean remove(long daemonId) throws ScanDaemonNotFoundException {
-		
-		ScanDaemon daemon = daemons.get(daemonId);
-		
-		if(daemon == null)
-			throw new ScanDaemonNotFoundException(daemonId);
-		
-		daemon.stop();
-		daemons.remove(daemonId);
-		
+		pruneReleased();
+		apply(daemonId, this::release, true);
 		return true;
 	}
 
 	@Override
 	public boolean resume() {
-		
-		
-		boolean result = false;
-		
-		for(Entry<Long,ScanDaemon> entry : daemons.entrySet()) {
-			result |= entry.getValue().start();
-		}
-		
-		return result;
+		return resumeAll().isAnyApplied();
 	}
 
 	public boolean stop() {
-		
-		boolean result = false;
-		
-		for(Entry<Long,ScanDaemon> entry : daemons.entrySet()) {
-			result |= entry.getValue().stop();
-		}
-		
-		return result;
+		return stopAll().isAnyApplied();
 	}
 	
 	public boolean interrupt() {
-		
-		boolean result = false;
-		
-		for(Entry<Long,ScanDaemon> entry : daemons.entrySet()) {
-			result |= entry.getValue().interrupt();
-		}
-		
-		return result;
+		return interruptAll().isAnyApplied();
 	}
 	
 	public boolean remove() {
+		return removeAll().isAnyApplied();
+	}
+	
+	@Override
+	public BulkOperationReport resumeAll() {
+		return applyAll("resume", this::start, false);
+	}
+	
+	@Override
+	public BulkOperationReport stopAll() {
+		return applyAll("stop", this::stop, false);
+	}
+	
+	@Override
+	public BulkOperationReport interruptAll() {
+		return applyAll("interrupt", this::interrupt, false);
+	}
+	
+	@Override
+	public BulkOperationReport removeAll() {
+		pruneReleased();
+		return applyAll("remove", this::release, true);
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
 		
-		boolean result = false;
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
 		
-		Iterator<Long> iterator = daemons.keySet().iterator();
-		Long daemonId;
+		List<ScanDaemon> pending = new ArrayList<>(daemons.values());
+		pending.addAll(released);
 		
-		while (iterator.hasNext())
-		{
-			daemonId = iterator.next();
-			result |= daemons.get(daemonId).stop();
-			iterator.remove();
-		 }
+		for(ScanDaemon daemon : pending) {
+			
+			if(!daemon.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+				return false;
+			
+			released.remove(daemon);
+		}
 		
-		return result;
+		return true;
 	}
-
+	
 	public boolean contains(long daemonId) {
 		return daemons.containsKey(daemonId);
 	}
@@ -149,22 +240,250 @@ public class ScanDaemonManagerMap implements ScanDaemonManager {
 	public ScanDaemonConfiguration find(long daemonId) {
 
 		ScanDaemon daemon = daemons.get(daemonId);
-		return (daemon != null) ? daemon.getConfiguration() : null;	
+		return (daemon != null) ? getConfiguration(daemon) : null;	
 	}
 
 	public List<ScanDaemonConfiguration> find() {
 		List<ScanDaemonConfiguration> result = new LinkedList<>();
 
-		for (Entry<Long,ScanDaemon> entry : daemons.entrySet()) {
-			result.add(entry.getValue().getConfiguration());
+		for (ScanDaemon daemon : daemons.values()) {
+			result.add(getConfiguration(daemon));
 		  }
 		
 		return result;
 	}
+	
+	public ScanDaemonStats findStats(long daemonId) {
 
+		ScanDaemon daemon = daemons.get(daemonId);
+		return (daemon != null) ? daemon.getStats() : null;
+	}
 
+	public List<ScanDaemonStats> findStats() {
+		List<ScanDaemonStats> result = new LinkedList<>();
 
+		for (ScanDaemon daemon : daemons.values()) {
+			result.add(daemon.getStats());
+		}
 
-
+		return result;
+	}
+	
+	/**
+	 * Returns the publisher merging the results of all the managed daemons.
+	 * <p>
+	 * Daemons are merged while they are managed, so a subscriber receives the results of the daemons added after subscribing too.
+	 * </p>
+	 */
+	public EventPublisher<ScanResult> getPublisher() {
+		return publisher;
+	}
+	
+	/**
+	 * Returns the number of sweeps running for the managed daemons.
+	 * <p>
+	 * Without sharing sweeps, it is the number of running daemons.
+	 * </p>
+	 * @return <code>int</code> - the number of daemons scanning on their own.
+	 */
+	public int getSweeps() {
+		
+		if(sharing != null)
+			return sharing.getSweeps();
+		
+		int sweeps = 0;
+		for(ScanDaemon daemon : daemons.values())
+			if(daemon.isRunning())
+				sweeps++;
+		
+		return sweeps;
+	}
+	
+	/**
+	 * Returns the configuration of a daemon, which is running while it is following a shared sweep.
+	 */
+	private ScanDaemonConfiguration getConfiguration(ScanDaemon daemon) {
+		
+		ScanDaemonConfiguration configuration = daemon.getConfiguration();
+		if(sharing != null)
+			configuration.setRunning(sharing.isSubscribed(daemon));
+		
+		return configuration;
+	}
+	
+	/**
+	 * Starts a daemon on the manager scheduler, or on its own thread if there is none.
+	 */
+	private boolean start(ScanDaemon daemon) {
+		
+		if(sharing != null)
+			return sharing.subscribe(daemon);
+		
+		return (scheduler != null) ? daemon.start(scheduler) : daemon.start();
+	}
+	
+	private boolean stop(ScanDaemon daemon) {
+		return (sharing != null) ? sharing.unsubscribe(daemon, false) : daemon.stop();
+	}
+	
+	private boolean interrupt(ScanDaemon daemon) {
+		return (sharing != null) ? sharing.unsubscribe(daemon, true) : daemon.interrupt();
+	}
+	
+	/**
+	 * Stops a daemon which is no longer managed, closing its journal once it has terminated.
+	 */
+	private boolean release(ScanDaemon daemon) {
+		boolean result = stop(daemon);
+		if(!daemon.isTerminated())
+			released.add(daemon);
+		daemon.closeJournal();
+		daemon.detach(publisher);
+		JmxExporter.unregister(daemon);
+		return result;
+	}
+	
+	/**
+	 * Forgets the removed daemons which have already terminated, so they are not kept until the manager is awaited.
+	 */
+	private void pruneReleased() {
+		released.removeIf(ScanDaemon::isTerminated);
+	}
+	
+	/**
+	 * Applies an action to a daemon while no other action can be applied to its id.
+	 */
+	private boolean apply(long daemonId, Predicate<ScanDaemon> action, boolean removing) throws ScanDaemonNotFoundException {
+		
+		if(!daemons.containsKey(daemonId))
+			throw new ScanDaemonNotFoundException(daemonId);
+		
+		Boolean result = withLock(daemonId, () -> {
+			
+			ScanDaemon daemon = daemons.get(daemonId);
+			return (daemon != null) ? test(daemon, action, removing) : null;
+		});
+		
+		if(result == null)
+			throw new ScanDaemonNotFoundException(daemonId);
+		
+		return result;
+	}
+	
+	/**
+	 * Applies an action to a managed daemon, removing it once the action succeeds if requested.
+	 * <p>
+	 * Must be called holding the lock of the daemon id.
+	 * </p>
+	 */
+	private boolean test(ScanDaemon daemon, Predicate<ScanDaemon> action, boolean removing) {
+		
+		boolean result = action.test(daemon);
+		if(removing)
+			daemons.remove(daemon.getId());
+		
+		return result;
+	}
+	
+	/**
+	 * Runs a task holding the lock of an id, so no other action can be applied to it meanwhile.
+	 * <p>
+	 * The task is run out of the daemons map, so looking up daemons and acting on other ids is never blocked by it,
+	 * however long it takes. The lock is released once its id is no longer managed.
+	 * </p>
+	 */
+	private <T> T withLock(long daemonId, Supplier<T> task) {
+		
+		while(true) {
+			
+			Object lock = locks.computeIfAbsent(daemonId, key -> new Object());
+			
+			synchronized(lock) {
+				
+				// Released meanwhile, so another thread might be holding a new lock of the id.
+				if(locks.get(daemonId) != lock)
+					continue;
+				
+				try {
+					return task.get();
+				} finally {
+					if(!daemons.containsKey(daemonId))
+						locks.remove(daemonId, lock);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Applies an action to every managed daemon, splitting them between the bulk workers.
+	 * <p>
+	 * Daemons added meanwhile might not be included, and daemons removed before their turn are not reported.
+	 * </p>
+	 */
+	private BulkOperationReport applyAll(String operation, Predicate<ScanDaemon> action, boolean removing) {
+		
+		long start = System.nanoTime();
+		
+		List<ScanDaemon> targets = new ArrayList<>(daemons.values());
+		Map<Long, OperationOutcome> outcomes = new ConcurrentHashMap<>();
+		Map<Long, String> errors = new ConcurrentHashMap<>();
+		
+		int slices = Math.min(BULK_PARALLELISM, targets.size());
+		List<CompletableFuture<Void>> workers = new ArrayList<>(slices);
+		
+		// The calling thread takes the first slice.
+		for(int slice = 1; slice < slices; slice++) {
+			int first = slice;
+			workers.add(CompletableFuture.runAsync(() -> applySlice(targets, first, slices, action, removing, outcomes, errors), bulkWorkers));
+		}
+		
+		if(slices > 0)
+			applySlice(targets, 0, slices, action, removing, outcomes, errors);
+		
+		CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+		
+		BulkOperationReport report = new BulkOperationReport();
+		report.setOperation(operation);
+		report.getOutcomes().putAll(outcomes);
+		report.getErrors().putAll(errors);
+		report.setDuration(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		
+		return report;
+	}
+	
+	/**
+	 * Applies an action to every <code>step</code>-th daemon, starting at <code>first</code>.
+	 */
+	private void applySlice(List<ScanDaemon> targets, int first, int step, Predicate<ScanDaemon> action, boolean removing,
+							Map<Long, OperationOutcome> outcomes, Map<Long, String> errors) {
+		
+		for(int i = first; i < targets.size(); i += step) {
+			
+			ScanDaemon target = targets.get(i);
+			
+			try {
+				withLock(target.getId(), () -> {
+					
+					// Removed or replaced by another daemon meanwhile.
+					if(daemons.get(target.getId()) != target)
+						return null;
+					
+					OperationOutcome outcome = test(target, action, removing) ? OperationOutcome.APPLIED : OperationOutcome.UNCHANGED;
+					return outcomes.put(target.getId(), outcome);
+				});
+			} catch (RuntimeException e) {
+				outcomes.put(target.getId(), OperationOutcome.FAILED);
+				errors.put(target.getId(), String.valueOf(e.getMessage()));
+			}
+		}
+	}
+	
+	private static ThreadPoolExecutor newBulkWorkers() {
+		
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(BULK_PARALLELISM, BULK_PARALLELISM, 30, TimeUnit.SECONDS, 
+															new LinkedBlockingQueue<>(), new NamedThreadFactory("ScanDaemonManager-bulk"));
+		workers.allowCoreThreadTimeOut(true);
+		return workers;
+	}
 
 }
@@ -0,0 +1,177 @@
+package brv.tools.daemons.manager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import brv.tools.daemons.ObservableDaemon;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanScheduler;
+import brv.tools.model.ScanResult;
+import brv.tools.targets.ScanTargets;
+
+/**
+ * Shares the sweeps of the daemons of a manager, so overlapping daemons probe each host only once.
+ * <p>
+ * Subscribed daemons are grouped by their {@link ScanDaemon#getSweepKey() sweep key}. On each group, a daemon covered
+ * by another subscribed daemon (see {@link ScanDaemon#covers(ScanDaemon)}) doesn't scan: it follows that daemon, whose
+ * notifications about its own targets are forwarded to its listeners. Daemons with more targets are chosen to scan first,
+ * so each group runs as few sweeps as possible.
+ * </p>
+ * <p>
+ * Every daemon stays a subscriber with its own listeners and lifecycle. Unsubscribing a daemon only stops its sweep
+ * once no other subscribed daemon follows it, otherwise the sweep is handed over to the daemons it was covering.
+ * </p>
+ * @author flash
+ *
+ */
+final class SweepSharing {
+
+	/**
+	 * Scheduler the sweeps are run on, null to run each sweep on its own thread.
+	 */
+	private final ScanScheduler scheduler;
+
+	/**
+	 * Subscribed daemons, grouped by their sweep key.
+	 */
+	private final Map<String, Set<ScanDaemon>> groups = new HashMap<>();
+
+	/**
+	 * Subscribed daemons running their own sweep.
+	 */
+	private final Set<ScanDaemon> scanning = new HashSet<>();
+
+	SweepSharing(ScanScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Subscribes a daemon, either following an overlapping sweep or running its own.
+	 * @return <code>true</code> - if the daemon was not subscribed yet.
+	 */
+	synchronized boolean subscribe(ScanDaemon daemon) {
+
+		Set<ScanDaemon> group = groups.computeIfAbsent(daemon.getSweepKey(), key -> new HashSet<>());
+		if(!group.add(daemon))
+			return false;
+
+		regroup(group);
+		return true;
+	}
+
+	/**
+	 * Unsubscribes a daemon, stopping its sweep if it was running one.
+	 * @param interrupt - whether its sweep must be interrupted instead of stopped.
+	 * @return <code>true</code> - if the daemon was subscribed.
+	 */
+	synchronized boolean unsubscribe(ScanDaemon daemon, boolean interrupt) {
+
+		String key = daemon.getSweepKey();
+		Set<ScanDaemon> group = groups.get(key);
+
+		if((group == null) || !group.remove(daemon))
+			return false;
+
+		daemon.unfollow();
+		if(scanning.remove(daemon))
+			halt(daemon, interrupt);
+
+		if(group.isEmpty())
+			groups.remove(key);
+		else
+			regroup(group);
+
+		return true;
+	}
+
+	synchronized boolean isSubscribed(ScanDaemon daemon) {
+		Set<ScanDaemon> group = groups.get(daemon.getSweepKey());
+		return (group != null) && group.contains(daemon);
+	}
+
+	/**
+	 * Returns the number of sweeps running for all the subscribed daemons.
+	 * @return <code>int</code> - the number of daemons scanning on their own.
+	 */
+	synchronized int getSweeps() {
+		return scanning.size();
+	}
+
+	/**
+	 * Chooses which daemons of a group scan and which ones follow them, starting and stopping their sweeps accordingly.
+	 */
+	private void regroup(Set<ScanDaemon> group) {
+
+		// Daemons with more targets first, and the ones already scanning before the rest, so sweeps are not restarted needlessly.
+		List<ScanDaemon> members = new ArrayList<>(group);
+		members.sort(Comparator.comparingLong((ScanDaemon daemon) -> daemon.getTargets().size()).reversed()
+								.thenComparing(daemon -> !scanning.contains(daemon)));
+
+		List<ScanDaemon> scanners = new ArrayList<>();
+		Map<ScanDaemon, ScanDaemon> sources = new HashMap<>();
+
+		for(ScanDaemon member : members) {
+
+			ScanDaemon source = null;
+			for(int i = 0; (i < scanners.size()) && (source == null); i++)
+				if(scanners.get(i).covers(member))
+					source = scanners.get(i);
+
+			if(source == null)
+				scanners.add(member);
+			else
+				sources.put(member, source);
+		}
+
+		// New sweeps are started before stopping the ones they replace, so no results are missed meanwhile.
+		// A follower taking over a sweep first adopts the servers its listeners were told about, so it notifies them once offline.
+		for(ScanDaemon scanner : scanners) {
+			if(scanning.add(scanner)) {
+				ObservableDaemon source = scanner.getSource();
+				if(source instanceof ScanDaemon)
+					scanner.takeOver((ScanDaemon) source);
+				
+				scanner.unfollow();
+				start(scanner);
+			}
+		}
+
+		for(Map.Entry<ScanDaemon, ScanDaemon> entry : sources.entrySet()) {
+
+			ScanDaemon follower = entry.getKey();
+			ScanDaemon source = entry.getValue();
+
+			if(follower.getSource() != source)
+				follower.follow(source, newFilter(source, follower));
+
+			if(scanning.remove(follower))
+				halt(follower, false);
+		}
+	}
+
+	private boolean start(ScanDaemon daemon) {
+		return (scheduler != null) ? daemon.start(scheduler) : daemon.start();
+	}
+
+	private static boolean halt(ScanDaemon daemon, boolean interrupt) {
+		return interrupt ? daemon.interrupt() : daemon.stop();
+	}
+
+	/**
+	 * Builds the filter of the results forwarded to a follower, null when both daemons have the same targets.
+	 */
+	private static Predicate<ScanResult> newFilter(ScanDaemon source, ScanDaemon follower) {
+
+		ScanTargets targets = follower.getTargets();
+		if(targets.equals(source.getTargets()))
+			return null;
+
+		return result -> targets.contains(result.getIp());
+	}
+}
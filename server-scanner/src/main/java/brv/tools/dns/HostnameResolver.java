@@ -0,0 +1,269 @@
+package brv.tools.dns;
+
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Asynchronous hostname resolver with caching.
+ * <p>
+ * Reverse lookups are run on a small dedicated thread pool, so scanning threads never wait for a slow or dead name server:
+ * {@link #getHostname(String)} immediately returns the cached hostname, or <code>null</code> while it is not known yet.
+ * </p>
+ * <p>
+ * Results are cached for a limited time (TTL). Ip addresses without a name, or which could not be resolved, are also cached
+ * (negative caching), usually for a shorter time. A failed lookup never replaces a hostname which was already known, it is
+ * only retried later. Concurrent requests for the same ip address share a single lookup.
+ * </p>
+ * @author flash
+ *
+ */
+public class HostnameResolver {
+
+	/**
+	 * Default time (in milliseconds) a resolved hostname is cached, 10 minutes.
+	 */
+	public static final long DEFAULT_TTL = 10 * 60 * 1000L;
+	
+	/**
+	 * Default time (in milliseconds) an unresolvable ip address is cached, 1 minute.
+	 */
+	public static final long DEFAULT_NEGATIVE_TTL = 60 * 1000L;
+	
+	/**
+	 * Default maximum number of cached ip addresses.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 65536;
+	
+	/**
+	 * Default number of lookup threads.
+	 */
+	public static final int DEFAULT_THREADS = 4;
+	
+	private static final int MAX_QUEUED_LOOKUPS = 4096;
+	
+	private static HostnameResolver shared;
+	
+	private final ReverseLookup lookup;
+	private final long ttl;
+	private final long negativeTtl;
+	private final int maxEntries;
+	private final ThreadPoolExecutor executor;
+	
+	private final Map<String, CachedHostname> cache = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+	
+	/**
+	 * Constructor for HostnameResolver using the default settings and the system name service.
+	 */
+	public HostnameResolver() {
+		this(new InetAddressReverseLookup(), DEFAULT_THREADS, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * Constructor for HostnameResolver.
+	 * @param lookup - the reverse lookup to be performed.
+	 * @param threads - the number of threads which will run the lookups.
+	 * @param ttl - time (in milliseconds) a resolved hostname is cached.
+	 * @param negativeTtl - time (in milliseconds) an unresolvable ip address is cached.
+	 * @param maxEntries - maximum number of cached ip addresses.
+	 * @throws IllegalArgumentException When <code>threads < 1</code>, <code>maxEntries < 1</code> or any ttl is negative.
+	 */
+	public HostnameResolver(ReverseLookup lookup, int threads, long ttl, long negativeTtl, int maxEntries) {
+		
+		if(threads < 1)
+			throw new IllegalArgumentException("Threads must be greater than 0.");
+		
+		if((ttl < 0) || (negativeTtl < 0))
+			throw new IllegalArgumentException("TTL must not be negative.");
+		
+		if(maxEntries < 1)
+			throw new IllegalArgumentException("Max entries must be greater than 0.");
+		
+		this.lookup = Objects.requireNonNull(lookup);
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+		this.maxEntries = maxEntries;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, 
+												new ArrayBlockingQueue<>(MAX_QUEUED_LOOKUPS), 
+												new NamedThreadFactory("HostnameResolver"));
+	}
+	
+	/**
+	 * Returns the resolver shared by all the daemons of the JVM.
+	 * @return <code>HostnameResolver</code> - the shared resolver, using the default settings.
+	 */
+	public static synchronized HostnameResolver getShared() {
+		if(shared == null)
+			shared = new HostnameResolver();
+		return shared;
+	}
+	
+	/**
+	 * Returns the hostname of an ip address without blocking.
+	 * <p>
+	 * If there is no fresh cached hostname, a lookup is started in the background. Meanwhile, the expired hostname
+	 * is returned if any.
+	 * </p>
+	 * @param ip - the ip address.
+	 * @return <code>String</code> - the cached hostname, <code>null</code> if it is not known yet or could not be resolved.
+	 */
+	public String getHostname(String ip) {
+		
+		CachedHostname cached = cache.get(ip);
+		
+		if((cached != null) && !cached.isExpired(System.currentTimeMillis()))
+			return cached.hostname;
+		
+		resolve(ip);
+		
+		return (cached != null) ? cached.hostname : null;
+	}
+	
+	/**
+	 * Resolves the hostname of an ip address.
+	 * <p>
+	 * Concurrent requests for the same ip address share the same lookup.
+	 * </p>
+	 * @param ip - the ip address.
+	 * @return <code>CompletableFuture</code> - completed with the hostname, or <code>null</code> if it could not be resolved
+	 * and it was not known before.
+	 * The future is never completed exceptionally.
+	 */
+	public CompletableFuture<String> resolve(String ip) {
+		
+		CachedHostname cached = cache.get(ip);
+		
+		if((cached != null) && !cached.isExpired(System.currentTimeMillis()))
+			return CompletableFuture.completedFuture(cached.hostname);
+		
+		CompletableFuture<String> created = new CompletableFuture<>();
+		CompletableFuture<String> existing = inFlight.putIfAbsent(ip, created);
+		
+		if(existing != null)
+			return existing;
+		
+		try {
+			executor.execute(() -> complete(ip, created));
+		} catch (RejectedExecutionException e) {
+			// Too many pending lookups, it will be retried on the next request.
+			inFlight.remove(ip, created);
+			created.complete((cached != null) ? cached.hostname : null);
+		}
+		
+		return created;
+	}
+	
+	/**
+	 * Returns the number of cached ip addresses.
+	 * @return <code>int</code> - the number of cached ip addresses, including expired ones.
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+	
+	/**
+	 * Returns the number of lookups currently in progress or waiting to be run.
+	 * @return <code>int</code> - the number of pending lookups.
+	 */
+	public int getPendingLookups() {
+		return inFlight.size();
+	}
+	
+	/**
+	 * Stops the lookup threads.
+	 * <p>
+	 * The shared resolver should never be shut down.
+	 * </p>
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	private void complete(String ip, CompletableFuture<String> future) {
+		
+		String hostname;
+		boolean negative;
+		
+		try {
+			hostname = lookup.lookup(ip);
+			
+			// Ip addresses without a name resolve to themselves.
+			negative = (hostname == null) || hostname.isEmpty() || hostname.equals(ip);
+			
+		} catch (UnknownHostException | RuntimeException e) {
+			hostname = null;
+			negative = true;
+		}
+		
+		// A failed lookup keeps the last known hostname, which is looked up again once the negative TTL expires.
+		if((hostname == null) || hostname.isEmpty()) {
+			CachedHostname previous = cache.get(ip);
+			hostname = (previous != null) ? previous.hostname : null;
+		}
+		
+		long expiration = System.currentTimeMillis() + (negative ? negativeTtl : ttl);
+		
+		evictIfFull();
+		cache.put(ip, new CachedHostname(hostname, expiration));
+		inFlight.remove(ip, future);
+		
+		future.complete(hostname);
+	}
+	
+	/**
+	 * Keeps the cache bounded, removing expired entries first and any other entries if still needed.
+	 */
+	private void evictIfFull() {
+		
+		if(cache.size() < maxEntries)
+			return;
+		
+		long now = System.currentTimeMillis();
+		cache.values().removeIf(cached -> cached.isExpired(now));
+		
+		if(cache.size() < maxEntries)
+			return;
+		
+		// Unresolvable ip addresses are evicted before any known hostname.
+		cache.values().removeIf(cached -> cached.hostname == null);
+		
+		if(cache.size() < maxEntries)
+			return;
+		
+		// Removes about an eighth of the entries, so eviction doesn't run on every lookup.
+		Iterator<String> iterator = cache.keySet().iterator();
+		int toEvict = cache.size() - maxEntries + 1 + (maxEntries / 8);
+		
+		while((toEvict > 0) && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			toEvict--;
+		}
+	}
+	
+	private static final class CachedHostname {
+		
+		// Null if the ip address could not be resolved.
+		private final String hostname;
+		private final long expiration;
+		
+		private CachedHostname(String hostname, long expiration) {
+			this.hostname = hostname;
+			this.expiration = expiration;
+		}
+		
+		private boolean isExpired(long now) {
+			return now >= expiration;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package brv.tools.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Reverse lookup using the system name service through {@link InetAddress#getHostName()}.
+ * @author flash
+ *
+ */
+public class InetAddressReverseLookup implements ReverseLookup {
+
+	@Override
+	public String lookup(String ip) throws UnknownHostException {
+		return InetAddress.getByName(ip).getHostName();
+	}
+
+}
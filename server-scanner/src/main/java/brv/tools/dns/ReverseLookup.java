@@ -0,0 +1,24 @@
+package brv.tools.dns;
+
+import java.net.UnknownHostException;
+
+/**
+ * Performs a blocking reverse name lookup of an ip address.
+ * <p>
+ * Implementations are used by the {@link HostnameResolver}, which takes care of running them asynchronously and caching their results,
+ * so they don't need to be fast nor thread-safe beyond being callable from several threads.
+ * </p>
+ * @author flash
+ *
+ */
+@FunctionalInterface
+public interface ReverseLookup {
+
+	/**
+	 * Looks up the hostname of an ip address.
+	 * @param ip - the ip address.
+	 * @return <code>String</code> - the hostname, or the ip address itself if it has no name.
+	 * @throws UnknownHostException if the ip address could not be resolved.
+	 */
+	String lookup(String ip) throws UnknownHostException;
+}
@@ -0,0 +1,172 @@
+package brv.tools.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import brv.tools.model.ScanChange;
+import brv.tools.model.ScanResult;
+
+/**
+ * Sequenced feed of the changes notified by a daemon.
+ * <p>
+ * Every appended result is stamped with the next sequence number, starting at <code>1</code>, and kept on a bounded ring
+ * of recent changes. A consumer can subscribe after any sequence number still on the ring: it first receives the changes
+ * after that number and then the new ones, without gaps nor duplicates. Sequence numbers tell consumers which change they
+ * must resume after once disconnected.
+ * </p>
+ * <p>
+ * Changes are delivered through a {@link Mailbox} for each consumer, so a consumer only misses changes if its mailbox
+ * overflows. Any gap between the sequence numbers it receives reveals it, and it can then subscribe again after the
+ * last change it handled.
+ * </p>
+ * @author flash
+ *
+ */
+public class ChangeFeed {
+
+	/**
+	 * Default number of recent changes kept on the ring.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final ScanChange[] ring;
+	private final EventBus<ScanChange> bus;
+
+	private final int mailboxCapacity;
+	private final OverflowPolicy policy;
+	private final Executor executor;
+
+	// Sequence number of the last appended change, 0 if none.
+	private long last = 0;
+
+	/**
+	 * Constructor for ChangeFeed.
+	 * @param capacity - the number of recent changes kept on the ring.
+	 * @param mailboxCapacity - the number of changes each consumer can have pending, besides the ones it subscribed after.
+	 * @param policy - the action to be taken when the mailbox of a consumer is full.
+	 * @param executor - the executor delivering the changes.
+	 * @throws IllegalArgumentException When <code>capacity < 1</code> or <code>mailboxCapacity < 1</code>
+	 */
+	public ChangeFeed(int capacity, int mailboxCapacity, OverflowPolicy policy, Executor executor) {
+
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be greater than 0.");
+
+		if(mailboxCapacity < 1)
+			throw new IllegalArgumentException("Mailbox capacity must be greater than 0.");
+
+		this.ring = new ScanChange[capacity];
+		this.mailboxCapacity = mailboxCapacity;
+		this.policy = Objects.requireNonNull(policy);
+		this.executor = Objects.requireNonNull(executor);
+
+		// Changes about the same server must never be coalesced, as every sequence number must be delivered.
+		this.bus = new EventBus<>(mailboxCapacity, policy, null, executor);
+	}
+
+	/**
+	 * Stamps a result with the next sequence number and delivers it to every consumer.
+	 * @param result - the new state of a server.
+	 * @return <code>ScanChange</code> - the stamped change.
+	 */
+	public synchronized ScanChange append(ScanResult result) {
+
+		ScanChange change = new ScanChange();
+		change.setSequence(++last);
+		change.setResult(Objects.requireNonNull(result));
+
+		ring[index(last)] = change;
+		bus.publish(change);
+
+		return change;
+	}
+
+	/**
+	 * Returns the sequence number of the last change.
+	 * @return <code>long</code> - the sequence number, <code>0</code> if there have been no changes yet.
+	 */
+	public synchronized long getLastSequence() {
+		return last;
+	}
+
+	/**
+	 * Returns the sequence number of the oldest change kept on the ring.
+	 * @return <code>long</code> - the sequence number, <code>getLastSequence() + 1</code> if there have been no changes yet.
+	 */
+	public synchronized long getOldestSequence() {
+		return Math.max(1, last - ring.length + 1);
+	}
+
+	/**
+	 * Checks if every change after a sequence number is still kept on the ring.
+	 * @param sequence - the sequence number of the last change handled by a consumer.
+	 * @return <code>true</code> - if a consumer can resume after that change.
+	 */
+	public synchronized boolean isRetained(long sequence) {
+		return (sequence >= getOldestSequence() - 1) && (sequence <= last);
+	}
+
+	/**
+	 * Returns the changes after a sequence number.
+	 * @param sequence - the sequence number of the last change handled by a consumer.
+	 * @return <code>List</code> - the changes in order, <code>null</code> if some of them are no longer kept.
+	 */
+	public synchronized List<ScanChange> since(long sequence) {
+
+		if(!isRetained(sequence))
+			return null;
+
+		List<ScanChange> changes = new ArrayList<>((int) (last - sequence));
+		for(long i = sequence + 1; i <= last; i++)
+			changes.add(ring[index(i)]);
+
+		return changes;
+	}
+
+	/**
+	 * Subscribes a consumer to the changes after a sequence number.
+	 * <p>
+	 * The changes already kept on the ring are queued before any new change, so the consumer receives all of them in order.
+	 * </p>
+	 * @param sequence - the sequence number of the last change handled by the consumer, <code>getLastSequence()</code> to only receive new changes.
+	 * @param consumer - the consumer of the changes.
+	 * @return <code>Mailbox</code> - the mailbox feeding the consumer, <code>null</code> if some changes after that number are no longer kept.
+	 */
+	public synchronized Mailbox<ScanChange> subscribe(long sequence, Consumer<? super ScanChange> consumer) {
+
+		List<ScanChange> backlog = since(sequence);
+		if(backlog == null)
+			return null;
+
+		// Room for the whole backlog, so it is never dropped before being delivered.
+		Mailbox<ScanChange> mailbox = new Mailbox<>(backlog.size() + mailboxCapacity, policy, null, executor, consumer);
+		for(ScanChange change : backlog)
+			mailbox.offer(change);
+
+		return bus.subscribe(mailbox);
+	}
+
+	/**
+	 * Removes a consumer, discarding any changes pending to be delivered to it.
+	 * @param mailbox - the mailbox returned when the consumer was subscribed.
+	 * @return <code>true</code> - if the consumer was subscribed.
+	 */
+	public boolean unsubscribe(Mailbox<ScanChange> mailbox) {
+		return bus.unsubscribe(mailbox);
+	}
+
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	public long getDropped() {
+		return bus.getDropped();
+	}
+
+	private int index(long sequence) {
+		return (int) ((sequence - 1) % ring.length);
+	}
+}
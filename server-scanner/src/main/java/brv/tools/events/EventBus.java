@@ -0,0 +1,193 @@
+package brv.tools.events;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Publishes events to a set of consumers without running their code on the publishing thread.
+ * <p>
+ * Every consumer has its own {@link Mailbox}, so a slow consumer doesn't delay the delivery to the rest of them, 
+ * and consumers are fed in parallel by the bus executor.
+ * </p>
+ * @author flash
+ *
+ * @param <E> the type of the published events.
+ */
+public class EventBus<E> {
+
+	/**
+	 * Default number of events each consumer can have queued.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * Default overflow policy.
+	 */
+	public static final OverflowPolicy DEFAULT_POLICY = OverflowPolicy.COALESCE;
+	
+	private static ExecutorService sharedExecutor;
+	
+	private final int capacity;
+	private final OverflowPolicy policy;
+	private final Function<? super E, ?> keyFunction;
+	private final Executor executor;
+	
+	private final List<Mailbox<E>> mailboxes = new CopyOnWriteArrayList<>();
+	private final AtomicLong published = new AtomicLong(0);
+	
+	/**
+	 * Constructor for EventBus.
+	 * @param capacity - the number of events each consumer can have queued.
+	 * @param policy - the action to be taken when a consumer queue is full.
+	 * @param keyFunction - obtains the key used to coalesce events, <code>null</code> if events can't be coalesced.
+	 * @param executor - the executor delivering the events.
+	 * @throws IllegalArgumentException When <code>capacity < 1</code>
+	 */
+	public EventBus(int capacity, OverflowPolicy policy, Function<? super E, ?> keyFunction, Executor executor) {
+		
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be greater than 0.");
+		
+		this.capacity = capacity;
+		this.policy = Objects.requireNonNull(policy);
+		this.keyFunction = keyFunction;
+		this.executor = Objects.requireNonNull(executor);
+	}
+	
+	/**
+	 * Returns the executor shared by the buses of every daemon of the JVM.
+	 * <p>
+	 * It holds one thread per available processor. Deliveries are done in batches, so any consumer gets its turn.
+	 * </p>
+	 * @return <code>Executor</code> - the shared executor.
+	 */
+	public static synchronized Executor getSharedExecutor() {
+		
+		if(sharedExecutor == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			sharedExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, 
+													new LinkedBlockingQueue<>(), new NamedThreadFactory("EventBus"));
+		}
+		
+		return sharedExecutor;
+	}
+	
+	/**
+	 * Adds a consumer to the bus.
+	 * @param consumer - the consumer which will receive any published events.
+	 * @return <code>Mailbox</code> - the mailbox feeding the consumer.
+	 */
+	public Mailbox<E> subscribe(Consumer<? super E> consumer) {
+		return subscribe(new Mailbox<>(capacity, policy, keyFunction, executor, consumer));
+	}
+	
+	/**
+	 * Adds a custom mailbox to the bus.
+	 * @param mailbox - the mailbox which will receive any published events.
+	 * @return <code>Mailbox</code> - the added mailbox.
+	 */
+	public Mailbox<E> subscribe(Mailbox<E> mailbox) {
+		mailboxes.add(Objects.requireNonNull(mailbox));
+		return mailbox;
+	}
+	
+	/**
+	 * Removes a consumer from the bus, discarding any events pending to be delivered to it.
+	 * @param mailbox - the mailbox returned when the consumer was subscribed.
+	 * @return <code>true</code> - if the consumer was subscribed to the bus.
+	 */
+	public boolean unsubscribe(Mailbox<E> mailbox) {
+		mailbox.close();
+		return mailboxes.remove(mailbox);
+	}
+	
+	/**
+	 * Removes a mailbox from the bus without closing it, so it keeps delivering the events queued from other buses.
+	 * @param mailbox - the mailbox to be removed.
+	 * @return <code>true</code> - if the mailbox was subscribed to the bus.
+	 */
+	public boolean detach(Mailbox<E> mailbox) {
+		return mailboxes.remove(mailbox);
+	}
+	
+	/**
+	 * Publishes an event to every consumer.
+	 * @param event - the event to be published.
+	 */
+	public void publish(E event) {
+		published.incrementAndGet();
+		for(Mailbox<E> mailbox : mailboxes)
+			mailbox.offer(event);
+	}
+	
+	/**
+	 * Returns the mailboxes of every consumer.
+	 * @return <code>List</code> - the subscribed mailboxes.
+	 */
+	public List<Mailbox<E>> getMailboxes() {
+		return mailboxes;
+	}
+	
+	/**
+	 * Returns the number of events pending to be delivered to any consumer.
+	 * @return <code>long</code> - the total number of queued events.
+	 */
+	public long getQueueDepth() {
+		long depth = 0;
+		for(Mailbox<E> mailbox : mailboxes)
+			depth += mailbox.getQueueDepth();
+		return depth;
+	}
+	
+	/**
+	 * Returns the number of events discarded because a consumer queue was full.
+	 * @return <code>long</code> - the total number of dropped events.
+	 */
+	public long getDropped() {
+		long dropped = 0;
+		for(Mailbox<E> mailbox : mailboxes)
+			dropped += mailbox.getDropped();
+		return dropped;
+	}
+	
+	/**
+	 * Returns the number of events published to the bus.
+	 * @return <code>long</code> - the number of published events, counted once regardless of the number of consumers.
+	 */
+	public long getPublished() {
+		return published.get();
+	}
+	
+	/**
+	 * Returns the time spent by every consumer handling the delivered events.
+	 * @return <code>long</code> - the total dispatch time (in nanoseconds).
+	 */
+	public long getDispatchTime() {
+		long dispatchTime = 0;
+		for(Mailbox<E> mailbox : mailboxes)
+			dispatchTime += mailbox.getDispatchTime();
+		return dispatchTime;
+	}
+	
+	/**
+	 * Returns the number of events delivered to any consumer.
+	 * @return <code>long</code> - the total number of delivered events.
+	 */
+	public long getDelivered() {
+		long delivered = 0;
+		for(Mailbox<E> mailbox : mailboxes)
+			delivered += mailbox.getDelivered();
+		return delivered;
+	}
+}
@@ -0,0 +1,183 @@
+package brv.tools.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+/**
+ * Publishes the events of one or more {@link EventBus}es as a reactive stream, honouring the demand of each subscriber.
+ * <p>
+ * Each subscriber gets its own bounded queue, subscribed to every source bus, so subscribers consume at their own rate and
+ * the publishing threads never wait for them. Events are only delivered while a subscriber has requested more of them;
+ * meanwhile they are queued, and once its queue is full the configured {@link OverflowPolicy} is applied. Only the
+ * {@link OverflowPolicy#BLOCK} policy makes the publishing threads wait for a slow subscriber.
+ * </p>
+ * <p>
+ * Sources can be added and removed at any time, so a publisher can merge the events of a changing set of buses.
+ * Events published before a subscriber subscribes are not delivered to it.
+ * </p>
+ * @author flash
+ *
+ * @param <E> the type of the published events.
+ */
+public class EventPublisher<E> implements Flow.Publisher<E> {
+
+	private final int capacity;
+	private final OverflowPolicy policy;
+	private final Function<? super E, ?> keyFunction;
+	private final Executor executor;
+
+	// Guarded by this.
+	private final List<EventBus<E>> sources = new ArrayList<>();
+	private final List<FlowSubscription<E>> subscriptions = new ArrayList<>();
+	private boolean closed = false;
+
+	/**
+	 * Constructor for EventPublisher.
+	 * @param capacity - the default number of events each subscriber can have queued.
+	 * @param policy - the default action to be taken when a subscriber queue is full.
+	 * @param keyFunction - obtains the key used to coalesce events, <code>null</code> if events can't be coalesced.
+	 * @param executor - the executor delivering the events.
+	 * @throws IllegalArgumentException When <code>capacity < 1</code>
+	 */
+	public EventPublisher(int capacity, OverflowPolicy policy, Function<? super E, ?> keyFunction, Executor executor) {
+
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be greater than 0.");
+
+		this.capacity = capacity;
+		this.policy = Objects.requireNonNull(policy);
+		this.keyFunction = keyFunction;
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	/**
+	 * Subscribes a subscriber using the default queue capacity and overflow policy of the publisher.
+	 * @param subscriber - the subscriber which will receive the published events.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super E> subscriber) {
+		subscribe(subscriber, capacity, policy);
+	}
+
+	/**
+	 * Subscribes a subscriber with its own queue capacity and overflow policy.
+	 * <p>
+	 * If the publisher has been closed, the subscriber is completed right after being subscribed.
+	 * </p>
+	 * @param subscriber - the subscriber which will receive the published events.
+	 * @param capacity - the number of events the subscriber can have queued while it has not requested them.
+	 * @param policy - the action to be taken when the subscriber queue is full.
+	 * @throws IllegalArgumentException When <code>capacity < 1</code>
+	 */
+	public void subscribe(Flow.Subscriber<? super E> subscriber, int capacity, OverflowPolicy policy) {
+
+		FlowSubscription<E> subscription = new FlowSubscription<>(this, Objects.requireNonNull(subscriber), capacity,
+																	Objects.requireNonNull(policy), keyFunction, executor);
+		subscription.start();
+
+		synchronized(this) {
+
+			if(closed) {
+				subscription.complete();
+				return;
+			}
+
+			// Cancelled while being subscribed.
+			if(subscription.isTerminated())
+				return;
+
+			subscriptions.add(subscription);
+			for(EventBus<E> source : sources)
+				source.subscribe(subscription.getMailbox());
+		}
+	}
+
+	/**
+	 * Adds a bus whose events will be delivered to every current and future subscriber.
+	 * @param source - the bus to be added.
+	 */
+	public synchronized void addSource(EventBus<E> source) {
+
+		if(sources.contains(Objects.requireNonNull(source)))
+			return;
+
+		sources.add(source);
+		for(FlowSubscription<E> subscription : subscriptions)
+			source.subscribe(subscription.getMailbox());
+	}
+
+	/**
+	 * Removes a bus, so its events are no longer delivered to the subscribers.
+	 * <p>
+	 * Events already queued for a subscriber are still delivered.
+	 * </p>
+	 * @param source - the bus to be removed.
+	 * @return <code>true</code> - if the bus was a source of the publisher.
+	 */
+	public synchronized boolean removeSource(EventBus<E> source) {
+
+		if(!sources.remove(source))
+			return false;
+
+		for(FlowSubscription<E> subscription : subscriptions)
+			source.detach(subscription.getMailbox());
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of active subscriptions.
+	 * @return <code>int</code> - the number of subscribers which have neither cancelled nor been completed.
+	 */
+	public synchronized int getSubscribers() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Returns the number of events discarded because the queue of a subscriber was full.
+	 * @return <code>long</code> - the number of dropped events of the active subscriptions.
+	 */
+	public synchronized long getDropped() {
+
+		long dropped = 0;
+		for(FlowSubscription<E> subscription : subscriptions)
+			dropped += subscription.getMailbox().getDropped();
+
+		return dropped;
+	}
+
+	/**
+	 * Completes every subscriber, discarding any events pending to be delivered.
+	 * <p>
+	 * Any later subscriber is completed right after being subscribed.
+	 * </p>
+	 */
+	public void close() {
+
+		List<FlowSubscription<E>> completed;
+
+		synchronized(this) {
+			closed = true;
+			completed = new ArrayList<>(subscriptions);
+			for(FlowSubscription<E> subscription : completed)
+				remove(subscription);
+		}
+
+		// Subscribers are signalled without holding the publisher lock.
+		for(FlowSubscription<E> subscription : completed)
+			subscription.complete();
+	}
+
+	/**
+	 * Removes a terminated subscription from the sources.
+	 */
+	synchronized void remove(FlowSubscription<E> subscription) {
+		if(subscriptions.remove(subscription))
+			for(EventBus<E> source : sources)
+				source.detach(subscription.getMailbox());
+	}
+}
@@ -0,0 +1,140 @@
+package brv.tools.events;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Subscription of a {@link Flow.Subscriber} to an {@link EventPublisher}.
+ * <p>
+ * Events are queued on a {@link Mailbox} subscribed to every source of the publisher, which only delivers them while the
+ * subscriber has requested more. Every signal to the subscriber is sent while holding the subscription monitor, so they
+ * are never sent concurrently. Cancelling never waits for the subscriber, so an event being delivered at the same time
+ * might still be received.
+ * </p>
+ * @author flash
+ *
+ * @param <E> the type of the delivered events.
+ */
+final class FlowSubscription<E> implements Flow.Subscription {
+
+	private static final Logger logger = Logger.getLogger(FlowSubscription.class.getName());
+
+	private final EventPublisher<E> publisher;
+	private final Flow.Subscriber<? super E> subscriber;
+	private final Mailbox<E> mailbox;
+
+	private final AtomicLong demand = new AtomicLong(0);
+
+	// Set once onSubscribe has returned, so no event is delivered before.
+	private volatile boolean subscribed = false;
+
+	private final AtomicBoolean terminated = new AtomicBoolean(false);
+
+	FlowSubscription(EventPublisher<E> publisher, Flow.Subscriber<? super E> subscriber, int capacity, OverflowPolicy policy,
+						Function<? super E, ?> keyFunction, Executor executor) {
+
+		this.publisher = publisher;
+		this.subscriber = subscriber;
+		this.mailbox = new Mailbox<E>(capacity, policy, keyFunction, executor, this::onNext) {
+			@Override
+			protected boolean isReady() {
+				return subscribed && (demand.get() > 0);
+			}
+		};
+	}
+
+	@Override
+	public void request(long n) {
+
+		if(n <= 0) {
+			error(new IllegalArgumentException("Requested events must be greater than 0, but was " + n + "."));
+			return;
+		}
+
+		// Demand is capped at Long.MAX_VALUE, meaning an unbounded demand.
+		demand.accumulateAndGet(n, (current, added) -> (current + added < 0) ? Long.MAX_VALUE : current + added);
+		mailbox.schedule();
+	}
+
+	@Override
+	public void cancel() {
+		if(terminate())
+			publisher.remove(this);
+	}
+
+	Mailbox<E> getMailbox() {
+		return mailbox;
+	}
+
+	boolean isTerminated() {
+		return terminated.get();
+	}
+
+	/**
+	 * Signals the subscription to the subscriber, so the events it requests are delivered once its mailbox is subscribed to the sources.
+	 */
+	void start() {
+
+		synchronized(this) {
+			subscriber.onSubscribe(this);
+		}
+
+		subscribed = true;
+		mailbox.schedule();
+	}
+
+	/**
+	 * Signals the subscriber that no more events will be published, discarding any events pending to be delivered.
+	 */
+	void complete() {
+		if(terminate()) {
+			synchronized(this) {
+				subscriber.onComplete();
+			}
+		}
+	}
+
+	private void error(Throwable error) {
+		if(terminate()) {
+			publisher.remove(this);
+			synchronized(this) {
+				subscriber.onError(error);
+			}
+		}
+	}
+
+	private synchronized void onNext(E event) {
+
+		if(terminated.get())
+			return;
+
+		if(demand.get() != Long.MAX_VALUE)
+			demand.decrementAndGet();
+
+		try {
+			subscriber.onNext(event);
+		} catch (RuntimeException e) {
+			// The subscriber broke the protocol, so it won't be sent anything else.
+			logger.log(Level.WARNING, "Subscriber failed handling an event, cancelling its subscription.", e);
+			cancel();
+		}
+	}
+
+	/**
+	 * Marks the subscription as terminated, closing its mailbox. It never waits for the subscriber, so it can be cancelled at any time.
+	 * @return <code>true</code> - if it was not terminated yet.
+	 */
+	private boolean terminate() {
+
+		if(!terminated.compareAndSet(false, true))
+			return false;
+
+		mailbox.close();
+		return true;
+	}
+}
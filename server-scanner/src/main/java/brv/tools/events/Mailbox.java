@@ -0,0 +1,335 @@
+package brv.tools.events;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of events pending to be delivered to a single consumer.
+ * <p>
+ * Events are kept on a ring buffer and delivered in order by tasks run on an {@link Executor}, 
+ * so publishers never run the consumer code. At most one delivery task runs at the same time for a mailbox, 
+ * so the consumer is never called concurrently.
+ * </p>
+ * <p>
+ * When the ring buffer is full, the configured {@link OverflowPolicy} is applied.
+ * </p>
+ * @author flash
+ *
+ * @param <E> the type of the delivered events.
+ */
+public class Mailbox<E> {
+
+	private static final Logger logger = Logger.getLogger(Mailbox.class.getName());
+	
+	// Maximum events delivered by a single task, so other mailboxes sharing the executor are not starved.
+	private static final int DELIVERY_BATCH = 256;
+	
+	private final Object[] ring;
+	private final OverflowPolicy policy;
+	private final Function<? super E, ?> keyFunction;
+	private final Executor executor;
+	private final Consumer<? super E> consumer;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	
+	// Absolute positions of the first queued event and the next event to be queued.
+	private long head = 0;
+	private long tail = 0;
+	
+	// Positions of the queued events by key, only used by the COALESCE policy.
+	private final Map<Object, Long> positions;
+	
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+	
+	private final AtomicLong delivered = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final AtomicLong coalesced = new AtomicLong(0);
+	private final AtomicLong dispatchTime = new AtomicLong(0);
+	
+	/**
+	 * Constructor for Mailbox.
+	 * @param capacity - the maximum number of queued events.
+	 * @param policy - the action to be taken when the mailbox is full.
+	 * @param keyFunction - obtains the key of an event used to coalesce it. Only used by the {@link OverflowPolicy#COALESCE} policy.
+	 * @param executor - the executor running the delivery tasks.
+	 * @param consumer - the consumer of the events.
+	 * @throws IllegalArgumentException When <code>capacity < 1</code>
+	 */
+	public Mailbox(int capacity, OverflowPolicy policy, Function<? super E, ?> keyFunction, Executor executor, Consumer<? super E> consumer) {
+		
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be greater than 0.");
+		
+		this.ring = new Object[capacity];
+		this.policy = Objects.requireNonNull(policy);
+		this.keyFunction = keyFunction;
+		this.executor = Objects.requireNonNull(executor);
+		this.consumer = Objects.requireNonNull(consumer);
+		this.positions = ((policy == OverflowPolicy.COALESCE) && (keyFunction != null)) ? new HashMap<>() : null;
+	}
+	
+	/**
+	 * Queues an event to be delivered.
+	 * <p>
+	 * With the {@link OverflowPolicy#BLOCK} policy, the calling thread waits while the mailbox is full. If it is interrupted
+	 * meanwhile, the event is dropped and the interrupted status is kept.
+	 * </p>
+	 * @param event - the event to be delivered.
+	 * @return <code>true</code> - if the event has been queued, <code>false</code> if it has been dropped.
+	 */
+	public boolean offer(E event) {
+		
+		Objects.requireNonNull(event);
+		
+		if(closed)
+			return false;
+		
+		lock.lock();
+		try {
+			
+			while(isFull()) {
+				
+				if(policy == OverflowPolicy.BLOCK) {
+					try {
+						notFull.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						dropped.incrementAndGet();
+						return false;
+					}
+					
+					if(closed)
+						return false;
+				} else {
+					// Events are only coalesced when there is no room left, so no event is lost while the consumer keeps up.
+					if((positions != null) && coalesce(event))
+						return true;
+					
+					removeHead();
+					dropped.incrementAndGet();
+				}
+			}
+			
+			if(positions != null)
+				positions.put(keyFunction.apply(event), tail);
+			
+			ring[index(tail++)] = event;
+			
+		} finally {
+			lock.unlock();
+		}
+		
+		schedule();
+		return true;
+	}
+	
+	/**
+	 * Returns the number of events pending to be delivered.
+	 * @return <code>int</code> - the number of queued events.
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return (int) (tail - head);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of events which can be queued.
+	 * @return <code>int</code> - the capacity of the mailbox.
+	 */
+	public int getCapacity() {
+		return ring.length;
+	}
+	
+	/**
+	 * Returns the number of events delivered to the consumer.
+	 * @return <code>long</code> - the number of delivered events.
+	 */
+	public long getDelivered() {
+		return delivered.get();
+	}
+	
+	/**
+	 * Returns the number of events discarded because the mailbox was full.
+	 * @return <code>long</code> - the number of dropped events.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Returns the time spent by the consumer handling the delivered events.
+	 * @return <code>long</code> - the total dispatch time (in nanoseconds).
+	 */
+	public long getDispatchTime() {
+		return dispatchTime.get();
+	}
+	
+	/**
+	 * Returns the number of events which replaced a queued event about the same host.
+	 * @return <code>long</code> - the number of coalesced events.
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+	
+	/**
+	 * Closes the mailbox.
+	 * <p>
+	 * Any queued events are discarded and no more events will be accepted.
+	 * </p>
+	 */
+	public void close() {
+		
+		closed = true;
+		
+		lock.lock();
+		try {
+			while(head < tail)
+				removeHead();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Checks if the mailbox has been closed.
+	 * @return <code>true</code> - if the mailbox has been closed.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Checks if the consumer is ready to receive events.
+	 * <p>
+	 * Subclasses can override it to hold the delivery, which must be resumed by calling {@link #schedule()} once the consumer is ready again.
+	 * </p>
+	 * @return <code>true</code> - by default, the consumer is always ready.
+	 */
+	protected boolean isReady() {
+		return true;
+	}
+	
+	/**
+	 * Schedules a delivery task if there are events to be delivered and no task is scheduled yet.
+	 */
+	protected void schedule() {
+		
+		if(!closed && hasDeliverableEvents() && scheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(this::deliver);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				logger.warning("Events could not be delivered, the executor rejected the delivery task.");
+			}
+		}
+	}
+	
+	private boolean hasDeliverableEvents() {
+		return (getQueueDepth() > 0) && isReady();
+	}
+	
+	/**
+	 * Delivery task, delivering queued events in order until the mailbox is empty or the batch is completed.
+	 */
+	private void deliver() {
+		
+		for(int i = 0; (i < DELIVERY_BATCH) && !closed && isReady(); i++) {
+			
+			E event = poll();
+			if(event == null)
+				break;
+			
+			long start = System.nanoTime();
+			try {
+				consumer.accept(event);
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Listener failed handling an event.", e);
+			}
+			
+			dispatchTime.addAndGet(System.nanoTime() - start);
+			delivered.incrementAndGet();
+		}
+		
+		// Events might have been queued since the last poll, or the batch was completed.
+		scheduled.set(false);
+		schedule();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private E poll() {
+		lock.lock();
+		try {
+			if(head == tail)
+				return null;
+			
+			E event = (E) ring[index(head)];
+			removeHead();
+			
+			return event;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Replaces any queued event with the same key. Must be called holding the lock.
+	 * @return <code>true</code> - if the event has been coalesced.
+	 */
+	private boolean coalesce(E event) {
+		
+		Long position = positions.get(keyFunction.apply(event));
+		
+		if((position == null) || (position < head))
+			return false;
+		
+		ring[index(position)] = event;
+		coalesced.incrementAndGet();
+		
+		return true;
+	}
+	
+	/**
+	 * Removes the first queued event. Must be called holding the lock.
+	 */
+	@SuppressWarnings("unchecked")
+	private void removeHead() {
+		
+		int index = index(head);
+		
+		if(positions != null) {
+			Object key = keyFunction.apply((E) ring[index]);
+			positions.remove(key, head);
+		}
+		
+		ring[index] = null;
+		head++;
+		notFull.signal();
+	}
+	
+	private boolean isFull() {
+		return (tail - head) >= ring.length;
+	}
+	
+	private int index(long position) {
+		return (int) (position % ring.length);
+	}
+}
@@ -0,0 +1,27 @@
+package brv.tools.events;
+
+/**
+ * Enumeration of the actions taken when an event is published to a full {@link Mailbox}.
+ * @author flash
+ *
+ */
+public enum OverflowPolicy {
+	
+	/**
+	 * The publisher waits until the listener makes room on its queue.
+	 * <br>A slow listener will slow down the publisher, but no event is ever lost.
+	 */
+	BLOCK,
+	
+	/**
+	 * The oldest queued event is discarded to make room for the new one.
+	 */
+	DROP_OLDEST,
+	
+	/**
+	 * Any queued event about the same host is replaced by the new one, so only the latest state of each host is delivered.
+	 * <br>If there is no queued event about the same host, the oldest queued event is discarded. Events are never coalesced
+	 * while the queue has room left.
+	 */
+	COALESCE;
+}
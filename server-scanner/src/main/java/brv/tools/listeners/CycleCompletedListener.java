@@ -0,0 +1,8 @@
+package brv.tools.listeners;
+
+import brv.tools.model.ScanCycle;
+
+public interface CycleCompletedListener {
+
+	public void cycleCompleted(ScanCycle cycle);
+}
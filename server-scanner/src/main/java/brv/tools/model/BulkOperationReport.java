@@ -0,0 +1,110 @@
+package brv.tools.model;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class which represents the outcome of a bulk operation of a {@link brv.tools.daemons.manager.ScanDaemonManager ScanDaemonManager}
+ * on each of the managed daemons.
+ * <p>
+ * For each daemon, the operation might have been:
+ * </p>
+ * <ul>
+ * 	<li>{@link OperationOutcome#APPLIED}: the daemon changed its state, such as a running daemon being stopped.</li>
+ * 	<li>{@link OperationOutcome#UNCHANGED}: the daemon was already in the requested state, so no action was taken.</li>
+ * 	<li>{@link OperationOutcome#FAILED}: the operation threw an exception, whose message is kept as the daemon error.</li>
+ * </ul>
+ * @author flash
+ *
+ */
+public class BulkOperationReport implements Serializable {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 5071269384657740127L;
+	
+	private String operation;
+	private Map<Long, OperationOutcome> outcomes = new TreeMap<>();
+	private Map<Long, String> errors = new TreeMap<>();
+	private long duration;
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public void setOperation(String operation) {
+		this.operation = operation;
+	}
+	
+	/**
+	 * Returns the outcome of the operation on each daemon.
+	 * @return <code>Map</code> - the outcomes, sorted by daemon id.
+	 */
+	public Map<Long, OperationOutcome> getOutcomes() {
+		return outcomes;
+	}
+	
+	public void setOutcomes(Map<Long, OperationOutcome> outcomes) {
+		this.outcomes = outcomes;
+	}
+	
+	/**
+	 * Returns the error of each daemon the operation failed on.
+	 * @return <code>Map</code> - the error messages, sorted by daemon id.
+	 */
+	public Map<Long, String> getErrors() {
+		return errors;
+	}
+	
+	public void setErrors(Map<Long, String> errors) {
+		this.errors = errors;
+	}
+	
+	/**
+	 * Returns the time taken by the whole operation.
+	 * @return <code>long</code> - the duration, in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+	
+	public OperationOutcome getOutcome(long daemonId) {
+		return outcomes.get(daemonId);
+	}
+	
+	/**
+	 * Returns the number of daemons the operation had a given outcome on.
+	 * @param outcome - the outcome to be counted.
+	 * @return <code>int</code> - the number of daemons.
+	 */
+	public int count(OperationOutcome outcome) {
+		
+		int result = 0;
+		for(OperationOutcome value : outcomes.values())
+			if(value == outcome)
+				result++;
+		
+		return result;
+	}
+	
+	/**
+	 * Checks if any daemon changed its state.
+	 * @return <code>true</code> - if the operation was applied on any daemon.
+	 */
+	public boolean isAnyApplied() {
+		return outcomes.containsValue(OperationOutcome.APPLIED);
+	}
+
+	@Override
+	public String toString() {
+		return "BulkOperationReport [operation=" + operation + ", applied=" + count(OperationOutcome.APPLIED)
+				+ ", unchanged=" + count(OperationOutcome.UNCHANGED) + ", failed=" + count(OperationOutcome.FAILED)
+				+ ", duration=" + duration + "]";
+	}
+}
@@ -0,0 +1,146 @@
+package brv.tools.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class which represents a histogram of latencies, recorded by a {@link brv.tools.stats.LatencyRecorder LatencyRecorder}.
+ * <p>
+ * Latencies are counted on exponential buckets: the upper bound of bucket <code>i</code> is <code>2^i</code> microseconds,
+ * and the last bucket counts any longer latency. Percentiles are estimated as the upper bound of the bucket where they fall,
+ * so they are never underestimated.
+ * </p>
+ * @author flash
+ *
+ */
+public class LatencyHistogram implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -6216435837190851027L;
+
+	/**
+	 * Number of buckets of the histogram.
+	 */
+	public static final int BUCKETS = 32;
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final long[] counts;
+	private final long count;
+	private final long total;
+	private final long max;
+
+	/**
+	 * Constructor for LatencyHistogram.
+	 * @param counts - the number of latencies of each bucket.
+	 * @param total - the sum of every latency (in nanoseconds).
+	 * @param max - the maximum latency (in nanoseconds).
+	 */
+	public LatencyHistogram(long[] counts, long total, long max) {
+
+		this.counts = Arrays.copyOf(counts, BUCKETS);
+		this.total = total;
+		this.max = max;
+
+		long result = 0;
+		for(long bucketCount : this.counts)
+			result += bucketCount;
+		this.count = result;
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 * @return <code>long</code> - the number of latencies.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of latencies of each bucket.
+	 * @return <code>long[]</code> - the count of each bucket, from the shortest latencies to the longest ones.
+	 */
+	public long[] getCounts() {
+		return counts.clone();
+	}
+
+	/**
+	 * Returns the upper bound of each bucket.
+	 * @return <code>double[]</code> - the upper bound (in milliseconds) of each bucket.
+	 */
+	public double[] getUpperBounds() {
+
+		double[] result = new double[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++)
+			result[i] = getUpperBound(i);
+
+		return result;
+	}
+
+	/**
+	 * Returns the mean latency.
+	 * @return <code>double</code> - the mean (in milliseconds), <code>0</code> if no latency has been recorded.
+	 */
+	public double getMean() {
+		return (count > 0) ? total / NANOS_PER_MILLI / count : 0;
+	}
+
+	/**
+	 * Returns the maximum latency.
+	 * @return <code>double</code> - the maximum (in milliseconds), <code>0</code> if no latency has been recorded.
+	 */
+	public double getMax() {
+		return max / NANOS_PER_MILLI;
+	}
+
+	public double getMedian() {
+		return getPercentile(50);
+	}
+
+	public double getP90() {
+		return getPercentile(90);
+	}
+
+	public double getP99() {
+		return getPercentile(99);
+	}
+
+	/**
+	 * Estimates a percentile of the latencies.
+	 * @param percentile - the percentile, between <code>0</code> and <code>100</code>.
+	 * @return <code>double</code> - the upper bound (in milliseconds) of the bucket where the percentile falls, never
+	 * greater than the maximum latency. <code>0</code> if no latency has been recorded.
+	 */
+	public double getPercentile(double percentile) {
+
+		if(count == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+
+		long accumulated = 0;
+		for(int i = 0; i < BUCKETS - 1; i++) {
+			accumulated += counts[i];
+			if(accumulated >= rank)
+				return Math.min(getUpperBound(i), getMax());
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Upper bound of a bucket, in milliseconds.
+	 */
+	private static double getUpperBound(int bucket) {
+		return (bucket < BUCKETS - 1) ? (1L << bucket) / 1000.0 : Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + count + ", mean=" + getMean() + ", median=" + getMedian() + ", p90=" + getP90()
+				+ ", p99=" + getP99() + ", max=" + getMax() + "]";
+	}
+}
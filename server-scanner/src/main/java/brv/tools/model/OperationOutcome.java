@@ -0,0 +1,23 @@
+package brv.tools.model;
+
+/**
+ * Enumeration of possible outcomes of an operation applied to a daemon by a bulk operation of a
+ * {@link brv.tools.daemons.manager.ScanDaemonManager ScanDaemonManager}.
+ * @author flash
+ *
+ */
+public enum OperationOutcome {
+	APPLIED("applied"),
+	UNCHANGED("unchanged"),
+	FAILED("failed");
+	
+	private String value;
+	
+	private OperationOutcome(String value) {
+		this.value = value;
+	}
+
+	public String getValue() {
+		return value;
+	}
+}
@@ -0,0 +1,49 @@
+package brv.tools.model;
+
+import java.io.Serializable;
+
+/**
+ * Class which represents a change of the state of a server detected by a {@link brv.tools.daemons.ScanDaemon ScanDaemon}.
+ * <p>
+ * Every change notified by a daemon is stamped with a sequence number, increasing by one on each change, so consumers
+ * can resume from the last change they handled and detect any change they missed.
+ * </p>
+ * @author flash
+ *
+ */
+public class ScanChange implements Serializable {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 3170263472584036711L;
+	
+	private long sequence;
+	private ScanResult result;
+	
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Returns the new state of the server, either {@link ServerStatus#ONLINE} or {@link ServerStatus#OFFLINE}.
+	 * @return <code>ScanResult</code> - the result of the server.
+	 */
+	public ScanResult getResult() {
+		return result;
+	}
+	
+	public void setResult(ScanResult result) {
+		this.result = result;
+	}
+
+	@Override
+	public String toString() {
+		return "ScanChange [sequence=" + sequence + ", result=" + result + "]";
+	}
+	
+}
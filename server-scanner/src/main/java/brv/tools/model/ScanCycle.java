@@ -0,0 +1,87 @@
+package brv.tools.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Class which represents a completed cycle of scans of a {@link brv.tools.daemons.ScanDaemon ScanDaemon}.
+ * <p>
+ * A cycle is completed once every host of the daemon network has been visited once. Hosts skipped by a daemon
+ * backing off dead hosts are not counted as scanned.
+ * </p>
+ * @author flash
+ *
+ */
+public class ScanCycle implements Serializable {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -2398716409427411236L;
+	
+	private long daemonId;
+	private long number;
+	private long scannedHosts;
+	private int onlineServers;
+	private Date startDate;
+	private long duration;
+	
+	public long getDaemonId() {
+		return daemonId;
+	}
+	
+	public void setDaemonId(long daemonId) {
+		this.daemonId = daemonId;
+	}
+	
+	public long getNumber() {
+		return number;
+	}
+	
+	public void setNumber(long number) {
+		this.number = number;
+	}
+	
+	public long getScannedHosts() {
+		return scannedHosts;
+	}
+	
+	public void setScannedHosts(long scannedHosts) {
+		this.scannedHosts = scannedHosts;
+	}
+	
+	public int getOnlineServers() {
+		return onlineServers;
+	}
+	
+	public void setOnlineServers(int onlineServers) {
+		this.onlineServers = onlineServers;
+	}
+	
+	public Date getStartDate() {
+		return startDate;
+	}
+	
+	public void setStartDate(Date startDate) {
+		this.startDate = startDate;
+	}
+	
+	/**
+	 * Returns how long the cycle took to complete.
+	 * @return <code>long</code> - the cycle duration in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+
+	@Override
+	public String toString() {
+		return "ScanCycle [daemonId=" + daemonId + ", number=" + number + ", scannedHosts=" + scannedHosts
+				+ ", onlineServers=" + onlineServers + ", duration=" + duration + "]";
+	}
+	
+}
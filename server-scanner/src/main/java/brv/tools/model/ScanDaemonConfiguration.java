@@ -15,6 +15,7 @@ import brv.commons.model.enums.Protocol;
  * 	<li>Target network id.</li>
  * 	<li>Connection timeout in milliseconds.</li>
  * 	<li>Sleep time between scans in milliseconds</li>
+ * 	<li>Maximum number of hosts scanned at the same time.</li>
  * </ul>
  * @author flash
  *
@@ -32,6 +33,14 @@ public class ScanDaemonConfiguration implements Serializable {
 	private int port = 0;
 	private int timeout = 10;
 	private int sleep = 15000;
+	private int parallelism = 1;
+	private double rateLimit = 0;
+	private int timeoutFloor = 0;
+	private int timeoutCeiling = 0;
+	private int maxBackoff = 0;
+	private int sweepInterval = 0;
+	private String journalDirectory = null;
+	private String neighborTable = null;
 	private boolean running = false;
 	
 	public long getId() {
@@ -86,6 +95,70 @@ public class ScanDaemonConfiguration implements Serializable {
 		this.sleep = sleep;
 	}
 
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public double getRateLimit() {
+		return rateLimit;
+	}
+
+	public void setRateLimit(double rateLimit) {
+		this.rateLimit = rateLimit;
+	}
+
+	public int getTimeoutFloor() {
+		return timeoutFloor;
+	}
+
+	public void setTimeoutFloor(int timeoutFloor) {
+		this.timeoutFloor = timeoutFloor;
+	}
+
+	public int getTimeoutCeiling() {
+		return timeoutCeiling;
+	}
+
+	public void setTimeoutCeiling(int timeoutCeiling) {
+		this.timeoutCeiling = timeoutCeiling;
+	}
+
+	public int getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public void setMaxBackoff(int maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	public int getSweepInterval() {
+		return sweepInterval;
+	}
+
+	public void setSweepInterval(int sweepInterval) {
+		this.sweepInterval = sweepInterval;
+	}
+
+	public String getJournalDirectory() {
+		return journalDirectory;
+	}
+
+	public void setJournalDirectory(String journalDirectory) {
+		this.journalDirectory = journalDirectory;
+	}
+
+	public String getNeighborTable() {
+		return neighborTable;
+	}
+
+	public void setNeighborTable(String neighborTable) {
+		this.neighborTable = neighborTable;
+	}
+
 	public boolean isRunning() {
 		return running;
 	}
@@ -122,13 +195,16 @@ public class ScanDaemonConfiguration implements Serializable {
 		if (port != other.port)
 			return false;
 
-		return (protocol != other.protocol);
+		return (protocol == other.protocol);
 	}
 
 	@Override
 	public String toString() {
 		return "ScanDaemonDTO [protocol=" + protocol + ", networkId=" + networkId + ", port=" + port + ", timeout="
-				+ timeout + ", sleep=" + sleep + "]";
+				+ timeout + ", sleep=" + sleep + ", parallelism=" + parallelism + ", rateLimit=" + rateLimit
+				+ ", timeoutFloor=" + timeoutFloor + ", timeoutCeiling=" + timeoutCeiling
+				+ ", maxBackoff=" + maxBackoff + ", sweepInterval=" + sweepInterval + ", journalDirectory=" + journalDirectory
+				+ ", neighborTable=" + neighborTable + "]";
 	}
 	
 	
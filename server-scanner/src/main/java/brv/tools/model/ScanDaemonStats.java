@@ -0,0 +1,232 @@
+package brv.tools.model;
+
+import java.io.Serializable;
+
+import brv.commons.model.enums.Protocol;
+
+/**
+ * Class which represents the runtime statistics of an specific {@link brv.tools.daemons.ScanDaemon ScanDaemon}.
+ * <p>
+ * Statistics include the following details, accumulated since the daemon was built:
+ * </p>
+ * <ul>
+ * 	<li>Probes sent, and how many of them succeeded, timed out or failed with an error.</li>
+ * 	<li>Ping latency histograms of succeeded and failed probes.</li>
+ * 	<li>Cycle duration histogram and the duration of the last completed cycle.</li>
+ * 	<li>Events emitted to the listeners and the time spent by the listeners handling them.</li>
+ * </ul>
+ * <p>
+ * A probe times out when it doesn't complete before its connect timeout. Any other failed probe (a refused connection,
+ * an unreachable host or an unexpected reply) is counted as an error.
+ * </p>
+ * @author flash
+ *
+ */
+public class ScanDaemonStats implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -1726530853497208145L;
+
+	private long id = -1;
+	private Protocol protocol = null;
+	private int port = 0;
+	private boolean running = false;
+	private long probesSent = 0;
+	private long probesSucceeded = 0;
+	private long probesTimedOut = 0;
+	private long probesErrored = 0;
+	private LatencyHistogram successLatency;
+	private LatencyHistogram failureLatency;
+	private long completedCycles = 0;
+	private long lastCycleDuration = 0;
+	private LatencyHistogram cycleDuration;
+	private int onlineServers = 0;
+	private long eventsEmitted = 0;
+	private long droppedNotifications = 0;
+	private long listenerQueueDepth = 0;
+	private long listenerDispatchTime = 0;
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public Protocol getProtocol() {
+		return protocol;
+	}
+
+	public void setProtocol(Protocol protocol) {
+		this.protocol = protocol;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public void setRunning(boolean running) {
+		this.running = running;
+	}
+
+	/**
+	 * Returns the number of probes sent, including those still in flight.
+	 * @return <code>long</code> - the number of sent probes.
+	 */
+	public long getProbesSent() {
+		return probesSent;
+	}
+
+	public void setProbesSent(long probesSent) {
+		this.probesSent = probesSent;
+	}
+
+	public long getProbesSucceeded() {
+		return probesSucceeded;
+	}
+
+	public void setProbesSucceeded(long probesSucceeded) {
+		this.probesSucceeded = probesSucceeded;
+	}
+
+	public long getProbesTimedOut() {
+		return probesTimedOut;
+	}
+
+	public void setProbesTimedOut(long probesTimedOut) {
+		this.probesTimedOut = probesTimedOut;
+	}
+
+	public long getProbesErrored() {
+		return probesErrored;
+	}
+
+	public void setProbesErrored(long probesErrored) {
+		this.probesErrored = probesErrored;
+	}
+
+	/**
+	 * Returns the ping latencies of the succeeded probes.
+	 * @return <code>LatencyHistogram</code> - the latency histogram.
+	 */
+	public LatencyHistogram getSuccessLatency() {
+		return successLatency;
+	}
+
+	public void setSuccessLatency(LatencyHistogram successLatency) {
+		this.successLatency = successLatency;
+	}
+
+	/**
+	 * Returns the ping latencies of the timed out and errored probes.
+	 * @return <code>LatencyHistogram</code> - the latency histogram.
+	 */
+	public LatencyHistogram getFailureLatency() {
+		return failureLatency;
+	}
+
+	public void setFailureLatency(LatencyHistogram failureLatency) {
+		this.failureLatency = failureLatency;
+	}
+
+	public long getCompletedCycles() {
+		return completedCycles;
+	}
+
+	public void setCompletedCycles(long completedCycles) {
+		this.completedCycles = completedCycles;
+	}
+
+	/**
+	 * Returns how long the last completed cycle took.
+	 * @return <code>long</code> - the cycle duration in milliseconds, <code>0</code> if no cycle has been completed.
+	 */
+	public long getLastCycleDuration() {
+		return lastCycleDuration;
+	}
+
+	public void setLastCycleDuration(long lastCycleDuration) {
+		this.lastCycleDuration = lastCycleDuration;
+	}
+
+	/**
+	 * Returns the durations of every completed cycle.
+	 * @return <code>LatencyHistogram</code> - the cycle duration histogram.
+	 */
+	public LatencyHistogram getCycleDuration() {
+		return cycleDuration;
+	}
+
+	public void setCycleDuration(LatencyHistogram cycleDuration) {
+		this.cycleDuration = cycleDuration;
+	}
+
+	public int getOnlineServers() {
+		return onlineServers;
+	}
+
+	public void setOnlineServers(int onlineServers) {
+		this.onlineServers = onlineServers;
+	}
+
+	/**
+	 * Returns the number of events emitted to the listeners.
+	 * @return <code>long</code> - the number of emitted events, counted once regardless of the number of listeners.
+	 */
+	public long getEventsEmitted() {
+		return eventsEmitted;
+	}
+
+	public void setEventsEmitted(long eventsEmitted) {
+		this.eventsEmitted = eventsEmitted;
+	}
+
+	public long getDroppedNotifications() {
+		return droppedNotifications;
+	}
+
+	public void setDroppedNotifications(long droppedNotifications) {
+		this.droppedNotifications = droppedNotifications;
+	}
+
+	public long getListenerQueueDepth() {
+		return listenerQueueDepth;
+	}
+
+	public void setListenerQueueDepth(long listenerQueueDepth) {
+		this.listenerQueueDepth = listenerQueueDepth;
+	}
+
+	/**
+	 * Returns the time spent by the listeners handling the notifications.
+	 * @return <code>long</code> - the total dispatch time in milliseconds.
+	 */
+	public long getListenerDispatchTime() {
+		return listenerDispatchTime;
+	}
+
+	public void setListenerDispatchTime(long listenerDispatchTime) {
+		this.listenerDispatchTime = listenerDispatchTime;
+	}
+
+	@Override
+	public String toString() {
+		return "ScanDaemonStats [id=" + id + ", protocol=" + protocol + ", port=" + port + ", running=" + running
+				+ ", probesSent=" + probesSent + ", probesSucceeded=" + probesSucceeded + ", probesTimedOut=" + probesTimedOut
+				+ ", probesErrored=" + probesErrored + ", successLatency=" + successLatency + ", failureLatency=" + failureLatency
+				+ ", completedCycles=" + completedCycles + ", lastCycleDuration=" + lastCycleDuration + ", onlineServers=" + onlineServers
+				+ ", eventsEmitted=" + eventsEmitted + ", droppedNotifications=" + droppedNotifications
+				+ ", listenerQueueDepth=" + listenerQueueDepth + ", listenerDispatchTime=" + listenerDispatchTime + "]";
+	}
+}
@@ -17,12 +17,18 @@ public class ScanResult implements Serializable {
 	 */
 	private static final long serialVersionUID = 7136000466592102702L;
 	
+	/**
+	 * Response time of a server which didn't reply.
+	 */
+	public static final double NO_RESPONSE = -1;
+	
 	private Protocol protocol;
 	private String ip;
 	private String hostname;
 	private int port;
 	private Date date;
 	private ServerStatus status;
+	private double responseTime = NO_RESPONSE;
 	
 	
 	public int getPort() {
@@ -72,5 +78,17 @@ public class ScanResult implements Serializable {
 		this.status = status;
 	}
 	
+	/**
+	 * Returns the time the server took to reply to the ping.
+	 * @return <code>double</code> - the response time (in milliseconds), or {@link #NO_RESPONSE} if the server didn't reply.
+	 */
+	public double getResponseTime() {
+		return responseTime;
+	}
+	
+	public void setResponseTime(double responseTime) {
+		this.responseTime = responseTime;
+	}
+	
 	
 }
@@ -0,0 +1,51 @@
+package brv.tools.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class which represents the servers detected by a {@link brv.tools.daemons.ScanDaemon ScanDaemon} as of a change sequence number.
+ * <p>
+ * The snapshot includes every change up to its sequence number, and might include some later ones. Applying the changes
+ * after its sequence number, in order, brings it up to date.
+ * </p>
+ * @author flash
+ * @see ScanChange
+ */
+public class ServerSnapshot implements Serializable {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -6125086417412302338L;
+	
+	private long sequence;
+	private List<ScanResult> servers = new ArrayList<>();
+	
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Returns the online servers.
+	 * @return <code>List</code> - the results of the online servers.
+	 */
+	public List<ScanResult> getServers() {
+		return servers;
+	}
+	
+	public void setServers(List<ScanResult> servers) {
+		this.servers = servers;
+	}
+
+	@Override
+	public String toString() {
+		return "ServerSnapshot [sequence=" + sequence + ", servers=" + servers.size() + "]";
+	}
+	
+}
@@ -0,0 +1,93 @@
+package brv.tools.probes;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lightweight FTP liveness probe.
+ * <p>
+ * Opens a plain socket and reads the greeting the server sends as soon as the connection is established, checking its
+ * reply code. No command is sent and no client object is created, so it is much cheaper than a full FTP client connect.
+ * </p>
+ * <p>
+ * The whole greeting must be received before the read timeout expires, so a server sending it byte by byte can't hold
+ * the probe longer than that. Each thread reads into its own reusable buffer, so any number of probes can run at the same time.
+ * </p>
+ * See <a href="https://tools.ietf.org/html/rfc959">RFC959</a> for the reply format.
+ * @author flash
+ *
+ */
+public final class FtpBannerProbe {
+
+	/**
+	 * Reply code of a server ready for a new user.
+	 */
+	public static final int SERVICE_READY = 220;
+
+	// Only the first line of the greeting is read, long lines are truncated.
+	private static final int BUFFER_SIZE = 512;
+
+	private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private FtpBannerProbe() {
+	}
+
+	/**
+	 * Checks if an FTP server is ready for a new user.
+	 * @param ip - the ip of the server.
+	 * @param port - the port of the server.
+	 * @param connectTimeout - the maximum time (in milliseconds) to establish the connection.
+	 * @param readTimeout - the maximum time (in milliseconds) to receive the greeting once connected.
+	 * @return <code>true</code> - if the server greeted with a <code>220</code> reply.
+	 */
+	public static boolean isReady(String ip, int port, int connectTimeout, int readTimeout) {
+		return readReplyCode(ip, port, connectTimeout, readTimeout) == SERVICE_READY;
+	}
+
+	/**
+	 * Reads the reply code of the greeting of an FTP server.
+	 * @param ip - the ip of the server.
+	 * @param port - the port of the server.
+	 * @param connectTimeout - the maximum time (in milliseconds) to establish the connection.
+	 * @param readTimeout - the maximum time (in milliseconds) to receive the greeting once connected.
+	 * @return <code>int</code> - the reply code, or -1 if the connection failed or the greeting was not a valid reply.
+	 */
+	public static int readReplyCode(String ip, int port, int connectTimeout, int readTimeout) {
+
+		try(Socket socket = new Socket()) {
+
+			socket.connect(new InetSocketAddress(ip, port), connectTimeout);
+
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeout);
+			int length = LineReader.readLine(socket, buffers.get(), deadline);
+			return parseReplyCode(buffers.get(), length);
+
+		} catch (IOException | IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Parses the reply code of a line, which must start with three digits followed by a space, the end of the line or,
+	 * for multiline replies, a hyphen.
+	 */
+	private static int parseReplyCode(byte[] line, int length) {
+
+		if(length < 3)
+			return -1;
+
+		int code = 0;
+		for(int i = 0; i < 3; i++) {
+			if(line[i] < '0' || line[i] > '9')
+				return -1;
+			code = code * 10 + (line[i] - '0');
+		}
+
+		if(length == 3)
+			return code;
+
+		return (line[3] == ' ' || line[3] == '-' || line[3] == '\r') ? code : -1;
+	}
+}
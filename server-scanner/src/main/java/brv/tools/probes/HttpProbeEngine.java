@@ -0,0 +1,298 @@
+package brv.tools.probes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Non-blocking HTTP probe engine.
+ * <p>
+ * Checks if an HTTP server is up sending a <code>HEAD</code> request through a single pooled asynchronous client.
+ * The requests are multiplexed over a few I/O reactor threads, so no thread is blocked while waiting for the servers
+ * to reply.
+ * <br>Connections are not kept alive: each host is probed once per cycle, so they would rarely be reused, and a
+ * connection closed by the server meanwhile would report an online server as offline.
+ * </p>
+ * <p>
+ * The number of requests in flight is bounded both globally and per route (a route being a single host and port).
+ * Requests exceeding those limits wait for a connection to be released.
+ * <br>Each probe has its own deadline, which includes the time spent waiting for a connection. If a probe has not
+ * completed when its deadline expires, the request is aborted and reported as failed.
+ * </p>
+ * @author flash
+ *
+ */
+public final class HttpProbeEngine implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(HttpProbeEngine.class.getName());
+
+	/**
+	 * Default maximum number of requests in flight.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+	/**
+	 * Default maximum number of requests in flight to the same route.
+	 */
+	public static final int DEFAULT_MAX_PER_ROUTE = 2;
+
+	private static HttpProbeEngine shared;
+
+	private final int maxInFlight;
+	private final int maxPerRoute;
+	private final CloseableHttpAsyncClient client;
+	private final ScheduledExecutorService deadlines;
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor for HttpProbeEngine.
+	 * @param maxInFlight - the maximum number of requests which can be in flight at the same time.
+	 * @param maxPerRoute - the maximum number of requests which can be in flight to the same route at the same time.
+	 * @throws IOException if the I/O reactor could not be started.
+	 * @throws IllegalArgumentException When <code>maxInFlight < 1</code> or <code>maxPerRoute < 1</code>
+	 */
+	public HttpProbeEngine(int maxInFlight, int maxPerRoute) throws IOException {
+
+		if(maxInFlight < 1)
+			throw new IllegalArgumentException("Max in flight requests must be greater than 0.");
+
+		if(maxPerRoute < 1)
+			throw new IllegalArgumentException("Max in flight requests per route must be greater than 0.");
+
+		this.maxInFlight = maxInFlight;
+		this.maxPerRoute = maxPerRoute;
+
+		IOReactorConfig reactorConfig = IOReactorConfig.custom()
+										.setIoThreadCount(Runtime.getRuntime().availableProcessors())
+										.setSoKeepAlive(true)
+										.build();
+
+		DefaultConnectingIOReactor reactor = new DefaultConnectingIOReactor(reactorConfig, new NamedThreadFactory("HttpProbeEngine-reactor"));
+		PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(reactor);
+		connectionManager.setMaxTotal(maxInFlight);
+		connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+		this.client = HttpAsyncClients.custom()
+										.setConnectionManager(connectionManager)
+										.setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE)
+										.setThreadFactory(new NamedThreadFactory("HttpProbeEngine-dispatcher"))
+										.build();
+		this.client.start();
+
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("HttpProbeEngine-deadlines"));
+		timer.setRemoveOnCancelPolicy(true);
+		this.deadlines = timer;
+	}
+
+	/**
+	 * Returns the engine shared by all the daemons of the JVM.
+	 * <p>
+	 * The shared engine is lazily created the first time it is requested, using {@link #DEFAULT_MAX_IN_FLIGHT} and
+	 * {@link #DEFAULT_MAX_PER_ROUTE}. Daemons needing other limits are given their own engine through
+	 * {@link brv.tools.daemons.ScanDaemonBuilder#withHttpProbeEngine(HttpProbeEngine)}.
+	 * </p>
+	 * @return <code>HttpProbeEngine</code> - the shared engine.
+	 * @throws IOException if the shared engine could not be created.
+	 */
+	public static synchronized HttpProbeEngine getShared() throws IOException {
+		if((shared == null) || shared.closed)
+			shared = new HttpProbeEngine(DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_PER_ROUTE);
+		return shared;
+	}
+
+	/**
+	 * Sends a <code>HEAD</code> request without blocking the calling thread.
+	 * <p>
+	 * The deadline is the connect timeout plus {@link ScanDaemon#DEFAULT_READ_TIMEOUT}.
+	 * </p>
+	 * @param url - the url to send the request to.
+	 * @param timeout - the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @return <code>CompletableFuture</code> - completed with <code>true</code> if the server replied with any
+	 * <code>2xx</code> or <code>3xx</code> status code before the deadline, or <code>false</code> otherwise.
+	 * The future is never completed exceptionally.
+	 */
+	public CompletableFuture<Boolean> probe(String url, int timeout) {
+		return probe(url, timeout, timeout + ScanDaemon.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Sends a <code>HEAD</code> request without blocking the calling thread.
+	 * @param url - the url to send the request to.
+	 * @param timeout - the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @param deadline - the maximum time (in milliseconds) to wait for the whole probe to complete.
+	 * @return <code>CompletableFuture</code> - completed with <code>true</code> if the server replied with any
+	 * <code>2xx</code> or <code>3xx</code> status code before the deadline, or <code>false</code> otherwise.
+	 * The future is never completed exceptionally.
+	 * <br>Any non-async dependent actions will be run on the I/O threads, so they should never block.
+	 */
+	public CompletableFuture<Boolean> probe(String url, int timeout, int deadline) {
+
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+		if(closed) {
+			result.complete(false);
+			return result;
+		}
+
+		HttpHead request;
+		try {
+			request = new HttpHead(url);
+		} catch (IllegalArgumentException e) {
+			result.complete(false);
+			return result;
+		}
+
+		request.setConfig(RequestConfig.custom()
+							.setConnectionRequestTimeout(deadline)
+							.setConnectTimeout(timeout)
+							.setSocketTimeout(deadline)
+							.build());
+
+		inFlight.incrementAndGet();
+		result.whenComplete((up, error) -> inFlight.decrementAndGet());
+
+		Future<HttpResponse> execution;
+		try {
+			execution = client.execute(request, new ProbeCallback(result));
+		} catch (IllegalStateException e) {
+			// The client has been closed meanwhile.
+			result.complete(false);
+			return result;
+		}
+
+		// Aborts the request if it doesn't complete on time. Completed probes release their timer.
+		ScheduledFuture<?> timer = deadlines.schedule(() -> {
+			if(result.complete(false))
+				execution.cancel(true);
+		}, deadline, TimeUnit.MILLISECONDS);
+		result.whenComplete((up, error) -> timer.cancel(false));
+
+		return result;
+	}
+
+	/**
+	 * Checks if an HTTP server is up, blocking the calling thread until the result is known.
+	 * @param url - the url to send the request to.
+	 * @param timeout - the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @return <code>true</code> - if the server replied with any <code>2xx</code> or <code>3xx</code> status code.
+	 */
+	public boolean isUp(String url, int timeout) {
+		return isUp(url, timeout, timeout + ScanDaemon.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Checks if an HTTP server is up, blocking the calling thread until the result is known.
+	 * @param url - the url to send the request to.
+	 * @param timeout - the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @param deadline - the maximum time (in milliseconds) to wait for the whole probe to complete.
+	 * @return <code>true</code> - if the server replied with any <code>2xx</code> or <code>3xx</code> status code.
+	 */
+	public boolean isUp(String url, int timeout, int deadline) {
+		try {
+			return probe(url, timeout, deadline).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of requests which are currently in flight, including those waiting for a connection.
+	 * @return <code>int</code> - the number of in flight requests.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Returns the maximum number of requests which can be in flight at the same time.
+	 * @return <code>int</code> - the maximum number of in flight requests.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Returns the maximum number of requests which can be in flight to the same route at the same time.
+	 * @return <code>int</code> - the maximum number of in flight requests per route.
+	 */
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	/**
+	 * Closes the engine.
+	 * <p>
+	 * Any ongoing requests will be aborted and completed as failed.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+
+		closed = true;
+		deadlines.shutdownNow();
+
+		try {
+			client.close();
+		} catch (IOException e) {
+			logger.warning("Couldn't close HTTP probe engine client properly.");
+		}
+	}
+
+	/**
+	 * Completes a probe with the outcome of its request.
+	 */
+	private static final class ProbeCallback implements FutureCallback<HttpResponse> {
+
+		private final CompletableFuture<Boolean> result;
+
+		private ProbeCallback(CompletableFuture<Boolean> result) {
+			this.result = result;
+		}
+
+		@Override
+		public void completed(HttpResponse response) {
+
+			// Any codes between 200 and 399 should be ok.
+			int responseCode = response.getStatusLine().getStatusCode();
+			result.complete(HttpStatus.SC_OK <= responseCode && responseCode < HttpStatus.SC_BAD_REQUEST);
+		}
+
+		@Override
+		public void failed(Exception e) {
+			// Connection refused, timeout, unreachable host...
+			result.complete(false);
+		}
+
+		@Override
+		public void cancelled() {
+			result.complete(false);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package brv.tools.probes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * HTTPS probe engine.
+ * <p>
+ * Every probe uses the same {@link SSLContext}, whose client session cache keeps the TLS sessions of the probed servers.
+ * Sessions are cached by ip and port, so the next probes of a known server resume its session with an abbreviated
+ * handshake instead of a full one, saving the key exchange and the certificate validation.
+ * </p>
+ * <p>
+ * Servers can be probed in two ways:
+ * </p>
+ * <ul>
+ * 	<li>{@link #isUp(String, int, int, int)}: completes the handshake and sends a <code>HEAD</code> request over the
+ * 	same connection, as an HTTPS client would.</li>
+ * 	<li>{@link #handshake(String, int, int, int)}: only completes the handshake. Any server completing it is considered
+ * 	alive, whatever its HTTP layer would reply.</li>
+ * </ul>
+ * <p>
+ * Certificates are validated by the trust managers of the context, but hostnames are not verified, as servers are probed
+ * by their ip: a server whose certificate is trusted but issued for any other name is up, unlike with the default hostname
+ * verifier of <code>HttpsURLConnection</code>. Probes block the calling thread and the engine holds no threads, so it can be used from any number of threads
+ * at the same time.
+ * </p>
+ * @author flash
+ *
+ */
+public final class HttpsProbeEngine {
+
+	/**
+	 * Default maximum number of TLS sessions kept, one for each probed server.
+	 */
+	public static final int DEFAULT_SESSION_CACHE_SIZE = 65536;
+
+	/**
+	 * Default time (in seconds) a TLS session is kept to be resumed.
+	 */
+	public static final int DEFAULT_SESSION_TIMEOUT = 86400;
+
+	// Only the status line of the response is read, long lines are truncated.
+	private static final int BUFFER_SIZE = 256;
+
+	private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private static HttpsProbeEngine shared;
+
+	private final SSLContext context;
+	private final SSLSocketFactory factory;
+
+	/**
+	 * Constructor for HttpsProbeEngine.
+	 * <p>
+	 * The client session cache of the context is resized to keep the sessions of the probed servers.
+	 * </p>
+	 * @param context - the context used to establish every connection.
+	 * @param sessionCacheSize - the maximum number of TLS sessions kept, <code>0</code> meaning no limit.
+	 * @param sessionTimeout - the time (in seconds) a TLS session is kept to be resumed, <code>0</code> meaning no limit.
+	 * @throws IllegalArgumentException When <code>sessionCacheSize < 0</code> or <code>sessionTimeout < 0</code>
+	 */
+	public HttpsProbeEngine(SSLContext context, int sessionCacheSize, int sessionTimeout) {
+
+		if(sessionCacheSize < 0)
+			throw new IllegalArgumentException("Session cache size must be greater or equal than 0.");
+
+		if(sessionTimeout < 0)
+			throw new IllegalArgumentException("Session timeout must be greater or equal than 0.");
+
+		this.context = Objects.requireNonNull(context);
+		this.factory = context.getSocketFactory();
+
+		SSLSessionContext sessions = context.getClientSessionContext();
+		sessions.setSessionCacheSize(sessionCacheSize);
+		sessions.setSessionTimeout(sessionTimeout);
+	}
+
+	/**
+	 * Returns the engine shared by all the daemons of the JVM.
+	 * <p>
+	 * The shared engine is lazily created the first time it is requested, on its own context with the default trust
+	 * managers of the JVM, using {@link #DEFAULT_SESSION_CACHE_SIZE} and {@link #DEFAULT_SESSION_TIMEOUT}.
+	 * </p>
+	 * @return <code>HttpsProbeEngine</code> - the shared engine.
+	 * @throws GeneralSecurityException if the context of the shared engine could not be created.
+	 */
+	public static synchronized HttpsProbeEngine getShared() throws GeneralSecurityException {
+
+		if(shared == null) {
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, null, null);
+			shared = new HttpsProbeEngine(context, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT);
+		}
+
+		return shared;
+	}
+
+	/**
+	 * Checks if an HTTPS server is up, sending a <code>HEAD</code> request once the handshake has been completed.
+	 * @param ip - the ip of the server.
+	 * @param port - the port of the server.
+	 * @param connectTimeout - the maximum time (in milliseconds) to establish the TCP connection.
+	 * @param readTimeout - the maximum time (in milliseconds) to complete the handshake and receive the response once connected.
+	 * @return <code>true</code> - if the server replied with any <code>2xx</code> or <code>3xx</code> status code.
+	 */
+	public boolean isUp(String ip, int port, int connectTimeout, int readTimeout) {
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout + (long) readTimeout);
+
+		try(SSLSocket socket = connect(ip, port, connectTimeout, readTimeout)) {
+
+			OutputStream output = socket.getOutputStream();
+			output.write(headRequest(ip, port));
+			output.flush();
+
+			int length = LineReader.readLine(socket, buffers.get(), deadline);
+			int status = parseStatusCode(buffers.get(), length);
+
+			// Any codes between 200 and 399 should be ok.
+			return (200 <= status) && (status < 400);
+
+		} catch (IOException | IllegalArgumentException e) {
+			// Connection refused, timeout, handshake failure...
+			return false;
+		}
+	}
+
+	/**
+	 * Checks if a TLS server is alive, just completing the handshake.
+	 * @param ip - the ip of the server.
+	 * @param port - the port of the server.
+	 * @param connectTimeout - the maximum time (in milliseconds) to establish the TCP connection.
+	 * @param readTimeout - the maximum time (in milliseconds) to complete the handshake once connected.
+	 * @return <code>true</code> - if the handshake was completed.
+	 */
+	public boolean handshake(String ip, int port, int connectTimeout, int readTimeout) {
+		try {
+			connect(ip, port, connectTimeout, readTimeout).close();
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	public SSLContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Establishes a connection and completes its handshake, resuming the cached session of the server if there is any.
+	 */
+	private SSLSocket connect(String ip, int port, int connectTimeout, int readTimeout) throws IOException {
+
+		Socket plain = new Socket();
+		try {
+			plain.connect(new InetSocketAddress(ip, port), connectTimeout);
+			plain.setSoTimeout(readTimeout);
+
+			// The session cache is keyed by the peer given here.
+			SSLSocket socket = (SSLSocket) factory.createSocket(plain, ip, port, true);
+			try {
+				socket.startHandshake();
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+
+			return socket;
+
+		} catch (IOException | RuntimeException e) {
+			plain.close();
+			throw e;
+		}
+	}
+
+	private static byte[] headRequest(String ip, int port) {
+
+		String host = (ip.indexOf(':') >= 0) ? "[" + ip + "]:" + port : ip + ":" + port;
+
+		return ("HEAD / HTTP/1.1\r\n"
+				+ "Host: " + host + "\r\n"
+				+ "Connection: close\r\n"
+				+ "\r\n").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Parses the status code of a status line such as <code>HTTP/1.1 200 OK</code>.
+	 * @return <code>int</code> - the status code, or -1 if the line is not a valid status line.
+	 */
+	private static int parseStatusCode(byte[] line, int length) {
+
+		// "HTTP/x.y NNN"
+		if((length < 12) || (line[0] != 'H') || (line[1] != 'T') || (line[2] != 'T') || (line[3] != 'P') || (line[8] != ' '))
+			return -1;
+
+		int code = 0;
+		for(int i = 9; i < 12; i++) {
+			if(line[i] < '0' || line[i] > '9')
+				return -1;
+			code = code * 10 + (line[i] - '0');
+		}
+
+		return code;
+	}
+}
@@ -0,0 +1,57 @@
+package brv.tools.probes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the first line a server sends on a socket, bounded by a deadline.
+ * <p>
+ * The socket timeout is lowered before each read to the time left until the deadline, so a server sending the line
+ * byte by byte can't hold the probe longer than that.
+ * </p>
+ * @author flash
+ *
+ */
+final class LineReader {
+
+	private LineReader() {
+	}
+
+	/**
+	 * Reads bytes until the end of the first line, the buffer is full or the connection is closed.
+	 * @param socket - the connected socket.
+	 * @param buffer - the buffer the line is read into, long lines are truncated to its size.
+	 * @param deadline - the time (as given by <code>System.nanoTime()</code>) by which the line must have been received.
+	 * @return <code>int</code> - the number of bytes read, without the line feed.
+	 * @throws SocketTimeoutException if the line was not received before the deadline.
+	 */
+	static int readLine(Socket socket, byte[] buffer, long deadline) throws IOException {
+
+		InputStream input = socket.getInputStream();
+		int length = 0;
+
+		while(length < buffer.length) {
+
+			long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if(remaining <= 0)
+				throw new SocketTimeoutException("Line not received before the deadline.");
+
+			socket.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+
+			int read = input.read(buffer, length, buffer.length - length);
+			if(read < 0)
+				break;
+
+			for(int i = length; i < length + read; i++)
+				if(buffer[i] == '\n')
+					return i;
+
+			length += read;
+		}
+
+		return length;
+	}
+}
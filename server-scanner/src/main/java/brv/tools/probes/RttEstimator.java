@@ -0,0 +1,235 @@
+package brv.tools.probes;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive timeouts based on the measured round trip times, in the same way TCP computes its retransmission timeout.
+ * <p>
+ * A smoothed round trip time (SRTT) and its variance (RTTVAR) are kept for every host which has replied, as well as for
+ * its subnet (<code>/24</code> for IPv4 addresses, the last 16 bits for IPv6 addresses). The timeout is derived from them
+ * as described by <a href="https://tools.ietf.org/html/rfc6298">RFC6298</a>:
+ * </p>
+ * <pre>
+ * RTTVAR = (1 - 1/4) * RTTVAR + 1/4 * |SRTT - R|
+ * SRTT   = (1 - 1/8) * SRTT   + 1/8 * R
+ * RTO    = SRTT + max(1ms, 4 * RTTVAR)
+ * </pre>
+ * <p>
+ * Hosts which have never replied use the timeout of their subnet, or the initial timeout if no host of the subnet
+ * has replied either. Timeouts of hosts which have replied before are doubled each time they don't reply, until they
+ * reply again. Every timeout is kept between a floor and a ceiling.
+ * <br>Hosts using the timeout of their subnet are backed off as well, but only up to the initial timeout. That way a slow
+ * host on a fast subnet gets as much time to reply as it would have without adaptive timeouts, while the dead hosts of
+ * the subnet are never waited for longer than that.
+ * </p>
+ * @author flash
+ *
+ */
+public final class RttEstimator {
+
+	/**
+	 * Default maximum number of hosts whose round trip times are kept.
+	 */
+	public static final int DEFAULT_MAX_HOSTS = 65536;
+
+	private static final double ALPHA = 1.0 / 8;
+	private static final double BETA = 1.0 / 4;
+	private static final int K = 4;
+	private static final double GRANULARITY = 1;
+
+	private final int initialTimeout;
+	private final int floor;
+	private final int ceiling;
+	private final int maxHosts;
+
+	private final Map<String, Estimate> hosts = new ConcurrentHashMap<>();
+	private final Map<String, Estimate> subnets = new ConcurrentHashMap<>();
+
+	// Number of times the timeout of each host using the timeout of its subnet has been doubled.
+	private final Map<String, Integer> backoffs = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor for RttEstimator.
+	 * @param initialTimeout - the timeout (in milliseconds) of hosts on subnets without any measured round trip time.
+	 * @param floor - the minimum timeout (in milliseconds).
+	 * @param ceiling - the maximum timeout (in milliseconds).
+	 * @param maxHosts - the maximum number of hosts whose round trip times are kept.
+	 * @throws IllegalArgumentException When <code>floor < 1</code>, <code>ceiling < floor</code> or <code>maxHosts < 1</code>
+	 */
+	public RttEstimator(int initialTimeout, int floor, int ceiling, int maxHosts) {
+
+		if(floor < 1)
+			throw new IllegalArgumentException("Timeout floor must be greater than 0.");
+
+		if(ceiling < floor)
+			throw new IllegalArgumentException("Timeout ceiling must be greater or equal than the floor.");
+
+		if(maxHosts < 1)
+			throw new IllegalArgumentException("Max hosts must be greater than 0.");
+
+		this.floor = floor;
+		this.ceiling = ceiling;
+		this.initialTimeout = clamp(initialTimeout);
+		this.maxHosts = maxHosts;
+	}
+
+	/**
+	 * Returns the maximum time to wait for a connection to a host to be established.
+	 * @param ip - the host ip address.
+	 * @return <code>int</code> - the timeout (in milliseconds).
+	 */
+	public int getConnectTimeout(String ip) {
+
+		Estimate estimate = hosts.get(ip);
+		if(estimate != null)
+			return clamp(estimate.getTimeout());
+
+		Estimate subnet = subnets.get(getSubnet(ip));
+		if(subnet == null)
+			return initialTimeout;
+
+		double timeout = subnet.getTimeout();
+		int backoff = backoffs.getOrDefault(ip, 0);
+		if(backoff > 0)
+			timeout = Math.max(timeout, Math.min(timeout * (1L << backoff), initialTimeout));
+
+		return clamp(timeout);
+	}
+
+	/**
+	 * Returns the maximum time to wait for the reply of a host once connected.
+	 * <p>
+	 * It is twice the connect timeout, so the server has as much time to process the request as the request and reply take.
+	 * </p>
+	 * @param ip - the host ip address.
+	 * @return <code>int</code> - the timeout (in milliseconds).
+	 */
+	public int getReadTimeout(String ip) {
+		return clamp(2L * getConnectTimeout(ip));
+	}
+
+	/**
+	 * Records the round trip time of a reply.
+	 * @param ip - the host ip address.
+	 * @param rtt - the measured round trip time (in nanoseconds).
+	 */
+	public void sample(String ip, long rtt) {
+
+		double millis = rtt / (double) TimeUnit.MILLISECONDS.toNanos(1);
+
+		Estimate estimate = hosts.get(ip);
+		if((estimate == null) && (hosts.size() < maxHosts))
+			estimate = hosts.computeIfAbsent(ip, key -> new Estimate());
+
+		if(estimate != null)
+			estimate.sample(millis);
+
+		backoffs.remove(ip);
+		subnets.computeIfAbsent(getSubnet(ip), key -> new Estimate()).sample(millis);
+	}
+
+	/**
+	 * Records that a host didn't reply on time, backing off its timeout.
+	 * @param ip - the host ip address.
+	 */
+	public void timeout(String ip) {
+
+		Estimate estimate = hosts.get(ip);
+		if(estimate != null) {
+			estimate.backOff(ceiling);
+			return;
+		}
+
+		Estimate subnet = subnets.get(getSubnet(ip));
+		if((subnet == null) || (!backoffs.containsKey(ip) && (backoffs.size() >= maxHosts)))
+			return;
+
+		// Stops doubling once the initial timeout is reached.
+		double timeout = subnet.getTimeout();
+		backoffs.compute(ip, (key, backoff) -> {
+			int current = (backoff != null) ? backoff : 0;
+			int next = (timeout * (1L << current) < initialTimeout) ? current + 1 : current;
+			return (next > 0) ? next : null;
+		});
+	}
+
+	/**
+	 * Returns the smoothed round trip time of a host.
+	 * @param ip - the host ip address.
+	 * @return <code>double</code> - the smoothed round trip time (in milliseconds), <code>-1</code> if the host has never replied.
+	 */
+	public double getSmoothedRtt(String ip) {
+
+		Estimate estimate = hosts.get(ip);
+		return (estimate != null) ? estimate.getSmoothedRtt() : -1;
+	}
+
+	/**
+	 * Returns the number of hosts whose round trip times are kept.
+	 * @return <code>int</code> - the number of tracked hosts.
+	 */
+	public int getTrackedHosts() {
+		return hosts.size();
+	}
+
+	public int getFloor() {
+		return floor;
+	}
+
+	public int getCeiling() {
+		return ceiling;
+	}
+
+	private int clamp(double timeout) {
+		return (int) Math.max(floor, Math.min(ceiling, Math.ceil(timeout)));
+	}
+
+	/**
+	 * Groups IPv4 addresses by <code>/24</code> and IPv6 addresses by their last group.
+	 */
+	private static String getSubnet(String ip) {
+
+		int separator = (ip.indexOf(':') >= 0) ? ip.lastIndexOf(':') : ip.lastIndexOf('.');
+		return (separator >= 0) ? ip.substring(0, separator) : ip;
+	}
+
+	/**
+	 * Round trip time estimation of a host or subnet.
+	 */
+	private static final class Estimate {
+
+		private double srtt = -1;
+		private double rttvar;
+		private int backoff = 0;
+
+		private synchronized void sample(double rtt) {
+
+			if(srtt < 0) {
+				srtt = rtt;
+				rttvar = rtt / 2;
+			} else {
+				rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rtt);
+				srtt = (1 - ALPHA) * srtt + ALPHA * rtt;
+			}
+
+			backoff = 0;
+		}
+
+		private synchronized void backOff(int ceiling) {
+
+			// Stops doubling once the ceiling is reached.
+			if(getTimeout() < ceiling)
+				backoff++;
+		}
+
+		private synchronized double getTimeout() {
+			return (srtt + Math.max(GRANULARITY, K * rttvar)) * (1L << backoff);
+		}
+
+		private synchronized double getSmoothedRtt() {
+			return srtt;
+		}
+	}
+}
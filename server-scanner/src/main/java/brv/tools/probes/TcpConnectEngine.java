@@ -0,0 +1,355 @@
+package brv.tools.probes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking TCP connect engine.
+ * <p>
+ * Checks if a TCP port is accepting connections, keeping every connect attempt in flight on a single
+ * {@link Selector} thread by the use of non-blocking {@link SocketChannel}s. No thread is blocked while a connection
+ * is being established, so thousands of connects can be ongoing at the same time.
+ * </p>
+ * <p>
+ * Each connect has its own deadline. If a connection has not been established when its deadline expires,
+ * the attempt is aborted and reported as failed.
+ * <br>Connects exceeding the maximum number of in flight connects are queued and started as soon as any
+ * ongoing connect finishes.
+ * </p>
+ * @author flash
+ *
+ */
+public final class TcpConnectEngine implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(TcpConnectEngine.class.getName());
+
+	/**
+	 * Default maximum number of connects in flight.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 4096;
+
+	private static TcpConnectEngine shared;
+
+	private final int maxInFlight;
+	private final Selector selector;
+	private final Thread selectorThread;
+	private volatile boolean closed = false;
+
+	// Connects submitted from any thread, pending to be handled by the selector thread.
+	private final Queue<Connect> submitted = new ConcurrentLinkedQueue<>();
+
+	// Selector thread confined structures.
+	private final Queue<Connect> waiting = new ArrayDeque<>();
+	private final PriorityQueue<Connect> deadlines = new PriorityQueue<>((a, b) -> Long.compare(a.deadline, b.deadline));
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+
+	/**
+	 * Constructor for TcpConnectEngine.
+	 * @param maxInFlight - the maximum number of connects which can be in flight at the same time.
+	 * @throws IOException if the selector could not be opened.
+	 * @throws IllegalArgumentException When <code>maxInFlight < 1</code>
+	 */
+	public TcpConnectEngine(int maxInFlight) throws IOException {
+
+		if(maxInFlight < 1)
+			throw new IllegalArgumentException("Max in flight connects must be greater than 0.");
+
+		this.maxInFlight = maxInFlight;
+		this.selector = Selector.open();
+		this.selectorThread = new Thread(this::loop, "TcpConnectEngine-selector");
+		this.selectorThread.setDaemon(true);
+		this.selectorThread.start();
+	}
+
+	/**
+	 * Returns the engine shared by all the daemons of the JVM.
+	 * <p>
+	 * The shared engine is lazily created the first time it is requested, using {@link #DEFAULT_MAX_IN_FLIGHT}.
+	 * </p>
+	 * @return <code>TcpConnectEngine</code> - the shared engine.
+	 * @throws IOException if the shared engine could not be created.
+	 */
+	public static synchronized TcpConnectEngine getShared() throws IOException {
+		if((shared == null) || shared.closed)
+			shared = new TcpConnectEngine(DEFAULT_MAX_IN_FLIGHT);
+		return shared;
+	}
+
+	/**
+	 * Starts a connect attempt without blocking the calling thread.
+	 * @param ip - the ip address to connect to.
+	 * @param port - the port to connect to.
+	 * @param timeout - the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @return <code>CompletableFuture</code> - completed with <code>true</code> if the connection was established
+	 * before the timeout, or <code>false</code> otherwise. The future is never completed exceptionally.
+	 * <br>Any non-async dependent actions will be run on the selector thread, so they should never block.
+	 */
+	public CompletableFuture<Boolean> connect(String ip, int port, int timeout) {
+
+		CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+		if(closed) {
+			future.complete(false);
+			return future;
+		}
+
+		InetSocketAddress address;
+		try {
+			// Ip literals are parsed without any name service lookup.
+			address = new InetSocketAddress(InetAddress.getByName(ip), port);
+		} catch (UnknownHostException e) {
+			future.complete(false);
+			return future;
+		}
+
+		Connect connect = new Connect(address, timeout, future);
+		submitted.add(connect);
+		selector.wakeup();
+
+		// The engine might have been closed while submitting.
+		if(closed && submitted.remove(connect))
+			future.complete(false);
+
+		return future;
+	}
+
+	/**
+	 * Checks if a port is accepting connections, blocking the calling thread until the result is known.
+	 * @param ip - the ip address to connect to.
+	 * @param port - the port to connect to.
+	 * @param timeout - the maximum time (in milliseconds) to wait for the connection to be established.
+	 * @return <code>true</code> - if the connection was established before the timeout.
+	 */
+	public boolean isOpen(String ip, int port, int timeout) {
+		try {
+			return connect(ip, port, timeout).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of connects which are currently in flight.
+	 * @return <code>int</code> - the number of in flight connects.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Returns the maximum number of connects which can be in flight at the same time.
+	 * @return <code>int</code> - the maximum number of in flight connects.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Closes the engine.
+	 * <p>
+	 * Any ongoing or pending connects will be completed as failed.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * Selector thread loop.
+	 */
+	private void loop() {
+
+		try {
+			while(!closed) {
+
+				select();
+				finishConnected();
+				expireDeadlines();
+				startSubmitted();
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			logger.log(Level.SEVERE, "TCP connect engine selector failed.", e);
+		} finally {
+			closed = true;
+			shutdown();
+		}
+	}
+
+	/**
+	 * Waits for any connection to be established, at most until the nearest deadline.
+	 */
+	private void select() throws IOException {
+
+		Connect nearest = deadlines.peek();
+
+		if(nearest == null) {
+			selector.select();
+		} else {
+			long wait = nearest.deadline - System.currentTimeMillis();
+			if(wait > 0)
+				selector.select(wait);
+			else
+				selector.selectNow();
+		}
+	}
+
+	/**
+	 * Moves the submitted connects to the waiting queue and starts as many as allowed.
+	 */
+	private void startSubmitted() {
+
+		Connect connect;
+		while((connect = submitted.poll()) != null)
+			waiting.add(connect);
+
+		while((inFlight.get() < maxInFlight) && ((connect = waiting.poll()) != null))
+			start(connect);
+	}
+
+	private void start(Connect connect) {
+
+		try {
+			connect.channel = SocketChannel.open();
+			connect.channel.configureBlocking(false);
+
+			// Connections on the loopback interface might be established immediately.
+			if(connect.channel.connect(connect.address)) {
+				connect.finish(true);
+				return;
+			}
+
+			connect.channel.register(selector, SelectionKey.OP_CONNECT, connect);
+			connect.deadline = System.currentTimeMillis() + connect.timeout;
+			deadlines.add(connect);
+			inFlight.incrementAndGet();
+
+		} catch (IOException e) {
+			connect.finish(false);
+		}
+	}
+
+	/**
+	 * Completes any connects which have been established or refused.
+	 */
+	private void finishConnected() {
+
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while(keys.hasNext()) {
+
+			SelectionKey key = keys.next();
+			keys.remove();
+
+			Connect connect = (Connect) key.attachment();
+			try {
+				// The connection might still be pending, in that case it will be selected again.
+				if(connect.channel.finishConnect()) {
+					inFlight.decrementAndGet();
+					connect.finish(true);
+				}
+			} catch (IOException e) {
+				// Connection refused, unreachable host...
+				inFlight.decrementAndGet();
+				connect.finish(false);
+			}
+		}
+	}
+
+	/**
+	 * Aborts any connects whose deadline has expired.
+	 * <p>
+	 * Finished connects are lazily removed from the deadlines queue when they reach its head.
+	 * </p>
+	 */
+	private void expireDeadlines() {
+
+		long now = System.currentTimeMillis();
+		Connect connect;
+
+		while(((connect = deadlines.peek()) != null) && ((connect.deadline <= now) || connect.isDone())) {
+			deadlines.poll();
+			if(!connect.isDone()) {
+				inFlight.decrementAndGet();
+				connect.finish(false);
+			}
+		}
+	}
+
+	/**
+	 * Completes as failed any connect still ongoing and releases the selector.
+	 */
+	private void shutdown() {
+
+		Connect connect;
+		while((connect = submitted.poll()) != null)
+			connect.finish(false);
+		while((connect = waiting.poll()) != null)
+			connect.finish(false);
+		while((connect = deadlines.poll()) != null)
+			connect.finish(false);
+
+		inFlight.set(0);
+
+		try {
+			selector.close();
+		} catch (IOException e) {
+			logger.warning("Couldn't close TCP connect engine selector properly.");
+		}
+	}
+
+	/**
+	 * Single connect attempt.
+	 */
+	private static final class Connect {
+
+		private final InetSocketAddress address;
+		private final int timeout;
+		private final CompletableFuture<Boolean> future;
+		private SocketChannel channel;
+		private long deadline;
+
+		private Connect(InetSocketAddress address, int timeout, CompletableFuture<Boolean> future) {
+			this.address = address;
+			this.timeout = timeout;
+			this.future = future;
+		}
+
+		private boolean isDone() {
+			return future.isDone();
+		}
+
+		private void finish(boolean connected) {
+
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// Nothing else can be done with the channel.
+				}
+			}
+
+			future.complete(connected);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package brv.tools.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.function.Function;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.model.LatencyHistogram;
+import brv.tools.model.ScanDaemonStats;
+
+/**
+ * Publishes the statistics of the daemons as MBeans of the platform MBean server.
+ * <p>
+ * Each daemon is published as a {@link ScanDaemonStatsMXBean} named <code>brv.tools:type=ScanDaemon,id=&lt;id&gt;</code>,
+ * so its statistics can be watched with any JMX console.
+ * <br>Daemons added to a {@link brv.tools.daemons.manager.ScanDaemonManagerMap ScanDaemonManagerMap} are published
+ * automatically while they are managed.
+ * </p>
+ * @author flash
+ *
+ */
+public final class JmxExporter {
+
+	/**
+	 * Domain of the published MBeans.
+	 */
+	public static final String DOMAIN = "brv.tools";
+
+	private JmxExporter() {
+	}
+
+	/**
+	 * Publishes the statistics of a daemon.
+	 * @param daemon - the daemon to be published.
+	 * @return <code>ObjectName</code> - the name of the MBean, also when the daemon was already published.
+	 * @throws IllegalStateException if the MBean could not be registered.
+	 */
+	public static ObjectName register(ScanDaemon daemon) {
+
+		Objects.requireNonNull(daemon);
+
+		ObjectName name = getObjectName(daemon.getId());
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			server.registerMBean(new StandardMBean(new LiveStats(daemon), ScanDaemonStatsMXBean.class, true), name);
+		} catch (InstanceAlreadyExistsException e) {
+			// Already published.
+		} catch (JMException e) {
+			throw new IllegalStateException("Statistics of daemon " + daemon.getId() + " could not be published.", e);
+		}
+
+		return name;
+	}
+
+	/**
+	 * Stops publishing the statistics of a daemon.
+	 * @param daemon - the daemon to be unpublished.
+	 * @return <code>true</code> - if the daemon was published.
+	 * @throws IllegalStateException if the MBean could not be unregistered.
+	 */
+	public static boolean unregister(ScanDaemon daemon) {
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(daemon.getId()));
+			return true;
+		} catch (InstanceNotFoundException e) {
+			return false;
+		} catch (JMException e) {
+			throw new IllegalStateException("Statistics of daemon " + daemon.getId() + " could not be unpublished.", e);
+		}
+	}
+
+	/**
+	 * Returns the name of the MBean publishing the statistics of a daemon.
+	 * @param daemonId - the daemon id.
+	 * @return <code>ObjectName</code> - the MBean name.
+	 */
+	public static ObjectName getObjectName(long daemonId) {
+		try {
+			return new ObjectName(DOMAIN + ":type=ScanDaemon,id=" + daemonId);
+		} catch (MalformedObjectNameException e) {
+			// Never happens, as the name is always well formed.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads every attribute from the current statistics of the daemon.
+	 */
+	private static final class LiveStats implements ScanDaemonStatsMXBean {
+
+		private final ScanDaemon daemon;
+
+		private LiveStats(ScanDaemon daemon) {
+			this.daemon = daemon;
+		}
+
+		private <T> T get(Function<ScanDaemonStats, T> attribute) {
+			return attribute.apply(daemon.getStats());
+		}
+
+		@Override
+		public long getId() {
+			return daemon.getId();
+		}
+
+		@Override
+		public String getProtocol() {
+			return get(stats -> stats.getProtocol().getName());
+		}
+
+		@Override
+		public int getPort() {
+			return get(ScanDaemonStats::getPort);
+		}
+
+		@Override
+		public boolean isRunning() {
+			return daemon.isRunning();
+		}
+
+		@Override
+		public long getProbesSent() {
+			return get(ScanDaemonStats::getProbesSent);
+		}
+
+		@Override
+		public long getProbesSucceeded() {
+			return get(ScanDaemonStats::getProbesSucceeded);
+		}
+
+		@Override
+		public long getProbesTimedOut() {
+			return get(ScanDaemonStats::getProbesTimedOut);
+		}
+
+		@Override
+		public long getProbesErrored() {
+			return get(ScanDaemonStats::getProbesErrored);
+		}
+
+		@Override
+		public LatencyHistogram getSuccessLatency() {
+			return get(ScanDaemonStats::getSuccessLatency);
+		}
+
+		@Override
+		public LatencyHistogram getFailureLatency() {
+			return get(ScanDaemonStats::getFailureLatency);
+		}
+
+		@Override
+		public long getCompletedCycles() {
+			return daemon.getCompletedCycles();
+		}
+
+		@Override
+		public long getLastCycleDuration() {
+			return get(ScanDaemonStats::getLastCycleDuration);
+		}
+
+		@Override
+		public LatencyHistogram getCycleDuration() {
+			return get(ScanDaemonStats::getCycleDuration);
+		}
+
+		@Override
+		public int getOnlineServers() {
+			return daemon.getOnlineServers();
+		}
+
+		@Override
+		public long getEventsEmitted() {
+			return daemon.getEmittedEvents();
+		}
+
+		@Override
+		public long getDroppedNotifications() {
+			return daemon.getDroppedNotifications();
+		}
+
+		@Override
+		public long getListenerQueueDepth() {
+			return daemon.getListenerQueueDepth();
+		}
+
+		@Override
+		public long getListenerDispatchTime() {
+			return get(ScanDaemonStats::getListenerDispatchTime);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package brv.tools.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import brv.tools.model.LatencyHistogram;
+
+/**
+ * Records latencies on a histogram of exponential buckets.
+ * <p>
+ * Each bucket doubles the upper bound of the previous one, starting at 1 microsecond, so a few buckets cover from
+ * microseconds to tens of minutes with a relative error below 2x. Latencies are recorded without any lock, so
+ * a recorder can be shared by every probe of a daemon.
+ * </p>
+ * @author flash
+ *
+ */
+public final class LatencyRecorder {
+
+	private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+	private final AtomicLong total = new AtomicLong(0);
+	private final AtomicLong max = new AtomicLong(0);
+
+	/**
+	 * Records a latency.
+	 * @param nanos - the latency (in nanoseconds).
+	 */
+	public void record(long nanos) {
+
+		long latency = Math.max(0, nanos);
+
+		counts.incrementAndGet(bucket(latency));
+		total.addAndGet(latency);
+		max.accumulateAndGet(latency, Math::max);
+	}
+
+	/**
+	 * Returns the recorded latencies.
+	 * <p>
+	 * Latencies recorded while taking the snapshot might be partially included.
+	 * </p>
+	 * @return <code>LatencyHistogram</code> - a snapshot of the histogram.
+	 */
+	public LatencyHistogram snapshot() {
+
+		long[] result = new long[counts.length()];
+		for(int i = 0; i < result.length; i++)
+			result[i] = counts.get(i);
+
+		return new LatencyHistogram(result, total.get(), max.get());
+	}
+
+	/**
+	 * Bucket <code>i</code> holds the latencies between <code>2^(i-1)</code> and <code>2^i</code> microseconds, the last one any longer latency.
+	 */
+	private static int bucket(long nanos) {
+
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		return Math.min(LatencyHistogram.BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros));
+	}
+}
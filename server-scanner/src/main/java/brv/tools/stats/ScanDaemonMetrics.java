@@ -0,0 +1,87 @@
+package brv.tools.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import brv.tools.model.ScanDaemonStats;
+
+/**
+ * Probe and cycle counters of a {@link brv.tools.daemons.ScanDaemon ScanDaemon}.
+ * <p>
+ * Counters are updated without any lock from every probe of the daemon, so they can be read at any time
+ * while the daemon is running.
+ * </p>
+ * @author flash
+ *
+ */
+public final class ScanDaemonMetrics {
+
+	private final LongAdder probesSent = new LongAdder();
+	private final LongAdder probesSucceeded = new LongAdder();
+	private final LongAdder probesTimedOut = new LongAdder();
+	private final LongAdder probesErrored = new LongAdder();
+
+	private final LatencyRecorder successLatency = new LatencyRecorder();
+	private final LatencyRecorder failureLatency = new LatencyRecorder();
+	private final LatencyRecorder cycleDuration = new LatencyRecorder();
+
+	private volatile long lastCycleDuration = 0;
+
+	/**
+	 * Records a probe being sent.
+	 */
+	public void probeSent() {
+		probesSent.increment();
+	}
+
+	/**
+	 * Records a probe which got a successful reply.
+	 * @param latency - the ping latency (in nanoseconds).
+	 */
+	public void probeSucceeded(long latency) {
+		probesSucceeded.increment();
+		successLatency.record(latency);
+	}
+
+	/**
+	 * Records a probe which didn't get a successful reply.
+	 * @param latency - the ping latency (in nanoseconds).
+	 * @param timedOut - <code>true</code> if the probe didn't complete before its timeout, <code>false</code> if it failed with an error.
+	 */
+	public void probeFailed(long latency, boolean timedOut) {
+
+		if(timedOut)
+			probesTimedOut.increment();
+		else
+			probesErrored.increment();
+
+		failureLatency.record(latency);
+	}
+
+	/**
+	 * Records a completed cycle.
+	 * @param duration - the cycle duration (in milliseconds).
+	 */
+	public void cycleCompleted(long duration) {
+		lastCycleDuration = duration;
+		cycleDuration.record(TimeUnit.MILLISECONDS.toNanos(duration));
+	}
+
+	/**
+	 * Copies the current value of the counters to a stats object.
+	 * @param stats - the stats to be filled.
+	 */
+	public void snapshot(ScanDaemonStats stats) {
+
+		// Outcomes are read before the sent probes, so they never add up to more than the sent ones.
+		stats.setProbesSucceeded(probesSucceeded.sum());
+		stats.setProbesTimedOut(probesTimedOut.sum());
+		stats.setProbesErrored(probesErrored.sum());
+		stats.setProbesSent(probesSent.sum());
+
+		stats.setSuccessLatency(successLatency.snapshot());
+		stats.setFailureLatency(failureLatency.snapshot());
+		stats.setLastCycleDuration(lastCycleDuration);
+		stats.setCycleDuration(cycleDuration.snapshot());
+	}
+}
@@ -0,0 +1,50 @@
+package brv.tools.stats;
+
+import brv.tools.model.LatencyHistogram;
+
+/**
+ * Management interface publishing the {@link brv.tools.model.ScanDaemonStats statistics} of a daemon through JMX.
+ * <p>
+ * Every attribute is read from the daemon when requested, so monitoring tools always get the current values.
+ * </p>
+ * @author flash
+ * @see JmxExporter
+ */
+public interface ScanDaemonStatsMXBean {
+
+	long getId();
+
+	String getProtocol();
+
+	int getPort();
+
+	boolean isRunning();
+
+	long getProbesSent();
+
+	long getProbesSucceeded();
+
+	long getProbesTimedOut();
+
+	long getProbesErrored();
+
+	LatencyHistogram getSuccessLatency();
+
+	LatencyHistogram getFailureLatency();
+
+	long getCompletedCycles();
+
+	long getLastCycleDuration();
+
+	LatencyHistogram getCycleDuration();
+
+	int getOnlineServers();
+
+	long getEventsEmitted();
+
+	long getDroppedNotifications();
+
+	long getListenerQueueDepth();
+
+	long getListenerDispatchTime();
+}
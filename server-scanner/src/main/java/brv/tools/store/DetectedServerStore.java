@@ -0,0 +1,408 @@
+package brv.tools.store;
+
+import java.util.Arrays;
+
+/**
+ * Concurrent store of the servers detected by a {@link brv.tools.daemons.ScanDaemon ScanDaemon}.
+ * <p>
+ * Entries are keyed by a non-negative <code>long</code>, such as the index of the address on the daemon targets, and hold the server
+ * hostname and the first and last time (in milliseconds) it was seen online.
+ * </p>
+ * <p>
+ * The store is an open addressing hash table (linear probing) split in lock striped segments, so concurrent updates
+ * only contend when they hit the same segment. Keys and times are kept on primitive arrays, so no wrapper or entry objects are created
+ * per server.
+ * </p>
+ * <p>
+ * The table and the hostnames it holds never grow beyond the configured memory budget. Once the budget is reached, any new
+ * servers are rejected until others are removed. Hostnames of the servers already stored are always updated, so a longer hostname
+ * might exceed the budget by its extra characters.
+ * </p>
+ * @author flash
+ *
+ */
+public final class DetectedServerStore {
+
+	/**
+	 * Default memory budget, 16 MB.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 16L * 1024 * 1024;
+	
+	/**
+	 * Approximated size in bytes of a slot of the table: key, first seen, last seen and hostname reference.
+	 */
+	static final int SLOT_BYTES = 8 + 8 + 8 + 8;
+	
+	/**
+	 * Approximated size in bytes of a hostname besides its characters: <code>String</code> and array headers.
+	 * <br>Each resolved hostname is a distinct instance, so it is accounted once per server. Empty hostnames are shared and not accounted.
+	 */
+	static final int HOSTNAME_BYTES = 24 + 16;
+	
+	private static final int SEGMENTS = 32;
+	private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+	private static final int INITIAL_SEGMENT_CAPACITY = 16;
+	private static final long EMPTY = -1L;
+	
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long memoryBudget;
+	
+	/**
+	 * Visitor of the entries of the store.
+	 */
+	@FunctionalInterface
+	public interface EntryVisitor {
+		
+		void visit(long key, String hostname, long firstSeen, long lastSeen);
+	}
+	
+	/**
+	 * Constructor for DetectedServerStore using the {@link #DEFAULT_MEMORY_BUDGET default memory budget}.
+	 */
+	public DetectedServerStore() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+	
+	/**
+	 * Constructor for DetectedServerStore.
+	 * @param memoryBudget - maximum memory (in bytes) the table can use.
+	 * @throws IllegalArgumentException When the budget can't hold a single slot per segment.
+	 */
+	public DetectedServerStore(long memoryBudget) {
+		
+		// Each segment is a power of two table, so the budget is rounded down to it.
+		long segmentSlots = Long.highestOneBit(memoryBudget / SEGMENTS / SLOT_BYTES);
+		
+		if(segmentSlots < INITIAL_SEGMENT_CAPACITY)
+			throw new IllegalArgumentException("Memory budget must be at least " + (SEGMENTS * INITIAL_SEGMENT_CAPACITY * SLOT_BYTES) + " bytes.");
+		
+		int maxCapacity = (int) Math.min(segmentSlots, 1 << 30);
+		
+		for(int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(maxCapacity, memoryBudget / SEGMENTS);
+		
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * Adds or updates a server.
+	 * <p>
+	 * If the server was already stored, its hostname and last seen time are updated, keeping the first seen time. 
+	 * </p>
+	 * @param key - the server key.
+	 * @param hostname - the server hostname.
+	 * @param now - the current time in milliseconds.
+	 * @return <code>String</code> - the previous hostname of the server, <code>null</code> if it was not stored or the
+	 * store is full and the server has been rejected.
+	 */
+	public String put(long key, String hostname, long now) {
+		long hash = hash(checkKey(key));
+		return segmentFor(hash).put(key, hash, hostname, now);
+	}
+	
+	/**
+	 * Returns the hostname of a server.
+	 * @param key - the server key.
+	 * @return <code>String</code> - the hostname, <code>null</code> if the server is not stored.
+	 */
+	public String get(long key) {
+		long hash = hash(checkKey(key));
+		return segmentFor(hash).get(key, hash);
+	}
+	
+	/**
+	 * Checks if a server is stored.
+	 * @param key - the server key.
+	 * @return <code>true</code> - if the server is stored.
+	 */
+	public boolean contains(long key) {
+		return get(key) != null;
+	}
+	
+	/**
+	 * Returns the time a server was first seen online.
+	 * @param key - the server key.
+	 * @return <code>long</code> - the time in milliseconds, <code>-1</code> if the server is not stored.
+	 */
+	public long getFirstSeen(long key) {
+		long hash = hash(checkKey(key));
+		return segmentFor(hash).getTime(key, hash, true);
+	}
+	
+	/**
+	 * Returns the time a server was last seen online.
+	 * @param key - the server key.
+	 * @return <code>long</code> - the time in milliseconds, <code>-1</code> if the server is not stored.
+	 */
+	public long getLastSeen(long key) {
+		long hash = hash(checkKey(key));
+		return segmentFor(hash).getTime(key, hash, false);
+	}
+	
+	/**
+	 * Removes a server.
+	 * @param key - the server key.
+	 * @return <code>String</code> - the hostname of the removed server, <code>null</code> if it was not stored.
+	 */
+	public String remove(long key) {
+		long hash = hash(checkKey(key));
+		return segmentFor(hash).remove(key, hash);
+	}
+	
+	/**
+	 * Returns the number of stored servers.
+	 * @return <code>int</code> - the number of servers.
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments)
+			size += segment.size();
+		return size;
+	}
+	
+	/**
+	 * Returns the maximum memory the table can use.
+	 * @return <code>long</code> - the memory budget in bytes.
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	/**
+	 * Returns the memory currently used by the table and the hostnames it holds.
+	 * @return <code>long</code> - the memory in bytes.
+	 */
+	public long getMemoryUsage() {
+		long usage = 0;
+		for(Segment segment : segments)
+			usage += segment.usage();
+		return usage;
+	}
+	
+	/**
+	 * Visits every stored server.
+	 * <p>
+	 * Each segment is locked while being visited, so the visitor should not take long nor update the store. 
+	 * The visit is not an atomic snapshot of the whole store.
+	 * </p>
+	 * @param visitor - the visitor to be applied to every server.
+	 */
+	public void forEach(EntryVisitor visitor) {
+		for(Segment segment : segments)
+			segment.forEach(visitor);
+	}
+	
+	/**
+	 * Removes every server.
+	 */
+	public void clear() {
+		for(Segment segment : segments)
+			segment.clear();
+	}
+	
+	/**
+	 * Approximated size in bytes of a hostname.
+	 */
+	private static long sizeOf(String hostname) {
+		return ((hostname == null) || hostname.isEmpty()) ? 0 : HOSTNAME_BYTES + hostname.length();
+	}
+	
+	private static long checkKey(long key) {
+		if(key < 0)
+			throw new IllegalArgumentException("Key must be non-negative.");
+		return key;
+	}
+	
+	private Segment segmentFor(long hash) {
+		return segments[(int) (hash >>> SEGMENT_SHIFT)];
+	}
+	
+	/**
+	 * MurmurHash3 64 bits finalizer, to spread sequential keys.
+	 */
+	private static long hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+	
+	/**
+	 * Lock striped segment of the table.
+	 */
+	private static final class Segment {
+		
+		private static final float LOAD_FACTOR = 0.75f;
+		
+		private final int maxCapacity;
+		private final long budget;
+		
+		private long[] keys;
+		private String[] hostnames;
+		private long[] firstSeen;
+		private long[] lastSeen;
+		private int size;
+		private long hostnameBytes;
+		
+		private Segment(int maxCapacity, long budget) {
+			this.maxCapacity = maxCapacity;
+			this.budget = budget;
+			allocate(INITIAL_SEGMENT_CAPACITY);
+		}
+		
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			hostnames = new String[capacity];
+			firstSeen = new long[capacity];
+			lastSeen = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+		}
+		
+		private synchronized String put(long key, long hash, String hostname, long now) {
+			
+			int slot = find(key, hash);
+			
+			if(keys[slot] == key) {
+				String previous = hostnames[slot];
+				hostnames[slot] = hostname;
+				lastSeen[slot] = now;
+				hostnameBytes += sizeOf(hostname) - sizeOf(previous);
+				return previous;
+			}
+			
+			long hostnameSize = sizeOf(hostname);
+			int capacity = keys.length;
+			
+			if(size + 1 > capacity * LOAD_FACTOR)
+				capacity <<= 1;
+			
+			// Full segment, the new server is rejected.
+			if((capacity > maxCapacity) || ((long) capacity * SLOT_BYTES + hostnameBytes + hostnameSize > budget))
+				return null;
+			
+			if(capacity > keys.length) {
+				resize(capacity);
+				slot = find(key, hash);
+			}
+			
+			keys[slot] = key;
+			hostnames[slot] = hostname;
+			firstSeen[slot] = now;
+			lastSeen[slot] = now;
+			hostnameBytes += hostnameSize;
+			size++;
+			
+			return null;
+		}
+		
+		private synchronized String get(long key, long hash) {
+			int slot = find(key, hash);
+			return (keys[slot] == key) ? hostnames[slot] : null;
+		}
+		
+		private synchronized long getTime(long key, long hash, boolean first) {
+			
+			int slot = find(key, hash);
+			
+			if(keys[slot] != key)
+				return -1;
+			
+			return first ? firstSeen[slot] : lastSeen[slot];
+		}
+		
+		private synchronized String remove(long key, long hash) {
+			
+			int slot = find(key, hash);
+			
+			if(keys[slot] != key)
+				return null;
+			
+			String previous = hostnames[slot];
+			
+			// Backward shift deletion: moves back any entries which would become unreachable by the hole.
+			int mask = keys.length - 1;
+			int hole = slot;
+			int next = (hole + 1) & mask;
+			
+			while(keys[next] != EMPTY) {
+				
+				int ideal = (int) hash(keys[next]) & mask;
+				
+				// Moves the entry if its ideal slot is not between the hole and its current slot (cyclically).
+				if(((next - ideal) & mask) >= ((next - hole) & mask)) {
+					keys[hole] = keys[next];
+					hostnames[hole] = hostnames[next];
+					firstSeen[hole] = firstSeen[next];
+					lastSeen[hole] = lastSeen[next];
+					hole = next;
+				}
+				
+				next = (next + 1) & mask;
+			}
+			
+			keys[hole] = EMPTY;
+			hostnames[hole] = null;
+			hostnameBytes -= sizeOf(previous);
+			size--;
+			
+			return previous;
+		}
+		
+		private synchronized int size() {
+			return size;
+		}
+		
+		private synchronized long usage() {
+			return (long) keys.length * SLOT_BYTES + hostnameBytes;
+		}
+		
+		private synchronized void forEach(EntryVisitor visitor) {
+			for(int i = 0; i < keys.length; i++) {
+				if(keys[i] != EMPTY)
+					visitor.visit(keys[i], hostnames[i], firstSeen[i], lastSeen[i]);
+			}
+		}
+		
+		private synchronized void clear() {
+			allocate(INITIAL_SEGMENT_CAPACITY);
+			hostnameBytes = 0;
+			size = 0;
+		}
+		
+		/**
+		 * Finds the slot holding a key or, if not present, the empty slot where it should be inserted.
+		 */
+		private int find(long key, long hash) {
+			
+			int mask = keys.length - 1;
+			int slot = (int) hash & mask;
+			
+			while((keys[slot] != EMPTY) && (keys[slot] != key))
+				slot = (slot + 1) & mask;
+			
+			return slot;
+		}
+		
+		private void resize(int capacity) {
+			
+			long[] oldKeys = keys;
+			String[] oldHostnames = hostnames;
+			long[] oldFirstSeen = firstSeen;
+			long[] oldLastSeen = lastSeen;
+			
+			allocate(capacity);
+			
+			for(int i = 0; i < oldKeys.length; i++) {
+				if(oldKeys[i] != EMPTY) {
+					int slot = find(oldKeys[i], hash(oldKeys[i]));
+					keys[slot] = oldKeys[i];
+					hostnames[slot] = oldHostnames[i];
+					firstSeen[slot] = oldFirstSeen[i];
+					lastSeen[slot] = oldLastSeen[i];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,551 @@
+package brv.tools.store;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import brv.tools.util.NamedThreadFactory;
+
+/**
+ * Append-only journal of the ONLINE and OFFLINE transitions of the servers of a {@link DetectedServerStore}.
+ * <p>
+ * Transitions are appended in a compact binary format to memory-mapped segments of a fixed size, so appending a transition
+ * is just a copy to memory and no system call is made until a segment is full. Once enough segments are full, the journal
+ * is compacted: the current content of the store is written to a snapshot and the segments covered by it are deleted.
+ * <br>Compactions triggered by appended transitions are run in the background, so appending threads only wait for the
+ * next segment to be created. Transitions appended meanwhile go to that segment, which is replayed after the snapshot.
+ * </p>
+ * <p>
+ * When a journal is opened, the latest snapshot and any later segments are replayed into the store, restoring the servers
+ * detected before a restart without notifying them again. Each record has a checksum, so a record partially written
+ * when the process died is ignored, as well as any record after it on the same segment.
+ * <br>Every file of the journal is tagged with a fingerprint of the journaled daemon. Files with a different fingerprint,
+ * written for other targets, protocol or port, are discarded when the journal is opened.
+ * </p>
+ * <p>
+ * Written records are kept by the operating system even if the process dies. They are only forced to the disk when a
+ * segment is completed, on {@link #flush()} and on {@link #close()}, so a system crash might lose the latest transitions.
+ * </p>
+ * <pre>
+ * segment  = header record* (zero filled up to the segment size)
+ * snapshot = header record*
+ * header   = magic:int version:int fingerprint:long sequence:long
+ * record   = length:int crc32:int type:byte key:long time:long hostnameLength:short hostname:utf8
+ * </pre>
+ * @author flash
+ *
+ */
+public final class StateJournal implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(StateJournal.class.getName());
+
+	/**
+	 * Default size (in bytes) of each segment, 8 MB.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Default number of full segments which trigger a compaction.
+	 */
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 4;
+
+	private static final int SEGMENT_MAGIC = 0x42525653;	// "BRVS"
+	private static final int SNAPSHOT_MAGIC = 0x42525650;	// "BRVP"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+	private static final int RECORD_HEADER_BYTES = 4 + 4;
+	private static final int FIXED_PAYLOAD_BYTES = 1 + 8 + 8 + 2;
+	private static final int MAX_HOSTNAME_BYTES = Short.MAX_VALUE;
+
+	private static final byte ONLINE = 1;
+	private static final byte OFFLINE = 2;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	// Writes the snapshots of the compactions triggered by appended transitions, one at a time.
+	private static final ExecutorService compactor = Executors.newSingleThreadExecutor(new NamedThreadFactory("StateJournal-compactor"));
+
+	private final Path directory;
+	private final long fingerprint;
+	private final int segmentSize;
+	private final int compactionThreshold;
+	private final DetectedServerStore store;
+
+	private final CRC32 crc = new CRC32();
+	private MappedByteBuffer segment;
+	private long sequence;
+	private int fullSegments = 0;
+	private boolean closed = false;
+
+	// Serializes the compactions, keeping the sequence covered by the last snapshot written.
+	private final Object compaction = new Object();
+	private long lastSnapshot = -1;
+
+	// Last compaction run in the background, awaited when the journal is closed.
+	private CompletableFuture<Void> pendingCompaction = CompletableFuture.completedFuture(null);
+
+	/**
+	 * Constructor for StateJournal.
+	 * <p>
+	 * Any servers journaled on the directory are replayed into the store before returning.
+	 * </p>
+	 * @param directory - the directory of the journal files, created if it doesn't exist.
+	 * @param fingerprint - identifies the journaled daemon, so journals written for another daemon are discarded.
+	 * @param store - the store to be restored and compacted.
+	 * @param segmentSize - the size (in bytes) of each segment.
+	 * @param compactionThreshold - the number of full segments which trigger a compaction.
+	 * @throws IOException if the journal could not be read or created.
+	 * @throws IllegalArgumentException When <code>segmentSize</code> can't hold the largest record or <code>compactionThreshold < 1</code>
+	 */
+	public StateJournal(Path directory, long fingerprint, DetectedServerStore store, int segmentSize, int compactionThreshold) throws IOException {
+
+		if(segmentSize < HEADER_BYTES + RECORD_HEADER_BYTES + FIXED_PAYLOAD_BYTES + MAX_HOSTNAME_BYTES + 4)
+			throw new IllegalArgumentException("Segment size must be at least " + (HEADER_BYTES + RECORD_HEADER_BYTES + FIXED_PAYLOAD_BYTES + MAX_HOSTNAME_BYTES + 4) + " bytes.");
+
+		if(compactionThreshold < 1)
+			throw new IllegalArgumentException("Compaction threshold must be greater than 0.");
+
+		this.directory = Objects.requireNonNull(directory);
+		this.fingerprint = fingerprint;
+		this.store = Objects.requireNonNull(store);
+		this.segmentSize = segmentSize;
+		this.compactionThreshold = compactionThreshold;
+
+		Files.createDirectories(directory);
+		this.sequence = replay();
+		
+		// Segments left by many restarts are compacted right away.
+		if(fullSegments >= compactionThreshold)
+			compact();
+		else
+			openSegment(sequence + 1);
+	}
+
+	/**
+	 * Appends a server which has been detected online.
+	 * @param key - the server key on the store.
+	 * @param hostname - the server hostname.
+	 * @param time - the time (in milliseconds) of the transition.
+	 * @throws IOException if a new segment could not be created.
+	 */
+	public synchronized void online(long key, String hostname, long time) throws IOException {
+		append(ONLINE, key, time, hostname.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Appends a server which is no longer online.
+	 * @param key - the server key on the store.
+	 * @param time - the time (in milliseconds) of the transition.
+	 * @throws IOException if a new segment could not be created.
+	 */
+	public synchronized void offline(long key, long time) throws IOException {
+		append(OFFLINE, key, time, new byte[0]);
+	}
+
+	/**
+	 * Writes the current content of the store to a snapshot, deleting any journal files covered by it.
+	 * <p>
+	 * Transitions can be appended by other threads while the snapshot is being written.
+	 * </p>
+	 * @throws IOException if the snapshot could not be written.
+	 */
+	public void compact() throws IOException {
+
+		long covered;
+		synchronized(this) {
+			checkOpen();
+			covered = startCompaction();
+		}
+
+		writeSnapshot(covered);
+	}
+
+	/**
+	 * Forces the current segment to the disk and starts a new one, so later transitions are replayed after the snapshot.
+	 * @return <code>long</code> - the sequence of the last segment covered by the snapshot.
+	 */
+	private long startCompaction() throws IOException {
+
+		if(segment != null)
+			segment.force();
+
+		long covered = sequence;
+		openSegment(sequence + 1);
+		fullSegments = 0;
+
+		return covered;
+	}
+
+	/**
+	 * Writes the content of the store to the snapshot covering up to a segment, deleting the files covered by it.
+	 * <p>
+	 * The store is always updated before its transitions are appended, so the snapshot contains at least every
+	 * transition of the covered segments.
+	 * </p>
+	 */
+	private void writeSnapshot(long covered) throws IOException {
+
+		synchronized(compaction) {
+
+			// A later snapshot has already been written.
+			if(covered <= lastSnapshot)
+				return;
+
+			Path snapshot = directory.resolve(SNAPSHOT_PREFIX + format(covered) + SNAPSHOT_SUFFIX);
+			Path temporary = directory.resolve(snapshot.getFileName() + TEMPORARY_SUFFIX);
+
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024))) {
+
+				writeHeader(output, SNAPSHOT_MAGIC, covered);
+
+				CRC32 checksum = new CRC32();
+				IOException[] error = { null };
+				store.forEach((key, hostname, firstSeen, lastSeen) -> {
+					if(error[0] != null)
+						return;
+					try {
+						writeRecord(output, checksum, ONLINE, key, lastSeen, truncate(hostname.getBytes(StandardCharsets.UTF_8)));
+					} catch (IOException e) {
+						error[0] = e;
+					}
+				});
+
+				if(error[0] != null)
+					throw error[0];
+
+				// The snapshot must be on the disk before deleting the segments it covers.
+				output.flush();
+				channel.force(true);
+			}
+
+			Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			for(Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX))
+				if(parseSequence(path, SEGMENT_PREFIX, SEGMENT_SUFFIX) <= covered)
+					Files.deleteIfExists(path);
+
+			for(Path path : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+				if(parseSequence(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < covered)
+					Files.deleteIfExists(path);
+
+			lastSnapshot = covered;
+		}
+	}
+
+	/**
+	 * Compacts the journal in the background, logging any failure. The covered segments are kept if the snapshot fails.
+	 */
+	private void compactInBackground() throws IOException {
+
+		long covered = startCompaction();
+
+		pendingCompaction = CompletableFuture.runAsync(() -> {
+			try {
+				writeSnapshot(covered);
+			} catch (IOException e) {
+				logger.warning("Couldn't compact journal " + directory + ": " + e.getMessage());
+			}
+		}, compactor);
+	}
+
+	/**
+	 * Forces any appended transitions to be written to the disk.
+	 */
+	public synchronized void flush() {
+		if(!closed)
+			segment.force();
+	}
+
+	/**
+	 * Closes the journal, forcing any appended transitions to be written to the disk.
+	 * <p>
+	 * Any compaction running in the background is awaited, so the directory can be opened again as soon as this
+	 * method returns. No more transitions can be appended once closed.
+	 * </p>
+	 */
+	@Override
+	public synchronized void close() {
+		if(!closed) {
+			segment.force();
+			segment = null;
+			closed = true;
+			pendingCompaction.join();
+		}
+	}
+
+	/**
+	 * Checks if the journal has been closed.
+	 * @return <code>true</code> - if no more transitions can be appended.
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns the directory of the journal files.
+	 * @return <code>Path</code> - the journal directory.
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	private void append(byte type, long key, long time, byte[] hostname) throws IOException {
+
+		checkOpen();
+
+		byte[] hostnameBytes = truncate(hostname);
+		int length = FIXED_PAYLOAD_BYTES + hostnameBytes.length;
+
+		// Leaves room for the zero length terminating the segment.
+		if(segment.remaining() < RECORD_HEADER_BYTES + length + 4) {
+			fullSegments++;
+
+			if(fullSegments >= compactionThreshold) {
+				compactInBackground();
+			} else {
+				segment.force();
+				openSegment(sequence + 1);
+			}
+		}
+
+		int start = segment.position();
+		segment.position(start + RECORD_HEADER_BYTES);
+		segment.put(type).putLong(key).putLong(time).putShort((short) hostnameBytes.length).put(hostnameBytes);
+
+		crc.reset();
+		ByteBuffer payload = segment.duplicate();
+		payload.position(start + RECORD_HEADER_BYTES).limit(start + RECORD_HEADER_BYTES + length);
+		crc.update(payload);
+
+		// The length is written last, so a record is never visible before being complete.
+		segment.putInt(start + 4, (int) crc.getValue());
+		segment.putInt(start, length);
+	}
+
+	/**
+	 * Replays the latest snapshot and any later segments into the store, discarding any files of another fingerprint.
+	 * @return <code>long</code> - the sequence of the last replayed segment or snapshot.
+	 */
+	private long replay() throws IOException {
+
+		long last = 0;
+		long snapshotSequence = -1;
+
+		List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		for(int i = snapshots.size() - 1; (i >= 0) && (snapshotSequence < 0); i--) {
+			if(replaySnapshot(snapshots.get(i)))
+				snapshotSequence = parseSequence(snapshots.get(i), SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+			else
+				Files.deleteIfExists(snapshots.get(i));
+		}
+		last = Math.max(last, snapshotSequence);
+
+		for(Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+
+			long segmentSequence = parseSequence(path, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+			if(segmentSequence <= snapshotSequence) {
+				Files.deleteIfExists(path);
+			} else if(replaySegment(path)) {
+				last = Math.max(last, segmentSequence);
+
+				// Segments left by previous runs count towards the next compaction.
+				fullSegments++;
+			} else {
+				Files.deleteIfExists(path);
+			}
+		}
+
+		// Leftovers of an interrupted compaction.
+		try(DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*" + TEMPORARY_SUFFIX)) {
+			for(Path path : leftovers)
+				Files.deleteIfExists(path);
+		}
+
+		return last;
+	}
+
+	private boolean replaySnapshot(Path path) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if(!checkHeader(buffer, SNAPSHOT_MAGIC, path))
+				return false;
+
+			while(replayRecord(buffer));
+
+			return true;
+
+		} catch (BufferUnderflowException e) {
+			logger.warning("Journal snapshot " + path + " is truncated, discarding it.");
+			return false;
+		}
+	}
+
+	private boolean replaySegment(Path path) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if(!checkHeader(buffer, SEGMENT_MAGIC, path))
+				return false;
+
+			while(replayRecord(buffer));
+
+			return true;
+
+		} catch (BufferUnderflowException e) {
+			logger.warning("Journal segment " + path + " is truncated, discarding it.");
+			return false;
+		}
+	}
+
+	/**
+	 * Replays the next record of a buffer.
+	 * @return <code>true</code> - if a record has been replayed, <code>false</code> at the end of the records or on a corrupted record.
+	 */
+	private boolean replayRecord(ByteBuffer buffer) {
+
+		if(buffer.remaining() < RECORD_HEADER_BYTES)
+			return false;
+
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+
+		if((length < FIXED_PAYLOAD_BYTES) || (length > buffer.remaining()))
+			return false;
+
+		ByteBuffer payload = buffer.slice();
+		payload.limit(length);
+
+		crc.reset();
+		crc.update(payload.duplicate());
+		if((int) crc.getValue() != checksum)
+			return false;
+
+		byte type = payload.get();
+		long key = payload.getLong();
+		long time = payload.getLong();
+		int hostnameLength = payload.getShort();
+
+		if(type == ONLINE) {
+			byte[] hostname = new byte[hostnameLength];
+			payload.get(hostname);
+			store.put(key, new String(hostname, StandardCharsets.UTF_8), time);
+		} else {
+			store.remove(key);
+		}
+
+		buffer.position(buffer.position() + length);
+		return true;
+	}
+
+	private boolean checkHeader(ByteBuffer buffer, int magic, Path path) {
+
+		if((buffer.getInt() != magic) || (buffer.getInt() != VERSION)) {
+			logger.warning("Unknown journal file " + path + ", discarding it.");
+			return false;
+		}
+
+		if(buffer.getLong() != fingerprint) {
+			logger.info("Journal file " + path + " belongs to another daemon configuration, discarding it.");
+			return false;
+		}
+
+		buffer.getLong();
+		return true;
+	}
+
+	private void openSegment(long segmentSequence) throws IOException {
+
+		Path path = directory.resolve(SEGMENT_PREFIX + format(segmentSequence) + SEGMENT_SUFFIX);
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+
+		segment.putInt(SEGMENT_MAGIC).putInt(VERSION).putLong(fingerprint).putLong(segmentSequence);
+		sequence = segmentSequence;
+	}
+
+	private void writeHeader(DataOutputStream output, int magic, long fileSequence) throws IOException {
+		output.writeInt(magic);
+		output.writeInt(VERSION);
+		output.writeLong(fingerprint);
+		output.writeLong(fileSequence);
+	}
+
+	private void writeRecord(DataOutputStream output, CRC32 checksum, byte type, long key, long time, byte[] hostname) throws IOException {
+
+		ByteBuffer payload = ByteBuffer.allocate(FIXED_PAYLOAD_BYTES + hostname.length);
+		payload.put(type).putLong(key).putLong(time).putShort((short) hostname.length).put(hostname);
+
+		checksum.reset();
+		checksum.update(payload.array());
+
+		output.writeInt(payload.capacity());
+		output.writeInt((int) checksum.getValue());
+		output.write(payload.array());
+	}
+
+	private List<Path> list(String prefix, String suffix) throws IOException {
+
+		List<Path> result = new ArrayList<>();
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+			for(Path path : files)
+				result.add(path);
+		}
+
+		// Sequences are zero padded, so names are sorted by sequence.
+		Collections.sort(result);
+		return result;
+	}
+
+	private void checkOpen() {
+		if(closed)
+			throw new IllegalStateException("Journal " + directory + " has been closed.");
+	}
+
+	private static byte[] truncate(byte[] hostname) {
+		return (hostname.length <= MAX_HOSTNAME_BYTES) ? hostname : Arrays.copyOf(hostname, MAX_HOSTNAME_BYTES);
+	}
+
+	private static String format(long fileSequence) {
+		return String.format("%019d", fileSequence);
+	}
+
+	private static long parseSequence(Path path, String prefix, String suffix) {
+		String name = path.getFileName().toString();
+		return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+	}
+}
@@ -0,0 +1,206 @@
+package brv.tools.targets;
+
+/**
+ * Range of IPv4 addresses.
+ * <p>
+ * Addresses are stored as packed <code>int</code> values, considered unsigned.
+ * <br>CIDR blocks up to <code>/30</code> exclude their network and broadcast addresses, as no host can use them.
+ * </p>
+ * @author flash
+ *
+ */
+public final class Ipv4Range extends TargetRange {
+
+	private static final int MIN_PREFIX = 8;
+	private static final int MAX_PREFIX = 32;
+	
+	private final long first;
+	private final long last;
+	
+	/**
+	 * Constructor for Ipv4Range.
+	 * @param specification - the textual specification the range was created from.
+	 * @param first - the first address of the range (inclusive).
+	 * @param last - the last address of the range (inclusive).
+	 */
+	private Ipv4Range(String specification, long first, long last) {
+		super(specification);
+		this.first = first;
+		this.last = last;
+	}
+	
+	/**
+	 * Parses an IPv4 CIDR block, explicit range or single address.
+	 * @param specification - the range to be parsed.
+	 * @return <code>Ipv4Range</code> - the parsed range.
+	 * @throws IllegalArgumentException if the specification is not valid.
+	 */
+	static Ipv4Range parseRange(String specification) {
+		
+		int slash = specification.indexOf('/');
+		int dash = specification.indexOf('-');
+		
+		if(slash >= 0) {
+			
+			long address = pack(specification.substring(0, slash), specification);
+			int prefix = parsePrefix(specification.substring(slash + 1), specification);
+			
+			long mask = (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+			long network = address & mask;
+			long broadcast = network | (~mask & 0xFFFFFFFFL);
+			
+			// Network and broadcast addresses can't be used by hosts.
+			if(prefix <= 30)
+				return new Ipv4Range(specification, network + 1, broadcast - 1);
+			else
+				return new Ipv4Range(specification, network, broadcast);
+			
+		} else if(dash >= 0) {
+			
+			String start = specification.substring(0, dash).trim();
+			String end = specification.substring(dash + 1).trim();
+			
+			long first = pack(start, specification);
+			long last;
+			
+			// Short form only specifies the last octet: 10.0.0.1-50
+			if(end.indexOf('.') < 0)
+				last = (first & 0xFFFFFF00L) | parseOctet(end, specification);
+			else
+				last = pack(end, specification);
+			
+			if(last < first)
+				throw new IllegalArgumentException("Invalid IPv4 range, last address is lower than the first one: " + specification);
+			
+			return new Ipv4Range(specification, first, last);
+			
+		} else {
+			long address = pack(specification, specification);
+			return new Ipv4Range(specification, address, address);
+		}
+	}
+	
+	@Override
+	public long size() {
+		return last - first + 1;
+	}
+
+	@Override
+	public String getAddress(long index) {
+		return format(getPackedAddress(index));
+	}
+	
+	/**
+	 * Returns the packed representation of an address of the range.
+	 * @param index - the position of the address on the range, between <code>0</code> and <code>size() - 1</code>.
+	 * @return <code>int</code> - the packed address.
+	 * @throws IndexOutOfBoundsException if the index is out of the range.
+	 */
+	public int getPackedAddress(long index) {
+		
+		if((index < 0) || (index >= size()))
+			throw new IndexOutOfBoundsException("Index " + index + " out of range " + this);
+		
+		return (int) (first + index);
+	}
+
+	@Override
+	public long indexOf(String ip) {
+		
+		long address = tryPack(ip);
+		
+		if((address < first) || (address > last))
+			return -1;
+		
+		return address - first;
+	}
+	
+	/**
+	 * Builds the dotted representation of a packed IPv4 address.
+	 * @param address - the packed address.
+	 * @return <code>String</code> - the dotted address.
+	 */
+	public static String format(int address) {
+		
+		StringBuilder builder = new StringBuilder(15);
+		
+		builder.append((address >>> 24) & 0xFF).append('.')
+				.append((address >>> 16) & 0xFF).append('.')
+				.append((address >>> 8) & 0xFF).append('.')
+				.append(address & 0xFF);
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Packs a dotted IPv4 address.
+	 * @param ip - the dotted address.
+	 * @return <code>long</code> - the packed unsigned address, <code>-1</code> if it is not a valid IPv4 address.
+	 */
+	public static long tryPack(String ip) {
+		
+		long address = 0;
+		int octets = 0;
+		int value = -1;
+		
+		for(int i = 0; i < ip.length(); i++) {
+			
+			char c = ip.charAt(i);
+			
+			if(c == '.') {
+				if(value < 0)
+					return -1;
+				address = (address << 8) | value;
+				octets++;
+				value = -1;
+			} else if((c >= '0') && (c <= '9')) {
+				value = (value < 0) ? (c - '0') : (value * 10) + (c - '0');
+				if(value > 255)
+					return -1;
+			} else {
+				return -1;
+			}
+		}
+		
+		if((value < 0) || (octets != 3))
+			return -1;
+		
+		return (address << 8) | value;
+	}
+	
+	private static long pack(String ip, String specification) {
+		
+		long address = tryPack(ip.trim());
+		
+		if(address < 0)
+			throw new IllegalArgumentException("Invalid IPv4 address '" + ip + "' on target: " + specification);
+		
+		return address;
+	}
+	
+	private static int parsePrefix(String prefix, String specification) {
+		
+		try {
+			int value = Integer.parseInt(prefix.trim());
+			if((value >= MIN_PREFIX) && (value <= MAX_PREFIX))
+				return value;
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		
+		throw new IllegalArgumentException("IPv4 prefix must be between /" + MIN_PREFIX + " and /" + MAX_PREFIX + ": " + specification);
+	}
+	
+	private static int parseOctet(String octet, String specification) {
+		
+		try {
+			int value = Integer.parseInt(octet);
+			if((value >= 0) && (value <= 255))
+				return value;
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		
+		throw new IllegalArgumentException("Invalid IPv4 range: " + specification);
+	}
+}
@@ -0,0 +1,159 @@
+package brv.tools.targets;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Range of IPv6 addresses.
+ * <p>
+ * Addresses are stored as two <code>long</code> values, holding the 64 most and least significant bits.
+ * <br>Only prefixes from <code>/104</code> are supported, as wider prefixes can't be swept in a reasonable time.
+ * Prefixes up to <code>/126</code> exclude their Subnet-Router anycast address (the first one).
+ * </p>
+ * @author flash
+ *
+ */
+public final class Ipv6Range extends TargetRange {
+
+	private static final int MIN_PREFIX = 104;
+	private static final int MAX_PREFIX = 128;
+	
+	private final long high;
+	private final long firstLow;
+	private final long size;
+	
+	/**
+	 * Constructor for Ipv6Range.
+	 * @param specification - the textual specification the range was created from.
+	 * @param high - the 64 most significant bits of every address of the range.
+	 * @param firstLow - the 64 least significant bits of the first address of the range.
+	 * @param size - the number of addresses of the range.
+	 */
+	private Ipv6Range(String specification, long high, long firstLow, long size) {
+		super(specification);
+		this.high = high;
+		this.firstLow = firstLow;
+		this.size = size;
+	}
+
+	/**
+	 * Parses an IPv6 prefix or single address.
+	 * @param specification - the range to be parsed.
+	 * @return <code>Ipv6Range</code> - the parsed range.
+	 * @throws IllegalArgumentException if the specification is not valid.
+	 */
+	static Ipv6Range parseRange(String specification) {
+		
+		int slash = specification.indexOf('/');
+		int prefix = MAX_PREFIX;
+		String address = specification;
+		
+		if(slash >= 0) {
+			address = specification.substring(0, slash);
+			prefix = parsePrefix(specification.substring(slash + 1), specification);
+		}
+		
+		byte[] bytes = toBytes(address, specification);
+		long high = toLong(bytes, 0);
+		long low = toLong(bytes, 8);
+		
+		int hostBits = MAX_PREFIX - prefix;
+		long mask = -1L << hostBits;
+		long network = low & mask;
+		long count = 1L << hostBits;
+		
+		// Subnet-Router anycast address can't be used by hosts.
+		if(prefix <= 126)
+			return new Ipv6Range(specification, high, network + 1, count - 1);
+		else
+			return new Ipv6Range(specification, high, network, count);
+	}
+	
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public String getAddress(long index) {
+		
+		if((index < 0) || (index >= size))
+			throw new IndexOutOfBoundsException("Index " + index + " out of range " + this);
+		
+		byte[] bytes = new byte[16];
+		fromLong(high, bytes, 0);
+		fromLong(firstLow + index, bytes, 8);
+		
+		try {
+			return InetAddress.getByAddress(bytes).getHostAddress();
+		} catch (UnknownHostException e) {
+			// Never thrown for a 16 bytes address.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public long indexOf(String ip) {
+		
+		if(ip.indexOf(':') < 0)
+			return -1;
+		
+		byte[] bytes;
+		try {
+			bytes = toBytes(ip, ip);
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+		
+		if(toLong(bytes, 0) != high)
+			return -1;
+		
+		long index = toLong(bytes, 8) - firstLow;
+		return ((index >= 0) && (index < size)) ? index : -1;
+	}
+	
+	private static byte[] toBytes(String address, String specification) {
+		
+		try {
+			// Literals are parsed without any name service lookup.
+			InetAddress parsed = InetAddress.getByName(address.trim());
+			if(parsed instanceof Inet6Address)
+				return parsed.getAddress();
+		} catch (UnknownHostException e) {
+			// Reported below
+		}
+		
+		throw new IllegalArgumentException("Invalid IPv6 address '" + address + "' on target: " + specification);
+	}
+	
+	private static int parsePrefix(String prefix, String specification) {
+		
+		try {
+			int value = Integer.parseInt(prefix.trim());
+			if((value >= MIN_PREFIX) && (value <= MAX_PREFIX))
+				return value;
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		
+		throw new IllegalArgumentException("IPv6 prefix must be between /" + MIN_PREFIX + " and /" + MAX_PREFIX + ": " + specification);
+	}
+	
+	private static long toLong(byte[] bytes, int offset) {
+		
+		long value = 0;
+		for(int i = offset; i < offset + 8; i++)
+			value = (value << 8) | (bytes[i] & 0xFF);
+		
+		return value;
+	}
+	
+	private static void fromLong(long value, byte[] bytes, int offset) {
+		
+		for(int i = offset + 7; i >= offset; i--) {
+			bytes[i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+}
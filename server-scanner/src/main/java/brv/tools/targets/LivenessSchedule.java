@@ -0,0 +1,141 @@
+package brv.tools.targets;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which hosts of the targets are probed on each cycle of scans, based on their liveness.
+ * <p>
+ * Hosts which replied to their last probe are probed on every cycle, so any outage is detected straight away.
+ * Each time a host doesn't reply, the number of cycles until it is probed again is doubled, up to a maximum backoff.
+ * Hosts which have never replied, or have been dead long enough to reach the maximum backoff, are probed once every
+ * maximum backoff cycles.
+ * <br>Periodic full sweeps probe every host of the targets, so new hosts are detected without waiting for their backoff.
+ * The first cycle is always a full sweep.
+ * </p>
+ * <p>
+ * Backed off hosts are spread over the cycles by their index, so each cycle probes a similar share of them.
+ * Only hosts which have replied at some point are tracked, so the memory used depends on the live hosts
+ * and not on the size of the targets. Once <code>maxHosts</code> are tracked, any other live hosts are probed
+ * as if they had never replied.
+ * </p>
+ * @author flash
+ *
+ */
+public final class LivenessSchedule {
+
+	/**
+	 * Default maximum number of hosts whose liveness is tracked.
+	 */
+	public static final int DEFAULT_MAX_HOSTS = 65536;
+
+	private final int maxBackoff;
+	private final int sweepInterval;
+	private final int maxHosts;
+
+	// Consecutive cycles without reply of each tracked host.
+	private final Map<Long, Integer> misses = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor for LivenessSchedule.
+	 * @param maxBackoff - the maximum number of cycles between two probes of a dead host.
+	 * @param sweepInterval - the number of cycles between two full sweeps.
+	 * @param maxHosts - the maximum number of hosts whose liveness is tracked.
+	 * @throws IllegalArgumentException When <code>maxBackoff < 1</code>, <code>sweepInterval < 1</code> or <code>maxHosts < 1</code>
+	 */
+	public LivenessSchedule(int maxBackoff, int sweepInterval, int maxHosts) {
+
+		if(maxBackoff < 1)
+			throw new IllegalArgumentException("Max backoff must be greater than 0.");
+
+		if(sweepInterval < 1)
+			throw new IllegalArgumentException("Sweep interval must be greater than 0.");
+
+		if(maxHosts < 1)
+			throw new IllegalArgumentException("Max hosts must be greater than 0.");
+
+		this.maxBackoff = maxBackoff;
+		this.sweepInterval = sweepInterval;
+		this.maxHosts = maxHosts;
+	}
+
+	/**
+	 * Checks if a host must be probed on a cycle.
+	 * @param host - the index of the host on the targets.
+	 * @param cycle - the number of cycles completed before the current one.
+	 * @return <code>true</code> - if the host must be probed.
+	 */
+	public boolean isDue(long host, long cycle) {
+
+		if(isSweep(cycle))
+			return true;
+
+		long backoff = getBackoff(host);
+
+		return (backoff == 1) || ((cycle % backoff + spread(host) % backoff) % backoff == 0);
+	}
+
+	/**
+	 * Checks if every host must be probed on a cycle.
+	 * @param cycle - the number of cycles completed before the current one.
+	 * @return <code>true</code> - if the cycle is a full sweep.
+	 */
+	public boolean isSweep(long cycle) {
+		return cycle % sweepInterval == 0;
+	}
+
+	/**
+	 * Records the result of a probe.
+	 * @param host - the index of the host on the targets.
+	 * @param online - <code>true</code> if the host replied.
+	 */
+	public void record(long host, boolean online) {
+
+		if(online) {
+			if((misses.size() < maxHosts) || misses.containsKey(host))
+				misses.put(host, 0);
+			return;
+		}
+
+		// Hosts reaching the maximum backoff are no longer tracked, as if they had never replied.
+		misses.computeIfPresent(host, (key, value) -> (toBackoff(value + 1) < maxBackoff) ? value + 1 : null);
+	}
+
+	/**
+	 * Returns the number of cycles between two probes of a host.
+	 * @param host - the index of the host on the targets.
+	 * @return <code>long</code> - <code>1</code> for live hosts, up to the maximum backoff for dead ones.
+	 */
+	public long getBackoff(long host) {
+
+		Integer hostMisses = misses.get(host);
+		return (hostMisses != null) ? toBackoff(hostMisses) : maxBackoff;
+	}
+
+	/**
+	 * Returns the number of hosts whose liveness is tracked.
+	 * @return <code>int</code> - the number of tracked hosts.
+	 */
+	public int getTrackedHosts() {
+		return misses.size();
+	}
+
+	public int getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public int getSweepInterval() {
+		return sweepInterval;
+	}
+
+	private long toBackoff(int hostMisses) {
+		return (hostMisses >= 31) ? maxBackoff : Math.min(1L << hostMisses, maxBackoff);
+	}
+
+	/**
+	 * Scrambles the host index, so consecutive hosts with the same backoff are probed on different cycles.
+	 */
+	private static long spread(long host) {
+		return (host * 0x9E3779B97F4A7C15L) >>> 1;
+	}
+}
@@ -0,0 +1,189 @@
+package brv.tools.targets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * Orders the probes of a cycle using the neighbor table of the Linux kernel (<code>/proc/net/arp</code>).
+ * <p>
+ * Targets on a directly connected network have an entry on the table once the kernel has exchanged packets with them.
+ * Hosts with a resolved hardware address have been seen recently, so they are probed first on each cycle. Hosts whose address
+ * couldn't be resolved (incomplete or failed entries) are probably not there, so they are demoted and probed last on each cycle.
+ * They are never skipped, so a server which stops answering the kernel still gets probed and reported offline.
+ * Targets without any entry are probed as usual, between them.
+ * </p>
+ * <p>
+ * The table is read once per cycle. If it can't be read, every target is probed as usual.
+ * <br>This class is not thread-safe, it must be used by the thread iterating the targets.
+ * </p>
+ * @author flash
+ *
+ */
+public final class NeighborPrefilter {
+
+	private static final Logger logger = Logger.getLogger(NeighborPrefilter.class.getName());
+
+	/**
+	 * Neighbor table of the Linux kernel.
+	 */
+	public static final Path DEFAULT_TABLE = Paths.get("/proc/net/arp");
+
+	// Entry flag set once the hardware address has been resolved.
+	private static final int ATF_COM = 0x2;
+
+	private static final long[] NONE = new long[0];
+
+	private final Path table;
+	private final ScanTargets targets;
+
+	// Target indexes of the resolved and unresolved entries, sorted.
+	private long[] resolved = NONE;
+	private long[] unresolved = NONE;
+	private int nextResolved = 0;
+	private int nextUnresolved = 0;
+
+	private boolean readable = true;
+
+	/**
+	 * Constructor for NeighborPrefilter.
+	 * @param table - the neighbor table file, in the format of <code>/proc/net/arp</code>.
+	 * @param targets - the scanned targets.
+	 */
+	public NeighborPrefilter(Path table, ScanTargets targets) {
+		this.table = Objects.requireNonNull(table);
+		this.targets = Objects.requireNonNull(targets);
+	}
+
+	/**
+	 * Reads the neighbor table, starting a new cycle.
+	 */
+	public void refresh() {
+
+		TreeSet<Long> resolvedHosts = new TreeSet<>();
+		TreeSet<Long> unresolvedHosts = new TreeSet<>();
+
+		try(BufferedReader reader = Files.newBufferedReader(table, StandardCharsets.US_ASCII)) {
+
+			// Skips the header.
+			String line = reader.readLine();
+
+			while((line = reader.readLine()) != null) {
+
+				String[] columns = line.trim().split("\\s+");
+				if(columns.length < 3)
+					continue;
+
+				long host = targets.indexOf(columns[0]);
+				if(host < 0)
+					continue;
+
+				int flags = parseFlags(columns[2]);
+				if(flags < 0)
+					continue;
+
+				if((flags & ATF_COM) != 0)
+					resolvedHosts.add(host);
+				else
+					unresolvedHosts.add(host);
+			}
+
+			readable = true;
+
+		} catch (IOException e) {
+
+			// Logged once, as it will fail on every cycle.
+			if(readable)
+				logger.warning("Neighbor table " + table + " could not be read, probing every target: " + e.getMessage());
+
+			readable = false;
+		}
+
+		// A host with an entry resolved on any interface is online.
+		unresolvedHosts.removeAll(resolvedHosts);
+
+		resolved = toArray(resolvedHosts);
+		unresolved = toArray(unresolvedHosts);
+		nextResolved = 0;
+		nextUnresolved = 0;
+	}
+
+	/**
+	 * Returns the next host of the cycle to be probed before any other.
+	 * @return <code>long</code> - the index of a host with a resolved entry, or -1 once all of them have been returned.
+	 */
+	public long nextResolved() {
+		return (nextResolved < resolved.length) ? resolved[nextResolved++] : -1;
+	}
+
+	/**
+	 * Returns the next host of the cycle to be probed after every other target.
+	 * @return <code>long</code> - the index of a host with an unresolved entry, or -1 once all of them have been returned.
+	 */
+	public long nextUnresolved() {
+		return (nextUnresolved < unresolved.length) ? unresolved[nextUnresolved++] : -1;
+	}
+
+	/**
+	 * Checks if there are hosts of the cycle left to be probed after every other target.
+	 * @return <code>true</code> - if {@link #nextUnresolved()} will return a host.
+	 */
+	public boolean hasNextUnresolved() {
+		return nextUnresolved < unresolved.length;
+	}
+
+	/**
+	 * Checks if a host must be skipped when iterating the targets, because it is probed either first, as its address
+	 * has been resolved, or last, as it couldn't be resolved.
+	 * @param host - the index of the host on the targets.
+	 * @return <code>true</code> - if the host must not be probed when iterating the targets.
+	 */
+	public boolean isSkipped(long host) {
+		return (Arrays.binarySearch(resolved, host) >= 0) || (Arrays.binarySearch(unresolved, host) >= 0);
+	}
+
+	/**
+	 * Returns the number of hosts of the current cycle probed before any other.
+	 * @return <code>int</code> - the number of targets with a resolved entry.
+	 */
+	public int getResolvedCount() {
+		return resolved.length;
+	}
+
+	/**
+	 * Returns the number of hosts of the current cycle probed after any other.
+	 * @return <code>int</code> - the number of targets with an incomplete or failed entry.
+	 */
+	public int getUnresolvedCount() {
+		return unresolved.length;
+	}
+
+	public Path getTable() {
+		return table;
+	}
+
+	private static int parseFlags(String flags) {
+		try {
+			return Integer.decode(flags);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static long[] toArray(TreeSet<Long> hosts) {
+
+		long[] result = new long[hosts.size()];
+		int i = 0;
+		for(long host : hosts)
+			result[i++] = host;
+
+		return result;
+	}
+}
@@ -0,0 +1,177 @@
+package brv.tools.targets;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Set of target ranges to be scanned by a {@link brv.tools.daemons.ScanDaemon ScanDaemon}.
+ * <p>
+ * Every address of the set is identified by a single <code>long</code> index, from <code>0</code> to <code>size() - 1</code>,
+ * following the order in which the ranges were specified. This allows iterating big networks with a simple counter,
+ * building the textual address only when it is needed.
+ * </p>
+ * @author flash
+ * @see TargetRange#parse(String)
+ */
+public final class ScanTargets {
+
+	/**
+	 * Default targets, the <code>192.168.1.0/24</code> class C network.
+	 */
+	public static final String DEFAULT_TARGETS = "192.168.1.0/24";
+	
+	private final TargetRange[] ranges;
+	
+	// Index of the first address of each range.
+	private final long[] offsets;
+	private final long size;
+	
+	/**
+	 * Constructor for ScanTargets.
+	 * @param ranges - the ranges of the set.
+	 */
+	private ScanTargets(TargetRange[] ranges) {
+		
+		this.ranges = ranges;
+		this.offsets = new long[ranges.length];
+		
+		long total = 0;
+		for(int i = 0; i < ranges.length; i++) {
+			offsets[i] = total;
+			total += ranges[i].size();
+		}
+		
+		this.size = total;
+	}
+	
+	/**
+	 * Parses a set of targets.
+	 * @param specifications - the ranges of the set, as accepted by {@link TargetRange#parse(String)}.
+	 * @return <code>ScanTargets</code> - the parsed set.
+	 * @throws IllegalArgumentException if no specifications are provided or any of them is not valid.
+	 */
+	public static ScanTargets parse(String... specifications) {
+		
+		Objects.requireNonNull(specifications);
+		
+		if(specifications.length == 0)
+			throw new IllegalArgumentException("At least one target must be specified.");
+		
+		TargetRange[] ranges = new TargetRange[specifications.length];
+		for(int i = 0; i < specifications.length; i++)
+			ranges[i] = TargetRange.parse(Objects.requireNonNull(specifications[i], "Target must not be null."));
+		
+		return new ScanTargets(ranges);
+	}
+	
+	/**
+	 * Returns the number of addresses of the set.
+	 * @return <code>long</code> - the number of addresses.
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Builds the textual representation of an address of the set.
+	 * @param index - the position of the address, between <code>0</code> and <code>size() - 1</code>.
+	 * @return <code>String</code> - the ip address.
+	 * @throws IndexOutOfBoundsException if the index is out of the set.
+	 */
+	public String getAddress(long index) {
+		
+		if((index < 0) || (index >= size))
+			throw new IndexOutOfBoundsException("Index " + index + " out of targets " + this);
+		
+		int range = findRange(index);
+		return ranges[range].getAddress(index - offsets[range]);
+	}
+	
+	/**
+	 * Finds the position of an address on the set.
+	 * @param ip - the ip address to be found.
+	 * @return <code>long</code> - the position of the first occurrence of the address, <code>-1</code> if it doesn't belong to the set.
+	 */
+	public long indexOf(String ip) {
+		
+		for(int i = 0; i < ranges.length; i++) {
+			long index = ranges[i].indexOf(ip);
+			if(index >= 0)
+				return offsets[i] + index;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Checks if an address belongs to the set.
+	 * @param ip - the ip address to be checked.
+	 * @return <code>true</code> - if the address belongs to any range of the set.
+	 */
+	public boolean contains(String ip) {
+		return indexOf(ip) >= 0;
+	}
+	
+	/**
+	 * Checks if every address of another set belongs to this set.
+	 * <p>
+	 * Ranges are contiguous, so each range of the other set must be contained by a single range of this set.
+	 * A range spanning several adjacent ranges of this set is not considered covered.
+	 * </p>
+	 * @param other - the set to be checked.
+	 * @return <code>true</code> - if scanning this set also scans every address of the other set.
+	 */
+	public boolean covers(ScanTargets other) {
+		
+		for(TargetRange range : other.ranges) {
+			
+			String first = range.getAddress(0);
+			String last = range.getAddress(range.size() - 1);
+			
+			boolean covered = false;
+			for(int i = 0; (i < ranges.length) && !covered; i++)
+				covered = (ranges[i].indexOf(first) >= 0) && (ranges[i].indexOf(last) >= 0);
+			
+			if(!covered)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	private int findRange(long index) {
+		
+		// Ranges are never empty, so offsets are strictly increasing.
+		int position = Arrays.binarySearch(offsets, index);
+		return (position >= 0) ? position : -position - 2;
+	}
+
+	@Override
+	public String toString() {
+		
+		StringBuilder builder = new StringBuilder();
+		for(TargetRange range : ranges) {
+			if(builder.length() > 0)
+				builder.append(',');
+			builder.append(range);
+		}
+		
+		return builder.toString();
+	}
+	
+	@Override
+	public int hashCode() {
+		return toString().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		return toString().equals(obj.toString());
+	}
+}
@@ -0,0 +1,77 @@
+package brv.tools.targets;
+
+/**
+ * Contiguous range of ip addresses to be scanned.
+ * <p>
+ * Addresses are kept on their compact numeric representation and identified by their position (index) on the range,
+ * so the range can be iterated without creating any objects. The textual representation of an address is only
+ * built when requested by {@link #getAddress(long)}.
+ * </p>
+ * @author flash
+ *
+ */
+public abstract class TargetRange {
+
+	private final String specification;
+	
+	/**
+	 * Constructor for TargetRange.
+	 * @param specification - the textual specification the range was created from.
+	 */
+	protected TargetRange(String specification) {
+		this.specification = specification;
+	}
+	
+	/**
+	 * Parses a target range.
+	 * <p>
+	 * The following specifications are supported:
+	 * </p>
+	 * <ul>
+	 * 	<li>IPv4 CIDR blocks from <code>/8</code> to <code>/32</code>. Example: <code>10.0.0.0/16</code></li>
+	 * 	<li>IPv4 explicit ranges. Example: <code>10.0.0.1-10.0.3.254</code> or <code>10.0.0.1-50</code></li>
+	 * 	<li>Single IPv4 addresses. Example: <code>10.0.0.1</code></li>
+	 * 	<li>IPv6 prefixes from <code>/104</code> to <code>/128</code>. Example: <code>fd00::/120</code></li>
+	 * 	<li>Single IPv6 addresses. Example: <code>fd00::1</code></li>
+	 * </ul>
+	 * @param specification - the range to be parsed.
+	 * @return <code>TargetRange</code> - the parsed range.
+	 * @throws IllegalArgumentException if the specification is not valid.
+	 */
+	public static TargetRange parse(String specification) {
+		
+		String value = specification.trim();
+		
+		if(value.indexOf(':') >= 0)
+			return Ipv6Range.parseRange(value);
+		else
+			return Ipv4Range.parseRange(value);
+	}
+	
+	/**
+	 * Returns the number of addresses of the range.
+	 * @return <code>long</code> - the number of addresses.
+	 */
+	public abstract long size();
+	
+	/**
+	 * Builds the textual representation of an address of the range.
+	 * @param index - the position of the address on the range, between <code>0</code> and <code>size() - 1</code>.
+	 * @return <code>String</code> - the ip address.
+	 * @throws IndexOutOfBoundsException if the index is out of the range.
+	 */
+	public abstract String getAddress(long index);
+	
+	/**
+	 * Finds the position of an address on the range.
+	 * @param ip - the ip address to be found.
+	 * @return <code>long</code> - the position of the address, <code>-1</code> if the address doesn't belong to the range.
+	 */
+	public abstract long indexOf(String ip);
+
+	@Override
+	public String toString() {
+		return specification;
+	}
+	
+}
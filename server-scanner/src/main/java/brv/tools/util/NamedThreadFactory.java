@@ -0,0 +1,35 @@
+package brv.tools.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} which creates daemon threads with a recognizable name.
+ * <p>
+ * Threads will be named as <code>prefix-n</code>, where <code>n</code> is an autoincremental counter
+ * starting at 1, so they can be easily identified on thread dumps and logs.
+ * </p>
+ * @author flash
+ *
+ */
+public final class NamedThreadFactory implements ThreadFactory {
+
+	private final String prefix;
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+	
+	/**
+	 * Constructor for NamedThreadFactory.
+	 * @param prefix - the prefix that all the created threads will have on their names.
+	 */
+	public NamedThreadFactory(String prefix) {
+		this.prefix = prefix;
+	}
+	
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix + "-" + threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,95 @@
+package brv.tools.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter.
+ * <p>
+ * Permits are handed out at a fixed rate, evenly spaced in time. The bucket holds up to <code>burst</code> unused
+ * permits, so after an idle period at most <code>burst</code> permits are granted at once. With a burst of
+ * <code>1</code> there are no bursts at all and every permit is spaced <code>1 / rate</code> seconds from the previous one.
+ * </p>
+ * <p>
+ * Permits are reserved without any lock, so the bucket can be shared by several threads.
+ * </p>
+ * @author flash
+ *
+ */
+public final class TokenBucket {
+
+	private final double rate;
+	private final int burst;
+	private final long interval;
+
+	// Time (in nanoseconds) at which the next permit will be available.
+	private final AtomicLong nextPermit;
+
+	/**
+	 * Constructor for TokenBucket.
+	 * @param rate - the number of permits per second.
+	 * @param burst - the maximum number of permits which can be granted at once.
+	 * @throws IllegalArgumentException When <code>rate <= 0</code> or <code>burst < 1</code>
+	 */
+	public TokenBucket(double rate, int burst) {
+
+		if(!(rate > 0))
+			throw new IllegalArgumentException("Rate must be greater than 0.");
+
+		if(burst < 1)
+			throw new IllegalArgumentException("Burst must be greater than 0.");
+
+		this.rate = rate;
+		this.burst = burst;
+		this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+		this.nextPermit = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Reserves a permit, without waiting for it.
+	 * @return <code>long</code> - the time (in nanoseconds) the caller must wait before using the permit,
+	 * <code>0</code> if it can be used straight away.
+	 */
+	public long reserve() {
+
+		long now = System.nanoTime();
+
+		// Permits not used while idle are kept, up to the burst size.
+		long earliest = now - (burst - 1) * interval;
+
+		while(true) {
+			long next = nextPermit.get();
+			long permit = (next - earliest < 0) ? earliest : next;
+
+			if(nextPermit.compareAndSet(next, permit + interval))
+				return Math.max(0, permit - now);
+		}
+	}
+
+	/**
+	 * Acquires a permit, waiting until it is available.
+	 * @throws InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public void acquire() throws InterruptedException {
+
+		long wait = reserve();
+		if(wait > 0)
+			TimeUnit.NANOSECONDS.sleep(wait);
+	}
+
+	/**
+	 * Returns the number of permits per second.
+	 * @return <code>double</code> - the rate of the bucket.
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Returns the maximum number of permits which can be granted at once.
+	 * @return <code>int</code> - the size of the bucket.
+	 */
+	public int getBurst() {
+		return burst;
+	}
+}
@@ -0,0 +1,356 @@
+package brv.tests.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.cluster.ClusterMessage;
+import brv.tools.cluster.ClusterNode;
+import brv.tools.cluster.ClusterTransport;
+import brv.tools.cluster.InMemoryTransport;
+import brv.tools.cluster.ShardAssignment;
+import brv.tools.cluster.UdpTransport;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+public class ClusterNodeTests {
+
+	private static final int SHARDS = 16;
+	private static final int HEARTBEAT_INTERVAL = 50;
+	private static final int LEASE_TIMEOUT = 400;
+
+	// Listens on every loopback address, so every 127.0.0.x target is online.
+	// Connections are accepted and closed right away, as the backlog would fill up with the probes of several cycles.
+	private ServerSocket server;
+	private Thread acceptor;
+	private List<ClusterNode> nodes = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 50);
+
+		acceptor = new Thread(() -> {
+			while(!server.isClosed()) {
+				try {
+					server.accept().close();
+				} catch (IOException e) {
+					// Closed.
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for(ClusterNode node : nodes)
+			node.close();
+		server.close();
+	}
+
+	/**
+	 * Every shard has a single owner, and only the shards of a leaving member change their owner.
+	 */
+	@Test
+	public void testAssignment() {
+
+		List<String> members = Arrays.asList("node-1", "node-2", "node-3");
+		List<String> remaining = Arrays.asList("node-1", "node-2");
+
+		BitSet all = new BitSet();
+		for(String member : members) {
+			BitSet shards = ShardAssignment.getShards(member, members, 256);
+			assertFalse(all.intersects(shards));
+			assertTrue(shards.cardinality() > 40);
+			all.or(shards);
+		}
+		assertEquals(256, all.cardinality());
+
+		for(int shard = 0; shard < 256; shard++) {
+			String owner = ShardAssignment.getOwner(shard, members);
+			if(!owner.equals("node-3"))
+				assertEquals(owner, ShardAssignment.getOwner(shard, remaining));
+		}
+
+		assertNull(ShardAssignment.getOwner(0, Collections.emptyList()));
+	}
+
+	/**
+	 * Nodes on the same process split the targets, and any of them publishes the results of all of them.
+	 */
+	@Test
+	public void testInMemoryCluster() throws IOException, InterruptedException {
+
+		InMemoryTransport.Network network = new InMemoryTransport.Network();
+		for(int i = 1; i <= 3; i++)
+			nodes.add(buildNode("node-" + i, network.connect(), "127.0.0.1-30"));
+
+		Set<String> online = subscribe(nodes.get(0));
+		for(ClusterNode node : nodes)
+			node.start();
+
+		await(() -> nodes.stream().allMatch(node -> node.getMembers().size() == 3));
+		assertPartition(nodes);
+
+		// Hosts scanned before every node joined are forgotten by their previous owner.
+		await(() -> nodes.stream().mapToInt(node -> node.getDaemon().getOnlineServers()).sum() == 30);
+		for(ClusterNode node : nodes)
+			assertTrue(node.getDaemon().getOnlineServers() < 30);
+
+		await(() -> online.size() == 30);
+	}
+
+	/**
+	 * Shards are rebalanced when nodes join, leave, or stop sending heartbeats.
+	 */
+	@Test
+	public void testRebalance() throws IOException, InterruptedException {
+
+		InMemoryTransport.Network network = new InMemoryTransport.Network();
+
+		ClusterNode first = buildNode("node-1", network.connect(), "127.0.0.1-30");
+		nodes.add(first);
+		first.start();
+		assertEquals(SHARDS, first.getOwnedShards().cardinality());
+
+		ClusterNode second = buildNode("node-2", network.connect(), "127.0.0.1-30");
+		nodes.add(second);
+		second.start();
+
+		await(() -> first.getMembers().size() == 2 && second.getMembers().size() == 2);
+		assertPartition(nodes);
+		assertTrue(first.getOwnedShards().cardinality() < SHARDS);
+
+		// A leaving node hands its shards over right away.
+		second.close();
+		await(() -> first.getMembers().size() == 1);
+		assertEquals(SHARDS, first.getOwnedShards().cardinality());
+
+		// A crashed node hands them over once its lease expires.
+		InMemoryTransport crashing = network.connect();
+		ClusterNode third = buildNode("node-3", crashing, "127.0.0.1-30");
+		nodes.add(third);
+		third.start();
+
+		await(() -> first.getMembers().size() == 2);
+		crashing.close();
+
+		long start = System.currentTimeMillis();
+		await(() -> first.getMembers().size() == 1);
+		assertTrue(System.currentTimeMillis() - start >= LEASE_TIMEOUT - 2 * HEARTBEAT_INTERVAL);
+		assertEquals(SHARDS, first.getOwnedShards().cardinality());
+
+		await(() -> first.getDaemon().getOnlineServers() == 30);
+	}
+
+	/**
+	 * A node joining the cluster keeps tracking the servers handed over by the previous owner of its shards, so it
+	 * notifies them as offline even if they never replied to it.
+	 */
+	@Test
+	public void testOfflineAfterHandOver() throws IOException, InterruptedException {
+
+		InMemoryTransport.Network network = new InMemoryTransport.Network();
+
+		// The first node never scans twice, so only the second one can notice the servers going down.
+		ClusterNode first = buildNode("node-1", network.connect(), "127.0.0.1-30", 60000);
+		nodes.add(first);
+
+		Set<String> online = subscribe(first);
+		Set<String> offline = subscribe(first, ServerStatus.OFFLINE);
+		first.start();
+		await(() -> online.size() == 30);
+
+		server.close();
+		ClusterNode second = buildNode("node-2", network.connect(), "127.0.0.1-30", 100);
+		nodes.add(second);
+		second.start();
+		await(() -> first.getMembers().size() == 2 && second.getMembers().size() == 2);
+
+		Set<String> handedOver = new HashSet<>();
+		for(int host = 0; host < 30; host++)
+			if(second.isOwned(host))
+				handedOver.add("127.0.0." + (host + 1));
+
+		assertFalse(handedOver.isEmpty());
+		await(() -> offline.equals(handedOver));
+		assertEquals(0, second.getDaemon().getOnlineServers());
+	}
+
+	/**
+	 * The builder given to a node is copied, so it can build other daemons scanning every target.
+	 */
+	@Test
+	public void testBuilderNotModified() throws IOException {
+
+		ScanDaemonBuilder builder = new ScanDaemonBuilder(Protocol.HTTP).withTargets("127.0.0.1-30");
+		nodes.add(new ClusterNode("node-1", new InMemoryTransport.Network().connect(), builder));
+
+		assertNull(builder.getHostFilter());
+	}
+
+	/**
+	 * Nodes exchanging datagrams over the loopback interface, as separate processes would.
+	 */
+	@Test
+	public void testUdpCluster() throws IOException, InterruptedException {
+
+		InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		UdpTransport transport1 = new UdpTransport(loopback, Collections.emptyList());
+		UdpTransport transport2 = new UdpTransport(loopback, Arrays.asList(transport1.getLocalAddress()));
+		transport1.addPeer(transport2.getLocalAddress());
+
+		nodes.add(buildNode("node-1", transport1, "127.0.0.1-10"));
+		nodes.add(buildNode("node-2", transport2, "127.0.0.1-10"));
+
+		Set<String> online = subscribe(nodes.get(1));
+		for(ClusterNode node : nodes)
+			node.start();
+
+		await(() -> nodes.stream().allMatch(node -> node.getMembers().size() == 2));
+		assertPartition(nodes);
+
+		await(() -> online.size() == 10);
+	}
+
+	@Test
+	public void testMessageCodec() {
+
+		ScanResult result = new ScanResult();
+		result.setIp("10.0.0.1");
+		result.setHostname("host");
+		result.setProtocol(Protocol.HTTP);
+		result.setPort(8080);
+		result.setStatus(ServerStatus.ONLINE);
+
+		ByteBuffer buffer = ByteBuffer.allocate(UdpTransport.MAX_MESSAGE_SIZE);
+		ClusterMessage.heartbeat("node-\u00f1").encode(buffer);
+		ClusterMessage.result("node-2", result).encode(buffer);
+		ClusterMessage.handover("node-3", result).encode(buffer);
+		buffer.flip();
+
+		ClusterMessage heartbeat = ClusterMessage.decode(buffer);
+		assertEquals(ClusterMessage.Type.HEARTBEAT, heartbeat.getType());
+		assertEquals("node-\u00f1", heartbeat.getSender());
+		assertNull(heartbeat.getResult());
+
+		ClusterMessage forwarded = ClusterMessage.decode(buffer);
+		assertEquals(ClusterMessage.Type.RESULT, forwarded.getType());
+		assertEquals("10.0.0.1", forwarded.getResult().getIp());
+		assertEquals(8080, forwarded.getResult().getPort());
+
+		ClusterMessage handover = ClusterMessage.decode(buffer);
+		assertEquals(ClusterMessage.Type.HANDOVER, handover.getType());
+		assertEquals(ServerStatus.ONLINE, handover.getResult().getStatus());
+		assertFalse(buffer.hasRemaining());
+
+		try {
+			ClusterMessage.decode(ByteBuffer.wrap(new byte[] { 9, 0, 0, 0 }));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	private ClusterNode buildNode(String nodeId, ClusterTransport transport, String targets) throws IOException {
+		return buildNode(nodeId, transport, targets, 100);
+	}
+
+	private ClusterNode buildNode(String nodeId, ClusterTransport transport, String targets, int sleep) throws IOException {
+
+		ScanDaemonBuilder builder = new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+																		.withConnectOnly()
+																		.withSleep(sleep)
+																		.withTargets(targets)
+																		.withListenerQueue(256, OverflowPolicy.BLOCK);
+
+		return new ClusterNode(nodeId, transport, builder, SHARDS, HEARTBEAT_INTERVAL, LEASE_TIMEOUT);
+	}
+
+	/**
+	 * Collects the ips of the online servers published by a node.
+	 */
+	private static Set<String> subscribe(ClusterNode node) {
+		return subscribe(node, ServerStatus.ONLINE);
+	}
+
+	/**
+	 * Collects the ips of the servers published by a node with a status.
+	 */
+	private static Set<String> subscribe(ClusterNode node, ServerStatus status) {
+
+		Set<String> servers = ConcurrentHashMap.newKeySet();
+		node.getPublisher().subscribe(new Flow.Subscriber<ScanResult>() {
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(ScanResult item) {
+				if(item.getStatus() == status)
+					servers.add(item.getIp());
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+
+		return servers;
+	}
+
+	/**
+	 * Checks every shard is owned by a single node.
+	 */
+	private static void assertPartition(List<ClusterNode> nodes) {
+
+		BitSet all = new BitSet();
+		for(ClusterNode node : nodes) {
+			assertFalse(all.intersects(node.getOwnedShards()));
+			all.or(node.getOwnedShards());
+		}
+
+		assertEquals(SHARDS, all.cardinality());
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while(!condition.getAsBoolean()) {
+			if(System.currentTimeMillis() > deadline)
+				fail("Condition not met in time.");
+			Thread.sleep(20);
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package brv.tests.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.codec.BinaryCodec;
+import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+public class BinaryCodecTests {
+
+	@Test
+	public void testResult() {
+		for(String ip : Arrays.asList("192.168.1.20", "0.0.0.0", "255.255.255.255", "fd00:0:0:0:0:0:0:1", "fd00::1", "192.168.01.20", "server.local")) {
+			ScanResult result = newResult(ip, "host.example.com");
+			assertResultEquals(result, roundTrip(result));
+		}
+	}
+
+	@Test
+	public void testResultDefaults() {
+
+		ScanResult result = roundTrip(new ScanResult());
+
+		assertNull(result.getProtocol());
+		assertNull(result.getIp());
+		assertNull(result.getHostname());
+		assertEquals(0, result.getPort());
+		assertNull(result.getDate());
+		assertNull(result.getStatus());
+		assertEquals(ScanResult.NO_RESPONSE, result.getResponseTime(), 0);
+	}
+
+	/**
+	 * Unresolved hostnames are the IP address itself, which is not encoded twice.
+	 */
+	@Test
+	public void testHostnameIsIp() {
+
+		ScanResult result = newResult("10.0.0.1", "10.0.0.1");
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(result, buffer);
+
+		assertTrue("Encoded bytes: " + buffer.position(), buffer.position() <= 28);
+
+		buffer.flip();
+		assertResultEquals(result, BinaryCodec.decodeResult(buffer));
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void testResults() {
+
+		List<ScanResult> results = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			ScanResult result = newResult("10.0." + (i / 256) + "." + (i % 256), (i % 2 == 0) ? "host" + i : null);
+			result.setDate(new Date(1500000000000L + i * 37));
+			result.setStatus(ServerStatus.values()[i % 2]);
+			result.setProtocol(Protocol.values()[i % Protocol.values().length]);
+			result.setPort(1024 + i);
+			result.setResponseTime((i % 3 == 0) ? ScanResult.NO_RESPONSE : i * 0.013579);
+			results.add(result);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+		BinaryCodec.encodeResults(results, buffer);
+		buffer.flip();
+
+		List<ScanResult> decoded = BinaryCodec.decodeResults(buffer);
+
+		assertEquals(results.size(), decoded.size());
+		for(int i = 0; i < results.size(); i++)
+			assertResultEquals(results.get(i), decoded.get(i));
+	}
+
+	@Test
+	public void testConfiguration() {
+
+		ScanDaemonConfiguration configuration = newConfiguration();
+		assertConfigurationEquals(configuration, roundTrip(configuration));
+
+		configuration.setRateLimit(0);
+		configuration.setNetworkId(null);
+		configuration.setJournalDirectory(null);
+		configuration.setNeighborTable(null);
+		configuration.setRunning(false);
+		assertConfigurationEquals(configuration, roundTrip(configuration));
+	}
+
+	@Test
+	public void testConfigurations() {
+
+		List<ScanDaemonConfiguration> configurations = new ArrayList<>();
+		for(int i = 0; i < 10; i++) {
+			ScanDaemonConfiguration configuration = newConfiguration();
+			configuration.setId(i);
+			configuration.setPort(8000 + i);
+			configurations.add(configuration);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		BinaryCodec.encodeConfigurations(configurations, buffer);
+		buffer.flip();
+
+		List<ScanDaemonConfiguration> decoded = BinaryCodec.decodeConfigurations(buffer);
+
+		assertEquals(configurations.size(), decoded.size());
+		for(int i = 0; i < configurations.size(); i++)
+			assertConfigurationEquals(configurations.get(i), decoded.get(i));
+	}
+
+	/**
+	 * A full buffer is left untouched, so the result can be encoded again on a larger one.
+	 */
+	@Test
+	public void testOverflow() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		buffer.put((byte) 1);
+
+		try {
+			BinaryCodec.encode(newResult("10.0.0.1", "a-long-hostname.example.com"), buffer);
+			fail();
+		} catch (BufferOverflowException e) {
+			assertEquals(1, buffer.position());
+		}
+	}
+
+	/**
+	 * A partially received batch is left untouched, so it can be decoded again once complete.
+	 */
+	@Test
+	public void testUnderflow() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encodeResults(Arrays.asList(newResult("10.0.0.1", "one"), newResult("10.0.0.2", "two")), buffer);
+		buffer.flip();
+		buffer.limit(buffer.limit() - 1);
+
+		try {
+			BinaryCodec.decodeResults(buffer);
+			fail();
+		} catch (BufferUnderflowException e) {
+			assertEquals(0, buffer.position());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedVersion() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(newResult("10.0.0.1", "one"), buffer);
+		buffer.put(1, (byte) (BinaryCodec.VERSION + 1));
+		buffer.flip();
+
+		BinaryCodec.decodeResult(buffer);
+	}
+
+	/**
+	 * Protocols are encoded by name, so a protocol unknown to the decoding process is rejected instead of being mistaken for another one.
+	 */
+	@Test
+	public void testUnknownProtocol() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(newResult("10.0.0.1", "one"), buffer);
+		buffer.flip();
+
+		// Type, version, flags and length of the protocol name precede it.
+		assertEquals(Protocol.HTTPS.name().length(), buffer.get(3));
+		buffer.put(4, (byte) 'X');
+
+		try {
+			BinaryCodec.decodeResult(buffer);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(0, buffer.position());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongType() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(newConfiguration(), buffer);
+		buffer.flip();
+
+		BinaryCodec.decodeResult(buffer);
+	}
+
+	@Test
+	public void testSmallerThanSerialization() throws IOException {
+
+		ScanResult result = newResult("192.168.1.20", "host.example.com");
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(result, buffer);
+
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		try(ObjectOutputStream output = new ObjectOutputStream(serialized)) {
+			output.writeObject(result);
+		}
+
+		assertTrue(buffer.position() * 10 < serialized.size());
+	}
+
+	private static ScanResult roundTrip(ScanResult result) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(result, buffer);
+		buffer.flip();
+
+		ScanResult decoded = BinaryCodec.decodeResult(buffer);
+		assertEquals(0, buffer.remaining());
+		return decoded;
+	}
+
+	private static ScanDaemonConfiguration roundTrip(ScanDaemonConfiguration configuration) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		BinaryCodec.encode(configuration, buffer);
+		buffer.flip();
+
+		ScanDaemonConfiguration decoded = BinaryCodec.decodeConfiguration(buffer);
+		assertEquals(0, buffer.remaining());
+		return decoded;
+	}
+
+	private static ScanResult newResult(String ip, String hostname) {
+
+		ScanResult result = new ScanResult();
+		result.setIp(ip);
+		result.setHostname(hostname);
+		result.setProtocol(Protocol.HTTPS);
+		result.setPort(8443);
+		result.setStatus(ServerStatus.ONLINE);
+		result.setDate(new Date(1500000000123L));
+		result.setResponseTime(12345678 / 1e6);
+
+		return result;
+	}
+
+	private static ScanDaemonConfiguration newConfiguration() {
+
+		ScanDaemonConfiguration configuration = new ScanDaemonConfiguration();
+		configuration.setId(-1);
+		configuration.setProtocol(Protocol.FTP);
+		configuration.setNetworkId("192.168.1.0/24");
+		configuration.setPort(2121);
+		configuration.setTimeout(250);
+		configuration.setSleep(15000);
+		configuration.setParallelism(64);
+		configuration.setRateLimit(12.5);
+		configuration.setTimeoutFloor(20);
+		configuration.setTimeoutCeiling(2000);
+		configuration.setMaxBackoff(32);
+		configuration.setSweepInterval(100);
+		configuration.setJournalDirectory("/var/lib/scanner");
+		configuration.setNeighborTable("/proc/net/arp");
+		configuration.setRunning(true);
+
+		return configuration;
+	}
+
+	private static void assertResultEquals(ScanResult expected, ScanResult actual) {
+		assertEquals(expected.getProtocol(), actual.getProtocol());
+		assertEquals(expected.getIp(), actual.getIp());
+		assertEquals(expected.getHostname(), actual.getHostname());
+		assertEquals(expected.getPort(), actual.getPort());
+		assertEquals(expected.getDate(), actual.getDate());
+		assertEquals(expected.getStatus(), actual.getStatus());
+		assertEquals(expected.getResponseTime(), actual.getResponseTime(), 1e-6);
+	}
+
+	private static void assertConfigurationEquals(ScanDaemonConfiguration expected, ScanDaemonConfiguration actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getProtocol(), actual.getProtocol());
+		assertEquals(expected.getNetworkId(), actual.getNetworkId());
+		assertEquals(expected.getPort(), actual.getPort());
+		assertEquals(expected.getTimeout(), actual.getTimeout());
+		assertEquals(expected.getSleep(), actual.getSleep());
+		assertEquals(expected.getParallelism(), actual.getParallelism());
+		assertEquals(expected.getRateLimit(), actual.getRateLimit(), 0);
+		assertEquals(expected.getTimeoutFloor(), actual.getTimeoutFloor());
+		assertEquals(expected.getTimeoutCeiling(), actual.getTimeoutCeiling());
+		assertEquals(expected.getMaxBackoff(), actual.getMaxBackoff());
+		assertEquals(expected.getSweepInterval(), actual.getSweepInterval());
+		assertEquals(expected.getJournalDirectory(), actual.getJournalDirectory());
+		assertEquals(expected.getNeighborTable(), actual.getNeighborTable());
+		assertEquals(expected.isRunning(), actual.isRunning());
+	}
+}
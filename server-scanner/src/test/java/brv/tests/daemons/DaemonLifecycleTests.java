@@ -0,0 +1,195 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.DaemonState;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+import brv.tools.daemons.manager.ScanDaemonManagerMap;
+
+public class DaemonLifecycleTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+
+	// Accepts connections on its backlog but never replies, so every HTTP probe waits for its read timeout.
+	private ServerSocket server;
+	private ScanScheduler scheduler;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+		scheduler = ScanScheduler.pooled(4);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		scheduler.close();
+		server.close();
+	}
+
+	@Test
+	public void testStates() throws IOException, InterruptedException {
+
+		ScanDaemon daemon = buildDaemon(true).build();
+		assertEquals(DaemonState.NEW, daemon.getState());
+		assertTrue(daemon.isTerminated());
+
+		assertTrue(daemon.start());
+		assertEquals(DaemonState.RUNNING, daemon.getState());
+		assertFalse(daemon.awaitTermination(100, TimeUnit.MILLISECONDS));
+
+		assertTrue(daemon.stop());
+		assertFalse(daemon.stop());
+		assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(DaemonState.TERMINATED, daemon.getState());
+
+		// A terminated daemon can be started again.
+		assertTrue(daemon.start());
+		assertEquals(DaemonState.RUNNING, daemon.getState());
+		assertTrue(daemon.interrupt());
+		assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Only one of many threads starting the daemon at the same time starts it.
+	 */
+	@Test
+	public void testConcurrentStart() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			for(int round = 0; round < 20; round++) {
+
+				ScanDaemon daemon = buildDaemon(true).build();
+				CountDownLatch ready = new CountDownLatch(1);
+
+				List<Future<Boolean>> starts = new ArrayList<>();
+				for(int i = 0; i < 16; i++) {
+					boolean pooled = (i % 2 == 0);
+					starts.add(executor.submit(() -> {
+						ready.await();
+						return pooled ? daemon.start(scheduler) : daemon.start();
+					}));
+				}
+				ready.countDown();
+
+				int started = 0;
+				for(Future<Boolean> start : starts)
+					if(start.get(5, TimeUnit.SECONDS))
+						started++;
+
+				assertEquals(1, started);
+				assertTrue(daemon.interrupt());
+				assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Probes which never complete are abandoned once the drain timeout expires.
+	 */
+	@Test
+	public void testBoundedDrain() throws IOException, InterruptedException {
+
+		ScanDaemon pooled = buildDaemon(false).withParallelism(4).withDrainTimeout(200).build();
+		ScanDaemon threaded = buildDaemon(false).withParallelism(4).withDrainTimeout(200).build();
+		ScanDaemon sequential = buildDaemon(false).withDrainTimeout(200).build();
+
+		assertTrue(pooled.start(scheduler));
+		assertTrue(threaded.start());
+		assertTrue(sequential.start());
+		Thread.sleep(300);
+
+		long start = System.currentTimeMillis();
+		assertTrue(pooled.stop());
+		assertTrue(threaded.stop());
+		assertTrue(sequential.stop());
+		assertEquals(DaemonState.DRAINING, pooled.getState());
+		assertEquals(DaemonState.DRAINING, sequential.getState());
+
+		assertTrue(pooled.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(threaded.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(sequential.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+
+	/**
+	 * A draining daemon goes back to running without waiting for its probes.
+	 */
+	@Test
+	public void testResumeWhileDraining() throws IOException, InterruptedException {
+
+		ScanDaemon daemon = buildDaemon(false).withParallelism(4).withDrainTimeout(200).build();
+
+		assertTrue(daemon.start(scheduler));
+		Thread.sleep(300);
+
+		assertTrue(daemon.stop());
+		assertEquals(DaemonState.DRAINING, daemon.getState());
+		assertTrue(daemon.start(scheduler));
+		assertEquals(DaemonState.RUNNING, daemon.getState());
+
+		// The drain timeout of the previous stop doesn't terminate it.
+		assertFalse(daemon.awaitTermination(500, TimeUnit.MILLISECONDS));
+		assertTrue(daemon.isRunning());
+
+		assertTrue(daemon.stop());
+		assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testManagerAwaitTermination() throws IOException, InterruptedException {
+
+		ScanDaemonManagerMap manager = new ScanDaemonManagerMap(scheduler);
+
+		List<ScanDaemon> daemons = new ArrayList<>();
+		for(int i = 0; i < 10; i++) {
+			ScanDaemon daemon = buildDaemon(false).withParallelism(2).withDrainTimeout(200).build();
+			daemons.add(daemon);
+			manager.add(daemon);
+		}
+
+		assertFalse(manager.awaitTermination(100, TimeUnit.MILLISECONDS));
+
+		manager.stopAll();
+		assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+
+		// Removed daemons are still awaited.
+		manager.resumeAll();
+		manager.removeAll();
+		assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+
+		for(ScanDaemon daemon : daemons)
+			assertEquals(DaemonState.TERMINATED, daemon.getState());
+	}
+
+	private ScanDaemonBuilder buildDaemon(boolean connectOnly) {
+
+		ScanDaemonBuilder builder = new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+																		.withSleep(60000)
+																		.withTargets(LOOPBACK);
+
+		return connectOnly ? builder.withConnectOnly() : builder;
+	}
+}
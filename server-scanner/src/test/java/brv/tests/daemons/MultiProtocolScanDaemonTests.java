@@ -0,0 +1,174 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.MultiProtocolScanDaemon;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+
+public class MultiProtocolScanDaemonTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	
+	private ServerSocket httpServer;
+	private ServerSocket ftpServer;
+	private int closedPort;
+	
+	@Before
+	public void setUp() throws IOException {
+		
+		httpServer = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+		ftpServer = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+		
+		try(ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK))) {
+			closedPort = socket.getLocalPort();
+		}
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		httpServer.close();
+		ftpServer.close();
+	}
+	
+	@Test
+	public void testSinglePass() throws IOException, InterruptedException {
+		
+		ScanDaemon daemon = ScanDaemonBuilder.forProtocols(Protocol.HTTP, Protocol.FTP)
+												.withPorts(Protocol.HTTP, httpServer.getLocalPort(), closedPort)
+												.withPorts(Protocol.FTP, ftpServer.getLocalPort())
+												.withConnectOnly()
+												.withTargets(LOOPBACK)
+												.build();
+		
+		assertTrue(daemon instanceof MultiProtocolScanDaemon);
+		assertEquals(3, ((MultiProtocolScanDaemon) daemon).getChannelConfigurations().size());
+		
+		Set<String> detected = ConcurrentHashMap.newKeySet();
+		CountDownLatch updated = new CountDownLatch(2);
+		CountDownLatch completed = new CountDownLatch(1);
+		AtomicInteger onlineServers = new AtomicInteger();
+		
+		daemon.addServerUpdatedListener(result -> {
+			detected.add(result.getProtocol() + ":" + result.getPort());
+			if(result.getResponseTime() >= 0)
+				updated.countDown();
+		});
+		daemon.addCycleCompletedListener(cycle -> {
+			onlineServers.set(cycle.getOnlineServers());
+			completed.countDown();
+		});
+		
+		daemon.start();
+		try {
+			assertTrue(updated.await(5, TimeUnit.SECONDS));
+			assertTrue(completed.await(5, TimeUnit.SECONDS));
+		} finally {
+			daemon.interrupt();
+		}
+		
+		assertEquals(2, onlineServers.get());
+		assertTrue(detected.contains(Protocol.HTTP + ":" + httpServer.getLocalPort()));
+		assertTrue(detected.contains(Protocol.FTP + ":" + ftpServer.getLocalPort()));
+		assertEquals(2, detected.size());
+	}
+	
+	@Test
+	public void testChannelWorkersShutdown() throws IOException, InterruptedException {
+		
+		ScanDaemon daemon = newDaemon();
+		assertCycleCompleted(daemon, null);
+		
+		assertTrue(daemon.stop());
+		assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+		
+		// The threads of the pool exit once it has been shut down.
+		String channelThread = "ScanDaemon-" + daemon.getId() + "-channel";
+		for(int i = 0; (i < 100) && hasThread(channelThread); i++)
+			Thread.sleep(10);
+		
+		assertFalse(hasThread(channelThread));
+	}
+	
+	@Test
+	public void testScheduledChannels() throws IOException, InterruptedException {
+		
+		try(ScanScheduler scheduler = ScanScheduler.pooled(1)) {
+			
+			ScanDaemon daemon = newDaemon();
+			assertCycleCompleted(daemon, scheduler);
+			daemon.interrupt();
+			
+			// Every channel is pinged on the scheduler.
+			assertFalse(hasThread("ScanDaemon-" + daemon.getId() + "-channel"));
+		}
+	}
+	
+	@Test
+	public void testPing() throws IOException {
+		
+		ScanDaemon daemon = ScanDaemonBuilder.forProtocols(Protocol.HTTP, Protocol.FTP)
+												.withPorts(Protocol.HTTP, closedPort)
+												.withPorts(Protocol.FTP, ftpServer.getLocalPort())
+												.withConnectOnly()
+												.withTargets(LOOPBACK)
+												.build();
+		
+		assertTrue(daemon.ping(LOOPBACK));
+	}
+	
+	private ScanDaemon newDaemon() throws IOException {
+		return ScanDaemonBuilder.forProtocols(Protocol.HTTP, Protocol.FTP)
+									.withPorts(Protocol.HTTP, httpServer.getLocalPort(), closedPort)
+									.withPorts(Protocol.FTP, ftpServer.getLocalPort())
+									.withConnectOnly()
+									.withSleep(1000)
+									.withTargets(LOOPBACK)
+									.build();
+	}
+	
+	private static void assertCycleCompleted(ScanDaemon daemon, ScanScheduler scheduler) throws InterruptedException {
+		
+		CountDownLatch completed = new CountDownLatch(1);
+		daemon.addCycleCompletedListener(cycle -> completed.countDown());
+		
+		assertTrue((scheduler != null) ? daemon.start(scheduler) : daemon.start());
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+	}
+	
+	private static boolean hasThread(String name) {
+		return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().startsWith(name));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSinglePort() throws IOException {
+		ScanDaemonBuilder.forProtocols(Protocol.HTTP, Protocol.FTP).withPort(8080).build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProtocolPorts() {
+		ScanDaemonBuilder.forProtocols(Protocol.HTTP).withPorts(Protocol.FTP, 2121);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testSingleProtocolPorts() {
+		new ScanDaemonBuilder(Protocol.HTTP).withPorts(Protocol.HTTP, 8080);
+	}
+}
@@ -0,0 +1,226 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+import brv.tools.daemons.exceptions.ScanDaemonNotFoundException;
+import brv.tools.daemons.manager.ScanDaemonManagerMap;
+import brv.tools.model.BulkOperationReport;
+import brv.tools.model.OperationOutcome;
+
+public class ScanDaemonManagerMapTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	private static final int DAEMONS = 2000;
+	
+	private ServerSocket server;
+	private ScanScheduler scheduler;
+	private ScanDaemonManagerMap manager;
+	
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 1024, InetAddress.getByName(LOOPBACK));
+		scheduler = ScanScheduler.pooled(4);
+		manager = new ScanDaemonManagerMap(scheduler);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		manager.removeAll();
+		scheduler.close();
+		server.close();
+	}
+	
+	/**
+	 * Thousands of daemons are stopped and resumed at once, reporting the outcome on each of them.
+	 */
+	@Test
+	public void testBulkOperations() throws IOException {
+		
+		List<ScanDaemon> daemons = new ArrayList<>();
+		for(int i = 0; i < DAEMONS; i++) {
+			ScanDaemon daemon = buildDaemon();
+			daemons.add(daemon);
+			assertTrue(manager.add(daemon));
+		}
+		
+		// A daemon already stopped is left unchanged.
+		ScanDaemon stopped = daemons.get(0);
+		stopped.stop();
+		
+		BulkOperationReport report = manager.stopAll();
+		assertEquals(DAEMONS, report.getOutcomes().size());
+		assertEquals(DAEMONS - 1, report.count(OperationOutcome.APPLIED));
+		assertEquals(OperationOutcome.UNCHANGED, report.getOutcome(stopped.getId()));
+		assertTrue(report.getDuration() < 1000);
+		
+		for(ScanDaemon daemon : daemons)
+			assertFalse(daemon.isRunning());
+		
+		report = manager.resumeAll();
+		assertEquals(DAEMONS, report.count(OperationOutcome.APPLIED));
+		assertTrue(report.getDuration() < 1000);
+		
+		for(ScanDaemon daemon : daemons)
+			assertTrue(daemon.isRunning());
+		
+		report = manager.removeAll();
+		assertEquals(DAEMONS, report.count(OperationOutcome.APPLIED));
+		assertTrue(manager.find().isEmpty());
+		
+		assertFalse(manager.removeAll().isAnyApplied());
+	}
+	
+	/**
+	 * Daemons added and removed by several threads while running massive actions never break the manager.
+	 */
+	@Test
+	public void testConcurrentModifications() throws Exception {
+		
+		int threads = 4;
+		int daemonsPerThread = 100;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+		AtomicBoolean adding = new AtomicBoolean(true);
+		CountDownLatch added = new CountDownLatch(threads);
+		
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			
+			for(int i = 0; i < threads; i++) {
+				tasks.add(executor.submit(() -> {
+					
+					for(int j = 0; j < daemonsPerThread; j++) {
+						ScanDaemon daemon = buildDaemon();
+						manager.add(daemon);
+						
+						// Every other daemon is removed again.
+						if(j % 2 == 0)
+							manager.remove(daemon.getId());
+					}
+					
+					added.countDown();
+					return null;
+				}));
+			}
+			
+			tasks.add(executor.submit(() -> {
+				while(adding.get()) {
+					manager.stopAll();
+					manager.resumeAll();
+					manager.find();
+					manager.findStats();
+				}
+				return null;
+			}));
+			
+			assertTrue(added.await(30, TimeUnit.SECONDS));
+			adding.set(false);
+			
+			for(Future<?> task : tasks)
+				task.get(30, TimeUnit.SECONDS);
+			
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		assertEquals(threads * daemonsPerThread / 2, manager.find().size());
+		
+		// Every managed daemon is running once a final resume has been applied.
+		manager.resumeAll();
+		assertEquals(threads * daemonsPerThread / 2, manager.stopAll().count(OperationOutcome.APPLIED));
+	}
+	
+	@Test
+	public void testSingleOperations() throws IOException, ScanDaemonNotFoundException {
+		
+		ScanDaemon daemon = buildDaemon();
+		assertTrue(manager.add(daemon));
+		assertTrue(manager.contains(daemon.getId()));
+		
+		assertTrue(manager.stop(daemon.getId()));
+		assertFalse(manager.stop(daemon.getId()));
+		assertTrue(manager.resume(daemon.getId()));
+		
+		assertTrue(manager.remove(daemon.getId()));
+		assertFalse(daemon.isRunning());
+		assertFalse(manager.contains(daemon.getId()));
+		assertNull(manager.find(daemon.getId()));
+	}
+	
+	/**
+	 * A daemon replaced by another one with the same id is no longer managed, so its sweep is stopped.
+	 */
+	@Test
+	public void testReplacedStopped() throws IOException, InterruptedException {
+		
+		ScanDaemon replaced = buildDaemon();
+		assertTrue(manager.add(replaced));
+		
+		ScanDaemon daemon = new ReplacingDaemon(replaced.getId());
+		assertTrue(manager.add(daemon));
+		
+		assertTrue(replaced.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(daemon.isRunning());
+		assertTrue(manager.find(replaced.getId()).isRunning());
+	}
+	
+	@Test(expected = ScanDaemonNotFoundException.class)
+	public void testRemoveMissing() throws ScanDaemonNotFoundException {
+		manager.remove(-1);
+	}
+	
+	private ScanDaemon buildDaemon() throws IOException {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+													.withConnectOnly()
+													.withSleep(60000)
+													.withTargets(LOOPBACK)
+													.build();
+	}
+	
+	/**
+	 * Daemon taking the id of another daemon, whose servers never reply.
+	 */
+	private class ReplacingDaemon extends ScanDaemon {
+		
+		private final long id;
+		
+		private ReplacingDaemon(long id) throws UnknownHostException {
+			super(new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort()).withSleep(60000).withTargets(LOOPBACK));
+			this.id = id;
+		}
+		
+		@Override
+		public long getId() {
+			return id;
+		}
+		
+		@Override
+		public boolean ping(String ip) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+
+public class ScanDaemonPacingTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	
+	private ServerSocket server;
+	private ScanScheduler scheduler;
+	
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 1024, InetAddress.getByName(LOOPBACK));
+		scheduler = ScanScheduler.pooled(2);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		scheduler.close();
+		server.close();
+	}
+	
+	@Test
+	public void testSleepSequential() throws IOException, InterruptedException {
+		assertSleeps(newBuilder().build(), false);
+	}
+	
+	@Test
+	public void testSleepParallel() throws IOException, InterruptedException {
+		assertSleeps(newBuilder().withParallelism(4).build(), false);
+	}
+	
+	@Test
+	public void testSleepScheduled() throws IOException, InterruptedException {
+		assertSleeps(newBuilder().withParallelism(4).build(), true);
+	}
+	
+	@Test
+	public void testRateLimitSequential() throws IOException, InterruptedException {
+		assertRateLimited(newBuilder().withSleep(1).withRateLimit(100).build(), false);
+	}
+	
+	@Test
+	public void testRateLimitParallel() throws IOException, InterruptedException {
+		assertRateLimited(newBuilder().withSleep(1).withRateLimit(100).withParallelism(8).build(), false);
+	}
+	
+	@Test
+	public void testRateLimitScheduled() throws IOException, InterruptedException {
+		assertRateLimited(newBuilder().withSleep(1).withRateLimit(100).withParallelism(8).build(), true);
+	}
+	
+	/**
+	 * A stopped daemon wakes up straight away, instead of sleeping until the next cycle.
+	 */
+	@Test
+	public void testStopWhileSleeping() throws IOException, InterruptedException {
+		
+		ScanDaemon daemon = newBuilder().withSleep(60000).build();
+		daemon.start();
+		
+		Thread worker = null;
+		for(int i = 0; (i < 500) && (worker == null); i++) {
+			Thread.sleep(10);
+			worker = findSleepingThread();
+		}
+		assertNotNull(worker);
+		
+		daemon.stop();
+		worker.join(5000);
+		assertFalse(worker.isAlive());
+	}
+	
+	@Test
+	public void testLivenessSchedulingSequential() throws IOException, InterruptedException {
+		assertBacksOff(newBuilder().withSleep(20).withLivenessScheduling(4, 1000).build(), false);
+	}
+	
+	@Test
+	public void testLivenessSchedulingParallel() throws IOException, InterruptedException {
+		assertBacksOff(newBuilder().withSleep(20).withLivenessScheduling(4, 1000).withParallelism(4).build(), false);
+	}
+	
+	@Test
+	public void testLivenessSchedulingScheduled() throws IOException, InterruptedException {
+		assertBacksOff(newBuilder().withSleep(20).withLivenessScheduling(4, 1000).withParallelism(4).build(), true);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRateLimit() throws IOException {
+		newBuilder().withRateLimit(-1).build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxBackoff() throws IOException {
+		newBuilder().withLivenessScheduling(0, 10).build();
+	}
+	
+	private ScanDaemonBuilder newBuilder() {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+													.withConnectOnly()
+													.withSleep(300)
+													.withTargets(LOOPBACK + "-4");
+	}
+	
+	/**
+	 * Without sleeping, the daemon would complete thousands of cycles.
+	 */
+	private void assertSleeps(ScanDaemon daemon, boolean scheduled) throws InterruptedException {
+		
+		start(daemon, scheduled);
+		Thread.sleep(1000);
+		daemon.stop();
+		
+		long cycles = daemon.getCompletedCycles();
+		assertTrue("Completed cycles: " + cycles, (cycles >= 2) && (cycles <= 5));
+	}
+	
+	/**
+	 * 4 hosts per cycle at 100 probes per second: about 25 cycles per second.
+	 */
+	private void assertRateLimited(ScanDaemon daemon, boolean scheduled) throws InterruptedException {
+		
+		start(daemon, scheduled);
+		Thread.sleep(1000);
+		daemon.stop();
+		
+		long cycles = daemon.getCompletedCycles();
+		assertTrue("Completed cycles: " + cycles, (cycles >= 15) && (cycles <= 30));
+		assertEquals(1, daemon.getOnlineServers());
+	}
+	
+	/**
+	 * The first cycle sweeps the 4 hosts. Afterwards, the online host is probed on every cycle and each of the
+	 * 3 dead hosts once every 4 cycles.
+	 */
+	private void assertBacksOff(ScanDaemon daemon, boolean scheduled) throws InterruptedException {
+		
+		List<Long> scannedHosts = new CopyOnWriteArrayList<>();
+		CountDownLatch completed = new CountDownLatch(9);
+		daemon.addCycleCompletedListener(cycle -> {
+			scannedHosts.add(cycle.getScannedHosts());
+			completed.countDown();
+		});
+		
+		start(daemon, scheduled);
+		try {
+			assertTrue(completed.await(10, TimeUnit.SECONDS));
+		} finally {
+			daemon.stop();
+		}
+		
+		assertEquals(4, (long) scannedHosts.get(0));
+		
+		long backedOff = 0;
+		for(int i = 1; i < 9; i++)
+			backedOff += scannedHosts.get(i);
+		
+		assertEquals(8 + 3 * 2, backedOff);
+		assertEquals(1, daemon.getOnlineServers());
+	}
+	
+	private void start(ScanDaemon daemon, boolean scheduled) {
+		if(scheduled)
+			daemon.start(scheduler);
+		else
+			daemon.start();
+	}
+	
+	private static Thread findSleepingThread() {
+		for(Thread thread : Thread.getAllStackTraces().keySet())
+			for(StackTraceElement element : thread.getStackTrace())
+				if(element.getMethodName().equals("pauseBetweenCycles"))
+					return thread;
+		return null;
+	}
+}
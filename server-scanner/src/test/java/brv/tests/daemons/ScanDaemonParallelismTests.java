@@ -0,0 +1,222 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanCycle;
+
+public class ScanDaemonParallelismTests {
+
+	private static final int HOSTS = 254;
+	private static final int LOOPBACK_HOSTS = 8;
+	private static final int PARALLELISM = 4;
+
+	// Listens on every loopback address, counting the connections received on each one.
+	private ServerSocket server;
+	private Map<String, AtomicInteger> connections = new ConcurrentHashMap<>();
+	private ScanScheduler scheduler;
+
+	@Before
+	public void setUp() throws IOException {
+
+		server = new ServerSocket(0, 1024);
+		scheduler = ScanScheduler.pooled(2);
+
+		Thread acceptor = new Thread(() -> {
+			while(!server.isClosed()) {
+				try(Socket socket = server.accept()) {
+					connections.computeIfAbsent(socket.getLocalAddress().getHostAddress(), ip -> new AtomicInteger()).incrementAndGet();
+				} catch (IOException e) {
+					// Closed.
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		scheduler.close();
+		server.close();
+	}
+
+	@Test
+	public void testSequential() throws UnknownHostException, InterruptedException {
+
+		StubScanDaemon daemon = new StubScanDaemon(newBuilder());
+		assertProbedOncePerCycle(daemon);
+		assertEquals(1, daemon.maxInFlight.get());
+	}
+
+	@Test
+	public void testParallel() throws UnknownHostException, InterruptedException {
+
+		StubScanDaemon daemon = new StubScanDaemon(newBuilder().withParallelism(PARALLELISM));
+		assertProbedOncePerCycle(daemon);
+		assertTrue(daemon.maxInFlight.get() > 1);
+		assertTrue(daemon.maxInFlight.get() <= PARALLELISM);
+	}
+
+	@Test
+	public void testLoopbackParallel() throws IOException, InterruptedException {
+		assertConnectedOncePerCycle(newLoopbackDaemon(), false);
+	}
+
+	@Test
+	public void testLoopbackScheduled() throws IOException, InterruptedException {
+		assertConnectedOncePerCycle(newLoopbackDaemon(), true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() throws UnknownHostException {
+		new StubScanDaemon(newBuilder().withParallelism(0));
+	}
+
+	/**
+	 * Every host is probed once on each cycle, and each completed cycle reports all of them.
+	 */
+	private static void assertProbedOncePerCycle(StubScanDaemon daemon) throws InterruptedException {
+
+		List<ScanCycle> cycles = new CopyOnWriteArrayList<>();
+		CountDownLatch completed = new CountDownLatch(2);
+		daemon.addCycleCompletedListener(cycle -> {
+			cycles.add(cycle);
+			completed.countDown();
+		});
+
+		assertTrue(daemon.start());
+		try {
+			assertTrue(completed.await(10, TimeUnit.SECONDS));
+		} finally {
+			daemon.interrupt();
+		}
+
+		for(int i = 0; i < 2; i++) {
+			ScanCycle cycle = cycles.get(i);
+			assertEquals(daemon.getId(), cycle.getDaemonId());
+			assertEquals(i + 1, cycle.getNumber());
+			assertEquals(HOSTS, cycle.getScannedHosts());
+			assertEquals(StubScanDaemon.ONLINE, cycle.getOnlineServers());
+		}
+
+		assertEquals(HOSTS, daemon.probes.size());
+		for(Map<Long, AtomicInteger> probes : daemon.probes.values()) {
+			assertEquals(1, probes.get(0L).get());
+			assertEquals(1, probes.get(1L).get());
+		}
+	}
+
+	/**
+	 * Every loopback address is connected once on each cycle, and each completed cycle reports all of them.
+	 */
+	private void assertConnectedOncePerCycle(ScanDaemon daemon, boolean scheduled) throws InterruptedException {
+
+		List<ScanCycle> cycles = new CopyOnWriteArrayList<>();
+		CountDownLatch completed = new CountDownLatch(2);
+		daemon.addCycleCompletedListener(cycle -> {
+			cycles.add(cycle);
+			completed.countDown();
+		});
+
+		assertTrue(scheduled ? daemon.start(scheduler) : daemon.start());
+		try {
+			assertTrue(completed.await(10, TimeUnit.SECONDS));
+		} finally {
+			// Stopped while sleeping after the second cycle, so no other cycle is started.
+			daemon.stop();
+		}
+		assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(2, daemon.getCompletedCycles());
+
+		for(int i = 0; i < 2; i++) {
+			ScanCycle cycle = cycles.get(i);
+			assertEquals(daemon.getId(), cycle.getDaemonId());
+			assertEquals(i + 1, cycle.getNumber());
+			assertEquals(LOOPBACK_HOSTS, cycle.getScannedHosts());
+			assertEquals(LOOPBACK_HOSTS, cycle.getOnlineServers());
+		}
+
+		// Connections might still be waiting on the backlog.
+		for(int i = 0; (i < 100) && (totalConnections() < 2 * LOOPBACK_HOSTS); i++)
+			Thread.sleep(10);
+
+		assertEquals(LOOPBACK_HOSTS, connections.size());
+		for(int host = 1; host <= LOOPBACK_HOSTS; host++)
+			assertEquals("127.0.0." + host, 2, connections.get("127.0.0." + host).get());
+	}
+
+	private int totalConnections() {
+		return connections.values().stream().mapToInt(AtomicInteger::get).sum();
+	}
+
+	private static ScanDaemonBuilder newBuilder() {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(8080).withSleep(50);
+	}
+
+	private ScanDaemon newLoopbackDaemon() throws IOException {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+													.withConnectOnly()
+													.withSleep(1000)
+													.withParallelism(PARALLELISM)
+													.withTargets("127.0.0.1-" + LOOPBACK_HOSTS)
+													.withListenerQueue(64, OverflowPolicy.BLOCK)
+													.build();
+	}
+
+	/**
+	 * Daemon whose servers reply on every host multiple of 64, counting the probes each host gets on each cycle.
+	 */
+	private static class StubScanDaemon extends ScanDaemon {
+
+		private static final int ONLINE = 3;
+
+		private final Map<String, Map<Long, AtomicInteger>> probes = new ConcurrentHashMap<>();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		private StubScanDaemon(ScanDaemonBuilder builder) throws UnknownHostException {
+			super(builder);
+		}
+
+		@Override
+		public boolean ping(String ip) {
+
+			// Cycles are only completed once every probe has finished, so this is the cycle of the probe.
+			long cycle = getCompletedCycles();
+			probes.computeIfAbsent(ip, key -> new ConcurrentHashMap<>()).computeIfAbsent(cycle, key -> new AtomicInteger()).incrementAndGet();
+
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+
+			return Integer.parseInt(ip.substring(ip.lastIndexOf('.') + 1)) % 64 == 0;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+import brv.tools.daemons.exceptions.ScanDaemonNotFoundException;
+import brv.tools.daemons.manager.ScanDaemonManagerMap;
+
+public class ScanSchedulerTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	private static final int DAEMONS = 200;
+	
+	private ServerSocket server;
+	private ScanScheduler scheduler;
+	
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 1024, InetAddress.getByName(LOOPBACK));
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		if(scheduler != null)
+			scheduler.close();
+		server.close();
+	}
+	
+	/**
+	 * Hundreds of daemons complete their cycles on a couple of threads.
+	 */
+	@Test
+	public void testPooled() throws IOException, InterruptedException {
+		
+		scheduler = ScanScheduler.pooled(2);
+		int threads = Thread.activeCount();
+		
+		runDaemons(new ScanDaemonManagerMap(scheduler));
+		
+		assertTrue(Thread.activeCount() < threads + 10);
+	}
+	
+	@Test
+	public void testVirtualThreads() throws IOException, InterruptedException {
+		
+		assumeTrue(ScanScheduler.isVirtualThreadsSupported());
+		
+		scheduler = ScanScheduler.virtualThreads();
+		runDaemons(new ScanDaemonManagerMap(scheduler));
+	}
+	
+	@Test
+	public void testStopAndResume() throws IOException, InterruptedException, ScanDaemonNotFoundException {
+		
+		scheduler = ScanScheduler.pooled(2);
+		ScanDaemonManagerMap manager = new ScanDaemonManagerMap(scheduler);
+		ScanDaemon daemon = buildDaemon(8);
+		
+		CountDownLatch firstCycle = new CountDownLatch(1);
+		CountDownLatch resumedCycle = new CountDownLatch(2);
+		daemon.addCycleCompletedListener(cycle -> {
+			firstCycle.countDown();
+			resumedCycle.countDown();
+		});
+		
+		assertTrue(manager.add(daemon));
+		assertFalse(manager.resume(daemon.getId()));
+		assertTrue(firstCycle.await(5, TimeUnit.SECONDS));
+		
+		assertTrue(manager.stop(daemon.getId()));
+		assertFalse(daemon.isRunning());
+		assertFalse(manager.stop(daemon.getId()));
+		
+		long cycles = daemon.getCompletedCycles();
+		assertTrue(manager.resume(daemon.getId()));
+		assertTrue(daemon.isRunning());
+		
+		while(daemon.getCompletedCycles() <= cycles)
+			Thread.sleep(10);
+		
+		assertTrue(manager.interrupt(daemon.getId()));
+		assertFalse(daemon.isRunning());
+		assertFalse(manager.interrupt(daemon.getId()));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreads() {
+		ScanScheduler.pooled(0);
+	}
+	
+	private void runDaemons(ScanDaemonManagerMap manager) throws IOException, InterruptedException {
+		
+		List<ScanDaemon> daemons = new ArrayList<>();
+		CountDownLatch cycles = new CountDownLatch(DAEMONS);
+		
+		for(int i = 0; i < DAEMONS; i++) {
+			
+			ScanDaemon daemon = buildDaemon((i % 2 == 0) ? 1 : 4);
+			
+			// Only the first cycle of each daemon is counted.
+			daemon.addCycleCompletedListener(cycle -> {
+				if(cycle.getNumber() == 1)
+					cycles.countDown();
+			});
+			
+			daemons.add(daemon);
+			assertTrue(manager.add(daemon));
+		}
+		
+		try {
+			assertTrue(cycles.await(20, TimeUnit.SECONDS));
+			for(ScanDaemon daemon : daemons)
+				assertEquals(1, daemon.getOnlineServers());
+		} finally {
+			manager.stop();
+		}
+	}
+	
+	private ScanDaemon buildDaemon(int parallelism) throws IOException {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+													.withConnectOnly()
+													.withParallelism(parallelism)
+													.withTargets(LOOPBACK + "-4")
+													.build();
+	}
+}
@@ -0,0 +1,245 @@
+package brv.tests.daemons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.ScanScheduler;
+import brv.tools.daemons.exceptions.ScanDaemonNotFoundException;
+import brv.tools.daemons.manager.ScanDaemonManagerMap;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanDaemonConfiguration;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+public class SweepSharingTests {
+
+	// Listens on every loopback address, so every 127.0.0.x target is online.
+	private ServerSocket server;
+	private ScanScheduler scheduler;
+	private ScanDaemonManagerMap manager;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 50);
+		scheduler = ScanScheduler.pooled(4);
+		manager = new ScanDaemonManagerMap(scheduler, true);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		manager.removeAll();
+		scheduler.close();
+		server.close();
+	}
+
+	/**
+	 * Identical daemons run a single sweep, and each of them notifies its own listeners.
+	 */
+	@Test
+	public void testIdenticalDaemons() throws IOException, InterruptedException, ScanDaemonNotFoundException {
+
+		BlockingQueue<ScanResult> first = new LinkedBlockingQueue<>();
+		BlockingQueue<ScanResult> second = new LinkedBlockingQueue<>();
+		BlockingQueue<ScanResult> third = new LinkedBlockingQueue<>();
+
+		ScanDaemon daemon1 = buildDaemon(server.getLocalPort(), "127.0.0.1", first);
+		ScanDaemon daemon2 = buildDaemon(server.getLocalPort(), "127.0.0.1", second);
+		ScanDaemon daemon3 = buildDaemon(server.getLocalPort(), "127.0.0.1", third);
+
+		assertTrue(manager.add(daemon1));
+
+		// Servers detected before subscribing are notified too.
+		assertEquals("127.0.0.1", first.poll(10, TimeUnit.SECONDS).getIp());
+
+		assertTrue(manager.add(daemon2));
+		assertTrue(manager.add(daemon3));
+
+		assertEquals("127.0.0.1", second.poll(10, TimeUnit.SECONDS).getIp());
+		assertEquals("127.0.0.1", third.poll(10, TimeUnit.SECONDS).getIp());
+
+		assertEquals(1, manager.getSweeps());
+		assertTrue(daemon1.isRunning());
+		assertFalse(daemon2.isRunning());
+		assertFalse(daemon3.isRunning());
+
+		// Every requester keeps its own lifecycle.
+		for(ScanDaemonConfiguration configuration : manager.find())
+			assertTrue(configuration.isRunning());
+
+		assertTrue(manager.stop(daemon3.getId()));
+		assertFalse(manager.find(daemon3.getId()).isRunning());
+		assertFalse(manager.stop(daemon3.getId()));
+		assertEquals(1, manager.getSweeps());
+	}
+
+	/**
+	 * A daemon covered by another one only receives the results of its own targets.
+	 */
+	@Test
+	public void testOverlappingDaemons() throws IOException, InterruptedException {
+
+		BlockingQueue<ScanResult> network = new LinkedBlockingQueue<>();
+		BlockingQueue<ScanResult> host = new LinkedBlockingQueue<>();
+
+		ScanDaemon wide = buildDaemon(server.getLocalPort(), "127.0.0.1-3", network);
+		ScanDaemon narrow = buildDaemon(server.getLocalPort(), "127.0.0.2", host);
+
+		// The narrow one is added first, so it hands its sweep over to the wide one.
+		manager.add(narrow);
+		manager.add(wide);
+
+		assertEquals(1, manager.getSweeps());
+		assertTrue(wide.isRunning());
+		assertSame(wide, narrow.getSource());
+
+		Set<String> ips = new HashSet<>();
+		for(int i = 0; i < 3; i++)
+			ips.add(network.poll(10, TimeUnit.SECONDS).getIp());
+		assertEquals(3, ips.size());
+
+		// The narrow daemon might have notified its own result before handing its sweep over.
+		assertEquals("127.0.0.2", host.poll(10, TimeUnit.SECONDS).getIp());
+		for(ScanResult result = host.poll(500, TimeUnit.MILLISECONDS); result != null; result = host.poll(500, TimeUnit.MILLISECONDS))
+			assertEquals("127.0.0.2", result.getIp());
+	}
+
+	/**
+	 * Stopping the daemon running a sweep hands it over to the daemons following it.
+	 */
+	@Test
+	public void testHandOver() throws IOException, InterruptedException, ScanDaemonNotFoundException {
+
+		ScanDaemon wide = buildDaemon(server.getLocalPort(), "127.0.0.1-3", new LinkedBlockingQueue<>());
+		ScanDaemon narrow = buildDaemon(server.getLocalPort(), "127.0.0.2", new LinkedBlockingQueue<>());
+
+		manager.add(wide);
+		manager.add(narrow);
+		assertFalse(narrow.isRunning());
+
+		assertTrue(manager.stop(wide.getId()));
+		assertTrue(narrow.isRunning());
+		assertNull(narrow.getSource());
+		assertEquals(1, manager.getSweeps());
+
+		assertTrue(manager.resume(wide.getId()));
+		assertSame(wide, narrow.getSource());
+		assertEquals(1, manager.getSweeps());
+
+		manager.stopAll();
+		assertEquals(0, manager.getSweeps());
+		assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * A daemon taking over a sweep notifies as offline the servers it was told about while following.
+	 */
+	@Test
+	public void testOfflineAfterHandOver() throws IOException, InterruptedException, ScanDaemonNotFoundException {
+
+		BlockingQueue<ScanResult> host = new LinkedBlockingQueue<>();
+		ScanDaemon wide;
+		ScanDaemon narrow;
+
+		try(ServerSocket local = new ServerSocket(0, 50)) {
+
+			// The sweep is run with the pacing of the daemon scanning it, so the wide one never scans twice.
+			wide = buildDaemon(local.getLocalPort(), "127.0.0.1-3", new LinkedBlockingQueue<>(), 60000);
+			narrow = buildDaemon(local.getLocalPort(), "127.0.0.2", host, 50);
+			narrow.addServerRemovedListener(host::add);
+
+			manager.add(wide);
+			manager.add(narrow);
+			assertSame(wide, narrow.getSource());
+
+			ScanResult online = host.poll(10, TimeUnit.SECONDS);
+			assertEquals("127.0.0.2", online.getIp());
+			assertEquals(ServerStatus.ONLINE, online.getStatus());
+		}
+
+		// The server is down once closed, and only the narrow daemon scans it from then on.
+		assertTrue(manager.stop(wide.getId()));
+		assertTrue(narrow.isRunning());
+
+		ScanResult offline = host.poll(10, TimeUnit.SECONDS);
+		assertNotNull(offline);
+		assertEquals("127.0.0.2", offline.getIp());
+		assertEquals(ServerStatus.OFFLINE, offline.getStatus());
+		assertEquals(0, narrow.getOnlineServers());
+	}
+
+	/**
+	 * Daemons sending different probes never share their sweeps.
+	 */
+	@Test
+	public void testDifferentProbes() throws IOException {
+
+		manager.add(buildDaemon(server.getLocalPort(), "127.0.0.1", new LinkedBlockingQueue<>()));
+		manager.add(buildDaemon(server.getLocalPort() + 1, "127.0.0.1", new LinkedBlockingQueue<>()));
+		manager.add(new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+														.withSleep(60000)
+														.withTargets("127.0.0.1")
+														.build());
+
+		assertEquals(3, manager.getSweeps());
+	}
+
+	@Test
+	public void testConfigurationEquality() {
+
+		ScanDaemonConfiguration http = new ScanDaemonConfiguration();
+		http.setProtocol(Protocol.HTTP);
+		http.setPort(80);
+		http.setNetworkId("10.0.0.0/24");
+
+		ScanDaemonConfiguration same = new ScanDaemonConfiguration();
+		same.setProtocol(Protocol.HTTP);
+		same.setPort(80);
+		same.setNetworkId("10.0.0.0/24");
+
+		ScanDaemonConfiguration ftp = new ScanDaemonConfiguration();
+		ftp.setProtocol(Protocol.FTP);
+		ftp.setPort(80);
+		ftp.setNetworkId("10.0.0.0/24");
+
+		assertEquals(http, same);
+		assertEquals(http.hashCode(), same.hashCode());
+		assertNotEquals(http, ftp);
+	}
+
+	private ScanDaemon buildDaemon(int port, String targets, BlockingQueue<ScanResult> results) throws IOException {
+		return buildDaemon(port, targets, results, 60000);
+	}
+
+	private ScanDaemon buildDaemon(int port, String targets, BlockingQueue<ScanResult> results, int sleep) throws IOException {
+
+		ScanDaemon daemon = new ScanDaemonBuilder(Protocol.HTTP).withPort(port)
+																.withConnectOnly()
+																.withSleep(sleep)
+																.withTargets(targets)
+																.withListenerQueue(64, OverflowPolicy.BLOCK)
+																.build();
+
+		daemon.addServerUpdatedListener(results::add);
+		return daemon;
+	}
+}
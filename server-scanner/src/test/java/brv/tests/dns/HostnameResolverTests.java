@@ -0,0 +1,177 @@
+package brv.tests.dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import brv.tools.dns.HostnameResolver;
+import brv.tools.dns.ReverseLookup;
+
+public class HostnameResolverTests {
+
+	private HostnameResolver resolver;
+	
+	@After
+	public void tearDown() {
+		if(resolver != null)
+			resolver.shutdown();
+	}
+	
+	/**
+	 * Stub name service, counting the lookups.
+	 */
+	private static class StubLookup implements ReverseLookup {
+		
+		private final AtomicInteger lookups = new AtomicInteger();
+		private final AtomicBoolean failing = new AtomicBoolean(false);
+		private final CountDownLatch release;
+		
+		private StubLookup(CountDownLatch release) {
+			this.release = release;
+		}
+		
+		@Override
+		public String lookup(String ip) throws UnknownHostException {
+			lookups.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			if(ip.endsWith(".99") || failing.get())
+				throw new UnknownHostException(ip);
+			if(ip.endsWith(".98"))
+				return ip;
+			
+			return "host-" + ip;
+		}
+	}
+	
+	@Test
+	public void testPendingHostname() {
+		CountDownLatch release = new CountDownLatch(1);
+		StubLookup lookup = new StubLookup(release);
+		resolver = new HostnameResolver(lookup, 1, 60000, 60000, 100);
+		
+		// The lookup is blocked, so the hostname is still pending.
+		assertNull(resolver.getHostname("10.0.0.1"));
+		
+		release.countDown();
+		assertEquals("host-10.0.0.1", resolver.resolve("10.0.0.1").join());
+		assertEquals("host-10.0.0.1", resolver.getHostname("10.0.0.1"));
+		assertEquals(1, lookup.lookups.get());
+	}
+	
+	@Test
+	public void testCoalescing() {
+		CountDownLatch release = new CountDownLatch(1);
+		StubLookup lookup = new StubLookup(release);
+		resolver = new HostnameResolver(lookup, 4, 60000, 60000, 100);
+		
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for(int i = 0; i < 50; i++)
+			futures.add(resolver.resolve("10.0.0.2"));
+		
+		release.countDown();
+		for(CompletableFuture<String> future : futures)
+			assertEquals("host-10.0.0.2", future.join());
+		
+		assertEquals(1, lookup.lookups.get());
+	}
+	
+	@Test
+	public void testNegativeCaching() {
+		StubLookup lookup = new StubLookup(new CountDownLatch(0));
+		resolver = new HostnameResolver(lookup, 1, 60000, 60000, 100);
+		
+		assertNull(resolver.resolve("10.0.0.99").join());
+		assertEquals("10.0.0.98", resolver.resolve("10.0.0.98").join());
+		assertNull(resolver.getHostname("10.0.0.99"));
+		assertEquals("10.0.0.98", resolver.getHostname("10.0.0.98"));
+		
+		assertEquals(2, lookup.lookups.get());
+	}
+	
+	/**
+	 * A failed lookup keeps the hostname resolved before.
+	 */
+	@Test
+	public void testFailureAfterSuccess() {
+		StubLookup lookup = new StubLookup(new CountDownLatch(0));
+		resolver = new HostnameResolver(lookup, 1, 0, 0, 100);
+		
+		assertEquals("host-10.0.0.4", resolver.resolve("10.0.0.4").join());
+		
+		lookup.failing.set(true);
+		assertEquals("host-10.0.0.4", resolver.resolve("10.0.0.4").join());
+		assertEquals("host-10.0.0.4", resolver.resolve("10.0.0.4").join());
+		assertEquals("host-10.0.0.4", resolver.getHostname("10.0.0.4"));
+		
+		assertEquals(3, lookup.lookups.get());
+	}
+	
+	@Test
+	public void testExpiration() {
+		StubLookup lookup = new StubLookup(new CountDownLatch(0));
+		resolver = new HostnameResolver(lookup, 1, 0, 0, 100);
+		
+		resolver.resolve("10.0.0.3").join();
+		resolver.resolve("10.0.0.3").join();
+		
+		assertEquals(2, lookup.lookups.get());
+	}
+	
+	@Test
+	public void testMaxEntries() {
+		StubLookup lookup = new StubLookup(new CountDownLatch(0));
+		resolver = new HostnameResolver(lookup, 1, 60000, 60000, 10);
+		
+		for(int i = 1; i <= 50; i++)
+			resolver.resolve("10.0.0." + i).join();
+		
+		assertTrue(resolver.getCacheSize() <= 10);
+	}
+	
+	/**
+	 * Unresolvable ip addresses are evicted first, and evicted hostnames are unknown instead of empty.
+	 */
+	@Test
+	public void testEviction() {
+		StubLookup lookup = new StubLookup(new CountDownLatch(0));
+		resolver = new HostnameResolver(lookup, 1, 60000, 60000, 4);
+		
+		resolver.resolve("10.0.0.99").join();
+		for(int i = 1; i <= 4; i++)
+			resolver.resolve("10.0.0." + i).join();
+		
+		assertEquals(4, resolver.getCacheSize());
+		for(int i = 1; i <= 4; i++)
+			assertEquals("host-10.0.0." + i, resolver.getHostname("10.0.0." + i));
+		
+		resolver.resolve("10.0.0.5").join();
+		assertTrue(resolver.getCacheSize() <= 4);
+		
+		int evicted = 0;
+		for(int i = 1; i <= 5; i++) {
+			String hostname = resolver.getHostname("10.0.0." + i);
+			if(hostname == null)
+				evicted++;
+			else
+				assertEquals("host-10.0.0." + i, hostname);
+		}
+		
+		assertTrue(evicted > 0);
+	}
+}
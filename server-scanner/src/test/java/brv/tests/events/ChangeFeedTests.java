@@ -0,0 +1,189 @@
+package brv.tests.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.events.ChangeFeed;
+import brv.tools.events.Mailbox;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanChange;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerSnapshot;
+import brv.tools.model.ServerStatus;
+
+public class ChangeFeedTests {
+
+	private ExecutorService executor;
+	private ChangeFeed feed;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+		feed = new ChangeFeed(4, 16, OverflowPolicy.BLOCK, executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSequence() {
+
+		assertEquals(0, feed.getLastSequence());
+		assertEquals(1, feed.getOldestSequence());
+		assertTrue(feed.since(0).isEmpty());
+
+		for(int i = 1; i <= 3; i++)
+			assertEquals(i, feed.append(result("10.0.0." + i, ServerStatus.ONLINE)).getSequence());
+
+		List<ScanChange> changes = feed.since(1);
+		assertEquals(2, changes.size());
+		assertEquals(2, changes.get(0).getSequence());
+		assertEquals("10.0.0.3", changes.get(1).getResult().getIp());
+	}
+
+	/**
+	 * Only the last changes are kept, older ones require a new snapshot.
+	 */
+	@Test
+	public void testRing() {
+
+		for(int i = 1; i <= 10; i++)
+			feed.append(result("10.0.0." + i, ServerStatus.ONLINE));
+
+		assertEquals(10, feed.getLastSequence());
+		assertEquals(7, feed.getOldestSequence());
+
+		assertTrue(feed.isRetained(6));
+		assertEquals(4, feed.since(6).size());
+		assertTrue(feed.since(10).isEmpty());
+
+		assertFalse(feed.isRetained(5));
+		assertNull(feed.since(5));
+		assertNull(feed.since(11));
+		assertNull(feed.subscribe(5, change -> { }));
+	}
+
+	/**
+	 * Subscribers receive the kept changes and then the new ones, without gaps nor duplicates, and can resume after a disconnection.
+	 */
+	@Test
+	public void testTailAndResume() throws InterruptedException {
+
+		for(int i = 1; i <= 3; i++)
+			feed.append(result("10.0.0." + i, ServerStatus.ONLINE));
+
+		BlockingQueue<ScanChange> changes = new LinkedBlockingQueue<>();
+		Mailbox<ScanChange> mailbox = feed.subscribe(1, changes::add);
+
+		feed.append(result("10.0.0.1", ServerStatus.OFFLINE));
+		assertEquals(Arrays.asList(2L, 3L, 4L), take(changes, 3));
+
+		// Disconnected while two more changes are appended.
+		assertTrue(feed.unsubscribe(mailbox));
+		feed.append(result("10.0.0.2", ServerStatus.OFFLINE));
+		feed.append(result("10.0.0.3", ServerStatus.OFFLINE));
+		assertNull(changes.poll(100, TimeUnit.MILLISECONDS));
+
+		feed.subscribe(4, changes::add);
+		feed.append(result("10.0.0.4", ServerStatus.ONLINE));
+		assertEquals(Arrays.asList(5L, 6L, 7L), take(changes, 3));
+	}
+
+	/**
+	 * A late consumer takes a snapshot of a running daemon and tails its changes from there.
+	 */
+	@Test
+	public void testSnapshotAndTail() throws IOException, InterruptedException {
+
+		ServerSocket server = new ServerSocket(0, 50);
+
+		ScanDaemon daemon = new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+																.withConnectOnly()
+																.withSleep(200)
+																.withTargets("127.0.0.1-3")
+																.withListenerQueue(64, OverflowPolicy.BLOCK)
+																.build();
+
+		BlockingQueue<ScanChange> early = new LinkedBlockingQueue<>();
+		daemon.getChangeFeed().subscribe(0, early::add);
+
+		daemon.start();
+		try {
+			assertEquals(Arrays.asList(1L, 2L, 3L), take(early, 3));
+
+			ServerSnapshot snapshot = daemon.getSnapshot();
+			assertEquals(3, snapshot.getSequence());
+
+			Set<String> servers = new HashSet<>();
+			for(ScanResult result : snapshot.getServers())
+				servers.add(result.getIp());
+			assertEquals(new HashSet<>(Arrays.asList("127.0.0.1", "127.0.0.2", "127.0.0.3")), servers);
+
+			BlockingQueue<ScanChange> late = new LinkedBlockingQueue<>();
+			daemon.getChangeFeed().subscribe(snapshot.getSequence(), late::add);
+
+			// Every server goes offline.
+			server.close();
+
+			List<ScanChange> offline = new ArrayList<>();
+			for(int i = 0; i < 3; i++)
+				offline.add(late.poll(10, TimeUnit.SECONDS));
+
+			for(int i = 0; i < 3; i++) {
+				assertEquals(4 + i, offline.get(i).getSequence());
+				assertEquals(ServerStatus.OFFLINE, offline.get(i).getResult().getStatus());
+			}
+		} finally {
+			daemon.interrupt();
+			server.close();
+		}
+	}
+
+	private static List<Long> take(BlockingQueue<ScanChange> changes, int count) throws InterruptedException {
+
+		List<Long> sequences = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			ScanChange change = changes.poll(10, TimeUnit.SECONDS);
+			if(change == null)
+				break;
+			sequences.add(change.getSequence());
+		}
+
+		return sequences;
+	}
+
+	private static ScanResult result(String ip, ServerStatus status) {
+
+		ScanResult result = new ScanResult();
+		result.setIp(ip);
+		result.setProtocol(Protocol.HTTP);
+		result.setPort(80);
+		result.setStatus(status);
+
+		return result;
+	}
+}
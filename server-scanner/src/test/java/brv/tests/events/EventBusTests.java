@@ -0,0 +1,243 @@
+package brv.tests.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ObservableDaemon;
+import brv.tools.events.EventBus;
+import brv.tools.events.Mailbox;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+public class EventBusTests {
+
+	private ExecutorService executor;
+	
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * A blocked listener must not delay the publisher nor the rest of listeners.
+	 */
+	@Test
+	public void testSlowListenerIsolation() throws InterruptedException {
+		
+		EventBus<String> bus = new EventBus<>(4, OverflowPolicy.DROP_OLDEST, null, executor);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch fastDone = new CountDownLatch(1);
+		
+		Mailbox<String> slow = bus.subscribe(event -> await(release));
+		bus.subscribe(event -> {
+			if(event.equals("event99"))
+				fastDone.countDown();
+		});
+		
+		for(int i = 0; i < 100; i++)
+			bus.publish("event" + i);
+		
+		assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+		assertTrue(slow.getQueueDepth() <= 4);
+		assertTrue(slow.getDropped() >= 95);
+		
+		release.countDown();
+	}
+	
+	@Test
+	public void testOrderedDelivery() throws InterruptedException {
+		
+		EventBus<Integer> bus = new EventBus<>(16, OverflowPolicy.BLOCK, null, executor);
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(1000);
+		
+		bus.subscribe(event -> {
+			received.add(event);
+			done.countDown();
+		});
+		
+		for(int i = 0; i < 1000; i++)
+			bus.publish(i);
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		for(int i = 0; i < 1000; i++)
+			assertEquals(Integer.valueOf(i), received.get(i));
+		
+		assertEquals(0, bus.getDropped());
+	}
+	
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> received = new CopyOnWriteArrayList<>();
+		
+		// Events are "host=state", coalesced by host.
+		Function<String, String> host = event -> event.substring(0, event.indexOf('='));
+		Mailbox<String> mailbox = new Mailbox<>(2, OverflowPolicy.COALESCE, host, executor, event -> {
+			await(release);
+			received.add(event);
+		});
+		
+		// The first event is taken by the blocked listener, the rest are queued.
+		mailbox.offer("a=1");
+		while(mailbox.getQueueDepth() > 0)
+			Thread.sleep(1);
+		
+		mailbox.offer("a=2");
+		mailbox.offer("b=1");
+		
+		// Only coalesced once the mailbox is full.
+		assertEquals(0, mailbox.getCoalesced());
+		
+		mailbox.offer("a=3");
+		mailbox.offer("b=2");
+		
+		assertEquals(2, mailbox.getQueueDepth());
+		assertEquals(2, mailbox.getCoalesced());
+		
+		release.countDown();
+		while(mailbox.getDelivered() < 3)
+			Thread.sleep(1);
+		
+		assertEquals("[a=1, a=3, b=2]", received.toString());
+	}
+	
+	/**
+	 * Events about the same host are all delivered while the mailbox has room for them.
+	 */
+	@Test
+	public void testNoCoalesceWithRoom() throws InterruptedException {
+		
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> received = new CopyOnWriteArrayList<>();
+		
+		Function<String, String> host = event -> event.substring(0, event.indexOf('='));
+		Mailbox<String> mailbox = new Mailbox<>(8, OverflowPolicy.COALESCE, host, executor, event -> {
+			await(release);
+			received.add(event);
+		});
+		
+		for(int i = 1; i <= 4; i++)
+			mailbox.offer("a=" + i);
+		
+		release.countDown();
+		while(mailbox.getDelivered() < 4)
+			Thread.sleep(1);
+		
+		assertEquals(0, mailbox.getCoalesced());
+		assertEquals("[a=1, a=2, a=3, a=4]", received.toString());
+	}
+	
+	@Test
+	public void testFailingListener() throws InterruptedException {
+		
+		EventBus<String> bus = new EventBus<>(8, OverflowPolicy.BLOCK, null, executor);
+		CountDownLatch done = new CountDownLatch(2);
+		
+		bus.subscribe(event -> {
+			done.countDown();
+			throw new IllegalStateException("Listener failure");
+		});
+		
+		bus.publish("first");
+		bus.publish("second");
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+	
+	/**
+	 * A server going online and offline is notified in order, also by a daemon following the one scanning it.
+	 */
+	@Test
+	public void testServerOrder() throws InterruptedException {
+		
+		FlappingDaemon daemon = new FlappingDaemon();
+		FlappingDaemon follower = new FlappingDaemon();
+		follower.follow(daemon, null);
+		
+		List<ServerStatus> direct = new CopyOnWriteArrayList<>();
+		List<ServerStatus> relayed = new CopyOnWriteArrayList<>();
+		CountDownLatch delivered = new CountDownLatch(4 * 500);
+		
+		daemon.addServerListener(server -> {
+			direct.add(server.getStatus());
+			delivered.countDown();
+		}, server -> {
+			direct.add(server.getStatus());
+			delivered.countDown();
+		});
+		follower.addServerListener(server -> {
+			relayed.add(server.getStatus());
+			delivered.countDown();
+		}, server -> {
+			relayed.add(server.getStatus());
+			delivered.countDown();
+		});
+		
+		for(int i = 0; i < 500; i++) {
+			daemon.flap(ServerStatus.ONLINE);
+			daemon.flap(ServerStatus.OFFLINE);
+		}
+		
+		assertTrue(delivered.await(10, TimeUnit.SECONDS));
+		for(List<ServerStatus> received : Arrays.asList(direct, relayed)) {
+			assertEquals(1000, received.size());
+			for(int i = 0; i < received.size(); i++)
+				assertEquals((i % 2 == 0) ? ServerStatus.ONLINE : ServerStatus.OFFLINE, received.get(i));
+		}
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Daemon notifying the same server over and over.
+	 */
+	private static class FlappingDaemon extends ObservableDaemon {
+		
+		private FlappingDaemon() {
+			// Never full, so neither blocked nor coalesced.
+			super(2048, OverflowPolicy.BLOCK);
+		}
+		
+		private void flap(ServerStatus status) {
+			
+			ScanResult server = new ScanResult();
+			server.setIp("10.0.0.1");
+			server.setProtocol(Protocol.HTTP);
+			server.setPort(80);
+			server.setStatus(status);
+			
+			if(status == ServerStatus.ONLINE)
+				notifyServerUpdatedListeners(server);
+			else
+				notifyServerRemovedListeners(server);
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package brv.tests.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.manager.ScanDaemonManagerMap;
+import brv.tools.events.EventBus;
+import brv.tools.events.EventPublisher;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.model.ScanResult;
+import brv.tools.model.ServerStatus;
+
+public class EventPublisherTests {
+
+	private ExecutorService executor;
+	private EventBus<String> bus;
+	private EventPublisher<String> publisher;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		bus = new EventBus<>(16, OverflowPolicy.BLOCK, null, executor);
+		publisher = new EventPublisher<>(16, OverflowPolicy.BLOCK, null, executor);
+		publisher.addSource(bus);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testDemand() throws InterruptedException {
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+
+		for(int i = 0; i < 10; i++)
+			bus.publish("event" + i);
+
+		subscriber.subscription.request(3);
+		assertEquals(Arrays.asList("event0", "event1", "event2"), subscriber.take(3));
+		assertNull(subscriber.events.poll(100, TimeUnit.MILLISECONDS));
+
+		subscriber.subscription.request(7);
+		assertEquals("event9", subscriber.take(7).get(6));
+	}
+
+	/**
+	 * A slow subscriber doesn't delay a fast one.
+	 */
+	@Test
+	public void testIndependentSubscribers() throws InterruptedException {
+
+		TestSubscriber fast = new TestSubscriber();
+		TestSubscriber slow = new TestSubscriber();
+		publisher.subscribe(fast, 100, OverflowPolicy.DROP_OLDEST);
+		publisher.subscribe(slow, 100, OverflowPolicy.DROP_OLDEST);
+
+		fast.subscription.request(Long.MAX_VALUE);
+		slow.subscription.request(1);
+
+		for(int i = 0; i < 50; i++)
+			bus.publish("event" + i);
+
+		assertEquals(50, fast.take(50).size());
+		assertEquals(Arrays.asList("event0"), slow.take(1));
+
+		slow.subscription.request(49);
+		assertEquals("event49", slow.take(49).get(48));
+	}
+
+	/**
+	 * Without demand, events are queued and the overflow policy is applied once the queue is full.
+	 */
+	@Test
+	public void testOverflow() throws InterruptedException {
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber, 4, OverflowPolicy.DROP_OLDEST);
+
+		for(int i = 0; i < 10; i++)
+			bus.publish("event" + i);
+
+		assertEquals(6, publisher.getDropped());
+
+		subscriber.subscription.request(10);
+		assertEquals(Arrays.asList("event6", "event7", "event8", "event9"), subscriber.take(4));
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		bus.publish("event0");
+		assertEquals("event0", subscriber.take(1).get(0));
+
+		subscriber.subscription.cancel();
+		bus.publish("event1");
+
+		assertNull(subscriber.events.poll(100, TimeUnit.MILLISECONDS));
+		assertEquals(0, publisher.getSubscribers());
+		assertTrue(bus.getMailboxes().isEmpty());
+	}
+
+	@Test
+	public void testInvalidRequest() throws InterruptedException {
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertEquals(0, publisher.getSubscribers());
+	}
+
+	@Test
+	public void testClose() throws InterruptedException {
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		publisher.close();
+
+		assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+
+		// Late subscribers are completed straight away.
+		TestSubscriber late = new TestSubscriber();
+		publisher.subscribe(late);
+		assertTrue(late.subscription != null);
+		assertTrue(late.terminated.await(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Sources added after subscribing are merged, and removed ones are no longer delivered.
+	 */
+	@Test
+	public void testSources() throws InterruptedException {
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		EventBus<String> other = new EventBus<>(16, OverflowPolicy.BLOCK, null, executor);
+		publisher.addSource(other);
+
+		bus.publish("event0");
+		other.publish("other0");
+		assertTrue(subscriber.take(2).containsAll(Arrays.asList("event0", "other0")));
+
+		publisher.removeSource(bus);
+		bus.publish("event1");
+		other.publish("other1");
+		assertEquals(Arrays.asList("other1"), subscriber.take(1));
+		assertNull(subscriber.events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * The manager publisher merges the results of the daemons added after subscribing.
+	 */
+	@Test
+	public void testManagerPublisher() throws IOException, InterruptedException {
+
+		try(ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+
+			ScanDaemonManagerMap manager = new ScanDaemonManagerMap();
+
+			BlockingQueue<ScanResult> results = new LinkedBlockingQueue<>();
+			manager.getPublisher().subscribe(new Flow.Subscriber<ScanResult>() {
+
+				@Override
+				public void onSubscribe(Flow.Subscription subscription) {
+					subscription.request(1);
+				}
+
+				@Override
+				public void onNext(ScanResult item) {
+					results.add(item);
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+				}
+
+				@Override
+				public void onComplete() {
+				}
+			});
+
+			manager.add(new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+															.withConnectOnly()
+															.withSleep(20)
+															.withTargets("127.0.0.1")
+															.build());
+			try {
+				ScanResult result = results.poll(10, TimeUnit.SECONDS);
+				assertEquals("127.0.0.1", result.getIp());
+				assertEquals(ServerStatus.ONLINE, result.getStatus());
+			} finally {
+				manager.remove();
+			}
+		}
+	}
+
+	private static class TestSubscriber implements Flow.Subscriber<String> {
+
+		private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+		private final CountDownLatch terminated = new CountDownLatch(1);
+		private volatile Flow.Subscription subscription;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(String item) {
+			events.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			terminated.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			terminated.countDown();
+		}
+
+		private List<String> take(int count) throws InterruptedException {
+
+			List<String> result = new ArrayList<>();
+			for(int i = 0; i < count; i++) {
+				String event = events.poll(5, TimeUnit.SECONDS);
+				if(event == null)
+					break;
+				result.add(event);
+			}
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package brv.tests.probes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.probes.FtpBannerProbe;
+
+public class FtpBannerProbeTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+
+	private FakeGreeter greeter;
+
+	@After
+	public void tearDown() throws IOException {
+		if(greeter != null)
+			greeter.close();
+	}
+
+	@Test
+	public void testReady() throws IOException {
+		greeter = new FakeGreeter(0, "220 Fake FTP server ready.\r\n");
+		assertTrue(FtpBannerProbe.isReady(LOOPBACK, greeter.getPort(), 1000, 1000));
+	}
+
+	@Test
+	public void testMultilineGreeting() throws IOException {
+		greeter = new FakeGreeter(0, "220-Welcome\r\n220-to the\r\n220 fake server.\r\n");
+		assertEquals(220, FtpBannerProbe.readReplyCode(LOOPBACK, greeter.getPort(), 1000, 1000));
+	}
+
+	@Test
+	public void testNotReady() throws IOException {
+		greeter = new FakeGreeter(0, "421 Too many connections.\r\n");
+		assertEquals(421, FtpBannerProbe.readReplyCode(LOOPBACK, greeter.getPort(), 1000, 1000));
+		assertFalse(FtpBannerProbe.isReady(LOOPBACK, greeter.getPort(), 1000, 1000));
+	}
+
+	@Test
+	public void testNotFtp() throws IOException {
+		greeter = new FakeGreeter(0, "SSH-2.0-OpenSSH_8.2\r\n");
+		assertEquals(-1, FtpBannerProbe.readReplyCode(LOOPBACK, greeter.getPort(), 1000, 1000));
+	}
+
+	/**
+	 * A greeting received in several pieces is still parsed.
+	 */
+	@Test
+	public void testFragmentedGreeting() throws IOException {
+		greeter = new FakeGreeter(20, "220 Slow but ready.\r\n".split("(?<=\\G.{4})"));
+		assertTrue(FtpBannerProbe.isReady(LOOPBACK, greeter.getPort(), 1000, 1000));
+	}
+
+	/**
+	 * A server sending its greeting byte by byte can't hold the probe beyond the read timeout.
+	 */
+	@Test
+	public void testDeadline() throws IOException {
+
+		greeter = new FakeGreeter(100, "220 Never ending greeting.\r\n".split(""));
+
+		long start = System.nanoTime();
+		assertFalse(FtpBannerProbe.isReady(LOOPBACK, greeter.getPort(), 1000, 300));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+	}
+
+	@Test
+	public void testClosedPort() throws IOException {
+
+		int closedPort;
+		try(ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK))) {
+			closedPort = socket.getLocalPort();
+		}
+
+		assertFalse(FtpBannerProbe.isReady(LOOPBACK, closedPort, 1000, 1000));
+	}
+
+	@Test
+	public void testConcurrentProbes() throws Exception {
+
+		greeter = new FakeGreeter(0, "220 Fake FTP server ready.\r\n");
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<Boolean>> probes = new ArrayList<>();
+			for(int i = 0; i < 200; i++)
+				probes.add(executor.submit(() -> FtpBannerProbe.isReady(LOOPBACK, greeter.getPort(), 5000, 5000)));
+
+			for(Future<Boolean> probe : probes)
+				assertTrue(probe.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testDaemon() throws IOException, InterruptedException {
+
+		greeter = new FakeGreeter(0, "220 Fake FTP server ready.\r\n");
+
+		ScanDaemon daemon = new ScanDaemonBuilder(Protocol.FTP).withPort(greeter.getPort())
+																.withSleep(20)
+																.withTargets(LOOPBACK)
+																.withListenerQueue(64, OverflowPolicy.BLOCK)
+																.build();
+
+		CountDownLatch detected = new CountDownLatch(1);
+		daemon.addServerUpdatedListener(result -> detected.countDown());
+
+		daemon.start();
+		try {
+			assertTrue(detected.await(10, TimeUnit.SECONDS));
+		} finally {
+			daemon.stop();
+		}
+	}
+
+	/**
+	 * Greets every accepted connection with the given pieces, pausing between them.
+	 */
+	private static class FakeGreeter implements AutoCloseable {
+
+		private final ServerSocket server;
+		private final ExecutorService connections = Executors.newCachedThreadPool();
+
+		FakeGreeter(int pause, String... pieces) throws IOException {
+
+			server = new ServerSocket(0, 256, InetAddress.getByName(LOOPBACK));
+
+			connections.execute(() -> {
+				while(!server.isClosed()) {
+					try {
+						Socket socket = server.accept();
+						connections.execute(() -> greet(socket, pause, pieces));
+					} catch (IOException e) {
+						// Closed.
+					}
+				}
+			});
+		}
+
+		private static void greet(Socket socket, int pause, String... pieces) {
+			try(Socket connection = socket) {
+				OutputStream output = connection.getOutputStream();
+				for(String piece : pieces) {
+					output.write(piece.getBytes(StandardCharsets.US_ASCII));
+					output.flush();
+					Thread.sleep(pause);
+				}
+			} catch (IOException | InterruptedException e) {
+				// The probe closed the connection.
+			}
+		}
+
+		int getPort() {
+			return server.getLocalPort();
+		}
+
+		@Override
+		public void close() throws IOException {
+			server.close();
+			connections.shutdownNow();
+		}
+	}
+}
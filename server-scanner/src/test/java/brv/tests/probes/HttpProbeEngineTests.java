@@ -0,0 +1,149 @@
+package brv.tests.probes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.probes.HttpProbeEngine;
+import brv.tools.util.NamedThreadFactory;
+
+public class HttpProbeEngineTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	
+	private HttpProbeEngine engine;
+	private HttpServer server;
+	private CountDownLatch release;
+	
+	@Before
+	public void setUp() throws IOException {
+		
+		engine = new HttpProbeEngine(64, 4);
+		release = new CountDownLatch(1);
+		
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(LOOPBACK), 0), 1024);
+		server.setExecutor(Executors.newCachedThreadPool(new NamedThreadFactory("HttpServer")));
+		server.createContext("/", exchange -> {
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.createContext("/missing", exchange -> {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		server.createContext("/hang", exchange -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+	}
+	
+	@After
+	public void tearDown() {
+		release.countDown();
+		engine.close();
+		server.stop(0);
+	}
+	
+	@Test
+	public void testServerUp() {
+		assertTrue(engine.isUp(getUrl("/"), 1000));
+	}
+	
+	@Test
+	public void testErrorStatus() {
+		assertFalse(engine.isUp(getUrl("/missing"), 1000));
+	}
+	
+	@Test
+	public void testClosedPort() throws IOException {
+		
+		int closedPort;
+		try(ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK))) {
+			closedPort = socket.getLocalPort();
+		}
+		
+		assertFalse(engine.isUp("http://" + LOOPBACK + ":" + closedPort + "/", 1000));
+	}
+	
+	@Test
+	public void testInvalidUrl() {
+		assertFalse(engine.isUp("http://not a url", 1000));
+	}
+	
+	@Test
+	public void testDeadline() {
+		
+		long start = System.currentTimeMillis();
+		assertFalse(engine.probe(getUrl("/hang"), 1000, 300).join());
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(0, engine.getInFlight());
+	}
+	
+	/**
+	 * Probes exceeding the per route limit wait for a connection instead of failing.
+	 */
+	@Test
+	public void testManyProbes() {
+		
+		List<CompletableFuture<Boolean>> probes = new ArrayList<>();
+		for(int i = 0; i < 200; i++)
+			probes.add(engine.probe(getUrl("/"), 1000));
+		
+		for(CompletableFuture<Boolean> probe : probes)
+			assertTrue(probe.join());
+		
+		assertEquals(0, engine.getInFlight());
+	}
+	
+	@Test
+	public void testClosedEngine() {
+		engine.close();
+		assertFalse(engine.isUp(getUrl("/"), 1000));
+	}
+	
+	/**
+	 * A daemon built with its own engine sends its requests through it instead of the shared one.
+	 */
+	@Test
+	public void testDaemonEngine() throws IOException {
+		
+		ScanDaemon daemon = new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getAddress().getPort())
+																.withTimeout(1000)
+																.withTargets(LOOPBACK)
+																.withHttpProbeEngine(engine)
+																.build();
+		assertTrue(daemon.ping(LOOPBACK));
+		
+		engine.close();
+		assertFalse(daemon.ping(LOOPBACK));
+	}
+	
+	private String getUrl(String path) {
+		return "http://" + LOOPBACK + ":" + server.getAddress().getPort() + path;
+	}
+}
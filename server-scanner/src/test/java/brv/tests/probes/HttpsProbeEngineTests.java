@@ -0,0 +1,250 @@
+package brv.tests.probes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.probes.HttpsProbeEngine;
+
+public class HttpsProbeEngineTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	private static final char[] PASSWORD = "changeit".toCharArray();
+
+	private KeyStore keyStore;
+	private FakeHttpsServer server;
+
+	@Before
+	public void setUp() throws IOException, GeneralSecurityException {
+		keyStore = KeyStore.getInstance("PKCS12");
+		try(InputStream input = getClass().getResourceAsStream("/probes/localhost.p12")) {
+			keyStore.load(input, PASSWORD);
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if(server != null)
+			server.close();
+	}
+
+	@Test
+	public void testUp() throws Exception {
+		server = new FakeHttpsServer("HTTP/1.1 200 OK");
+		assertTrue(newEngine().isUp(LOOPBACK, server.getPort(), 1000, 2000));
+	}
+
+	@Test
+	public void testServerError() throws Exception {
+
+		server = new FakeHttpsServer("HTTP/1.1 503 Service Unavailable");
+		HttpsProbeEngine engine = newEngine();
+
+		assertFalse(engine.isUp(LOOPBACK, server.getPort(), 1000, 2000));
+
+		// The handshake is enough to be considered alive.
+		assertTrue(engine.handshake(LOOPBACK, server.getPort(), 1000, 2000));
+	}
+
+	/**
+	 * Servers are not trusted by the default trust managers, as they use a self-signed certificate.
+	 */
+	@Test
+	public void testUntrusted() throws Exception {
+
+		server = new FakeHttpsServer("HTTP/1.1 200 OK");
+
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, null, null);
+		HttpsProbeEngine engine = new HttpsProbeEngine(context, 16, 60);
+
+		assertFalse(engine.handshake(LOOPBACK, server.getPort(), 1000, 2000));
+		assertFalse(engine.isUp(LOOPBACK, server.getPort(), 1000, 2000));
+	}
+
+	@Test
+	public void testNotTls() throws IOException, GeneralSecurityException {
+
+		try(ServerSocket plain = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK))) {
+
+			ExecutorService executor = Executors.newSingleThreadExecutor();
+			executor.execute(() -> {
+				try(OutputStream output = plain.accept().getOutputStream()) {
+					output.write("SSH-2.0-OpenSSH_8.2\r\n".getBytes(StandardCharsets.US_ASCII));
+				} catch (IOException e) {
+					// Closed.
+				}
+			});
+
+			try {
+				assertFalse(newEngine().handshake(LOOPBACK, plain.getLocalPort(), 1000, 2000));
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * The second probe of a server resumes the session of the first one.
+	 */
+	@Test
+	public void testSessionResumption() throws Exception {
+
+		server = new FakeHttpsServer("HTTP/1.1 200 OK");
+		HttpsProbeEngine engine = newEngine();
+
+		assertTrue(engine.isUp(LOOPBACK, server.getPort(), 1000, 2000));
+		assertTrue(engine.handshake(LOOPBACK, server.getPort(), 1000, 2000));
+
+		assertTrue(server.handshakes.await(5, TimeUnit.SECONDS));
+		assertEquals(2, server.sessions.size());
+		assertArrayEquals(server.sessions.get(0), server.sessions.get(1));
+	}
+
+	@Test
+	public void testDaemon() throws Exception {
+
+		server = new FakeHttpsServer("HTTP/1.1 503 Service Unavailable");
+
+		ScanDaemon daemon = new ScanDaemonBuilder(Protocol.HTTPS).withPort(server.getPort())
+																.withSslContext(newClientContext())
+																.withHandshakeOnly()
+																.withSleep(20)
+																.withTargets(LOOPBACK)
+																.withListenerQueue(64, OverflowPolicy.BLOCK)
+																.build();
+
+		CountDownLatch detected = new CountDownLatch(1);
+		daemon.addServerUpdatedListener(result -> detected.countDown());
+
+		daemon.start();
+		try {
+			assertTrue(detected.await(10, TimeUnit.SECONDS));
+		} finally {
+			daemon.stop();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHandshakeOnlyHttp() throws IOException {
+		new ScanDaemonBuilder(Protocol.HTTP).withHandshakeOnly().build();
+	}
+
+	private HttpsProbeEngine newEngine() throws GeneralSecurityException {
+		return new HttpsProbeEngine(newClientContext(), 16, 60);
+	}
+
+	/**
+	 * Creates a context trusting the self-signed certificate of the test server.
+	 */
+	private SSLContext newClientContext() throws GeneralSecurityException {
+
+		TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trust.init(keyStore);
+
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, trust.getTrustManagers(), null);
+		return context;
+	}
+
+	/**
+	 * Replies to every request with the given status line. TLS 1.2 is used, so resumed sessions keep their id.
+	 */
+	private class FakeHttpsServer implements AutoCloseable {
+
+		private final SSLServerSocket socket;
+		private final ExecutorService connections = Executors.newCachedThreadPool();
+
+		private final List<byte[]> sessions = new CopyOnWriteArrayList<>();
+		private final CountDownLatch handshakes = new CountDownLatch(2);
+
+		FakeHttpsServer(String statusLine) throws IOException, GeneralSecurityException {
+
+			KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			keys.init(keyStore, PASSWORD);
+
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(keys.getKeyManagers(), null, null);
+
+			socket = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+			socket.setEnabledProtocols(new String[] { "TLSv1.2" });
+
+			connections.execute(() -> {
+				while(!socket.isClosed()) {
+					try {
+						SSLSocket connection = (SSLSocket) socket.accept();
+						connections.execute(() -> reply(connection, statusLine));
+					} catch (IOException e) {
+						// Closed.
+					}
+				}
+			});
+		}
+
+		private void reply(SSLSocket connection, String statusLine) {
+			try(SSLSocket client = connection) {
+
+				client.startHandshake();
+				sessions.add(client.getSession().getId());
+				handshakes.countDown();
+
+				// Waits for the end of the request headers, or for the client to close.
+				InputStream input = client.getInputStream();
+				int matched = 0;
+				byte[] end = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+				int read;
+				while((matched < end.length) && ((read = input.read()) >= 0))
+					matched = (read == end[matched]) ? matched + 1 : ((read == end[0]) ? 1 : 0);
+
+				if(matched == end.length) {
+					OutputStream output = client.getOutputStream();
+					output.write((statusLine + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+					output.flush();
+				}
+
+			} catch (IOException e) {
+				// The probe closed the connection.
+			}
+		}
+
+		int getPort() {
+			return socket.getLocalPort();
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+			connections.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package brv.tests.probes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import brv.tools.probes.RttEstimator;
+
+public class RttEstimatorTests {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testInitialTimeout() {
+
+		RttEstimator estimator = new RttEstimator(500, 10, 1000, RttEstimator.DEFAULT_MAX_HOSTS);
+
+		assertEquals(500, estimator.getConnectTimeout("192.168.1.1"));
+		assertEquals(1000, estimator.getReadTimeout("192.168.1.1"));
+		assertEquals(-1, estimator.getSmoothedRtt("192.168.1.1"), 0);
+	}
+
+	/**
+	 * Stable hosts converge to a timeout close to their round trip time.
+	 */
+	@Test
+	public void testConvergence() {
+
+		RttEstimator estimator = new RttEstimator(500, 1, 1000, RttEstimator.DEFAULT_MAX_HOSTS);
+
+		for(int i = 0; i < 100; i++)
+			estimator.sample("192.168.1.1", 20 * MILLIS);
+
+		assertEquals(20, estimator.getSmoothedRtt("192.168.1.1"), 0.001);
+		assertTrue(estimator.getConnectTimeout("192.168.1.1") <= 22);
+	}
+
+	/**
+	 * Hosts never seen before use the timeout of their subnet.
+	 */
+	@Test
+	public void testSubnetTimeout() {
+
+		RttEstimator estimator = new RttEstimator(500, 1, 1000, RttEstimator.DEFAULT_MAX_HOSTS);
+		estimator.sample("192.168.1.1", 20 * MILLIS);
+
+		assertEquals(estimator.getConnectTimeout("192.168.1.1"), estimator.getConnectTimeout("192.168.1.2"));
+		assertEquals(500, estimator.getConnectTimeout("192.168.2.1"));
+	}
+
+	@Test
+	public void testBackOff() {
+
+		RttEstimator estimator = new RttEstimator(500, 1, 1000, RttEstimator.DEFAULT_MAX_HOSTS);
+		estimator.sample("192.168.1.1", 20 * MILLIS);
+
+		int timeout = estimator.getConnectTimeout("192.168.1.1");
+		estimator.timeout("192.168.1.1");
+		assertEquals(2 * timeout, estimator.getConnectTimeout("192.168.1.1"), 1);
+
+		for(int i = 0; i < 100; i++)
+			estimator.timeout("192.168.1.1");
+		assertEquals(1000, estimator.getConnectTimeout("192.168.1.1"));
+
+		// A reply resets the back off.
+		estimator.sample("192.168.1.1", 20 * MILLIS);
+		assertTrue(estimator.getConnectTimeout("192.168.1.1") < 1000);
+	}
+
+	/**
+	 * Hosts using the timeout of their subnet are backed off up to the initial timeout.
+	 */
+	@Test
+	public void testSubnetBackOff() {
+
+		RttEstimator estimator = new RttEstimator(500, 1, 1000, RttEstimator.DEFAULT_MAX_HOSTS);
+		estimator.sample("192.168.1.1", 20 * MILLIS);
+
+		int timeout = estimator.getConnectTimeout("192.168.1.2");
+		estimator.timeout("192.168.1.2");
+		assertEquals(2 * timeout, estimator.getConnectTimeout("192.168.1.2"), 1);
+		assertEquals(timeout, estimator.getConnectTimeout("192.168.1.3"));
+
+		for(int i = 0; i < 100; i++)
+			estimator.timeout("192.168.1.2");
+		assertEquals(500, estimator.getConnectTimeout("192.168.1.2"));
+
+		// A reply gives the host its own estimate.
+		estimator.sample("192.168.1.2", 20 * MILLIS);
+		assertTrue(estimator.getConnectTimeout("192.168.1.2") < 500);
+	}
+
+	@Test
+	public void testClamp() {
+
+		RttEstimator estimator = new RttEstimator(5000, 50, 1000, RttEstimator.DEFAULT_MAX_HOSTS);
+		assertEquals(1000, estimator.getConnectTimeout("192.168.1.1"));
+
+		estimator.sample("192.168.1.1", MILLIS / 10);
+		assertEquals(50, estimator.getConnectTimeout("192.168.1.1"));
+	}
+
+	@Test
+	public void testMaxHosts() {
+
+		RttEstimator estimator = new RttEstimator(500, 1, 1000, 2);
+
+		estimator.sample("192.168.1.1", 20 * MILLIS);
+		estimator.sample("192.168.1.2", 20 * MILLIS);
+		estimator.sample("192.168.1.3", 20 * MILLIS);
+
+		assertEquals(2, estimator.getTrackedHosts());
+		assertEquals(-1, estimator.getSmoothedRtt("192.168.1.3"), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCeiling() {
+		new RttEstimator(500, 100, 10, RttEstimator.DEFAULT_MAX_HOSTS);
+	}
+}
@@ -0,0 +1,82 @@
+package brv.tests.probes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.tools.probes.TcpConnectEngine;
+
+public class TcpConnectEngineTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+	
+	private TcpConnectEngine engine;
+	private ServerSocket listener;
+	
+	@Before
+	public void setUp() throws IOException {
+		engine = new TcpConnectEngine(64);
+		listener = new ServerSocket(0, 1024, InetAddress.getByName(LOOPBACK));
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		engine.close();
+		listener.close();
+	}
+	
+	@Test
+	public void testOpenPort() {
+		assertTrue(engine.isOpen(LOOPBACK, listener.getLocalPort(), 1000));
+	}
+	
+	@Test
+	public void testClosedPort() throws IOException {
+		
+		int closedPort;
+		try(ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK))) {
+			closedPort = socket.getLocalPort();
+		}
+		
+		assertFalse(engine.isOpen(LOOPBACK, closedPort, 1000));
+	}
+	
+	@Test
+	public void testInvalidAddress() {
+		assertFalse(engine.isOpen("not an ip", listener.getLocalPort(), 1000));
+	}
+	
+	/**
+	 * More connects than the maximum in flight are queued, but all of them must be completed.
+	 */
+	@Test
+	public void testManyConnects() {
+		
+		List<CompletableFuture<Boolean>> connects = new ArrayList<>();
+		for(int i = 0; i < 500; i++)
+			connects.add(engine.connect(LOOPBACK, listener.getLocalPort(), 5000));
+		
+		CompletableFuture.allOf(connects.toArray(new CompletableFuture<?>[0])).join();
+		
+		long established = connects.stream().filter(CompletableFuture::join).count();
+		assertEquals(500, established);
+		assertEquals(0, engine.getInFlight());
+	}
+	
+	@Test
+	public void testClose() {
+		engine.close();
+		assertFalse(engine.connect(LOOPBACK, listener.getLocalPort(), 1000).join());
+	}
+}
@@ -0,0 +1,138 @@
+package brv.tests.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.daemons.manager.ScanDaemonManagerMap;
+import brv.tools.model.ScanDaemonStats;
+import brv.tools.stats.JmxExporter;
+
+public class JmxExporterTests {
+
+	private static final String LOOPBACK = "127.0.0.1";
+
+	private ServerSocket server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 1024, InetAddress.getByName(LOOPBACK));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Only the first of the 4 hosts is listening, the rest of them refuse the connection.
+	 */
+	@Test
+	public void testStats() throws IOException, InterruptedException {
+
+		ScanDaemon daemon = newDaemon();
+		runCycle(daemon);
+
+		ScanDaemonStats stats = daemon.getStats();
+
+		assertEquals(daemon.getId(), stats.getId());
+		assertEquals(4, stats.getProbesSent());
+		assertEquals(1, stats.getProbesSucceeded());
+		assertEquals(3, stats.getProbesErrored());
+		assertEquals(0, stats.getProbesTimedOut());
+		assertEquals(1, stats.getSuccessLatency().getCount());
+		assertEquals(3, stats.getFailureLatency().getCount());
+		assertEquals(1, stats.getCompletedCycles());
+		assertEquals(1, stats.getCycleDuration().getCount());
+		assertEquals(1, stats.getOnlineServers());
+
+		// A server updated and a cycle completed notification.
+		assertEquals(2, stats.getEventsEmitted());
+	}
+
+	@Test
+	public void testJmx() throws IOException, InterruptedException, JMException {
+
+		ScanDaemon daemon = newDaemon();
+		ObjectName name = JmxExporter.register(daemon);
+		try {
+			runCycle(daemon);
+
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(4L, mbeanServer.getAttribute(name, "ProbesSent"));
+			assertEquals(Protocol.HTTP.getName(), mbeanServer.getAttribute(name, "Protocol"));
+
+			CompositeData latency = (CompositeData) mbeanServer.getAttribute(name, "SuccessLatency");
+			assertEquals(1L, latency.get("count"));
+
+		} finally {
+			assertTrue(JmxExporter.unregister(daemon));
+		}
+
+		assertFalse(JmxExporter.unregister(daemon));
+	}
+
+	@Test
+	public void testManager() throws IOException, InterruptedException {
+
+		ScanDaemonManagerMap manager = new ScanDaemonManagerMap();
+		ScanDaemon daemon = newDaemon();
+		CountDownLatch completed = new CountDownLatch(1);
+		daemon.addCycleCompletedListener(cycle -> completed.countDown());
+
+		manager.add(daemon);
+		try {
+			assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+			assertNotNull(manager.findStats(daemon.getId()));
+			assertEquals(1, manager.findStats().size());
+			assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(JmxExporter.getObjectName(daemon.getId())));
+		} finally {
+			manager.remove();
+		}
+
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(JmxExporter.getObjectName(daemon.getId())));
+	}
+
+	private ScanDaemon newDaemon() throws IOException {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+													.withConnectOnly()
+													.withTimeout(1000)
+													.withSleep(60000)
+													.withTargets(LOOPBACK + "-4")
+													.build();
+	}
+
+	private static void runCycle(ScanDaemon daemon) throws InterruptedException {
+
+		CountDownLatch completed = new CountDownLatch(1);
+		daemon.addCycleCompletedListener(cycle -> completed.countDown());
+
+		daemon.start();
+		try {
+			assertTrue(completed.await(5, TimeUnit.SECONDS));
+		} finally {
+			daemon.interrupt();
+		}
+	}
+}
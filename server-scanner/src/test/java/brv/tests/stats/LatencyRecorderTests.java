@@ -0,0 +1,67 @@
+package brv.tests.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import brv.tools.model.LatencyHistogram;
+import brv.tools.stats.LatencyRecorder;
+
+public class LatencyRecorderTests {
+
+	@Test
+	public void testEmpty() {
+
+		LatencyHistogram histogram = new LatencyRecorder().snapshot();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getP99(), 0);
+	}
+
+	@Test
+	public void testPercentiles() {
+
+		LatencyRecorder recorder = new LatencyRecorder();
+
+		// 90 fast latencies and 10 slow ones.
+		for(int i = 0; i < 90; i++)
+			recorder.record(TimeUnit.MILLISECONDS.toNanos(1));
+		for(int i = 0; i < 10; i++)
+			recorder.record(TimeUnit.MILLISECONDS.toNanos(100));
+
+		LatencyHistogram histogram = recorder.snapshot();
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(10.9, histogram.getMean(), 0.001);
+		assertEquals(100, histogram.getMax(), 0.001);
+
+		// Percentiles are the upper bound of their bucket, at most twice the latency.
+		assertTrue(histogram.getMedian() >= 1 && histogram.getMedian() <= 2);
+		assertTrue(histogram.getP90() >= 1 && histogram.getP90() <= 2);
+		assertEquals(100, histogram.getP99(), 0.001);
+	}
+
+	@Test
+	public void testBuckets() {
+
+		LatencyRecorder recorder = new LatencyRecorder();
+		recorder.record(TimeUnit.MICROSECONDS.toNanos(3));
+		recorder.record(TimeUnit.DAYS.toNanos(1));
+
+		LatencyHistogram histogram = recorder.snapshot();
+		long[] counts = histogram.getCounts();
+		double[] upperBounds = histogram.getUpperBounds();
+
+		// 3us falls between 2us and 4us.
+		assertEquals(1, counts[2]);
+		assertEquals(0.004, upperBounds[2], 0);
+
+		// Any latency beyond the last bound is kept on the last bucket.
+		assertEquals(1, counts[LatencyHistogram.BUCKETS - 1]);
+		assertEquals(TimeUnit.DAYS.toMillis(1), histogram.getP99(), 0.001);
+	}
+}
@@ -0,0 +1,128 @@
+package brv.tests.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import brv.tools.store.DetectedServerStore;
+
+public class DetectedServerStoreTests {
+
+	@Test
+	public void testPutAndUpdate() {
+		DetectedServerStore store = new DetectedServerStore();
+		
+		assertNull(store.put(7, "host", 100));
+		assertEquals("host", store.put(7, "renamed", 200));
+		
+		assertEquals("renamed", store.get(7));
+		assertEquals(100, store.getFirstSeen(7));
+		assertEquals(200, store.getLastSeen(7));
+		assertEquals(1, store.size());
+	}
+	
+	@Test
+	public void testRemove() {
+		DetectedServerStore store = new DetectedServerStore();
+		
+		for(long key = 0; key < 10000; key++)
+			store.put(key, "host" + key, key);
+		
+		// Removing half of the entries must keep every other entry reachable.
+		for(long key = 0; key < 10000; key += 2)
+			assertEquals("host" + key, store.remove(key));
+		
+		assertEquals(5000, store.size());
+		for(long key = 0; key < 10000; key++)
+			assertEquals(key % 2 != 0, store.contains(key));
+		
+		assertNull(store.remove(0));
+		assertEquals(-1, store.getLastSeen(0));
+	}
+	
+	@Test
+	public void testMemoryBudget() {
+		DetectedServerStore store = new DetectedServerStore(64 * 1024);
+		
+		int stored = 0;
+		for(long key = 0; key < 100000; key++) {
+			store.put(key, "", key);
+			if(store.contains(key))
+				stored++;
+		}
+		
+		assertEquals(stored, store.size());
+		assertTrue(stored < 100000);
+		assertTrue(store.getMemoryUsage() <= store.getMemoryBudget());
+		assertFalse(store.contains(99999));
+	}
+	
+	/**
+	 * Hostnames are accounted against the budget, and removing a server gives their room back.
+	 */
+	@Test
+	public void testHostnameBudget() {
+		DetectedServerStore store = new DetectedServerStore(64 * 1024);
+		
+		int stored = 0;
+		for(long key = 0; key < 100000; key++) {
+			if(store.put(key, "host-" + key + ".example.org", key) == null && store.contains(key))
+				stored++;
+		}
+		
+		assertEquals(stored, store.size());
+		assertTrue(stored < 1000);
+		assertTrue(store.getMemoryUsage() <= store.getMemoryBudget());
+		
+		long usage = store.getMemoryUsage();
+		store.remove(0);
+		assertTrue(store.getMemoryUsage() < usage);
+		
+		store.clear();
+		assertEquals(0, store.size());
+		assertTrue(store.getMemoryUsage() < usage);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMemoryBudgetTooSmall() {
+		new DetectedServerStore(1024);
+	}
+	
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		DetectedServerStore store = new DetectedServerStore();
+		
+		List<Thread> threads = new ArrayList<>();
+		for(int t = 0; t < 8; t++) {
+			long offset = t * 100000L;
+			threads.add(new Thread(() -> {
+				for(long key = offset; key < offset + 20000; key++) {
+					store.put(key, "", key);
+					if(key % 4 == 0)
+						store.remove(key);
+				}
+			}));
+		}
+		
+		for(Thread thread : threads)
+			thread.start();
+		for(Thread thread : threads)
+			thread.join();
+		
+		assertEquals(8 * 15000, store.size());
+		
+		AtomicInteger visited = new AtomicInteger();
+		store.forEach((key, hostname, firstSeen, lastSeen) -> {
+			assertEquals(key, firstSeen);
+			visited.incrementAndGet();
+		});
+		assertEquals(8 * 15000, visited.get());
+	}
+}
@@ -0,0 +1,281 @@
+package brv.tests.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.dns.HostnameResolver;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.store.DetectedServerStore;
+import brv.tools.store.StateJournal;
+
+public class StateJournalTests {
+
+	private static final long FINGERPRINT = 42;
+	private static final int SEGMENT_SIZE = 64 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReplay() throws IOException {
+
+		File directory = folder.newFolder();
+
+		try(StateJournal journal = open(directory, FINGERPRINT, new DetectedServerStore())) {
+			journal.online(1, "one", 100);
+			journal.online(2, "two", 200);
+			journal.online(3, "three", 300);
+			journal.offline(2, 400);
+			journal.online(1, "renamed", 500);
+		}
+
+		DetectedServerStore store = new DetectedServerStore();
+		open(directory, FINGERPRINT, store).close();
+
+		assertEquals(2, store.size());
+		assertEquals("renamed", store.get(1));
+		assertNull(store.get(2));
+		assertEquals("three", store.get(3));
+		assertEquals(300, store.getLastSeen(3));
+	}
+
+	/**
+	 * Compactions keep a bounded number of files, and the snapshot restores the same servers as the segments.
+	 */
+	@Test
+	public void testCompaction() throws IOException {
+
+		File directory = folder.newFolder();
+		DetectedServerStore store = new DetectedServerStore();
+
+		try(StateJournal journal = open(directory, FINGERPRINT, store)) {
+			for(int i = 0; i < 50000; i++) {
+				long key = i % 1000;
+				if((i / 1000) % 2 == 0) {
+					store.put(key, "host" + i, i);
+					journal.online(key, "host" + i, i);
+				} else if(key % 3 == 0) {
+					store.remove(key);
+					journal.offline(key, i);
+				}
+			}
+		}
+
+		assertTrue(directory.list().length <= 4);
+		assertEquals(1, directory.list((dir, name) -> name.endsWith(".snapshot")).length);
+
+		DetectedServerStore restored = new DetectedServerStore();
+		open(directory, FINGERPRINT, restored).close();
+
+		assertEquals(store.size(), restored.size());
+		for(long key = 0; key < 1000; key++)
+			assertEquals(store.get(key), restored.get(key));
+	}
+
+	/**
+	 * A record partially written when the process died is ignored, keeping the previous ones.
+	 */
+	@Test
+	public void testTornRecord() throws IOException {
+
+		File directory = folder.newFolder();
+
+		try(StateJournal journal = open(directory, FINGERPRINT, new DetectedServerStore())) {
+			journal.online(1, "one", 100);
+			journal.online(2, "two", 200);
+		}
+
+		// Header of 24 bytes plus a record of 8 + 19 + 3 bytes, the second record's hostname is corrupted.
+		File segment = directory.listFiles((dir, name) -> name.endsWith(".journal"))[0];
+		try(RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(24 + 30 + 8 + 19);
+			file.write('x');
+		}
+
+		DetectedServerStore store = new DetectedServerStore();
+		open(directory, FINGERPRINT, store).close();
+
+		assertEquals(1, store.size());
+		assertEquals("one", store.get(1));
+	}
+
+	@Test
+	public void testFingerprintMismatch() throws IOException {
+
+		File directory = folder.newFolder();
+
+		try(StateJournal journal = open(directory, FINGERPRINT, new DetectedServerStore())) {
+			journal.online(1, "one", 100);
+			journal.compact();
+			journal.online(2, "two", 200);
+		}
+
+		DetectedServerStore store = new DetectedServerStore();
+		open(directory, FINGERPRINT + 1, store).close();
+
+		assertEquals(0, store.size());
+		assertEquals(0, directory.list((dir, name) -> name.endsWith(".snapshot")).length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSegmentTooSmall() throws IOException {
+		new StateJournal(folder.newFolder().toPath(), FINGERPRINT, new DetectedServerStore(), 1024, 1);
+	}
+
+	/**
+	 * A restarted daemon restores the servers online before the restart without notifying them again, even if its
+	 * hostname resolver has not resolved them yet.
+	 */
+	@Test
+	public void testQuietRestart() throws IOException, InterruptedException {
+
+		File directory = folder.newFolder();
+
+		try(ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+
+			HostnameResolver resolver = new HostnameResolver(ip -> "host-" + ip, 1, 60000, 60000, 100);
+			ScanDaemon daemon = newDaemon(server.getLocalPort(), directory, resolver);
+			CountDownLatch resolved = new CountDownLatch(1);
+			daemon.addServerUpdatedListener(result -> {
+				if(result.getHostname().equals("host-127.0.0.1"))
+					resolved.countDown();
+			});
+
+			daemon.start();
+			try {
+				assertTrue(resolved.await(10, TimeUnit.SECONDS));
+			} finally {
+				daemon.stop();
+				resolver.shutdown();
+			}
+
+			// A cold resolver, whose lookups don't complete until the restarted daemon has completed some cycles.
+			CountDownLatch release = new CountDownLatch(1);
+			HostnameResolver coldResolver = new HostnameResolver(ip -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "host-" + ip;
+			}, 1, 60000, 60000, 100);
+
+			ScanDaemon restarted = newDaemon(server.getLocalPort(), directory, coldResolver);
+			assertEquals(1, restarted.getOnlineServers());
+
+			List<String> updates = new CopyOnWriteArrayList<>();
+			CountDownLatch pendingCycles = new CountDownLatch(2);
+			CountDownLatch resolvedCycles = new CountDownLatch(4);
+			restarted.addServerUpdatedListener(result -> updates.add(result.getHostname()));
+			restarted.addCycleCompletedListener(cycle -> {
+				pendingCycles.countDown();
+				if(release.getCount() == 0)
+					resolvedCycles.countDown();
+			});
+
+			restarted.start();
+			try {
+				assertTrue(pendingCycles.await(10, TimeUnit.SECONDS));
+				release.countDown();
+				assertTrue(resolvedCycles.await(10, TimeUnit.SECONDS));
+			} finally {
+				restarted.stop();
+				coldResolver.shutdown();
+			}
+
+			Thread.sleep(100);
+			assertTrue(updates.toString(), updates.isEmpty());
+			assertEquals(1, restarted.getOnlineServers());
+			assertEquals("host-127.0.0.1", restarted.getDetectedServers().get(0).getHostname());
+
+			// Another port is another daemon, so the journal is discarded.
+			assertEquals(0, new ScanDaemonBuilder(Protocol.HTTP).withPort(80)
+																.withConnectOnly()
+																.withTargets("127.0.0.1")
+																.withJournal(directory.toPath())
+																.build()
+																.getOnlineServers());
+		}
+	}
+
+	/**
+	 * A terminated daemon closes its journal, opening it again when it is restarted.
+	 */
+	@Test
+	public void testRestartAfterTermination() throws IOException, InterruptedException {
+
+		File directory = folder.newFolder();
+		HostnameResolver resolver = new HostnameResolver(ip -> "host-" + ip, 1, 60000, 60000, 100);
+		ScanDaemon daemon;
+		int port;
+
+		try(ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+
+			port = server.getLocalPort();
+			daemon = newDaemon(port, directory, resolver);
+			CountDownLatch updated = new CountDownLatch(1);
+			daemon.addServerUpdatedListener(result -> updated.countDown());
+
+			daemon.start();
+			try {
+				assertTrue(updated.await(10, TimeUnit.SECONDS));
+			} finally {
+				daemon.stop();
+			}
+			assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+		}
+
+		// The journal is closed, so the directory can be opened by another daemon meanwhile.
+		ScanDaemon other = newDaemon(port, directory, resolver);
+		assertEquals(1, other.getOnlineServers());
+		other.closeJournal();
+
+		// The server is gone, so the restarted daemon journals it as offline.
+		CountDownLatch removed = new CountDownLatch(1);
+		daemon.addServerRemovedListener(result -> removed.countDown());
+
+		daemon.start();
+		try {
+			assertTrue(removed.await(10, TimeUnit.SECONDS));
+		} finally {
+			daemon.stop();
+			resolver.shutdown();
+		}
+		assertTrue(daemon.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertEquals(0, newDaemon(port, directory, resolver).getOnlineServers());
+	}
+
+	private static StateJournal open(File directory, long fingerprint, DetectedServerStore store) throws IOException {
+		return new StateJournal(directory.toPath(), fingerprint, store, SEGMENT_SIZE, 2);
+	}
+
+	private static ScanDaemon newDaemon(int port, File directory, HostnameResolver resolver) throws IOException {
+		return new ScanDaemonBuilder(Protocol.HTTP).withPort(port)
+													.withConnectOnly()
+													.withSleep(20)
+													.withTargets("127.0.0.1")
+													.withListenerQueue(64, OverflowPolicy.BLOCK)
+													.withHostnameResolver(resolver)
+													.withJournal(directory.toPath())
+													.build();
+	}
+}
@@ -0,0 +1,113 @@
+package brv.tests.targets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import brv.tools.targets.LivenessSchedule;
+
+public class LivenessScheduleTests {
+
+	@Test
+	public void testSweep() {
+
+		LivenessSchedule schedule = new LivenessSchedule(16, 10, LivenessSchedule.DEFAULT_MAX_HOSTS);
+
+		for(long host = 0; host < 100; host++) {
+			assertTrue(schedule.isDue(host, 0));
+			assertTrue(schedule.isDue(host, 10));
+		}
+	}
+
+	/**
+	 * Hosts never seen online are probed once every max backoff cycles.
+	 */
+	@Test
+	public void testUnknownHosts() {
+
+		LivenessSchedule schedule = new LivenessSchedule(8, 1000, LivenessSchedule.DEFAULT_MAX_HOSTS);
+
+		for(long host = 0; host < 100; host++)
+			assertEquals(1, countDue(schedule, host, 1, 9));
+
+		assertEquals(0, schedule.getTrackedHosts());
+	}
+
+	@Test
+	public void testOnlineHosts() {
+
+		LivenessSchedule schedule = new LivenessSchedule(8, 1000, LivenessSchedule.DEFAULT_MAX_HOSTS);
+		schedule.record(5, true);
+
+		assertEquals(1, schedule.getBackoff(5));
+		assertEquals(8, countDue(schedule, 5, 1, 9));
+	}
+
+	@Test
+	public void testBackOff() {
+
+		LivenessSchedule schedule = new LivenessSchedule(8, 1000, LivenessSchedule.DEFAULT_MAX_HOSTS);
+		schedule.record(5, true);
+
+		schedule.record(5, false);
+		assertEquals(2, schedule.getBackoff(5));
+
+		schedule.record(5, false);
+		assertEquals(4, schedule.getBackoff(5));
+
+		// Reaching the max backoff, the host is no longer tracked.
+		schedule.record(5, false);
+		assertEquals(8, schedule.getBackoff(5));
+		assertEquals(0, schedule.getTrackedHosts());
+
+		// A reply resets the back off.
+		schedule.record(5, true);
+		assertEquals(1, schedule.getBackoff(5));
+	}
+
+	/**
+	 * Backed off hosts are spread over the cycles.
+	 */
+	@Test
+	public void testSpread() {
+
+		LivenessSchedule schedule = new LivenessSchedule(4, 1000, LivenessSchedule.DEFAULT_MAX_HOSTS);
+
+		for(long cycle = 1; cycle <= 4; cycle++) {
+			int due = 0;
+			for(long host = 0; host < 1000; host++)
+				if(schedule.isDue(host, cycle))
+					due++;
+			assertTrue("Due hosts: " + due, (due > 150) && (due < 350));
+		}
+	}
+
+	@Test
+	public void testMaxHosts() {
+
+		LivenessSchedule schedule = new LivenessSchedule(8, 1000, 2);
+
+		schedule.record(1, true);
+		schedule.record(2, true);
+		schedule.record(3, true);
+
+		assertEquals(2, schedule.getTrackedHosts());
+		assertEquals(8, schedule.getBackoff(3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSweepInterval() {
+		new LivenessSchedule(8, 0, LivenessSchedule.DEFAULT_MAX_HOSTS);
+	}
+
+	private static int countDue(LivenessSchedule schedule, long host, long from, long to) {
+
+		int result = 0;
+		for(long cycle = from; cycle < to; cycle++)
+			if(schedule.isDue(host, cycle))
+				result++;
+
+		return result;
+	}
+}
@@ -0,0 +1,169 @@
+package brv.tests.targets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import brv.commons.model.enums.Protocol;
+import brv.tools.daemons.ScanDaemon;
+import brv.tools.daemons.ScanDaemonBuilder;
+import brv.tools.events.OverflowPolicy;
+import brv.tools.targets.NeighborPrefilter;
+import brv.tools.targets.ScanTargets;
+
+public class NeighborPrefilterTests {
+
+	private static final String HEADER = "IP address       HW type     Flags       HW address            Mask     Device";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testResolvedFirst() throws IOException {
+
+		Path table = newTable("10.0.0.9         0x1         0x2         52:54:00:12:34:56     *        eth0",
+								"10.0.0.3         0x1         0x6         52:54:00:12:34:57     *        eth0",
+								"192.168.1.1      0x1         0x2         52:54:00:12:34:58     *        eth0");
+
+		ScanTargets targets = ScanTargets.parse("10.0.0.0/24");
+		NeighborPrefilter prefilter = new NeighborPrefilter(table, targets);
+		prefilter.refresh();
+
+		assertEquals(2, prefilter.getResolvedCount());
+		assertEquals(targets.indexOf("10.0.0.3"), prefilter.nextResolved());
+		assertEquals(targets.indexOf("10.0.0.9"), prefilter.nextResolved());
+		assertEquals(-1, prefilter.nextResolved());
+
+		// Already probed, so skipped when iterating the targets.
+		assertTrue(prefilter.isSkipped(targets.indexOf("10.0.0.3")));
+		assertFalse(prefilter.isSkipped(targets.indexOf("10.0.0.4")));
+
+		// A new cycle serves them again.
+		prefilter.refresh();
+		assertEquals(targets.indexOf("10.0.0.3"), prefilter.nextResolved());
+	}
+
+	@Test
+	public void testUnresolvedLast() throws IOException {
+
+		Path table = newTable("10.0.0.5         0x1         0x0         00:00:00:00:00:00     *        eth0",
+								"10.0.0.6         0x1         0x0         00:00:00:00:00:00     *        eth0",
+								"10.0.0.6         0x1         0x2         52:54:00:12:34:56     *        wlan0",
+								"10.0.0.7         0x1         garbage     00:00:00:00:00:00     *        eth0");
+
+		ScanTargets targets = ScanTargets.parse("10.0.0.0/24");
+		NeighborPrefilter prefilter = new NeighborPrefilter(table, targets);
+		prefilter.refresh();
+
+		assertEquals(1, prefilter.getUnresolvedCount());
+		assertTrue(prefilter.isSkipped(targets.indexOf("10.0.0.5")));
+
+		// Resolved on another interface.
+		assertEquals(targets.indexOf("10.0.0.6"), prefilter.nextResolved());
+
+		// Probed once every other target has been.
+		assertTrue(prefilter.hasNextUnresolved());
+		assertEquals(targets.indexOf("10.0.0.5"), prefilter.nextUnresolved());
+		assertFalse(prefilter.hasNextUnresolved());
+		assertEquals(-1, prefilter.nextUnresolved());
+
+		assertFalse(prefilter.isSkipped(targets.indexOf("10.0.0.7")));
+	}
+
+	/**
+	 * Without a readable table every target is probed as usual.
+	 */
+	@Test
+	public void testMissingTable() {
+
+		NeighborPrefilter prefilter = new NeighborPrefilter(folder.getRoot().toPath().resolve("missing"), ScanTargets.parse("10.0.0.0/24"));
+		prefilter.refresh();
+
+		assertEquals(-1, prefilter.nextResolved());
+		assertEquals(0, prefilter.getUnresolvedCount());
+		assertFalse(prefilter.isSkipped(0));
+	}
+
+	/**
+	 * The daemon probes the resolved neighbor before any other target and the unresolved one after them, once per cycle.
+	 */
+	@Test
+	public void testDaemon() throws IOException, InterruptedException {
+
+		Path table = newTable("127.0.0.3        0x1         0x2         00:00:00:00:00:00     *        lo",
+								"127.0.0.2        0x1         0x0         00:00:00:00:00:00     *        lo");
+
+		try(ServerSocket server = new ServerSocket()) {
+
+			// Listening on every address, so every loopback target is online.
+			server.bind(new InetSocketAddress(0));
+
+			ScanDaemon daemon = new ScanDaemonBuilder(Protocol.HTTP).withPort(server.getLocalPort())
+																	.withConnectOnly()
+																	.withSleep(20)
+																	.withTargets("127.0.0.1-4")
+																	.withNeighborPrefilter(table)
+																	.withListenerQueue(64, OverflowPolicy.BLOCK)
+																	.build();
+
+			List<String> detected = new ArrayList<>();
+			List<Long> scanned = new ArrayList<>();
+			CountDownLatch cycles = new CountDownLatch(2);
+			daemon.addServerUpdatedListener(result -> {
+				synchronized(detected) {
+					detected.add(result.getIp());
+				}
+			});
+			daemon.addCycleCompletedListener(cycle -> {
+				synchronized(scanned) {
+					scanned.add(cycle.getScannedHosts());
+				}
+				cycles.countDown();
+			});
+
+			daemon.start();
+			try {
+				assertTrue(cycles.await(10, TimeUnit.SECONDS));
+			} finally {
+				daemon.stop();
+			}
+
+			Thread.sleep(100);
+			synchronized(detected) {
+				assertEquals(Arrays.asList("127.0.0.3", "127.0.0.1", "127.0.0.4", "127.0.0.2"), detected.subList(0, 4));
+			}
+			synchronized(scanned) {
+				assertEquals(Arrays.asList(4L, 4L), scanned.subList(0, 2));
+			}
+			assertEquals(table.toString(), daemon.getConfiguration().getNeighborTable());
+		}
+	}
+
+	private Path newTable(String... entries) throws IOException {
+
+		File file = folder.newFile();
+		List<String> lines = new ArrayList<>();
+		lines.add(HEADER);
+		lines.addAll(Arrays.asList(entries));
+		Files.write(file.toPath(), lines, StandardCharsets.US_ASCII);
+
+		return file.toPath();
+	}
+}
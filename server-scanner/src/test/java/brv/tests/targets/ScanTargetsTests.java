@@ -0,0 +1,109 @@
+package brv.tests.targets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import brv.tools.targets.ScanTargets;
+
+public class ScanTargetsTests {
+
+	/**
+	 * Default targets must keep scanning the same hosts as the legacy class C sweep: from .1 to .254
+	 */
+	@Test
+	public void testDefaultTargets() {
+		ScanTargets targets = ScanTargets.parse(ScanTargets.DEFAULT_TARGETS);
+		
+		assertEquals(254, targets.size());
+		assertEquals("192.168.1.1", targets.getAddress(0));
+		assertEquals("192.168.1.254", targets.getAddress(253));
+	}
+	
+	@Test
+	public void testCidr16() {
+		ScanTargets targets = ScanTargets.parse("10.20.0.0/16");
+		
+		assertEquals(65534, targets.size());
+		assertEquals("10.20.0.1", targets.getAddress(0));
+		assertEquals("10.20.1.0", targets.getAddress(255));
+		assertEquals("10.20.255.254", targets.getAddress(65533));
+		assertEquals(255, targets.indexOf("10.20.1.0"));
+	}
+	
+	@Test
+	public void testCidr8() {
+		assertEquals((1L << 24) - 2, ScanTargets.parse("10.0.0.0/8").size());
+	}
+	
+	@Test
+	public void testCidr32() {
+		ScanTargets targets = ScanTargets.parse("127.0.0.1/32");
+		
+		assertEquals(1, targets.size());
+		assertEquals("127.0.0.1", targets.getAddress(0));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testCidr7() {
+		ScanTargets.parse("10.0.0.0/7");
+	}
+	
+	@Test
+	public void testRanges() {
+		ScanTargets targets = ScanTargets.parse("10.0.0.250-10.0.1.5", "172.16.0.1-3", "192.168.0.7");
+		
+		assertEquals(12 + 3 + 1, targets.size());
+		assertEquals("10.0.1.0", targets.getAddress(6));
+		assertEquals("172.16.0.1", targets.getAddress(12));
+		assertEquals("192.168.0.7", targets.getAddress(15));
+		assertEquals(14, targets.indexOf("172.16.0.3"));
+		assertFalse(targets.contains("172.16.0.4"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvertedRange() {
+		ScanTargets.parse("10.0.0.50-10.0.0.1");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAddress() {
+		ScanTargets.parse("10.0.0.256/24");
+	}
+	
+	@Test
+	public void testIpv6Prefix() {
+		ScanTargets targets = ScanTargets.parse("fd00::/120");
+		
+		assertEquals(255, targets.size());
+		assertEquals("fd00:0:0:0:0:0:0:1", targets.getAddress(0));
+		assertEquals("fd00:0:0:0:0:0:0:ff", targets.getAddress(254));
+		assertEquals(9, targets.indexOf("fd00::a"));
+		assertTrue(targets.contains("fd00::1"));
+		assertFalse(targets.contains("fd00::100"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testIpv6PrefixTooWide() {
+		ScanTargets.parse("fd00::/64");
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexOutOfBounds() {
+		ScanTargets.parse("10.0.0.0/30").getAddress(2);
+	}
+	
+	@Test
+	public void testCovers() {
+		ScanTargets network = ScanTargets.parse("10.0.0.0/16", "fd00::/120");
+		
+		assertTrue(network.covers(network));
+		assertTrue(network.covers(ScanTargets.parse("10.0.1.0/24", "10.0.5.7", "fd00::1")));
+		assertTrue(network.covers(ScanTargets.parse("10.0.0.1-10.0.3.254")));
+		assertFalse(network.covers(ScanTargets.parse("10.0.0.0/15")));
+		assertFalse(network.covers(ScanTargets.parse("10.0.255.250-10.1.0.5")));
+		assertFalse(ScanTargets.parse("10.0.1.0/24").covers(network));
+	}
+}
@@ -0,0 +1,69 @@
+package brv.tests.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import brv.tools.util.TokenBucket;
+
+public class TokenBucketTests {
+
+	/**
+	 * Without burst, every permit is spaced from the previous one.
+	 */
+	@Test
+	public void testSmooth() {
+		
+		TokenBucket bucket = new TokenBucket(100, 1);
+		long interval = TimeUnit.MILLISECONDS.toNanos(10);
+		
+		long previous = bucket.reserve();
+		for(int i = 0; i < 50; i++) {
+			long wait = bucket.reserve();
+			assertTrue(wait - previous > interval - TimeUnit.MILLISECONDS.toNanos(1));
+			previous = wait;
+		}
+	}
+	
+	@Test
+	public void testBurst() throws InterruptedException {
+		
+		TokenBucket bucket = new TokenBucket(100, 5);
+		
+		// Wait for the bucket to be full.
+		Thread.sleep(100);
+		
+		for(int i = 0; i < 5; i++)
+			assertEquals(0, bucket.reserve());
+		
+		assertTrue(bucket.reserve() > 0);
+	}
+	
+	@Test
+	public void testAcquire() throws InterruptedException {
+		
+		TokenBucket bucket = new TokenBucket(200, 1);
+		
+		long start = System.nanoTime();
+		for(int i = 0; i < 41; i++)
+			bucket.acquire();
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		
+		// 40 intervals of 5ms.
+		assertTrue(elapsed >= 190);
+		assertTrue(elapsed < 1000);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRate() {
+		new TokenBucket(0, 1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBurst() {
+		new TokenBucket(1, 0);
+	}
+}